@@ -0,0 +1,147 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Mailbox of commands for a single account, drained by at most one thread at a time.
+ * <p>
+ * Every call of the client which reads or changes the folders or the rules of an account runs as a command on its
+ * actor, so the account needs no lock. The commands of all accounts run on one shared pool, so an idle account costs
+ * only an empty queue, and any number of accounts make progress in parallel. The commands of one account never run
+ * concurrently, and each of them sees the changes of the ones before it - the flag which hands the mailbox from one
+ * drain to the next orders them.
+ * <p>
+ * A drain runs a whole batch of commands before it gives the thread back, so a burst of mails to the same account is
+ * stored in one go. The futures of the commands are completed only after the batch, so their callbacks never run
+ * inside the drain. A command must not call back into its own account, since it would wait for itself.
+ */
+public final class AccountActor {
+    private static final int MAX_BATCH = 64;
+
+    private final Executor executor;
+    private final Queue<Command<?>> mailbox;
+    private final AtomicBoolean scheduled;
+
+    AccountActor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    AccountActor(Executor executor) {
+        this.executor = executor;
+        this.mailbox = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+    }
+
+    /**
+     * Queues a command for the account.
+     *
+     * @return a future completed with the result of the command, or with the exception it throws
+     */
+    <T> CompletableFuture<T> ask(Supplier<T> command) {
+        Command<T> queued = new Command<>(command);
+        mailbox.add(queued);
+        schedule();
+        return queued.result;
+    }
+
+    /**
+     * Runs the command on the actor and waits for it.
+     *
+     * @return the result of the command
+     * @throws RuntimeException the exception thrown by the command
+     */
+    public <T> T call(Supplier<T> command) {
+        try {
+            return ask(command).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the command on the actor and waits for it.
+     *
+     * @throws RuntimeException the exception thrown by the command
+     */
+    public void run(Runnable command) {
+        call(() -> {
+            command.run();
+            return null;
+        });
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        List<Command<?>> done = new ArrayList<>();
+        try {
+            try {
+                Command<?> command;
+                while (done.size() < MAX_BATCH && (command = mailbox.poll()) != null) {
+                    done.add(command);
+                    command.run();
+                }
+            } finally {
+                scheduled.set(false);
+            }
+
+            // A command queued after the last poll, but before the flag was cleared, would wait for the next one
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        } finally {
+            // Even if the drain itself fails, no caller is left waiting for a command which was taken off the queue
+            for (Command<?> command : done) {
+                command.complete();
+            }
+        }
+    }
+
+    private static final class Command<T> {
+        private final Supplier<T> body;
+        private final CompletableFuture<T> result;
+        private T value;
+        private Throwable failure;
+
+        Command(Supplier<T> body) {
+            this.body = body;
+            this.result = new CompletableFuture<>();
+        }
+
+        void run() {
+            try {
+                value = body.get();
+            } catch (Throwable e) {
+                // An error must not kill the drain either, the caller gets it through the future
+                failure = e;
+            }
+        }
+
+        void complete() {
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+}
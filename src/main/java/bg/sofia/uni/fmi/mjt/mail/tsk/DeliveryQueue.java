@@ -0,0 +1,154 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.DeliveryQueueFullException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.metrics.OutlookMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of sent mails waiting to be delivered to their recipients, drained by a fixed pool of workers.
+ * <p>
+ * The queue never grows beyond its capacity: a sender waits for a free place at most as long as it asks to, and
+ * then gets a {@link DeliveryQueueFullException}, so a burst of broadcasts slows down the senders instead of
+ * filling the heap. The workers are daemon threads, started with the first queued mail, and a failed delivery only
+ * fails the future of its own mail. {@link #shutdown()} stops the workers and fails the mails still waiting.
+ */
+class DeliveryQueue {
+    private final BlockingQueue<Delivery> queue;
+    private final int workerCount;
+    private final Consumer<Mail> deliverer;
+    private final OutlookMetrics metrics;
+    private final List<Thread> workers;
+    private volatile boolean started;
+    private volatile boolean shutDown;
+
+    /**
+     * @param deliverer delivers a mail to all of its recipients, on the thread of a worker
+     */
+    DeliveryQueue(int capacity, int workerCount, Consumer<Mail> deliverer, OutlookMetrics metrics) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Delivery queue capacity should be positive");
+        }
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Delivery worker count should be positive");
+        }
+
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workerCount = workerCount;
+        this.deliverer = deliverer;
+        this.metrics = metrics;
+        this.workers = new ArrayList<>(workerCount);
+    }
+
+    /**
+     * @return a future completed once every recipient of the mail has it
+     * @throws DeliveryQueueFullException if the queue is still full after the timeout, or if the thread is
+     *                                    interrupted while waiting
+     * @throws IllegalStateException      if the queue is shut down
+     */
+    CompletableFuture<Void> submit(Mail mail, long timeout, TimeUnit unit) {
+        checkNotShutDown();
+        startWorkers();
+
+        Delivery delivery = new Delivery(mail, new CompletableFuture<>(), System.nanoTime());
+        boolean queued;
+        try {
+            queued = timeout <= 0 ? queue.offer(delivery) : queue.offer(delivery, timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.recordRejectedDelivery();
+            throw new DeliveryQueueFullException("Interrupted while waiting for a place in the delivery queue");
+        }
+
+        if (!queued) {
+            metrics.recordRejectedDelivery();
+            throw new DeliveryQueueFullException("Delivery queue is full");
+        }
+        // A shutdown which drained the queue before the mail was added would leave it there for good
+        if (shutDown && queue.remove(delivery)) {
+            checkNotShutDown();
+        }
+        metrics.recordQueuedDelivery();
+        return delivery.done();
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the workers once they finish the mails they are delivering, and fails the futures of the mails which
+     * are still waiting in the queue. Does nothing if the queue is already shut down.
+     */
+    void shutdown() {
+        synchronized (workers) {
+            if (shutDown) {
+                return;
+            }
+            shutDown = true;
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+
+        Delivery delivery;
+        while ((delivery = queue.poll()) != null) {
+            metrics.recordDequeuedDelivery(System.nanoTime() - delivery.queuedAt());
+            delivery.done().completeExceptionally(new IllegalStateException("The delivery queue is shut down"));
+        }
+    }
+
+    private void checkNotShutDown() {
+        if (shutDown) {
+            throw new IllegalStateException("The delivery queue is shut down");
+        }
+    }
+
+    private void startWorkers() {
+        if (started) {
+            return;
+        }
+
+        synchronized (workers) {
+            if (started || shutDown) {
+                return;
+            }
+            for (int i = 0; i < workerCount; i++) {
+                Thread worker = new Thread(this::work, "mail-delivery-" + i);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+            started = true;
+        }
+    }
+
+    private void work() {
+        while (!shutDown) {
+            Delivery delivery;
+            try {
+                delivery = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            metrics.recordDequeuedDelivery(System.nanoTime() - delivery.queuedAt());
+
+            try {
+                deliverer.accept(delivery.mail());
+                delivery.done().complete(null);
+            } catch (Throwable e) {
+                // An error must not kill the worker, and the sender has to learn about it from the future
+                delivery.done().completeExceptionally(e);
+            }
+        }
+    }
+
+    private record Delivery(Mail mail, CompletableFuture<Void> done, long queuedAt) {
+    }
+}
@@ -0,0 +1,7 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+/**
+ * A mail that is yet to be received - the same metadata and content that {@link MailClient#receiveMail} takes.
+ */
+public record IncomingMail(String metadata, String content) {
+}
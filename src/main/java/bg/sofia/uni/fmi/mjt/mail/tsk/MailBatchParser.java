@@ -0,0 +1,111 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.AddressInterner;
+import bg.sofia.uni.fmi.mjt.mail.tsk.metadata.MailMetadata;
+import bg.sofia.uni.fmi.mjt.mail.tsk.registry.AccountRegistry;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses a batch of incoming mails in parallel on the common fork-join pool.
+ * <p>
+ * The batch is split in halves until a part is small enough to be parsed on a single thread. Parsing only reads
+ * the account registry (to resolve the senders), so it is done before the mails are passed to the actors of the
+ * accounts.
+ * <p>
+ * Recipient addresses and senders without an account are interned, so the same address is kept once no matter
+ * how many mails mention it.
+ */
+class MailBatchParser {
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    private final AccountRegistry accounts;
+    private final AddressInterner addresses;
+
+    MailBatchParser(AccountRegistry accounts, AddressInterner addresses) {
+        this.accounts = accounts;
+        this.addresses = addresses;
+    }
+
+    Mail parse(String mailMetadata, String mailContent) {
+        MailMetadata metadata = new MailMetadata(mailMetadata, addresses);
+
+        return new Mail(senderOf(metadata), metadata.getRecipients(), metadata.getSubject(), mailContent,
+            metadata.getReceived());
+    }
+
+    /**
+     * Parses a mail sent by one of the accounts of the client, once for both its sent folder and its recipients.
+     * The recipients get the very same mail as the sender, unless the metadata names another sender.
+     */
+    SentMail parseSent(Account sender, String mailMetadata, String mailContent) {
+        MailMetadata metadata = new MailMetadata(mailMetadata, addresses);
+
+        Mail sent =
+            new Mail(sender, metadata.getRecipients(), metadata.getSubject(), mailContent, metadata.getReceived());
+
+        Account deliveredSender = senderOf(metadata);
+        Mail delivered = sender.equals(deliveredSender) ? sent :
+            new Mail(deliveredSender, sent.recipients(), sent.subject(), mailContent, sent.received());
+        return new SentMail(sent, delivered);
+    }
+
+    private Account senderOf(MailMetadata metadata) {
+        SystemAccount sender = accounts.getByEmail(metadata.getSender());
+
+        return sender == null ? addresses.externalSender(metadata.getSender()) : sender.account();
+    }
+
+    /**
+     * @return the parsed mails, in the order of the incoming ones
+     */
+    Mail[] parseAll(IncomingMail[] incoming) {
+        Mail[] parsed = new Mail[incoming.length];
+
+        if (incoming.length <= SEQUENTIAL_THRESHOLD) {
+            parseRange(incoming, parsed, 0, incoming.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ParseTask(incoming, parsed, 0, incoming.length));
+        }
+        return parsed;
+    }
+
+    private void parseRange(IncomingMail[] incoming, Mail[] parsed, int from, int to) {
+        for (int i = from; i < to; i++) {
+            parsed[i] = parse(incoming[i].metadata(), incoming[i].content());
+        }
+    }
+
+    /**
+     * @param sent      the mail as stored in the sent folder of the sender
+     * @param delivered the mail as delivered to the recipients
+     */
+    record SentMail(Mail sent, Mail delivered) {
+    }
+
+    private class ParseTask extends RecursiveAction {
+        private final IncomingMail[] incoming;
+        private final Mail[] parsed;
+        private final int from;
+        private final int to;
+
+        ParseTask(IncomingMail[] incoming, Mail[] parsed, int from, int to) {
+            this.incoming = incoming;
+            this.parsed = parsed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                parseRange(incoming, parsed, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(incoming, parsed, from, middle), new ParseTask(incoming, parsed, middle, to));
+        }
+    }
+}
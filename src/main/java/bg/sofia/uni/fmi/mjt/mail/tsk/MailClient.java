@@ -1,5 +1,6 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk;
 
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.ReceivedOrder;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.RuleAlreadyDefinedException;
@@ -7,7 +8,12 @@ import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.InvalidPathException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public interface MailClient {
 
@@ -67,6 +73,32 @@ public interface MailClient {
      */
     void addRule(String accountName, String folderPath, String ruleDefinition, int priority);
 
+    /**
+     * Adds several rules to an account. The result is the same as calling {@code addRule()} for every rule of the
+     * list, in order.
+     *
+     * @param accountName name of the account for which the rules are applied
+     * @param rules       folder path, definition and priority of every rule, as expected by {@code addRule()}
+     * @throws IllegalArgumentException    if the account name is null, empty or blank, if the list or any of its
+     *                                     rules is null, or if any rule is invalid as described in
+     *                                     {@code addRule()}
+     * @throws AccountNotFoundException    if the account does not exist
+     * @throws FolderNotFoundException     if the folder of any rule does not exist
+     * @throws RuleAlreadyDefinedException if any rule conflicts with an existing one or with an earlier rule of
+     *                                     the list
+     */
+    default void addRules(String accountName, List<RuleSpec> rules) {
+        if (rules == null) {
+            throw new IllegalArgumentException("Rules can not be null");
+        }
+        for (RuleSpec rule : rules) {
+            if (rule == null) {
+                throw new IllegalArgumentException("Rule can not be null");
+            }
+            addRule(accountName, rule.folderPath(), rule.ruleDefinition(), rule.priority());
+        }
+    }
+
     /**
      * The mail metadata has the following format (we always expect valid format of the mail metadata,
      * no validations are required):
@@ -89,6 +121,80 @@ public interface MailClient {
      */
     void receiveMail(String accountName, String mailMetadata, String mailContent);
 
+    /**
+     * Receives a batch of mails for a single account. The result is the same as calling {@code receiveMail()} for
+     * every mail of the batch, in order, but the arguments are validated and the account is resolved only once.
+     * The batch is validated as a whole before any mail is stored.
+     *
+     * @param accountName the recipient account
+     * @param mails       metadata and content of the mails, in the format expected by {@code receiveMail()}
+     * @throws IllegalArgumentException if the account name is null, empty or blank, if the batch or any of its
+     *                                  mails is null, or if the metadata or the content of any mail is null,
+     *                                  empty or blank
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    default void receiveMails(String accountName, Iterable<IncomingMail> mails) {
+        for (IncomingMail mail : validatedBatch(accountName, mails)) {
+            receiveMail(accountName, mail.metadata(), mail.content());
+        }
+    }
+
+    /**
+     * Receives batches of mails for several accounts at once. The result is the same as calling
+     * {@code receiveMails()} for every account of the map. All batches are validated before any mail is stored.
+     * <p>
+     * The default implementation can not tell whether an account exists without storing a mail for it, so when
+     * one of the accounts is missing, the batches of the accounts before it in the map may already be stored.
+     * {@link Outlook} resolves every account before it stores any mail.
+     *
+     * @param mailsByAccount the mails to receive, keyed by the name of the recipient account
+     * @throws IllegalArgumentException if the map, any of its account names or batches is invalid,
+     *                                  as described in {@code receiveMails(String, Iterable)}
+     * @throws AccountNotFoundException if any of the accounts does not exist
+     */
+    default void receiveMails(Map<String, ? extends Iterable<IncomingMail>> mailsByAccount) {
+        if (mailsByAccount == null) {
+            throw new IllegalArgumentException("Mails by account can not be null");
+        }
+
+        Map<String, List<IncomingMail>> batches = new LinkedHashMap<>();
+        for (var entry : mailsByAccount.entrySet()) {
+            batches.put(entry.getKey(), validatedBatch(entry.getKey(), entry.getValue()));
+        }
+        for (var entry : batches.entrySet()) {
+            for (IncomingMail mail : entry.getValue()) {
+                receiveMail(entry.getKey(), mail.metadata(), mail.content());
+            }
+        }
+    }
+
+    /**
+     * @return the mails of the batch, after checking the arguments of all of them
+     */
+    private static List<IncomingMail> validatedBatch(String accountName, Iterable<IncomingMail> mails) {
+        if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+            throw new IllegalArgumentException("Account name can not be null, empty or blank");
+        }
+        if (mails == null) {
+            throw new IllegalArgumentException("Mails can not be null");
+        }
+
+        List<IncomingMail> batch = new ArrayList<>();
+        for (IncomingMail mail : mails) {
+            if (mail == null) {
+                throw new IllegalArgumentException("Mail can not be null");
+            }
+            if (mail.metadata() == null || mail.metadata().isBlank()) {
+                throw new IllegalArgumentException("Mail metadata can not be null, empty or blank");
+            }
+            if (mail.content() == null || mail.content().isBlank()) {
+                throw new IllegalArgumentException("Mail content can not be null, empty or blank");
+            }
+            batch.add(mail);
+        }
+        return batch;
+    }
+
     /**
      * Returns a collection of all mails contained directly in the provided folder.
      *
@@ -101,6 +207,44 @@ public interface MailClient {
      */
     Collection<Mail> getMailsFromFolder(String account, String folderPath);
 
+    /**
+     * Returns a page of the mails contained directly in the provided folder, in the order they were received.
+     * Mails received at the same time are always listed in the same order. The default implementation sorts the
+     * whole folder on every call.
+     *
+     * @param account    name of the selected account
+     * @param folderPath full path of the folder
+     * @param cursor     the cursor of the previous page, or null for the first page
+     * @param limit      the maximum number of mails on the page
+     * @param order      whether the page starts from the oldest or from the newest mails
+     * @return the mails of the page and the cursor of the next one
+     * @throws IllegalArgumentException if the account or the folder path is null, empty or blank, if the limit is
+     *                                  not positive or if the order is null
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws FolderNotFoundException  if the folder does not exist
+     */
+    default MailPage getMailsFromFolder(String account, String folderPath, MailCursor cursor, int limit,
+                                        SortOrder order) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit should be positive");
+        }
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order can not be null");
+        }
+
+        Comparator<Mail> comparator = order == SortOrder.OLDEST_FIRST ?
+            ReceivedOrder.OLDEST_FIRST : ReceivedOrder.OLDEST_FIRST.reversed();
+
+        List<Mail> mails = new ArrayList<>();
+        for (Mail mail : getMailsFromFolder(account, folderPath)) {
+            if (cursor == null || comparator.compare(mail, cursor.last()) > 0) {
+                mails.add(mail);
+            }
+        }
+        mails.sort(comparator);
+        return MailPage.of(mails.subList(0, Math.min(limit + 1, mails.size())), limit);
+    }
+
     /**
      * Sends an email. This stores the mail into the sender's "/sent" folder.
      * For each recipient in the recipients email list in the metadata, if an account with this email exists,
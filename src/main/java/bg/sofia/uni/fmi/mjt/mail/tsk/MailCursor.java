@@ -0,0 +1,13 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+/**
+ * The position after the last mail of a page. Passing it to the next query continues right after that mail, even if
+ * the folder has changed in the meantime.
+ */
+public record MailCursor(Mail last) {
+    public MailCursor {
+        if (last == null) {
+            throw new IllegalArgumentException("Cursor mail can not be null");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import java.util.List;
+
+/**
+ * A page of the mails of a folder, with the cursor of the next page or null if this is the last one.
+ */
+public record MailPage(List<Mail> mails, MailCursor next) {
+    public MailPage {
+        mails = List.copyOf(mails);
+    }
+
+    /**
+     * @param fetched up to {@code limit + 1} mails in the order of the page - the extra one only tells that there is a
+     *                next page
+     */
+    static MailPage of(List<Mail> fetched, int limit) {
+        if (fetched.size() <= limit) {
+            return new MailPage(fetched, null);
+        }
+        List<Mail> mails = fetched.subList(0, limit);
+        return new MailPage(mails, new MailCursor(mails.get(limit - 1)));
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
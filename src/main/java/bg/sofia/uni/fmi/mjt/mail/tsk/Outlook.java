@@ -1,37 +1,111 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk;
 
-import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.AddressInterner;
+import bg.sofia.uni.fmi.mjt.mail.tsk.body.BodyStore;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.MailSelector;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountNotFoundException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.DeliveryQueueFullException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.RuleAlreadyDefinedException;
-import bg.sofia.uni.fmi.mjt.mail.tsk.metadata.MailMetadata;
+import bg.sofia.uni.fmi.mjt.mail.tsk.metrics.OutlookMetrics;
+import bg.sofia.uni.fmi.mjt.mail.tsk.registry.AccountRegistry;
 import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe mail client.
+ * <p>
+ * Every call which reads or changes an account runs as a command on the actor of the account (see
+ * {@link AccountActor}), one at a time, so the accounts need no locks and calls for different accounts run in
+ * parallel. A command never waits for another account - {@code sendMail} stores the mail in the sent folder of the
+ * sender and only then passes it to the actors of the recipients - so concurrent calls can not deadlock.
+ * <p>
+ * {@code getMailsFromFolder} returns an immutable snapshot of the folder, taken in constant time. The caller reads
+ * it after the command is done, so polling a large folder neither copies it nor holds up the writers.
+ */
 public class Outlook implements MailClient {
     private static final int UPPER_BOUND_PRIORITY = 10;
     private static final int LOWER_BOUND_PRIORITY = 1;
+    private static final int BACKGROUND_CHUNK_SIZE = 16384;
+    private static final int DEFAULT_DELIVERY_QUEUE_CAPACITY = 1024;
 
-    private final Map<String, SystemAccount> systemAccounts;
+    private final BodyStore bodies;
+    private final AccountRegistry systemAccounts;
+    private final AddressInterner addresses;
+    private final MailBatchParser parser;
+    private final OutlookMetrics metrics;
+    private final DeliveryQueue deliveryQueue;
 
     public Outlook() {
-        this.systemAccounts = new HashMap<>();
+        this(FolderStorage.HASH);
     }
 
-    private boolean doesAccountExistsByEmail(String email) {
-        for (var systemAccount : systemAccounts.values()) {
-            if (systemAccount.account().emailAddress().equals(email)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * @param storage how the folders of the accounts keep their mails
+     */
+    public Outlook(FolderStorage storage) {
+        this(storage, DEFAULT_DELIVERY_QUEUE_CAPACITY, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param storage               how the folders of the accounts keep their mails
+     * @param deliveryQueueCapacity how many mails sent with {@code sendMailAsync} may wait for delivery at once
+     * @param deliveryWorkers       how many threads deliver the mails sent with {@code sendMailAsync}
+     * @throws IllegalArgumentException if the capacity or the number of workers is not positive
+     */
+    public Outlook(FolderStorage storage, int deliveryQueueCapacity, int deliveryWorkers) {
+        this.bodies = new BodyStore();
+        this.systemAccounts = new AccountRegistry(storage, bodies);
+        this.addresses = new AddressInterner();
+        this.parser = new MailBatchParser(systemAccounts, addresses);
+        this.metrics = new OutlookMetrics(systemAccounts.asMap(), bodies);
+        this.deliveryQueue = new DeliveryQueue(deliveryQueueCapacity, deliveryWorkers, this::deliverToRecipients,
+            metrics);
+    }
+
+    /**
+     * @return the metrics of the client, which can also be published over JMX (see {@link OutlookMetrics#register})
+     */
+    public OutlookMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the bodies of the mails stored by all the accounts, each distinct body kept once
+     */
+    public BodyStore getBodies() {
+        return bodies;
+    }
+
+    /**
+     * @return the addresses interned by the client, shared by the recipient sets and the external senders of the
+     * parsed mails
+     */
+    public AddressInterner getAddresses() {
+        return addresses;
     }
 
     public Map<String, SystemAccount> getSystemAccounts() {
-        return systemAccounts;
+        return systemAccounts.asMap();
+    }
+
+    private SystemAccount getSystemAccount(String accountName, String messageIfMissing) {
+        SystemAccount systemAccount = systemAccounts.getByName(accountName);
+        if (systemAccount == null) {
+            throw new AccountNotFoundException(messageIfMissing);
+        }
+        return systemAccount;
     }
 
     @Override
@@ -43,15 +117,8 @@ public class Outlook implements MailClient {
             throw new IllegalArgumentException("Email can not be null, empty or blank");
         }
 
-        if (systemAccounts.containsKey(accountName)) {
-            throw new AccountAlreadyExistsException("Account with the same name already exists");
-        }
-        if (doesAccountExistsByEmail(email)) {
-            throw new AccountAlreadyExistsException("Account with the same email address already exists");
-        }
-
         Account newAccount = new Account(email, accountName);
-        systemAccounts.put(accountName, SystemAccount.of(newAccount));
+        systemAccounts.add(newAccount);
 
         return newAccount;
     }
@@ -65,15 +132,140 @@ public class Outlook implements MailClient {
             throw new IllegalArgumentException("Path can not be null, empty or blank");
         }
 
-        if (!systemAccounts.containsKey(accountName)) {
-            throw new AccountNotFoundException("Can not create a folder if the account does not exist");
-        }
+        SystemAccount systemAccount =
+            getSystemAccount(accountName, "Can not create a folder if the account does not exist");
 
-        systemAccounts.get(accountName).directory().addPath(path);
+        systemAccount.actor().run(() -> systemAccount.directory().addPath(path));
     }
 
     @Override
     public void addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        long start = System.nanoTime();
+        SystemAccount systemAccount = getSystemAccountForRule(accountName, folderPath, ruleDefinition, priority);
+
+        systemAccount.actor().run(() -> {
+            Rule rule = addValidatedRule(systemAccount, folderPath, ruleDefinition, priority);
+
+            long moveStart = System.nanoTime();
+            systemAccount.directory().moveEmailsFromInboxByRule(rule);
+            metrics.recordRetroactiveMove(System.nanoTime() - moveStart);
+        });
+        metrics.recordAddRule(System.nanoTime() - start);
+    }
+
+    /**
+     * Validates all the rules, including their conflicts with each other, before any of them is added, so either
+     * all of them are added or none. The inbox is then checked against all the new rules in a single pass, and
+     * every fitting mail is moved to the folder of the first new rule it fits - where adding the rules one by one
+     * would have moved it.
+     */
+    @Override
+    public void addRules(String accountName, List<RuleSpec> rules) {
+        long start = System.nanoTime();
+        if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+            throw new IllegalArgumentException("Account name can not be null, empty or blank");
+        }
+        if (rules == null) {
+            throw new IllegalArgumentException("Rules can not be null");
+        }
+
+        SystemAccount systemAccount = null;
+        for (RuleSpec spec : rules) {
+            if (spec == null) {
+                throw new IllegalArgumentException("Rule can not be null");
+            }
+            systemAccount = getSystemAccountForRule(accountName, spec.folderPath(), spec.ruleDefinition(),
+                spec.priority());
+        }
+        if (systemAccount == null) {
+            // An empty list adds nothing, but the account should still exist
+            getSystemAccount(accountName, "Can not add a rule to an account if the account does not exist");
+            return;
+        }
+
+        SystemAccount target = systemAccount;
+        target.actor().run(() -> {
+            List<Rule> added = new ArrayList<>(rules.size());
+            for (RuleSpec spec : rules) {
+                if (!target.directory().isPathExisting(spec.folderPath())) {
+                    throw new FolderNotFoundException(
+                        "Can not create a rule with a folder, if the folder does not exist");
+                }
+
+                Rule rule = new Rule(spec.folderPath(), spec.ruleDefinition(), spec.priority());
+                if (isConflictRule(target, rule) || isConflictRule(added, rule)) {
+                    throw new RuleAlreadyDefinedException("Conflict rule, because of equal priority and definition");
+                }
+                added.add(rule);
+            }
+
+            for (Rule rule : added) {
+                target.addRule(rule);
+            }
+
+            long moveStart = System.nanoTime();
+            target.directory().moveEmailsFromInboxByRules(added);
+            metrics.recordRetroactiveMove(System.nanoTime() - moveStart);
+        });
+        metrics.recordAddRule(System.nanoTime() - start);
+    }
+
+    /**
+     * Same as {@link #addRule}, but the mails already in the inbox are checked against the rule in the background.
+     * <p>
+     * The rule is added before the method returns, so every mail received from then on is routed by it. The inbox
+     * as it is at that moment is then checked in chunks on the common fork-join pool: each chunk is evaluated
+     * outside of the actor of the account, and its selected mails are moved in one command on the actor. Mails
+     * which left the inbox in the meantime are skipped.
+     *
+     * @return the progress of the background application
+     */
+    public RuleApplication addRuleInBackground(String accountName, String folderPath, String ruleDefinition,
+                                               int priority) {
+        long start = System.nanoTime();
+        SystemAccount systemAccount = getSystemAccountForRule(accountName, folderPath, ruleDefinition, priority);
+
+        AddedRule added = systemAccount.actor().call(() -> new AddedRule(
+            addValidatedRule(systemAccount, folderPath, ruleDefinition, priority),
+            systemAccount.directory().getInboxArray()));
+
+        RuleApplication application = new RuleApplication(added.inbox().length);
+        long moveStart = System.nanoTime();
+        ForkJoinPool.commonPool().execute(() -> {
+            applyInChunks(systemAccount, added.rule(), added.inbox(), application);
+            metrics.recordRetroactiveMove(System.nanoTime() - moveStart);
+        });
+        metrics.recordAddRule(System.nanoTime() - start);
+        return application;
+    }
+
+    private void applyInChunks(SystemAccount systemAccount, Rule rule, Mail[] inbox, RuleApplication application) {
+        try {
+            for (int from = 0; from < inbox.length; from += BACKGROUND_CHUNK_SIZE) {
+                int to = Math.min(from + BACKGROUND_CHUNK_SIZE, inbox.length);
+                List<Mail> selected = MailSelector.select(inbox, from, to, rule::doesRuleFitMail);
+
+                int moved = 0;
+                if (!selected.isEmpty()) {
+                    moved = systemAccount.actor().call(
+                        () -> systemAccount.directory().moveEmailsFromInbox(selected, rule.getFolderPath()));
+                }
+                application.reportChunk(to - from, moved);
+            }
+            application.complete();
+        } catch (RuntimeException e) {
+            application.fail(e);
+        }
+    }
+
+    /**
+     * A rule added by {@link #addRuleInBackground}, together with the inbox it is yet to be applied to.
+     */
+    private record AddedRule(Rule rule, Mail[] inbox) {
+    }
+
+    private SystemAccount getSystemAccountForRule(String accountName, String folderPath, String ruleDefinition,
+                                                  int priority) {
         if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
             throw new IllegalArgumentException("Account name can not be null, empty or blank");
         }
@@ -87,28 +279,31 @@ public class Outlook implements MailClient {
             throw new IllegalArgumentException("Priority out of bounds");
         }
 
-        if (!systemAccounts.containsKey(accountName)) {
-            throw new AccountNotFoundException("Can not add a rule to an account if the account does not exist");
-        }
+        return getSystemAccount(accountName, "Can not add a rule to an account if the account does not exist");
+    }
 
-        if (!systemAccounts.get(accountName).directory().isPathExisting(folderPath)) {
+    private Rule addValidatedRule(SystemAccount systemAccount, String folderPath, String ruleDefinition,
+                                  int priority) {
+        if (!systemAccount.directory().isPathExisting(folderPath)) {
             throw new FolderNotFoundException("Can not create a rule with a folder, if the folder does not exist");
         }
 
         Rule rule = new Rule(folderPath, ruleDefinition, priority);
 
-        if (isConflictRule(accountName, rule)) {
+        if (isConflictRule(systemAccount, rule)) {
             //also true for equal rules
             throw new RuleAlreadyDefinedException("Conflict rule, because of equal priority and definition");
         }
 
-        systemAccounts.get(accountName).rules().add(rule);
+        systemAccount.addRule(rule);
+        return rule;
+    }
 
-        systemAccounts.get(accountName).directory().moveEmailsFromInboxByRule(rule);
+    private boolean isConflictRule(SystemAccount systemAccount, Rule ruleToAdd) {
+        return isConflictRule(systemAccount.rules(), ruleToAdd);
     }
 
-    private boolean isConflictRule(String accountName, Rule ruleToAdd) {
-        var rules = systemAccounts.get(accountName).rules();
+    private static boolean isConflictRule(Iterable<Rule> rules, Rule ruleToAdd) {
         for (Rule rule : rules) {
             if (rule.getPriority() == ruleToAdd.getPriority() &&
                 rule.getConditions().equals(ruleToAdd.getConditions())) {
@@ -121,6 +316,7 @@ public class Outlook implements MailClient {
 
     @Override
     public void receiveMail(String accountName, String mailMetadata, String mailContent) {
+        long start = System.nanoTime();
         if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
             throw new IllegalArgumentException("Account name can not be null, empty or blank");
         }
@@ -130,46 +326,164 @@ public class Outlook implements MailClient {
         if (mailContent == null || mailContent.isEmpty() || mailContent.isBlank()) {
             throw new IllegalArgumentException("Mail content can not be null, empty or blank");
         }
-        if (!systemAccounts.containsKey(accountName)) {
-            throw new AccountNotFoundException("Can not get emails from an account, if the account does not exist");
+
+        SystemAccount systemAccount =
+            getSystemAccount(accountName, "Can not get emails from an account, if the account does not exist");
+
+        // Parsing does not touch the account, so it is done before the mail is passed to the actor
+        Mail mail = parser.parse(mailMetadata, mailContent);
+
+        deliver(systemAccount, new Mail[] {mail}, 0, 1);
+        metrics.recordReceiveMail(System.nanoTime() - start);
+    }
+
+    /**
+     * Receives the whole batch in a single command on the actor of the account. The mails are parsed in parallel
+     * before the command is queued, and then every destination folder is appended to once.
+     */
+    @Override
+    public void receiveMails(String accountName, Iterable<IncomingMail> mails) {
+        if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+            throw new IllegalArgumentException("Account name can not be null, empty or blank");
+        }
+
+        SystemAccount systemAccount =
+            getSystemAccount(accountName, "Can not get emails from an account, if the account does not exist");
+
+        List<IncomingMail> batch = new ArrayList<>();
+        addValidatedMails(mails, batch);
+
+        Mail[] parsed = parser.parseAll(batch.toArray(new IncomingMail[0]));
+
+        deliver(systemAccount, parsed, 0, parsed.length);
+    }
+
+    /**
+     * Parses the mails of all accounts as one batch, and then delivers them to the accounts in parallel, in one
+     * command on the actor of every account.
+     */
+    @Override
+    public void receiveMails(Map<String, ? extends Iterable<IncomingMail>> mailsByAccount) {
+        if (mailsByAccount == null) {
+            throw new IllegalArgumentException("Mails by account can not be null");
         }
 
-        Mail mail = getMailFrom(mailMetadata, mailContent);
+        List<SystemAccount> accounts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        List<IncomingMail> batch = new ArrayList<>();
 
-        Rule rule = findTheRule(accountName, mail);
-        if (rule == null) {
-            systemAccounts.get(accountName).directory().addEmailToInbox(mail);
-        } else {
-            systemAccounts.get(accountName).directory().addEmail(rule.getFolderPath(), mail);
+        for (var entry : mailsByAccount.entrySet()) {
+            String accountName = entry.getKey();
+            if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+                throw new IllegalArgumentException("Account name can not be null, empty or blank");
+            }
+
+            accounts.add(getSystemAccount(accountName,
+                "Can not get emails from an account, if the account does not exist"));
+            addValidatedMails(entry.getValue(), batch);
+            ends.add(batch.size());
         }
 
+        Mail[] parsed = parser.parseAll(batch.toArray(new IncomingMail[0]));
+
+        CompletableFuture<?>[] deliveries = new CompletableFuture<?>[accounts.size()];
+        int from = 0;
+        for (int i = 0; i < deliveries.length; i++) {
+            SystemAccount systemAccount = accounts.get(i);
+            int start = from;
+            int end = ends.get(i);
+            deliveries[i] = systemAccount.actor().ask(() -> {
+                route(systemAccount, parsed, start, end);
+                return null;
+            });
+            from = end;
+        }
+        awaitAll(deliveries);
     }
 
-    private Rule findTheRule(String accountName, Mail mail) {
-        var rules = systemAccounts.get(accountName).rules();
+    private static void addValidatedMails(Iterable<IncomingMail> mails, List<IncomingMail> batch) {
+        if (mails == null) {
+            throw new IllegalArgumentException("Mails can not be null");
+        }
 
-        for (var rule : rules) {
-            if (rule.doesRuleFitMail(mail)) {
-                return rule;
+        for (IncomingMail mail : mails) {
+            if (mail == null) {
+                throw new IllegalArgumentException("Mail can not be null");
             }
+            if (mail.metadata() == null || mail.metadata().isEmpty() || mail.metadata().isBlank()) {
+                throw new IllegalArgumentException("Mail metadata can not be null, empty or blank");
+            }
+            if (mail.content() == null || mail.content().isEmpty() || mail.content().isBlank()) {
+                throw new IllegalArgumentException("Mail content can not be null, empty or blank");
+            }
+            batch.add(mail);
         }
-        return null;
     }
 
-    private Mail getMailFrom(String mailMetadata, String mailContent) {
-        MailMetadata metadata = new MailMetadata(mailMetadata);
+    /**
+     * Delivers the mails in [from, to) to the account in a single command on its actor.
+     */
+    private void deliver(SystemAccount systemAccount, Mail[] mails, int from, int to) {
+        if (from == to) {
+            return;
+        }
 
-        return new Mail(getAccountFromEmail(metadata.getSender()), metadata.getRecipients(), metadata.getSubject(),
-            mailContent, metadata.getReceived());
+        systemAccount.actor().run(() -> route(systemAccount, mails, from, to));
     }
 
-    private Account getAccountFromEmail(String email) {
-        for (var systemAccount : systemAccounts.values()) {
-            if (systemAccount.account().emailAddress().equals(email)) {
-                return systemAccount.account();
+    /**
+     * Routes the mails in [from, to) by the rules of the account and stores them, grouped by destination folder.
+     * Called on the actor of the account.
+     */
+    private void route(SystemAccount systemAccount, Mail[] mails, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        if (to - from == 1) {
+            deliverOne(systemAccount, mails[from]);
+            return;
+        }
+
+        Directory directory = systemAccount.directory();
+        List<Mail> toInbox = new ArrayList<>();
+        Map<Integer, List<Mail>> toFolders = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            Rule rule = systemAccount.rules().findRule(mails[i]);
+            if (rule == null) {
+                toInbox.add(mails[i]);
+            } else {
+                toFolders.computeIfAbsent(rule.getFolderId(), id -> new ArrayList<>()).add(mails[i]);
             }
         }
-        return null;
+
+        directory.addEmailsToInbox(toInbox);
+        metrics.recordDeliveries(to - from, toInbox.size());
+        for (var entry : toFolders.entrySet()) {
+            directory.addEmails(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void deliverOne(SystemAccount systemAccount, Mail mail) {
+        Rule rule = systemAccount.rules().findRule(mail);
+        metrics.recordDeliveries(1, rule == null ? 1 : 0);
+        if (rule == null) {
+            systemAccount.directory().addEmailToInbox(mail);
+        } else {
+            systemAccount.directory().addEmail(rule.getFolderId(), mail);
+        }
+    }
+
+    /**
+     * @return the account owning the email address, or null if the address does not belong to the client
+     */
+    public Account findAccountByEmail(String email) {
+        return getAccountFromEmail(email);
+    }
+
+    private Account getAccountFromEmail(String email) {
+        SystemAccount systemAccount = systemAccounts.getByEmail(email);
+
+        return systemAccount == null ? null : systemAccount.account();
     }
 
     @Override
@@ -180,16 +494,94 @@ public class Outlook implements MailClient {
         if (folderPath == null || folderPath.isEmpty() || folderPath.isBlank()) {
             throw new IllegalArgumentException("Folder path can not be null, empty or blank");
         }
-        if (!systemAccounts.containsKey(account)) {
-            throw new AccountNotFoundException(
-                "Can not get emails from a folder of an account, if the account does not exist");
+
+        SystemAccount systemAccount = getSystemAccount(account,
+            "Can not get emails from a folder of an account, if the account does not exist");
+
+        // The command only takes the snapshot, which does not copy the mails
+        return systemAccount.actor().call(() -> systemAccount.directory().getMails(folderPath));
+    }
+
+    /**
+     * The page is read from the received-time index of the folder on the actor of the account, so its cost depends
+     * on the limit and not on the size of the folder.
+     */
+    @Override
+    public MailPage getMailsFromFolder(String account, String folderPath, MailCursor cursor, int limit,
+                                       SortOrder order) {
+        if (account == null || account.isEmpty() || account.isBlank()) {
+            throw new IllegalArgumentException("Account can not be null, empty or blank");
+        }
+        if (folderPath == null || folderPath.isEmpty() || folderPath.isBlank()) {
+            throw new IllegalArgumentException("Folder path can not be null, empty or blank");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit should be positive");
+        }
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order can not be null");
+        }
+
+        SystemAccount systemAccount = getSystemAccount(account,
+            "Can not get emails from a folder of an account, if the account does not exist");
+
+        // One mail more than the limit tells whether there is a next page
+        return MailPage.of(systemAccount.actor().call(() -> systemAccount.directory().getMailsPage(folderPath,
+            cursor == null ? null : cursor.last(), limit + 1, order)), limit);
+    }
+
+    /**
+     * Same as {@link #search(String, String, String)}, in all the folders of the account.
+     */
+    public List<Mail> search(String account, String query) {
+        return search(account, query, null);
+    }
+
+    /**
+     * Finds the mails of an account whose subject or body contain every word of the query, using the full-text
+     * index of the account. Words are the runs of letters and digits and are compared ignoring case.
+     *
+     * @param account    name of the selected account
+     * @param query      the words to search for
+     * @param folderPath the folder to search in, together with its subfolders, or null to search in all folders
+     * @return the found mails, in the order they were stored in their folders
+     * @throws IllegalArgumentException if the account is null, empty or blank, or the query contains no words
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws FolderNotFoundException  if the folder does not exist
+     */
+    public List<Mail> search(String account, String query, String folderPath) {
+        if (account == null || account.isEmpty() || account.isBlank()) {
+            throw new IllegalArgumentException("Account can not be null, empty or blank");
+        }
+        if (query == null || query.isEmpty() || query.isBlank()) {
+            throw new IllegalArgumentException("Query can not be null, empty or blank");
         }
 
-        return systemAccounts.get(account).directory().getMails(folderPath);
+        SystemAccount systemAccount = getSystemAccount(account,
+            "Can not search the emails of an account, if the account does not exist");
+
+        return systemAccount.actor().call(() -> systemAccount.directory().search(query, folderPath));
+    }
+
+    /**
+     * @return a rough estimate of the heap memory taken by the full-text index of the account, in bytes
+     * @throws IllegalArgumentException if the account is null, empty or blank
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    public long getSearchIndexMemory(String account) {
+        if (account == null || account.isEmpty() || account.isBlank()) {
+            throw new IllegalArgumentException("Account can not be null, empty or blank");
+        }
+
+        SystemAccount systemAccount = getSystemAccount(account,
+            "Can not get the search index of an account, if the account does not exist");
+
+        return systemAccount.actor().call(() -> systemAccount.directory().getSearchIndexMemory());
     }
 
     @Override
     public void sendMail(String accountName, String mailMetadata, String mailContent) {
+        long start = System.nanoTime();
         if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
             throw new IllegalArgumentException("Account name can not be null, empty or blank");
         }
@@ -199,25 +591,113 @@ public class Outlook implements MailClient {
         if (mailContent == null || mailContent.isEmpty() || mailContent.isBlank()) {
             throw new IllegalArgumentException("Mail content can not be null, empty or blank");
         }
-        if (!systemAccounts.containsKey(accountName)) {
-            throw new AccountNotFoundException("Can not send emails from an account, if the account does not exist");
+
+        SystemAccount sender =
+            getSystemAccount(accountName, "Can not send emails from an account, if the account does not exist");
+
+        MailBatchParser.SentMail mail = parser.parseSent(sender.account(), mailMetadata, mailContent);
+
+        addToSent(sender, mail.sent());
+
+        // The sender is done with the mail before it is delivered, so no command ever waits for a second account
+        deliverToRecipients(mail.delivered());
+        metrics.recordSendMail(System.nanoTime() - start);
+    }
+
+    /**
+     * Like {@code sendMail}, but only stores the mail in the sent folder of the sender, and leaves the delivery to
+     * the recipients to the workers of a bounded delivery queue. Fails at once if the queue is full.
+     *
+     * @return a future completed once every recipient with an account in the client has the mail
+     * @throws IllegalArgumentException   if any of the parameters is null, empty or blank
+     * @throws AccountNotFoundException   if the sender account does not exist
+     * @throws DeliveryQueueFullException if the delivery queue is full, in which case the mail is not stored at all
+     * @throws IllegalStateException      if the client is shut down, in which case the mail is not stored either
+     */
+    public CompletableFuture<Void> sendMailAsync(String accountName, String mailMetadata, String mailContent) {
+        return sendMailAsync(accountName, mailMetadata, mailContent, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Like {@link #sendMailAsync(String, String, String)}, but waits up to the timeout for a place in the delivery
+     * queue, so the caller is slowed down to the pace of the workers.
+     */
+    public CompletableFuture<Void> sendMailAsync(String accountName, String mailMetadata, String mailContent,
+                                                 long timeout, TimeUnit unit) {
+        if (accountName == null || accountName.isEmpty() || accountName.isBlank()) {
+            throw new IllegalArgumentException("Account name can not be null, empty or blank");
+        }
+        if (mailMetadata == null || mailMetadata.isEmpty() || mailMetadata.isBlank()) {
+            throw new IllegalArgumentException("Mail metadata can not be null, empty or blank");
+        }
+        if (mailContent == null || mailContent.isEmpty() || mailContent.isBlank()) {
+            throw new IllegalArgumentException("Mail content can not be null, empty or blank");
         }
 
-        Mail mail = sentMailFrom(accountName, mailMetadata, mailContent);
-        systemAccounts.get(accountName).directory().addEmailToSent(mail);
+        SystemAccount sender =
+            getSystemAccount(accountName, "Can not send emails from an account, if the account does not exist");
+
+        MailBatchParser.SentMail mail = parser.parseSent(sender.account(), mailMetadata, mailContent);
+
+        // The mail is queued first, so a mail turned away by a full queue is not left in the sent folder either
+        CompletableFuture<Void> delivered = deliveryQueue.submit(mail.delivered(), timeout, unit);
+        addToSent(sender, mail.sent());
+        return delivered;
+    }
+
+    /**
+     * Stops the workers of the delivery queue. The mails they are delivering are still delivered, and the futures of
+     * the mails waiting in the queue fail with an {@link IllegalStateException}, as does every later
+     * {@code sendMailAsync}. The other calls are not affected.
+     */
+    public void shutdown() {
+        deliveryQueue.shutdown();
+    }
 
-        for (String name : mail.recipients()) {
-            Account account = getAccountFromEmail(name);
-            if (account != null) {
-                receiveMail(account.name(), mailMetadata, mailContent);
+    private void addToSent(SystemAccount sender, Mail mail) {
+        sender.actor().run(() -> sender.directory().addEmailToSent(mail));
+    }
+
+    /**
+     * Delivers one mail to every recipient with an account in the client. The mail is immutable, so all the
+     * recipients share it. It is passed to the actor of every recipient, so every account routes it by its own rules
+     * in parallel with the others, and the mails sent to the same account at the same time are stored together.
+     */
+    private void deliverToRecipients(Mail mail) {
+        List<SystemAccount> recipients = new ArrayList<>();
+        for (String email : mail.recipients()) {
+            SystemAccount recipient = systemAccounts.getByEmail(email);
+            if (recipient != null) {
+                recipients.add(recipient);
             }
         }
-    }
 
-    private Mail sentMailFrom(String sender, String mailMetadata, String mailContent) {
-        MailMetadata metadata = new MailMetadata(mailMetadata);
+        CompletableFuture<?>[] deliveries = new CompletableFuture<?>[recipients.size()];
+        for (int i = 0; i < deliveries.length; i++) {
+            SystemAccount recipient = recipients.get(i);
+            deliveries[i] = recipient.actor().ask(() -> {
+                deliverOne(recipient, mail);
+                return null;
+            });
+        }
 
-        return new Mail(systemAccounts.get(sender).account(), metadata.getRecipients(), metadata.getSubject(),
-            mailContent, metadata.getReceived());
+        awaitAll(deliveries);
+    }
+
+    /**
+     * Waits for the commands queued on the actors of several accounts, rethrowing the first failure.
+     */
+    private static void awaitAll(CompletableFuture<?>[] commands) {
+        try {
+            CompletableFuture.allOf(commands).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 }
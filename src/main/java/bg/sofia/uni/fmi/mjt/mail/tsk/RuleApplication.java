@@ -0,0 +1,57 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of a rule which is applied to the existing mails of an inbox in the background
+ * (see {@link Outlook#addRuleInBackground}).
+ * <p>
+ * The counters may be read from any thread while the rule is being applied. The result completes with the number of
+ * moved mails once every mail which was in the inbox when the rule was added has been checked.
+ */
+public class RuleApplication {
+    private final int totalMails;
+    private final AtomicInteger checkedMails;
+    private final AtomicInteger movedMails;
+    private final CompletableFuture<Integer> result;
+
+    RuleApplication(int totalMails) {
+        this.totalMails = totalMails;
+        this.checkedMails = new AtomicInteger();
+        this.movedMails = new AtomicInteger();
+        this.result = new CompletableFuture<>();
+    }
+
+    /**
+     * @return the number of mails which were in the inbox when the rule was added
+     */
+    public int getTotalMails() {
+        return totalMails;
+    }
+
+    public int getCheckedMails() {
+        return checkedMails.get();
+    }
+
+    public int getMovedMails() {
+        return movedMails.get();
+    }
+
+    public CompletableFuture<Integer> getResult() {
+        return result;
+    }
+
+    void reportChunk(int checked, int moved) {
+        checkedMails.addAndGet(checked);
+        movedMails.addAndGet(moved);
+    }
+
+    void complete() {
+        result.complete(movedMails.get());
+    }
+
+    void fail(Throwable cause) {
+        result.completeExceptionally(cause);
+    }
+}
@@ -0,0 +1,8 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+/**
+ * A rule that is yet to be added - the same folder path, definition and priority that {@link MailClient#addRule}
+ * takes.
+ */
+public record RuleSpec(String folderPath, String ruleDefinition, int priority) {
+}
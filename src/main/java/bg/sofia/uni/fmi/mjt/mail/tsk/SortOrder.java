@@ -0,0 +1,10 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+/**
+ * The order in which a page of mails is listed, by the time the mails were received.
+ * Mails received at the same time are listed in the same fixed order every time.
+ */
+public enum SortOrder {
+    OLDEST_FIRST,
+    NEWEST_FIRST
+}
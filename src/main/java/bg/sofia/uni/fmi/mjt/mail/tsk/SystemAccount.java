@@ -1,14 +1,40 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk;
 
-import bg.sofia.uni.fmi.mjt.mail.tsk.comparators.RuleByPriorityComparator;
+import bg.sofia.uni.fmi.mjt.mail.tsk.body.BodyStore;
 import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
 import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.RuleSet;
 
-import java.util.Set;
-import java.util.TreeSet;
-
-public record SystemAccount(Account account, Directory directory, Set<Rule> rules) {
+/**
+ * An account together with its folders and rules. Neither the directory nor the rules are thread-safe on their own -
+ * once the account is registered, they are touched only by the commands queued on its actor.
+ */
+public record SystemAccount(Account account, Directory directory, RuleSet rules, AccountActor actor) {
     public static SystemAccount of(Account account) {
-        return new SystemAccount(account, new Directory(), new TreeSet<>(new RuleByPriorityComparator()));
+        return of(account, FolderStorage.HASH);
+    }
+
+    public static SystemAccount of(Account account, FolderStorage storage) {
+        return of(account, storage, new BodyStore());
+    }
+
+    /**
+     * @param bodies the store of the bodies, shared with the other accounts of the client
+     */
+    public static SystemAccount of(Account account, FolderStorage storage, BodyStore bodies) {
+        return new SystemAccount(account, new Directory(storage, bodies), new RuleSet(), new AccountActor());
+    }
+
+    /**
+     * Adds the rule to the account and binds it to the id of its folder, which the directory keeps in place from
+     * then on. Called on the actor of the account.
+     *
+     * @throws bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderNotFoundException if the folder of the rule does not
+     *                                                                          exist
+     */
+    public void addRule(Rule rule) {
+        rule.setFolderId(directory.addRuleTarget(rule.getFolderPath()));
+        rules.add(rule);
     }
 }
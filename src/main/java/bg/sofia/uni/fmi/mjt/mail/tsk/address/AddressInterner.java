@@ -0,0 +1,130 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.address;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a single instance of every distinct email address seen by a mail client and numbers the addresses densely,
+ * so recipient sets can hold ints instead of strings (see {@link RecipientSet}).
+ * <p>
+ * Addresses are compared exactly - the interner does not normalize them. The number of addresses is bounded: once
+ * the interner is full, new addresses are simply not interned and callers fall back to plain strings. Addresses are
+ * never evicted, so an id stays valid for the lifetime of the interner.
+ * <p>
+ * The interner is thread-safe. Lookups of known addresses do not lock. A new address is appended under a lock,
+ * and its id is published through the concurrent map only after the address is stored, so every id a thread can
+ * obtain already resolves to its address.
+ */
+public final class AddressInterner {
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final int NOT_INTERNED = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int capacity;
+    private final Map<String, Integer> ids;
+    private final Map<String, Account> externalSenders;
+
+    private volatile String[] addresses;
+    private int count;
+
+    public AddressInterner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximal number of addresses to intern
+     */
+    public AddressInterner(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+
+        this.capacity = capacity;
+        this.ids = new ConcurrentHashMap<>();
+        this.externalSenders = new ConcurrentHashMap<>();
+        this.addresses = new String[Math.min(capacity, INITIAL_CAPACITY)];
+    }
+
+    /**
+     * @return the id of the address, interning it if needed, or {@link #NOT_INTERNED} if the interner is full
+     */
+    public int idOf(String address) {
+        Integer id = ids.get(address);
+        if (id != null) {
+            return id;
+        }
+        return append(address);
+    }
+
+    /**
+     * @return the id of the address, or {@link #NOT_INTERNED} if it has not been interned
+     */
+    public int find(String address) {
+        Integer id = ids.get(address);
+        return id == null ? NOT_INTERNED : id;
+    }
+
+    /**
+     * @return the interned instance of the address, or the address itself if the interner is full
+     */
+    public String intern(String address) {
+        int id = idOf(address);
+        return id == NOT_INTERNED ? address : addresses[id];
+    }
+
+    public String address(int id) {
+        return addresses[id];
+    }
+
+    /**
+     * The identity of a sender who does not have an account in the client. The address stands for the name too,
+     * since the metadata of a mail does not carry one.
+     *
+     * @return the same account instance for every mail from the address, while the interner is not full
+     */
+    public Account externalSender(String address) {
+        Account sender = externalSenders.get(address);
+        if (sender != null) {
+            return sender;
+        }
+
+        int id = idOf(address);
+        if (id == NOT_INTERNED) {
+            return new Account(address, address);
+        }
+        return externalSenders.computeIfAbsent(address(id), key -> new Account(key, key));
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private synchronized int append(String address) {
+        Integer existing = ids.get(address);
+        if (existing != null) {
+            return existing;
+        }
+        if (count == capacity) {
+            return NOT_INTERNED;
+        }
+
+        String[] current = addresses;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, (int) Math.min(capacity, 2L * current.length));
+        }
+        current[count] = address;
+        addresses = current;
+
+        int id = count++;
+        ids.put(address, id);
+        return id;
+    }
+}
@@ -0,0 +1,112 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.address;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable set of recipient addresses, kept as the sorted ids of the addresses in an {@link AddressInterner}.
+ * <p>
+ * A set of a few recipients takes a small int array instead of a hash set with its own copies of the addresses.
+ * The set is equal to any other set of the same addresses. Two recipient sets of the same interner are compared
+ * by their ids only.
+ */
+public final class RecipientSet extends AbstractSet<String> {
+    private static final int[] NO_IDS = new int[0];
+
+    private final AddressInterner interner;
+    private final int[] ids;
+    private final int hash;
+
+    private RecipientSet(AddressInterner interner, int[] ids) {
+        this.interner = interner;
+        this.ids = ids;
+
+        int sum = 0;
+        for (int id : ids) {
+            sum += interner.address(id).hashCode();
+        }
+        this.hash = sum;
+    }
+
+    /**
+     * @return an immutable set of the addresses, or an unmodifiable copy of them if the interner is full or an
+     * address is null
+     */
+    public static Set<String> of(AddressInterner interner, Collection<String> addresses) {
+        if (addresses.isEmpty()) {
+            return new RecipientSet(interner, NO_IDS);
+        }
+
+        int[] ids = new int[addresses.size()];
+        int size = 0;
+        for (String address : addresses) {
+            int id = address == null ? AddressInterner.NOT_INTERNED : interner.idOf(address);
+            if (id == AddressInterner.NOT_INTERNED) {
+                return Collections.unmodifiableSet(new HashSet<>(addresses));
+            }
+            ids[size++] = id;
+        }
+
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return new RecipientSet(interner, distinct == ids.length ? ids : Arrays.copyOf(ids, distinct));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String address)) {
+            return false;
+        }
+        int id = interner.find(address);
+        return id != AddressInterner.NOT_INTERNED && Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public String next() {
+                if (next == ids.length) {
+                    throw new NoSuchElementException("No more recipients in the set");
+                }
+                return interner.address(ids[next++]);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof RecipientSet other && other.interner == interner) {
+            return hash == other.hash && Arrays.equals(ids, other.ids);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
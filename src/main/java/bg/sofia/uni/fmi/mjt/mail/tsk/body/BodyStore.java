@@ -0,0 +1,160 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.body;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed store of mail bodies, shared by all the mailboxes of a mail client.
+ * <p>
+ * Every distinct body is kept once, under the SHA-256 digest of its UTF-8 bytes, together with the number of stored
+ * mails which refer to it. A folder {@link #retain(String) retains} the body of every mail it stores and keeps the
+ * returned instance instead, so the same newsletter received by many accounts, or on many days, takes the memory of
+ * a single string. A body is dropped from the store once the last mail referring to it is
+ * {@link #release(String) released}.
+ * <p>
+ * A mail sent to many recipients is stored as the same instance everywhere, so the digest of the last retained
+ * body is remembered and not computed again for the same instance.
+ * <p>
+ * The store is thread-safe. The reference count of a body is updated atomically, so mailboxes locked separately
+ * may retain and release the same body at the same time.
+ */
+public final class BodyStore {
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(BodyStore::newDigest);
+
+    private final Map<Digest, Entry> entries;
+    private final LongAdder references;
+    private final LongAdder storedBytes;
+    private final LongAdder referencedBytes;
+
+    private volatile Digested last;
+
+    public BodyStore() {
+        this.entries = new ConcurrentHashMap<>();
+        this.references = new LongAdder();
+        this.storedBytes = new LongAdder();
+        this.referencedBytes = new LongAdder();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform supports SHA-256", e);
+        }
+    }
+
+    /**
+     * Adds a reference to the body.
+     *
+     * @return the stored instance of a body with the same content, which is the given one if the body is new, or
+     * null if the body is null
+     */
+    public String retain(String body) {
+        if (body == null) {
+            return null;
+        }
+
+        Digested digested = digest(body);
+        Entry entry = entries.compute(digested.digest(), (digest, existing) -> {
+            if (existing == null) {
+                storedBytes.add(digested.bytes());
+                return new Entry(body, digested.bytes());
+            }
+            existing.references++;
+            return existing;
+        });
+
+        references.increment();
+        referencedBytes.add(entry.bytes);
+        return entry.body;
+    }
+
+    /**
+     * Removes a reference to the body, and the body itself once no references are left. Bodies which are not in
+     * the store are ignored.
+     */
+    public void release(String body) {
+        if (body == null) {
+            return;
+        }
+
+        Digested digested = digest(body);
+        entries.computeIfPresent(digested.digest(), (digest, existing) -> {
+            references.decrement();
+            referencedBytes.add(-existing.bytes);
+            if (--existing.references == 0) {
+                storedBytes.add(-existing.bytes);
+                return null;
+            }
+            return existing;
+        });
+    }
+
+    /**
+     * @return the number of distinct bodies in the store
+     */
+    public int getDistinctBodyCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of references to the bodies, that is, the number of stored mails with a body
+     */
+    public long getReferenceCount() {
+        return references.sum();
+    }
+
+    /**
+     * @return the UTF-8 size of the distinct bodies
+     */
+    public long getStoredBytes() {
+        return storedBytes.sum();
+    }
+
+    /**
+     * @return the UTF-8 size the bodies would take if every mail kept a copy of its own
+     */
+    public long getReferencedBytes() {
+        return referencedBytes.sum();
+    }
+
+    private Digested digest(String body) {
+        Digested remembered = last;
+        if (remembered != null && remembered.body() == body) {
+            return remembered;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer hash = ByteBuffer.wrap(SHA_256.get().digest(bytes));
+        Digested digested = new Digested(body,
+            new Digest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong()), bytes.length);
+        last = digested;
+        return digested;
+    }
+
+    private record Digest(long first, long second, long third, long fourth) {
+    }
+
+    private record Digested(String body, Digest digest, int bytes) {
+    }
+
+    /**
+     * Mutated only inside the atomic compute calls of the map.
+     */
+    private static final class Entry {
+        private final String body;
+        private final int bytes;
+        private int references;
+
+        Entry(String body, int bytes) {
+            this.body = body;
+            this.bytes = bytes;
+            this.references = 1;
+        }
+    }
+}
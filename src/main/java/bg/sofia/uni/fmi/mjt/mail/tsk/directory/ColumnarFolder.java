@@ -0,0 +1,565 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SortOrder;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A folder which keeps its mails in append-only primitive columns, one row per mail.
+ * <p>
+ * The received time is kept as epoch minutes (UTC is used only as a fixed reference, the time is still local).
+ * Senders and recipient sets are interned ids, and subjects and bodies are handles into the text store of the
+ * {@link MailStore} shared by the folders of a directory. Removed rows are only marked as dead and are compacted
+ * away once they outnumber the live ones. Rows are found by the hash of the mail through an index of chained
+ * buckets, so adding, looking up and removing a mail stays constant time.
+ * <p>
+ * Mail records are created on every read. Moving mails to another columnar folder of the same store copies the
+ * row only - the texts are neither copied nor hashed again.
+ * <p>
+ * A snapshot shares the arrays of the folder. Rows are only ever appended past the ones a snapshot can see, so
+ * adding mails copies just the bucket heads, the first time after a snapshot was taken. Removing a mail also
+ * copies the chains and the dead row marks, and compacting copies the columns. The snapshot reads the texts,
+ * senders and recipients from the store, which only appends and publishes every entry safely.
+ * <p>
+ * The live rows are also kept in a {@link RowIndex} by the time they were received, which is compared straight
+ * from the columns, so pages of the folder in received order do not create the records of the other mails.
+ */
+public class ColumnarFolder extends Folder {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_ROW = -1;
+    private static final int NULL_TEXT = -1;
+    private static final long NULL_RECEIVED = Long.MIN_VALUE;
+    private static final long SECONDS_PER_MINUTE = 60;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final MailStore store;
+
+    private long[] receivedMinutes;
+    private long[] receivedNanosOfMinute;
+    private int[] senderIds;
+    private int[] recipientIds;
+    private int[] subjectHandles;
+    private int[] bodyHandles;
+    private int[] hashes;
+    private int[] nextInBucket;
+    private int[] buckets;
+    private BitSet deadRows;
+    private final RowIndex byReceived;
+
+    private int rowCount;
+    private int liveCount;
+
+    private long version;
+    private FolderSnapshot snapshot;
+    private boolean bucketsShared;
+    private boolean rowsShared;
+    private boolean columnsShared;
+
+    public ColumnarFolder(MailStore store) {
+        this.store = store;
+        this.deadRows = new BitSet();
+        this.byReceived = new RowIndex(this::compareRows);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates a frozen copy of the folder, which shares all of its arrays.
+     */
+    private ColumnarFolder(ColumnarFolder source) {
+        this.store = source.store;
+        this.receivedMinutes = source.receivedMinutes;
+        this.receivedNanosOfMinute = source.receivedNanosOfMinute;
+        this.senderIds = source.senderIds;
+        this.recipientIds = source.recipientIds;
+        this.subjectHandles = source.subjectHandles;
+        this.bodyHandles = source.bodyHandles;
+        this.hashes = source.hashes;
+        this.nextInBucket = source.nextInBucket;
+        this.buckets = source.buckets;
+        this.deadRows = source.deadRows;
+        this.rowCount = source.rowCount;
+        this.liveCount = source.liveCount;
+        this.version = source.version;
+        this.byReceived = null;
+    }
+
+    private void allocate(int capacity) {
+        receivedMinutes = new long[capacity];
+        receivedNanosOfMinute = null;
+        senderIds = new int[capacity];
+        recipientIds = new int[capacity];
+        subjectHandles = new int[capacity];
+        bodyHandles = new int[capacity];
+        hashes = new int[capacity];
+        nextInBucket = new int[capacity];
+        buckets = new int[capacity];
+        Arrays.fill(buckets, NO_ROW);
+        bucketsShared = false;
+        rowsShared = false;
+        columnsShared = false;
+    }
+
+    /**
+     * Readers may take snapshots concurrently, so taking one is serialized with the other readers. Writers do not
+     * synchronize, they are expected to be exclusive with all readers while they change the folder.
+     */
+    @Override
+    public synchronized FolderSnapshot snapshot() {
+        if (snapshot == null) {
+            snapshot = new Snapshot(new ColumnarFolder(this));
+            bucketsShared = true;
+            rowsShared = true;
+            columnsShared = true;
+        }
+        return snapshot;
+    }
+
+    private void changed() {
+        version++;
+        snapshot = null;
+    }
+
+    private void unshareBuckets() {
+        if (bucketsShared) {
+            buckets = buckets.clone();
+            bucketsShared = false;
+        }
+    }
+
+    private void unshareRows() {
+        unshareBuckets();
+        if (rowsShared) {
+            nextInBucket = nextInBucket.clone();
+            deadRows = (BitSet) deadRows.clone();
+            rowsShared = false;
+        }
+    }
+
+    private void unshareColumns() {
+        unshareRows();
+        if (columnsShared) {
+            receivedMinutes = receivedMinutes.clone();
+            if (receivedNanosOfMinute != null) {
+                receivedNanosOfMinute = receivedNanosOfMinute.clone();
+            }
+            senderIds = senderIds.clone();
+            recipientIds = recipientIds.clone();
+            subjectHandles = subjectHandles.clone();
+            bodyHandles = bodyHandles.clone();
+            hashes = hashes.clone();
+            columnsShared = false;
+        }
+    }
+
+    @Override
+    public boolean add(Mail mail) {
+        if (mail == null) {
+            throw new IllegalArgumentException("Mail can not be null");
+        }
+
+        int hash = mail.hashCode();
+        if (findRow(mail, hash) != NO_ROW) {
+            return false;
+        }
+
+        compactIfSparse();
+        int row = newRow(hash);
+        setReceived(row, mail.received());
+        senderIds[row] = store.senderIdOf(mail.sender());
+        recipientIds[row] = mail.recipients() == null ? InternTable.NULL_ID : store.recipientsIdOf(mail.recipients());
+        subjectHandles[row] = storeText(store.subjects(), mail.subject());
+        bodyHandles[row] = storeText(store.bodies(), mail.body());
+        byReceived.insert(row);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Mail mail && findRow(mail, mail.hashCode()) != NO_ROW;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Mail mail)) {
+            return false;
+        }
+
+        int row = findRow(mail, mail.hashCode());
+        if (row == NO_ROW) {
+            return false;
+        }
+        removeRow(row);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return liveCount;
+    }
+
+    @Override
+    public void clear() {
+        rowCount = 0;
+        liveCount = 0;
+        deadRows = new BitSet();
+        byReceived.clear();
+        allocate(INITIAL_CAPACITY);
+        changed();
+    }
+
+    @Override
+    public Iterator<Mail> iterator() {
+        return new Iterator<>() {
+            private int next = nextLiveRow(0);
+            private int last = NO_ROW;
+
+            @Override
+            public boolean hasNext() {
+                return next < rowCount;
+            }
+
+            @Override
+            public Mail next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more mails in the folder");
+                }
+                last = next;
+                next = nextLiveRow(next + 1);
+                return mailAt(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last == NO_ROW) {
+                    throw new IllegalStateException("No mail to remove");
+                }
+                removeRow(last);
+                last = NO_ROW;
+            }
+        };
+    }
+
+    @Override
+    public int moveMatching(Predicate<? super Mail> predicate, Folder target, Consumer<? super Mail> dropped) {
+        if (target == this || !(target instanceof ColumnarFolder columnar) || columnar.store != store) {
+            return super.moveMatching(predicate, target, dropped);
+        }
+
+        int moved = 0;
+        for (int row = nextLiveRow(0); row < rowCount; row = nextLiveRow(row + 1)) {
+            Mail mail = mailAt(row);
+            if (predicate.test(mail)) {
+                if (columnar.findRow(mail, hashes[row]) == NO_ROW) {
+                    columnar.copyRow(this, row);
+                } else {
+                    dropped.accept(mail);
+                }
+                removeRow(row);
+                moved++;
+            }
+        }
+        compactIfSparse();
+        return moved;
+    }
+
+    private void copyRow(ColumnarFolder source, int sourceRow) {
+        compactIfSparse();
+        int row = newRow(source.hashes[sourceRow]);
+        receivedMinutes[row] = source.receivedMinutes[sourceRow];
+        if (source.receivedNanosOfMinute != null && source.receivedNanosOfMinute[sourceRow] != 0) {
+            nanosOfMinuteColumn()[row] = source.receivedNanosOfMinute[sourceRow];
+        }
+        senderIds[row] = source.senderIds[sourceRow];
+        recipientIds[row] = source.recipientIds[sourceRow];
+        subjectHandles[row] = source.subjectHandles[sourceRow];
+        bodyHandles[row] = source.bodyHandles[sourceRow];
+        byReceived.insert(row);
+    }
+
+    @Override
+    public List<Mail> getPage(Mail after, int limit, SortOrder order) {
+        List<Mail> page = new ArrayList<>(Math.min(limit, liveCount));
+        byReceived.forEachAfter(after == null ? null : row -> compareRowTo(row, after),
+            order == SortOrder.NEWEST_FIRST, limit, row -> page.add(mailAt(row)));
+        return page;
+    }
+
+    private int compareRows(int a, int b) {
+        if (a == b) {
+            return 0;
+        }
+
+        int result = Long.compare(receivedMinutes[a], receivedMinutes[b]);
+        if (result == 0) {
+            result = Long.compare(nanosOfMinute(a), nanosOfMinute(b));
+        }
+        if (result != 0) {
+            return result;
+        }
+        return ReceivedOrder.compareContents(subject(subjectHandles[a]), store.sender(senderIds[a]),
+            body(bodyHandles[a]), store.recipients(recipientIds[a]), subject(subjectHandles[b]),
+            store.sender(senderIds[b]), body(bodyHandles[b]), store.recipients(recipientIds[b]));
+    }
+
+    private int compareRowTo(int row, Mail mail) {
+        int result = ReceivedOrder.compareReceived(receivedAt(row), mail.received());
+        if (result != 0) {
+            return result;
+        }
+        return ReceivedOrder.compareContents(subject(subjectHandles[row]), store.sender(senderIds[row]),
+            body(bodyHandles[row]), store.recipients(recipientIds[row]),
+            mail.subject(), mail.sender(), mail.body(), mail.recipients());
+    }
+
+    private long nanosOfMinute(int row) {
+        return receivedNanosOfMinute == null ? 0 : receivedNanosOfMinute[row];
+    }
+
+    Mail mailAt(int row) {
+        return new Mail(store.sender(senderIds[row]), store.recipients(recipientIds[row]),
+            subject(subjectHandles[row]), body(bodyHandles[row]), receivedAt(row));
+    }
+
+    @Override
+    Mail find(int hash, long fingerprint) {
+        for (int row = buckets[bucketOf(hash)]; row != NO_ROW; row = nextInBucket[row]) {
+            if (hashes[row] == hash) {
+                Mail mail = mailAt(row);
+                if (MailFingerprint.of(mail) == fingerprint) {
+                    return mail;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int nextLiveRow(int from) {
+        return Math.min(deadRows.nextClearBit(from), rowCount);
+    }
+
+    private int findRow(Mail mail, int hash) {
+        for (int row = buckets[bucketOf(hash)]; row != NO_ROW; row = nextInBucket[row]) {
+            if (hashes[row] == hash && rowEquals(row, mail)) {
+                return row;
+            }
+        }
+        return NO_ROW;
+    }
+
+    private boolean rowEquals(int row, Mail mail) {
+        return Objects.equals(receivedAt(row), mail.received()) &&
+            Objects.equals(store.sender(senderIds[row]), mail.sender()) &&
+            Objects.equals(store.recipients(recipientIds[row]), mail.recipients()) &&
+            Objects.equals(subject(subjectHandles[row]), mail.subject()) &&
+            Objects.equals(body(bodyHandles[row]), mail.body());
+    }
+
+    private int newRow(int hash) {
+        if (rowCount == hashes.length) {
+            grow();
+        }
+
+        unshareBuckets();
+        int row = rowCount++;
+        hashes[row] = hash;
+        link(row);
+        liveCount++;
+        changed();
+        return row;
+    }
+
+    private void removeRow(int row) {
+        byReceived.remove(row);
+        unshareRows();
+        int bucket = bucketOf(hashes[row]);
+        if (buckets[bucket] == row) {
+            buckets[bucket] = nextInBucket[row];
+        } else {
+            int previous = buckets[bucket];
+            while (nextInBucket[previous] != row) {
+                previous = nextInBucket[previous];
+            }
+            nextInBucket[previous] = nextInBucket[row];
+        }
+
+        deadRows.set(row);
+        liveCount--;
+        changed();
+    }
+
+    private void link(int row) {
+        int bucket = bucketOf(hashes[row]);
+        nextInBucket[row] = buckets[bucket];
+        buckets[bucket] = row;
+    }
+
+    private int bucketOf(int hash) {
+        return (hash ^ (hash >>> 16)) & (buckets.length - 1);
+    }
+
+    private void grow() {
+        int capacity = hashes.length * 2;
+        receivedMinutes = Arrays.copyOf(receivedMinutes, capacity);
+        if (receivedNanosOfMinute != null) {
+            receivedNanosOfMinute = Arrays.copyOf(receivedNanosOfMinute, capacity);
+        }
+        senderIds = Arrays.copyOf(senderIds, capacity);
+        recipientIds = Arrays.copyOf(recipientIds, capacity);
+        subjectHandles = Arrays.copyOf(subjectHandles, capacity);
+        bodyHandles = Arrays.copyOf(bodyHandles, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        nextInBucket = Arrays.copyOf(nextInBucket, capacity);
+        if (rowsShared) {
+            deadRows = (BitSet) deadRows.clone();
+        }
+
+        buckets = new int[capacity];
+        bucketsShared = false;
+        rowsShared = false;
+        columnsShared = false;
+        relink();
+    }
+
+    /**
+     * Drops the dead rows once they outnumber the live ones, moving the live rows down in their order.
+     */
+    private void compactIfSparse() {
+        int dead = rowCount - liveCount;
+        if (dead < INITIAL_CAPACITY || dead <= liveCount) {
+            return;
+        }
+
+        unshareColumns();
+
+        int[] newRows = new int[rowCount];
+        int to = 0;
+        for (int from = nextLiveRow(0); from < rowCount; from = nextLiveRow(from + 1)) {
+            newRows[from] = to;
+            receivedMinutes[to] = receivedMinutes[from];
+            if (receivedNanosOfMinute != null) {
+                receivedNanosOfMinute[to] = receivedNanosOfMinute[from];
+            }
+            senderIds[to] = senderIds[from];
+            recipientIds[to] = recipientIds[from];
+            subjectHandles[to] = subjectHandles[from];
+            bodyHandles[to] = bodyHandles[from];
+            hashes[to] = hashes[from];
+            to++;
+        }
+        if (receivedNanosOfMinute != null) {
+            Arrays.fill(receivedNanosOfMinute, to, rowCount, 0);
+        }
+
+        rowCount = to;
+        deadRows.clear();
+        relink();
+        byReceived.renumber(newRows);
+    }
+
+    private void relink() {
+        Arrays.fill(buckets, NO_ROW);
+        for (int row = nextLiveRow(0); row < rowCount; row = nextLiveRow(row + 1)) {
+            link(row);
+        }
+    }
+
+    private static int storeText(TextStore texts, String text) {
+        return text == null ? NULL_TEXT : texts.store(text);
+    }
+
+    private String subject(int handle) {
+        return handle == NULL_TEXT ? null : store.subjects().get(handle);
+    }
+
+    private String body(int handle) {
+        return handle == NULL_TEXT ? null : store.bodies().get(handle);
+    }
+
+    private void setReceived(int row, LocalDateTime received) {
+        if (received == null) {
+            receivedMinutes[row] = NULL_RECEIVED;
+            return;
+        }
+
+        long epochSecond = received.toEpochSecond(ZoneOffset.UTC);
+        receivedMinutes[row] = Math.floorDiv(epochSecond, SECONDS_PER_MINUTE);
+
+        long nanosOfMinute = Math.floorMod(epochSecond, SECONDS_PER_MINUTE) * NANOS_PER_SECOND + received.getNano();
+        if (nanosOfMinute != 0) {
+            nanosOfMinuteColumn()[row] = nanosOfMinute;
+        }
+    }
+
+    /**
+     * Mails from the metadata are precise to the minute, so the column for the rest is allocated only if needed.
+     */
+    private long[] nanosOfMinuteColumn() {
+        if (receivedNanosOfMinute == null) {
+            receivedNanosOfMinute = new long[receivedMinutes.length];
+        }
+        return receivedNanosOfMinute;
+    }
+
+    private LocalDateTime receivedAt(int row) {
+        long minute = receivedMinutes[row];
+        if (minute == NULL_RECEIVED) {
+            return null;
+        }
+
+        long nanosOfMinute = receivedNanosOfMinute == null ? 0 : receivedNanosOfMinute[row];
+        return LocalDateTime.ofEpochSecond(minute * SECONDS_PER_MINUTE + nanosOfMinute / NANOS_PER_SECOND,
+            (int) (nanosOfMinute % NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    private static final class Snapshot extends FolderSnapshot {
+        private final ColumnarFolder rows;
+
+        private Snapshot(ColumnarFolder rows) {
+            super(rows.version);
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return rows.contains(o);
+        }
+
+        @Override
+        public Iterator<Mail> iterator() {
+            return new Iterator<>() {
+                private int next = rows.nextLiveRow(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next < rows.rowCount;
+                }
+
+                @Override
+                public Mail next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException("No more mails in the folder");
+                    }
+                    Mail mail = rows.mailAt(next);
+                    next = rows.nextLiveRow(next + 1);
+                    return mail;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return rows.liveCount;
+        }
+    }
+}
@@ -1,120 +1,543 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
 
 import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SortOrder;
+import bg.sofia.uni.fmi.mjt.mail.tsk.body.BodyStore;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderInUseException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.InvalidPathException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
 
 public class Directory {
     private static final String ROOT = "/";
     private static final String PATH_SEPARATOR = "/";
     private static final String INBOX = "inbox";
     private static final String SENT = "sent";
-    private static final String REGEX_CONSECUTIVE_PATH_SEPARATOR = ".*" + Pattern.quote(PATH_SEPARATOR) + "{2,}.*";
-    
-    private final Map<String, Set<Mail>> directoryPaths;
+    private static final int PARALLEL_MOVE_THRESHOLD = 8192;
+
+    private final FolderStorage storage;
+    private final MailStore store;
+    private final FolderTree<Folder> folders;
+    private final int inbox;
+    private final int sent;
+    private final SearchIndex searchIndex;
+    private final BodyStore bodies;
+    private final Set<Integer> ruleTargets;
+
+    // Set by restoreEmails - the index is then built from the folders on the first search, and is not kept up to
+    // date until then
+    private boolean indexPending;
 
     public Directory() {
-        this.directoryPaths = new TreeMap<>();
-        setRoot();
+        this(FolderStorage.HASH);
     }
 
-    private void setRoot() {
-        directoryPaths.put(ROOT, new HashSet<>());
+    public Directory(FolderStorage storage) {
+        this(storage, new BodyStore());
+    }
 
-        directoryPaths.put(ROOT + INBOX, new HashSet<>());
-        directoryPaths.put(ROOT + SENT, new HashSet<>());
+    /**
+     * @param bodies the store of the bodies, shared with the other directories of the client. It is not used with
+     *               {@link FolderStorage#OFF_HEAP}, since that storage keeps the bodies out of the heap anyway.
+     */
+    public Directory(FolderStorage storage, BodyStore bodies) {
+        this.storage = storage;
+        this.bodies = storage == FolderStorage.OFF_HEAP ? null : bodies;
+        this.store = switch (storage) {
+            case HASH -> null;
+            case COLUMNAR -> new MailStore();
+            case OFF_HEAP -> new MailStore(new HeapTextStore(), new OffHeapTextStore());
+        };
+        this.folders = new FolderTree<>(newFolder());
+        this.inbox = folders.add(FolderTree.ROOT, INBOX, newFolder());
+        this.sent = folders.add(FolderTree.ROOT, SENT, newFolder());
+        this.searchIndex = new SearchIndex();
+        this.ruleTargets = new HashSet<>();
     }
 
-    private boolean isNewPathCorrect(String path) {
+    private Folder newFolder() {
+        return storage == FolderStorage.HASH ? new HashFolder() : new ColumnarFolder(store);
+    }
 
-        // Path should start with root + inbox and should not end without specified folder
-        if (!path.startsWith(ROOT + INBOX) || path.endsWith(PATH_SEPARATOR)) {
-            return false;
-        }
+    public FolderStorage getStorage() {
+        return storage;
+    }
 
-        // Paths such as /inbox//important are not allowed
-        if (path.matches(REGEX_CONSECUTIVE_PATH_SEPARATOR)) {
-            return false;
-        }
+    /**
+     * @return the data shared by the folders, or null if the folders are not columnar
+     */
+    public MailStore getMailStore() {
+        return store;
+    }
 
-        String father = getFather(path);
+    /**
+     * Only folders below the inbox can be created, moved or removed. Empty folder names, as in /inbox//important or
+     * /inbox/, are not allowed.
+     *
+     * @return the id of the parent of the new folder, or {@link FolderTree#NO_FOLDER} if the path is not correct
+     */
+    private int parentOfNewPath(String path) {
+        if (!path.startsWith(ROOT + INBOX + PATH_SEPARATOR) || path.endsWith(PATH_SEPARATOR)) {
+            return FolderTree.NO_FOLDER;
+        }
 
         //Path should contain all folders
-        return directoryPaths.containsKey(father);
+        return folders.findParent(path);
+    }
+
+    private int folderIdOf(String path, String message) {
+        int id = folders.find(path);
+        if (id == FolderTree.NO_FOLDER) {
+            throw new FolderNotFoundException(message);
+        }
+        return id;
+    }
+
+    private Folder folderOf(int id, String message) {
+        Folder folder = folders.get(id);
+        if (folder == null) {
+            throw new FolderNotFoundException(message);
+        }
+        return folder;
     }
 
-    private String getFather(String path) {
-        int index = path.lastIndexOf(PATH_SEPARATOR);
+    /**
+     * Resolves a path to the id of its folder. The id stays the same while the folder exists, even if the folder is
+     * renamed or moved, and is never given to another folder.
+     *
+     * @throws FolderNotFoundException if there is no folder with the path
+     */
+    public int getFolderId(String path) {
+        return folderIdOf(path, "Can not get the id of a folder, if the folder does not exist");
+    }
 
-        return path.substring(0, index);
+    /**
+     * @return the current path of the folder with the id
+     * @throws FolderNotFoundException if there is no folder with the id
+     */
+    public String getFolderPath(int folderId) {
+        folderOf(folderId, "Can not get the path of a folder, if the folder does not exist");
+        return folders.pathOf(folderId);
     }
 
+    /**
+     * @return read-only map of the folders, keyed by their paths in ascending order
+     */
     public Map<String, Set<Mail>> getDirectoryPaths() {
-        return directoryPaths;
+        Map<String, Set<Mail>> paths = new TreeMap<>();
+        folders.forEachInSubtree(FolderTree.ROOT, id -> paths.put(folders.pathOf(id), folders.get(id)));
+        return Collections.unmodifiableMap(paths);
+    }
+
+    /**
+     * @return an immutable snapshot of the mails in the folder, taken without copying them
+     */
+    public FolderSnapshot getMails(String path) {
+        return getMails(folderIdOf(path, "Can not get emails from a folder, if the folder does not exist"));
+    }
+
+    /**
+     * @return an immutable snapshot of the mails in the folder with the id, taken without copying them
+     */
+    public FolderSnapshot getMails(int folderId) {
+        return folderOf(folderId, "Can not get emails from a folder, if the folder does not exist").snapshot();
+    }
+
+    public FolderSnapshot getMailsFromInbox() {
+        return folders.get(inbox).snapshot();
+    }
+
+    /**
+     * @return the paths of the folders right below the folder, sorted by name
+     */
+    public List<String> getChildFolders(String path) {
+        int id = folderIdOf(path, "Can not list the folders of a folder, if the folder does not exist");
+        int[] children = folders.childrenOf(id);
+        List<String> paths = new ArrayList<>(children.length);
+        for (int child : children) {
+            paths.add(folders.pathOf(child));
+        }
+        return paths;
+    }
+
+    /**
+     * @return the number of mails in the folder and in all the folders below it
+     */
+    public int countMailsInSubtree(String path) {
+        int id = folderIdOf(path, "Can not count the emails of a folder, if the folder does not exist");
+        int[] count = new int[1];
+        folders.forEachInSubtree(id, folder -> count[0] += folders.get(folder).size());
+        return count[0];
+    }
+
+    /**
+     * Lists the mails of the folder in the order they were received, starting right after a given mail.
+     *
+     * @param after the mail to start after, or null to start from the oldest (or the newest) mail
+     * @param limit the maximum number of mails to list
+     */
+    public List<Mail> getMailsPage(String path, Mail after, int limit, SortOrder order) {
+        int id = folderIdOf(path, "Can not get emails from a folder, if the folder does not exist");
+        return folders.get(id).getPage(after, limit, order);
     }
 
-    public Set<Mail> getMails(String path) {
-        if (!isPathExisting(path)) {
-            throw new FolderNotFoundException("Can not get emails from a folder, if the folder does not exist");
+    /**
+     * @return snapshots of all the folders, keyed by their paths in ascending order
+     */
+    public Map<String, FolderSnapshot> snapshotFolders() {
+        Map<String, FolderSnapshot> snapshots = new TreeMap<>();
+        folders.forEachInSubtree(FolderTree.ROOT, id -> snapshots.put(folders.pathOf(id), folders.get(id).snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Lists the mails whose subject or body contain every word of the query. Words are compared ignoring case.
+     * Only the changes made through the directory are indexed.
+     *
+     * @param path the folder to search in, together with its subfolders, or null to search in all folders
+     * @return the mails, in the order they were added to their folders
+     * @throws IllegalArgumentException if the query contains no words
+     */
+    public List<Mail> search(String query, String path) {
+        IntPredicate inScope = null;
+        if (path != null) {
+            int scope = folderIdOf(path, "Can not search in a folder, if the folder does not exist");
+            inScope = scope == FolderTree.ROOT ? null : folder -> folders.isInSubtree(folder, scope);
         }
-        return new HashSet<>(directoryPaths.get(path));
+        buildPendingIndex();
+        return searchIndex.search(query, inScope, (folder, hash, fingerprint) ->
+            folders.get(folder).find(hash, fingerprint));
     }
 
-    public Set<Mail> getMailsFromInbox() {
-        return new HashSet<>(directoryPaths.get(ROOT + INBOX));
+    /**
+     * @return a rough estimate of the heap memory taken by the search index, in bytes
+     */
+    public long getSearchIndexMemory() {
+        buildPendingIndex();
+        return searchIndex.estimateMemory();
+    }
+
+    private void buildPendingIndex() {
+        if (indexPending) {
+            folders.forEachInSubtree(FolderTree.ROOT, id -> searchIndex.addAll(id, folders.get(id)));
+            indexPending = false;
+        }
     }
 
     public boolean isPathExisting(String path) {
-        return directoryPaths.containsKey(path);
+        return folders.find(path) != FolderTree.NO_FOLDER;
     }
 
-    public void addPath(String path) {
-        if (!isNewPathCorrect(path)) {
+    /**
+     * @return the id of the new folder
+     */
+    public int addPath(String path) {
+        int parent = parentOfNewPath(path);
+        if (parent == FolderTree.NO_FOLDER) {
             throw new InvalidPathException("Invalid path in function call");
         }
-        if (isPathExisting(path)) {
+
+        int id = folders.add(parent, FolderTree.nameOf(path), newFolder());
+        if (id == FolderTree.NO_FOLDER) {
             throw new FolderAlreadyExistsException("Path already exists, can not create a new one");
         }
-        directoryPaths.put(path, new HashSet<>());
+        return id;
+    }
+
+    /**
+     * Marks the folder as the folder of a rule. A rule keeps the path and the id of its folder, so the folder, and
+     * every folder above it, can not be moved or removed from then on.
+     *
+     * @return the id of the folder
+     * @throws FolderNotFoundException if there is no folder with the path
+     */
+    public int addRuleTarget(String path) {
+        int id = folderIdOf(path, "Can not create a rule with a folder, if the folder does not exist");
+        ruleTargets.add(id);
+        return id;
+    }
+
+    private void checkNoRuleTarget(int id, String message) {
+        for (int target : ruleTargets) {
+            if (folders.isInSubtree(target, id)) {
+                throw new FolderInUseException(message);
+            }
+        }
+    }
+
+    /**
+     * Renames or moves a folder below the inbox. The folders below it move along, and all the folders keep their
+     * ids and mails.
+     *
+     * @throws FolderNotFoundException      if there is no folder with the path
+     * @throws InvalidPathException         if either path is not below the inbox, if the new parent does not exist or
+     *                                      if it lies below the moved folder
+     * @throws FolderAlreadyExistsException if there is already a folder with the new path
+     * @throws FolderInUseException         if a rule stores mails in the folder or in a folder below it
+     */
+    public void moveFolder(String path, String newPath) {
+        int id = folderIdOf(path, "Can not move a folder, if the folder does not exist");
+        int newParent = parentOfNewPath(newPath);
+        if (parentOfNewPath(path) == FolderTree.NO_FOLDER || newParent == FolderTree.NO_FOLDER) {
+            throw new InvalidPathException("Only folders below the inbox can be moved, and only below the inbox");
+        }
+        if (folders.isInSubtree(newParent, id)) {
+            throw new InvalidPathException("Can not move a folder below itself");
+        }
+        checkNoRuleTarget(id, "Can not move a folder, if a rule stores mails in it or below it");
+        if (!folders.move(id, newParent, FolderTree.nameOf(newPath))) {
+            throw new FolderAlreadyExistsException("Path already exists, can not move a folder there");
+        }
+    }
+
+    /**
+     * Removes a folder below the inbox, together with all the folders below it and all their mails.
+     *
+     * @throws FolderNotFoundException if there is no folder with the path
+     * @throws InvalidPathException    if the folder is not below the inbox
+     * @throws FolderInUseException    if a rule stores mails in the folder or in a folder below it
+     */
+    public void removeFolder(String path) {
+        int id = folderIdOf(path, "Can not remove a folder, if the folder does not exist");
+        if (parentOfNewPath(path) == FolderTree.NO_FOLDER) {
+            throw new InvalidPathException("Only folders below the inbox can be removed");
+        }
+        checkNoRuleTarget(id, "Can not remove a folder, if a rule stores mails in it or below it");
+
+        folders.removeSubtree(id, folder -> {
+            if (bodies != null) {
+                for (Mail mail : folders.get(folder)) {
+                    bodies.release(mail.body());
+                }
+            }
+            folders.get(folder).clear();
+            if (!indexPending) {
+                searchIndex.removeFolder(folder);
+            }
+        });
     }
 
     public void addEmail(String path, Mail mail) {
-        if (!isPathExisting(path)) {
-            throw new FolderNotFoundException("Can not add email to a folder, if the folder does not exist");
+        addEmail(folderIdOf(path, "Can not add email to a folder, if the folder does not exist"), mail);
+    }
+
+    public void addEmail(int folderId, Mail mail) {
+        Folder folder = folderOf(folderId, "Can not add email to a folder, if the folder does not exist");
+        if (mail == null) {
+            throw new IllegalArgumentException("Mail can not be null");
+        }
+
+        Mail shared = withSharedBody(mail);
+        if (folder.add(shared)) {
+            if (!indexPending) {
+                searchIndex.add(folderId, shared);
+            }
+        } else if (bodies != null) {
+            bodies.release(shared.body());
+        }
+    }
+
+    public void addEmails(String path, Collection<Mail> mails) {
+        addEmails(folderIdOf(path, "Can not add emails to a folder, if the folder does not exist"), mails);
+    }
+
+    public void addEmails(int folderId, Collection<Mail> mails) {
+        Folder folder = folderOf(folderId, "Can not add emails to a folder, if the folder does not exist");
+        if (bodies == null) {
+            if (folder.addAll(mails) && !indexPending) {
+                searchIndex.addAll(folderId, mails);
+            }
+            return;
+        }
+
+        // Only the mails which are not in the folder yet retain their bodies
+        List<Mail> shared = new ArrayList<>(mails.size());
+        for (Mail mail : mails) {
+            if (mail == null) {
+                throw new IllegalArgumentException("Mail can not be null");
+            }
+            if (!folder.contains(mail)) {
+                shared.add(withSharedBody(mail));
+            }
+        }
+
+        int sizeBefore = folder.size();
+        if (folder.addAll(shared) && !indexPending) {
+            searchIndex.addAll(folderId, shared);
         }
-        directoryPaths.get(path).add(mail);
+        if (folder.size() - sizeBefore != shared.size()) {
+            releaseRepeated(shared);
+        }
+    }
+
+    /**
+     * Same as {@link #addEmails(String, Collection)}, but the mails are not indexed for search, as when the
+     * directory is restored from a snapshot. The search index is built from all the folders on the first search
+     * instead, so a restore does not wait for every subject and body to be split into words.
+     */
+    public void restoreEmails(String path, Collection<Mail> mails) {
+        int folderId = folderIdOf(path, "Can not add emails to a folder, if the folder does not exist");
+        indexPending = true;
+        addEmails(folderId, mails);
+    }
+
+    /**
+     * @return the mail with the stored instance of its body, after retaining the body
+     */
+    private Mail withSharedBody(Mail mail) {
+        if (bodies == null) {
+            return mail;
+        }
+
+        String body = bodies.retain(mail.body());
+        return body == mail.body() ? mail :
+            new Mail(mail.sender(), mail.recipients(), mail.subject(), body, mail.received());
+    }
+
+    /**
+     * Releases the body of a mail which is no longer stored, such as a moved mail which its new folder already had.
+     */
+    private void releaseBody(Mail mail) {
+        if (bodies != null) {
+            bodies.release(mail.body());
+        }
+    }
+
+    /**
+     * Releases the bodies of the mails which were added more than once in the same batch - only the first of them
+     * is stored.
+     */
+    private void releaseRepeated(List<Mail> added) {
+        Set<Mail> seen = new HashSet<>();
+        for (Mail mail : added) {
+            if (!seen.add(mail)) {
+                bodies.release(mail.body());
+            }
+        }
+    }
+
+    public void addEmailsToInbox(Collection<Mail> mails) {
+        addEmails(inbox, mails);
     }
 
     public void addEmailToInbox(Mail mail) {
-        directoryPaths.get(ROOT + INBOX).add(mail);
+        addEmail(inbox, mail);
     }
 
     public void addEmailToSent(Mail mail) {
-        directoryPaths.get(ROOT + SENT).add(mail);
+        addEmail(sent, mail);
     }
 
-    public void moveEmailsFromInboxByRule(Rule rule) {
-        String toPath = rule.getFolderPath();
-        if (!isPathExisting(toPath)) {
-            throw new FolderNotFoundException("Can not move emails to a folder, if the folder does not exist");
+    /**
+     * @return a copy of the mails in the inbox, in iteration order
+     */
+    public Mail[] getInboxArray() {
+        return folders.get(inbox).toArray(new Mail[0]);
+    }
+
+    /**
+     * Moves every mail of the inbox which fits the rule to the folder of the rule.
+     * <p>
+     * When the common fork-join pool has more than one worker, a large inbox is copied into an array and the rule is
+     * evaluated on parts of it in parallel. The selected mails are then moved in one pass, so the folders are only
+     * changed by the calling thread.
+     *
+     * @return the number of moved mails
+     */
+    public int moveEmailsFromInboxByRule(Rule rule) {
+        int target = folderIdOf(rule.getFolderPath(),
+            "Can not move emails to a folder, if the folder does not exist");
+
+        Folder inboxFolder = folders.get(inbox);
+        if (inboxFolder.size() < PARALLEL_MOVE_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            List<Mail> moved = new ArrayList<>();
+            int count = inboxFolder.moveMatching(mail -> rule.doesRuleFitMail(mail) && moved.add(mail),
+                folders.get(target), this::releaseBody);
+            if (!indexPending) {
+                searchIndex.moveAll(inbox, target, moved);
+            }
+            return count;
         }
 
-        var it = directoryPaths.get(ROOT + INBOX).iterator();
-        while (it.hasNext()) {
+        Mail[] mails = getInboxArray();
+        return moveEmailsFromInbox(MailSelector.select(mails, 0, mails.length, rule::doesRuleFitMail), target);
+    }
 
-            Mail mail = it.next();
-            if (rule.doesRuleFitMail(mail)) {
-                it.remove();
-                directoryPaths.get(toPath).add(mail);
+    /**
+     * Moves every mail of the inbox which fits any of the rules to the folder of the first rule it fits, in one pass
+     * over the inbox. The result is the same as calling {@link #moveEmailsFromInboxByRule(Rule)} for every rule, in
+     * order, since a mail moved by an earlier rule is not in the inbox for the later ones.
+     *
+     * @return the number of moved mails
+     */
+    public int moveEmailsFromInboxByRules(List<Rule> rules) {
+        Rule[] ordered = rules.toArray(new Rule[0]);
+        int[] targets = new int[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
+            targets[i] = folderIdOf(ordered[i].getFolderPath(),
+                "Can not move emails to a folder, if the folder does not exist");
+        }
+
+        Mail[] mails = getInboxArray();
+        int[] firstFitting = MailSelector.classify(mails, 0, mails.length, mail -> {
+            for (int i = 0; i < ordered.length; i++) {
+                if (ordered[i].doesRuleFitMail(mail)) {
+                    return i;
+                }
+            }
+            return MailSelector.NONE;
+        });
+
+        List<List<Mail>> selected = new ArrayList<>(ordered.length);
+        for (int i = 0; i < ordered.length; i++) {
+            selected.add(new ArrayList<>());
+        }
+        for (int i = 0; i < mails.length; i++) {
+            if (firstFitting[i] != MailSelector.NONE) {
+                selected.get(firstFitting[i]).add(mails[i]);
+            }
+        }
+
+        int moved = 0;
+        for (int i = 0; i < ordered.length; i++) {
+            if (!selected.get(i).isEmpty()) {
+                moved += moveEmailsFromInbox(selected.get(i), targets[i]);
             }
         }
+        return moved;
+    }
+
+    /**
+     * Moves the given mails from the inbox to another folder. Mails which are no longer in the inbox are skipped.
+     *
+     * @return the number of moved mails
+     */
+    public int moveEmailsFromInbox(List<Mail> mails, String toPath) {
+        return moveEmailsFromInbox(mails,
+            folderIdOf(toPath, "Can not move emails to a folder, if the folder does not exist"));
+    }
+
+    /**
+     * Same as {@link #moveEmailsFromInbox(List, String)}, with the target folder given by its id.
+     */
+    public int moveEmailsFromInbox(List<Mail> mails, int toFolderId) {
+        Folder target = folderOf(toFolderId, "Can not move emails to a folder, if the folder does not exist");
+        int moved = folders.get(inbox).moveAll(mails, target, this::releaseBody);
+        if (!indexPending) {
+            searchIndex.moveAll(inbox, toFolderId, mails);
+        }
+        return moved;
     }
 }
@@ -0,0 +1,96 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SortOrder;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The mails of a single folder. A folder is a set - adding a mail which is already there has no effect.
+ */
+public abstract class Folder extends AbstractSet<Mail> {
+
+    /**
+     * @return an immutable view of the current mails of the folder, taken in constant time
+     */
+    public abstract FolderSnapshot snapshot();
+
+    /**
+     * Lists the mails of the folder in the order they were received, starting right after a given mail. The mail
+     * does not have to be in the folder. The cost depends on the size of the page, not on the size of the folder.
+     *
+     * @param after the mail to start after, or null to start from the oldest (or the newest) mail
+     * @param limit the maximum number of mails to list
+     * @return the mails, in the given order
+     */
+    public abstract List<Mail> getPage(Mail after, int limit, SortOrder order);
+
+    /**
+     * Finds a mail of the folder by its hash code and its {@link MailFingerprint}.
+     *
+     * @return the mail, or null if there is no such mail in the folder
+     */
+    abstract Mail find(int hash, long fingerprint);
+
+    /**
+     * Moves every mail accepted by the predicate to the target folder.
+     *
+     * @return the number of moved mails
+     */
+    public int moveMatching(Predicate<? super Mail> predicate, Folder target) {
+        return moveMatching(predicate, target, mail -> { });
+    }
+
+    /**
+     * Same as {@link #moveMatching(Predicate, Folder)}, but also passes every moved mail which the target folder
+     * already had to {@code dropped}. Such a mail is removed from this folder without being added to the target.
+     */
+    public int moveMatching(Predicate<? super Mail> predicate, Folder target, Consumer<? super Mail> dropped) {
+        int moved = 0;
+
+        Iterator<Mail> it = iterator();
+        while (it.hasNext()) {
+            Mail mail = it.next();
+            if (predicate.test(mail)) {
+                it.remove();
+                if (!target.add(mail)) {
+                    dropped.accept(mail);
+                }
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Moves the given mails to the target folder. Mails which are no longer in this folder are skipped.
+     *
+     * @return the number of moved mails
+     */
+    public int moveAll(Collection<? extends Mail> mails, Folder target) {
+        return moveAll(mails, target, mail -> { });
+    }
+
+    /**
+     * Same as {@link #moveAll(Collection, Folder)}, but also passes every moved mail which the target folder already
+     * had to {@code dropped}.
+     */
+    public int moveAll(Collection<? extends Mail> mails, Folder target, Consumer<? super Mail> dropped) {
+        int moved = 0;
+
+        for (Mail mail : mails) {
+            if (remove(mail)) {
+                if (!target.add(mail)) {
+                    dropped.accept(mail);
+                }
+                moved++;
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,61 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * An immutable view of the mails a folder held at some point in time.
+ * <p>
+ * A snapshot is taken in constant time and is never copied. Later changes of the folder do not show in it, so it
+ * can be read from any thread for as long as needed. Every change of a folder increases its version, so two
+ * snapshots of the same folder with the same version hold the same mails.
+ */
+public abstract class FolderSnapshot extends AbstractSet<Mail> {
+    private final long version;
+
+    FolderSnapshot(long version) {
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean add(Mail mail) {
+        throw new UnsupportedOperationException("Folder snapshots can not be changed");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Mail> mails) {
+        throw new UnsupportedOperationException("Folder snapshots can not be changed");
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("Folder snapshots can not be changed");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Folder snapshots can not be changed");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Folder snapshots can not be changed");
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Mail> filter) {
+        throw new UnsupportedOperationException("Folder snapshots can not be changed");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Folder snapshots can not be changed");
+    }
+}
@@ -0,0 +1,25 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+/**
+ * How the folders of a {@link Directory} keep their mails.
+ */
+public enum FolderStorage {
+    /**
+     * Every folder is a hash set of mail records.
+     */
+    HASH,
+
+    /**
+     * Every folder keeps its mails in primitive columns, which refer to the senders, recipients and texts shared by
+     * all folders of the directory. Mail records are created only when the mails are read. The texts are kept in an
+     * append-only {@link TextStore}, which does not free the texts of removed mails.
+     */
+    COLUMNAR,
+
+    /**
+     * Same as {@link #COLUMNAR}, but the bodies are kept outside of the heap, in direct byte buffers (see
+     * {@link OffHeapTextStore}). A body is decoded every time its mail is read. As with {@link #COLUMNAR}, the
+     * texts are append-only, so the memory of removed mails is not reused while the directory exists.
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,299 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The folders of a directory, as a trie of path segments.
+ * <p>
+ * Every folder gets a dense integer id when it is created, and the id stays the same for as long as the folder
+ * exists - renaming or moving a folder changes only the child list of its old and new parents, so its whole subtree
+ * moves along in time proportional to the depth. Ids of removed folders are not given out again, so a stale id is
+ * never mistaken for another folder.
+ * <p>
+ * The children of a folder are kept sorted by name, and a path is resolved one segment at a time by binary search,
+ * comparing the segments in place - resolving a path creates no strings. The tree is not thread-safe.
+ */
+final class FolderTree<T> {
+    static final int ROOT = 0;
+    static final int NO_FOLDER = -1;
+
+    private static final char SEPARATOR = '/';
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_CHILDREN = 4;
+    private static final String[] NO_NAMES = new String[0];
+    private static final int[] NO_IDS = new int[0];
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private String[][] childNames = new String[INITIAL_CAPACITY][];
+    private int[][] childIds = new int[INITIAL_CAPACITY][];
+    private int[] childCounts = new int[INITIAL_CAPACITY];
+    private int nextId;
+    private int size;
+
+    FolderTree(T rootValue) {
+        newFolder(NO_FOLDER, "", rootValue);
+    }
+
+    /**
+     * @return the number of folders, the root included
+     */
+    int size() {
+        return size;
+    }
+
+    boolean exists(int id) {
+        return id >= 0 && id < nextId && values[id] != null;
+    }
+
+    /**
+     * @return the value of the folder, or null if there is no such folder
+     */
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        return exists(id) ? (T) values[id] : null;
+    }
+
+    int parentOf(int id) {
+        return parents[id];
+    }
+
+    /**
+     * Resolves an absolute path, such as "/inbox/important". Empty segments never match, so paths with a trailing
+     * separator or with two separators in a row are not found.
+     *
+     * @return the id of the folder, or {@link #NO_FOLDER} if there is no such folder
+     */
+    int find(String path) {
+        return find(path, path.length());
+    }
+
+    /**
+     * @return the id of the folder the path would be created in, or {@link #NO_FOLDER} if it does not exist
+     */
+    int findParent(String path) {
+        int last = path.lastIndexOf(SEPARATOR);
+        if (last <= 0) {
+            return last == 0 && path.length() > 1 ? ROOT : NO_FOLDER;
+        }
+        return find(path, last);
+    }
+
+    /**
+     * @return the last segment of the path
+     */
+    static String nameOf(String path) {
+        return path.substring(path.lastIndexOf(SEPARATOR) + 1);
+    }
+
+    private int find(String path, int end) {
+        if (end == 0 || path.charAt(0) != SEPARATOR) {
+            return NO_FOLDER;
+        }
+        if (end == 1) {
+            return ROOT;
+        }
+
+        int id = ROOT;
+        int start = 1;
+        while (id != NO_FOLDER && start <= end) {
+            int next = path.indexOf(SEPARATOR, start);
+            int segmentEnd = next < 0 || next > end ? end : next;
+            int position = childPosition(id, path, start, segmentEnd);
+            id = position >= 0 ? childIds[id][position] : NO_FOLDER;
+            start = segmentEnd + 1;
+        }
+        return id;
+    }
+
+    /**
+     * Creates a folder.
+     *
+     * @return the id of the new folder, or {@link #NO_FOLDER} if the parent already has a child with that name
+     */
+    int add(int parent, String name, T value) {
+        int position = childPosition(parent, name, 0, name.length());
+        if (position >= 0) {
+            return NO_FOLDER;
+        }
+
+        int id = newFolder(parent, name, value);
+        insertChild(parent, -position - 1, name, id);
+        return id;
+    }
+
+    /**
+     * @return the absolute path of the folder, built from its ancestors
+     */
+    String pathOf(int id) {
+        if (id == ROOT) {
+            return String.valueOf(SEPARATOR);
+        }
+
+        int depth = 0;
+        for (int current = id; current != ROOT; current = parents[current]) {
+            depth++;
+        }
+        String[] segments = new String[depth];
+        for (int current = id; current != ROOT; current = parents[current]) {
+            segments[--depth] = names[current];
+        }
+
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments) {
+            path.append(SEPARATOR).append(segment);
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return true if the folder is the ancestor itself or lies somewhere below it
+     */
+    boolean isInSubtree(int id, int ancestor) {
+        for (int current = id; current != NO_FOLDER; current = parents[current]) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the ids of the children of the folder, sorted by their names
+     */
+    int[] childrenOf(int id) {
+        return childCounts[id] == 0 ? NO_IDS : Arrays.copyOf(childIds[id], childCounts[id]);
+    }
+
+    /**
+     * Passes the folder and every folder below it to the consumer, parents before their children and siblings in
+     * the order of their names.
+     */
+    void forEachInSubtree(int id, IntConsumer consumer) {
+        consumer.accept(id);
+        for (int i = 0; i < childCounts[id]; i++) {
+            forEachInSubtree(childIds[id][i], consumer);
+        }
+    }
+
+    /**
+     * Gives the folder a new parent and a new name. The folders below it move along.
+     *
+     * @return false if the new parent already has a child with the new name or lies in the subtree of the folder
+     */
+    boolean move(int id, int newParent, String newName) {
+        if (isInSubtree(newParent, id) || childPosition(newParent, newName, 0, newName.length()) >= 0) {
+            return false;
+        }
+
+        removeChild(parents[id], childPosition(parents[id], names[id], 0, names[id].length()));
+        names[id] = newName;
+        parents[id] = newParent;
+        insertChild(newParent, -childPosition(newParent, newName, 0, newName.length()) - 1, newName, id);
+        return true;
+    }
+
+    /**
+     * Removes the folder together with every folder below it.
+     *
+     * @param removed gets the id of every removed folder, before the folder is removed
+     */
+    void removeSubtree(int id, IntConsumer removed) {
+        removeChild(parents[id], childPosition(parents[id], names[id], 0, names[id].length()));
+        forEachInSubtree(id, removed);
+        clearSubtree(id);
+    }
+
+    private void clearSubtree(int id) {
+        for (int i = 0; i < childCounts[id]; i++) {
+            clearSubtree(childIds[id][i]);
+        }
+        names[id] = null;
+        values[id] = null;
+        childNames[id] = null;
+        childIds[id] = null;
+        childCounts[id] = 0;
+        size--;
+    }
+
+    private int newFolder(int parent, String name, T value) {
+        if (nextId == values.length) {
+            int capacity = nextId * 2;
+            names = Arrays.copyOf(names, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            values = Arrays.copyOf(values, capacity);
+            childNames = Arrays.copyOf(childNames, capacity);
+            childIds = Arrays.copyOf(childIds, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+        }
+
+        names[nextId] = name;
+        parents[nextId] = parent;
+        values[nextId] = value;
+        childNames[nextId] = NO_NAMES;
+        childIds[nextId] = NO_IDS;
+        size++;
+        return nextId++;
+    }
+
+    /**
+     * Binary search for a child whose name equals the part of the text between start and end.
+     *
+     * @return the position of the child, or -(insertion point) - 1 if there is no such child
+     */
+    private int childPosition(int id, String text, int start, int end) {
+        String[] candidates = childNames[id];
+        int low = 0;
+        int high = childCounts[id] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(candidates[middle], text, start, end);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    /**
+     * Compares a name with a part of a text the same way {@link String#compareTo(String)} would.
+     */
+    private static int compare(String name, String text, int start, int end) {
+        int length = Math.min(name.length(), end - start);
+        for (int i = 0; i < length; i++) {
+            int difference = name.charAt(i) - text.charAt(start + i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return name.length() - (end - start);
+    }
+
+    private void insertChild(int id, int position, String name, int child) {
+        int count = childCounts[id];
+        if (count == childIds[id].length) {
+            int capacity = Math.max(INITIAL_CHILDREN, count * 2);
+            childNames[id] = Arrays.copyOf(childNames[id], capacity);
+            childIds[id] = Arrays.copyOf(childIds[id], capacity);
+        }
+
+        System.arraycopy(childNames[id], position, childNames[id], position + 1, count - position);
+        System.arraycopy(childIds[id], position, childIds[id], position + 1, count - position);
+        childNames[id][position] = name;
+        childIds[id][position] = child;
+        childCounts[id]++;
+    }
+
+    private void removeChild(int id, int position) {
+        int count = --childCounts[id];
+        System.arraycopy(childNames[id], position + 1, childNames[id], position, count - position);
+        System.arraycopy(childIds[id], position + 1, childIds[id], position, count - position);
+        childNames[id][count] = null;
+    }
+}
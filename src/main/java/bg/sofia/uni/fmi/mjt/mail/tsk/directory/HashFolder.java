@@ -0,0 +1,178 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * A folder backed by a persistent hash trie of mail records.
+ * <p>
+ * Every change replaces the trie with a new version, which is published together with its version number as the
+ * current snapshot of the folder. Taking a snapshot is a single volatile read and needs no lock. Iterating the
+ * folder itself goes over the version current when the iteration started.
+ * <p>
+ * The mails are also kept in a tree set by the time they were received, for the pages of the folder. The tree set
+ * is changed together with the trie and is read by the writers only.
+ */
+public class HashFolder extends Folder {
+    private volatile Snapshot current;
+    private final NavigableSet<Mail> byReceived;
+
+    public HashFolder() {
+        this.current = new Snapshot(MailTrie.EMPTY, 0);
+        this.byReceived = new TreeSet<>(ReceivedOrder.OLDEST_FIRST);
+    }
+
+    private boolean update(Snapshot previous, MailTrie mails) {
+        if (mails == previous.mails) {
+            return false;
+        }
+        current = new Snapshot(mails, previous.getVersion() + 1);
+        return true;
+    }
+
+    @Override
+    public FolderSnapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public boolean add(Mail mail) {
+        if (mail == null) {
+            throw new IllegalArgumentException("Mail can not be null");
+        }
+
+        Snapshot previous = current;
+        if (!update(previous, previous.mails.with(mail))) {
+            return false;
+        }
+        byReceived.add(mail);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Mail> mailsToAdd) {
+        for (Mail mail : mailsToAdd) {
+            if (mail == null) {
+                throw new IllegalArgumentException("Mail can not be null");
+            }
+        }
+
+        Snapshot previous = current;
+        if (!update(previous, previous.mails.withAll(mailsToAdd))) {
+            return false;
+        }
+        byReceived.addAll(mailsToAdd);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return current.mails.contains(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Snapshot previous = current;
+        if (!update(previous, previous.mails.without(o))) {
+            return false;
+        }
+        byReceived.remove(o);
+        return true;
+    }
+
+    @Override
+    Mail find(int hash, long fingerprint) {
+        return current.mails.find(hash, mail -> MailFingerprint.of(mail) == fingerprint);
+    }
+
+    @Override
+    public List<Mail> getPage(Mail after, int limit, SortOrder order) {
+        NavigableSet<Mail> mails = byReceived;
+        if (order == SortOrder.NEWEST_FIRST) {
+            mails = after == null ? mails.descendingSet() : mails.headSet(after, false).descendingSet();
+        } else if (after != null) {
+            mails = mails.tailSet(after, false);
+        }
+
+        // The size of a view of the tree is counted by walking it, so only the size of the whole folder is checked
+        List<Mail> page = new ArrayList<>(Math.min(limit, byReceived.size()));
+        Iterator<Mail> iterator = mails.iterator();
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    @Override
+    public Iterator<Mail> iterator() {
+        return new Iterator<>() {
+            private final Iterator<Mail> mails = current.mails.iterator();
+            private Mail last;
+            private boolean canRemove;
+
+            @Override
+            public boolean hasNext() {
+                return mails.hasNext();
+            }
+
+            @Override
+            public Mail next() {
+                last = mails.next();
+                canRemove = true;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException("No mail to remove");
+                }
+                HashFolder.this.remove(last);
+                canRemove = false;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return current.mails.size();
+    }
+
+    @Override
+    public void clear() {
+        Snapshot previous = current;
+        update(previous, MailTrie.EMPTY);
+        byReceived.clear();
+    }
+
+    private static final class Snapshot extends FolderSnapshot {
+        private final MailTrie mails;
+
+        private Snapshot(MailTrie mails, long version) {
+            super(version);
+            this.mails = mails;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return mails.contains(o);
+        }
+
+        @Override
+        public Iterator<Mail> iterator() {
+            return mails.iterator();
+        }
+
+        @Override
+        public int size() {
+            return mails.size();
+        }
+    }
+}
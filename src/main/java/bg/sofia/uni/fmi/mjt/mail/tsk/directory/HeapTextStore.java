@@ -0,0 +1,54 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import java.util.Arrays;
+
+/**
+ * Text store which keeps the strings on the heap. The handle of a text is its position in the store, so reading a
+ * text returns the very same string that was stored.
+ * <p>
+ * A single writer may store texts while other threads read the ones stored before. The array and the size are
+ * volatile, and the size is increased only after the text is in the array, so a reader which sees a handle in
+ * range also sees its text.
+ * <p>
+ * Like every {@link TextStore}, the store only grows - the string of a removed mail stays reachable from the array.
+ */
+public class HeapTextStore implements TextStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile String[] texts;
+    private volatile int size;
+
+    public HeapTextStore() {
+        this.texts = new String[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int store(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text can not be null");
+        }
+        int handle = size;
+        String[] current = texts;
+        if (handle == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            texts = current;
+        }
+        current[handle] = text;
+        size = handle + 1;
+        return handle;
+    }
+
+    @Override
+    public String get(int handle) {
+        int count = size;
+        if (handle < 0 || handle >= count) {
+            throw new IllegalArgumentException("Unknown text handle " + handle);
+        }
+        return texts[handle];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,72 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns a dense id to every distinct value, so that repeated values are stored once and referred to by an int.
+ * Id 0 always stands for null.
+ * <p>
+ * Values are interned by a single writer, while other threads may look up the values of the ids they already
+ * know. The value array and the count are volatile and the count is increased last, so a published id always
+ * resolves to its value.
+ */
+class InternTable<T> {
+    static final int NULL_ID = 0;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile Object[] values;
+    private volatile int count;
+    private final Map<T, Integer> ids;
+
+    InternTable() {
+        this.values = new Object[INITIAL_CAPACITY];
+        this.count = 1;
+        this.ids = new HashMap<>();
+    }
+
+    int idOf(T value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = count;
+            Object[] current = values;
+            if (id == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                values = current;
+            }
+            current[id] = value;
+            ids.put(value, id);
+            count = id + 1;
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of an equal value, or -1 if no such value has been interned
+     */
+    int find(T value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("Unknown id " + id);
+        }
+        return (T) values[id];
+    }
+
+    int size() {
+        return count - 1;
+    }
+}
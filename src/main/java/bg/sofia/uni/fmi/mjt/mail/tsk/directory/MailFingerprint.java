@@ -0,0 +1,110 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.RecipientSet;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * 64-bit hash of all the fields of a mail, consistent with {@link Mail#equals(Object)}.
+ * <p>
+ * It lets an index refer to a mail without keeping the mail itself. Every string is hashed over all of its 64 bits
+ * (the 32-bit hash code of a string collides too often among millions of bodies), and the recipients are combined
+ * regardless of their order, so equal sets give equal fingerprints.
+ * <p>
+ * A mail sent to many accounts of the client is delivered to all of them as the same instance, so the hash of the
+ * last large recipient set is remembered and not computed again for every recipient. Only a {@link RecipientSet} is
+ * remembered, since it is immutable and can be recognized by its identity.
+ */
+final class MailFingerprint {
+    private static final long OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long PRIME = 0x100000001B3L;
+    private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+    private static final int REMEMBERED_RECIPIENTS = 64;
+
+    private static volatile RecipientsHash lastRecipients;
+
+    private MailFingerprint() {
+    }
+
+    static long of(Mail mail) {
+        long h = OFFSET_BASIS;
+        h = combine(h, ofAccount(mail.sender()));
+        h = combine(h, ofRecipients(mail.recipients()));
+        h = combine(h, ofString(mail.subject()));
+        h = combine(h, ofString(mail.body()));
+        h = combine(h, ofReceived(mail.received()));
+        return mix(h);
+    }
+
+    private static long ofAccount(Account account) {
+        if (account == null) {
+            return NULL_HASH;
+        }
+        return combine(ofString(account.emailAddress()), ofString(account.name()));
+    }
+
+    private static long ofRecipients(Set<String> recipients) {
+        if (recipients == null) {
+            return NULL_HASH;
+        }
+        if (recipients.size() < REMEMBERED_RECIPIENTS || !(recipients instanceof RecipientSet)) {
+            return hashRecipients(recipients);
+        }
+
+        RecipientsHash last = lastRecipients;
+        if (last != null && last.recipients() == recipients) {
+            return last.hash();
+        }
+
+        long hash = hashRecipients(recipients);
+        lastRecipients = new RecipientsHash(recipients, hash);
+        return hash;
+    }
+
+    private static long hashRecipients(Set<String> recipients) {
+        long sum = recipients.size();
+        for (String recipient : recipients) {
+            sum += mix(ofString(recipient));
+        }
+        return sum;
+    }
+
+    private static long ofReceived(LocalDateTime received) {
+        if (received == null) {
+            return NULL_HASH;
+        }
+        return combine(received.toLocalDate().toEpochDay(), received.toLocalTime().toNanoOfDay());
+    }
+
+    private static long ofString(String text) {
+        if (text == null) {
+            return NULL_HASH;
+        }
+
+        long h = OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * PRIME;
+        }
+        return h;
+    }
+
+    private static long combine(long h, long value) {
+        return (h ^ mix(value)) * PRIME;
+    }
+
+    /**
+     * The finalizer of SplitMix64, so every bit of the value affects every bit of the result.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private record RecipientsHash(Set<String> recipients, long hash) {
+    }
+}
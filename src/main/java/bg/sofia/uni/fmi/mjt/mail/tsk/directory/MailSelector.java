@@ -0,0 +1,96 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Evaluates a predicate or a classifier over an array of mails in parallel on the common fork-join pool.
+ * <p>
+ * The range is split in halves until a part is small enough to be evaluated on a single thread. Every part marks
+ * its own slots of a shared array, so the parts need no synchronization, and the selected mails are collected
+ * afterwards in the order of the array. The predicate must be safe to call from several threads at once.
+ */
+public final class MailSelector {
+    /**
+     * The class of a mail which the classifier puts in no class.
+     */
+    public static final int NONE = -1;
+
+    private static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    private MailSelector() {
+    }
+
+    /**
+     * @return the mails in {@code [from, to)} accepted by the predicate, in the order of the array
+     */
+    public static List<Mail> select(Mail[] mails, int from, int to, Predicate<? super Mail> predicate) {
+        int[] classes = classify(mails, from, to, mail -> predicate.test(mail) ? 0 : NONE);
+
+        List<Mail> result = new ArrayList<>();
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i] != NONE) {
+                result.add(mails[from + i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the class of every mail in {@code [from, to)}, in the order of the array
+     */
+    public static int[] classify(Mail[] mails, int from, int to, ToIntFunction<? super Mail> classifier) {
+        int[] classes = new int[to - from];
+
+        if (to - from <= SEQUENTIAL_THRESHOLD) {
+            classifyRange(mails, from, to, classifier, classes, from);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ClassifyTask(mails, from, to, classifier, classes, from));
+        }
+        return classes;
+    }
+
+    private static void classifyRange(Mail[] mails, int from, int to, ToIntFunction<? super Mail> classifier,
+                                      int[] classes, int offset) {
+        for (int i = from; i < to; i++) {
+            classes[i - offset] = classifier.applyAsInt(mails[i]);
+        }
+    }
+
+    private static class ClassifyTask extends RecursiveAction {
+        private final Mail[] mails;
+        private final int from;
+        private final int to;
+        private final ToIntFunction<? super Mail> classifier;
+        private final int[] classes;
+        private final int offset;
+
+        ClassifyTask(Mail[] mails, int from, int to, ToIntFunction<? super Mail> classifier, int[] classes,
+                     int offset) {
+            this.mails = mails;
+            this.from = from;
+            this.to = to;
+            this.classifier = classifier;
+            this.classes = classes;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                classifyRange(mails, from, to, classifier, classes, offset);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ClassifyTask(mails, from, middle, classifier, classes, offset),
+                new ClassifyTask(mails, middle, to, classifier, classes, offset));
+        }
+    }
+}
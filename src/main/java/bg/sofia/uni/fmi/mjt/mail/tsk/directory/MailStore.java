@@ -0,0 +1,122 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.RecipientSet;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The mail data shared by all columnar folders of a directory - interned senders and recipient sets, and the
+ * subjects and bodies. A mail moved between folders of the same directory keeps referring to the same entries.
+ * <p>
+ * Subjects and bodies may be kept in different text stores, for example the short subjects on the heap, where the
+ * tie-breaks of the received order read them, and the bodies outside of it.
+ */
+public class MailStore {
+    private final InternTable<Account> senders;
+    private final InternTable<RecipientsKey> recipients;
+    private final TextStore subjects;
+    private final TextStore bodies;
+
+    public MailStore() {
+        this(new HeapTextStore());
+    }
+
+    public MailStore(TextStore texts) {
+        this(texts, texts);
+    }
+
+    public MailStore(TextStore subjects, TextStore bodies) {
+        this.senders = new InternTable<>();
+        this.recipients = new InternTable<>();
+        this.subjects = subjects;
+        this.bodies = bodies;
+    }
+
+    int senderIdOf(Account sender) {
+        return senders.idOf(sender);
+    }
+
+    Account sender(int id) {
+        return senders.get(id);
+    }
+
+    /**
+     * Every distinct recipient set is kept once, as an unmodifiable copy shared by all mails with these recipients.
+     * Recipient sets of interned addresses are immutable already, so they are kept as they are.
+     */
+    int recipientsIdOf(Set<String> mailRecipients) {
+        int id = recipients.find(new RecipientsKey(mailRecipients));
+        if (id >= 0) {
+            return id;
+        }
+        return recipients.idOf(new RecipientsKey(mailRecipients instanceof RecipientSet ?
+            mailRecipients : Collections.unmodifiableSet(new HashSet<>(mailRecipients))));
+    }
+
+    Set<String> recipients(int id) {
+        RecipientsKey key = recipients.get(id);
+        return key == null ? null : key.recipients;
+    }
+
+    TextStore subjects() {
+        return subjects;
+    }
+
+    TextStore bodies() {
+        return bodies;
+    }
+
+    /**
+     * @return the store of the bodies
+     */
+    public TextStore getBodyStore() {
+        return bodies;
+    }
+
+    public int getSenderCount() {
+        return senders.size();
+    }
+
+    public int getRecipientSetCount() {
+        return recipients.size();
+    }
+
+    public int getTextCount() {
+        return subjects == bodies ? subjects.size() : subjects.size() + bodies.size();
+    }
+
+    /**
+     * The hash code of a set is the plain sum of the hash codes of its elements, which collides a lot for similar
+     * addresses (user1@fmi.bg, user2@fmi.bg...). The key mixes every element hash before summing them.
+     */
+    private static final class RecipientsKey {
+        private static final int MIX = 0x9E3779B9;
+
+        private final Set<String> recipients;
+        private final int hash;
+
+        private RecipientsKey(Set<String> recipients) {
+            this.recipients = recipients;
+
+            int sum = 0;
+            for (String recipient : recipients) {
+                int h = (recipient == null ? 0 : recipient.hashCode()) * MIX;
+                sum += h ^ (h >>> 16);
+            }
+            this.hash = sum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RecipientsKey other && hash == other.hash && recipients.equals(other.recipients);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Persistent set of mails - a hash array mapped trie.
+ * <p>
+ * Every level of the trie takes 5 bits of the hash of a mail, and a node keeps only the slots that are in use,
+ * marked in a bitmap. A slot holds either a mail or the node of the next level. Mails whose hashes are fully equal
+ * share a collision entry at the bottom. An update copies only the nodes on the path to the changed slot, so the
+ * previous versions of the set stay valid and can be read from any thread without locking.
+ * <p>
+ * Bulk updates ({@link #withAll(Iterable)}) change the nodes they have created themselves in place, since no
+ * other version can refer to those nodes yet.
+ */
+final class MailTrie implements Iterable<Mail> {
+    static final MailTrie EMPTY = new MailTrie(new Node(null, 0, new Object[0]), 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int HASH_BITS = 32;
+    private static final int MAX_DEPTH = (HASH_BITS + BITS - 1) / BITS + 1;
+    private static final int MIX = 0x9E3779B9;
+
+    private final Node root;
+    private final int size;
+
+    private MailTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(Object o) {
+        if (o != null && !(o instanceof Mail)) {
+            return false;
+        }
+
+        Mail mail = (Mail) o;
+        int hash = hash(mail);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return false;
+            }
+
+            Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Node child) {
+                node = child;
+            } else if (slot instanceof Collision collision) {
+                return collision.hash == hash && collision.indexOf(mail) >= 0;
+            } else {
+                return isSameMail(slot, mail, hash);
+            }
+        }
+    }
+
+    /**
+     * @param mailHashCode the hash code of the mail
+     * @param matches      tells the wanted mail from the others with the same hash code
+     * @return the first mail with the hash code which matches, or null if there is none
+     */
+    Mail find(int mailHashCode, Predicate<? super Mail> matches) {
+        int hash = mix(mailHashCode);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+
+            Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Node child) {
+                node = child;
+            } else if (slot instanceof Collision collision) {
+                if (collision.hash == hash) {
+                    for (Mail mail : collision.mails) {
+                        if (matches.test(mail)) {
+                            return mail;
+                        }
+                    }
+                }
+                return null;
+            } else {
+                Mail mail = (Mail) slot;
+                return hash(mail) == hash && matches.test(mail) ? mail : null;
+            }
+        }
+    }
+
+    /**
+     * @return the set with the mail added, or this set if the mail is already in it
+     */
+    MailTrie with(Mail mail) {
+        Edit edit = new Edit(false);
+        Node updated = insert(root, mail, hash(mail), 0, edit);
+        return edit.changed ? new MailTrie(updated, size + 1) : this;
+    }
+
+    /**
+     * @return the set with all the mails added, or this set if all of them are already in it
+     */
+    MailTrie withAll(Iterable<? extends Mail> mails) {
+        Edit edit = new Edit(true);
+        Node updated = root;
+        int added = 0;
+        for (Mail mail : mails) {
+            edit.changed = false;
+            updated = insert(updated, mail, hash(mail), 0, edit);
+            if (edit.changed) {
+                added++;
+            }
+        }
+        return added == 0 ? this : new MailTrie(updated, size + added);
+    }
+
+    /**
+     * @return the set without the mail, or this set if the mail is not in it
+     */
+    MailTrie without(Object o) {
+        if (o != null && !(o instanceof Mail)) {
+            return this;
+        }
+
+        Edit edit = new Edit(false);
+        Node updated = delete(root, (Mail) o, hash((Mail) o), 0, edit);
+        return edit.changed ? new MailTrie(updated, size - 1) : this;
+    }
+
+    @Override
+    public Iterator<Mail> iterator() {
+        return new TrieIterator(root);
+    }
+
+    private static int hash(Mail mail) {
+        return mix(Objects.hashCode(mail));
+    }
+
+    private static int mix(int hashCode) {
+        int h = hashCode * MIX;
+        return h ^ (h >>> (HASH_BITS / 2));
+    }
+
+    /**
+     * Hash codes of mail records are not cached, but comparing them is still much cheaper than comparing the records.
+     */
+    private static boolean isSameMail(Object slot, Mail mail, int hash) {
+        Mail existing = (Mail) slot;
+        return hash(existing) == hash && Objects.equals(existing, mail);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static Node insert(Node node, Mail mail, int hash, int shift, Edit edit) {
+        int bit = bit(hash, shift);
+        int index = node.index(bit);
+
+        if ((node.bitmap & bit) == 0) {
+            edit.changed = true;
+            return node.withInserted(edit, bit, index, mail);
+        }
+
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node child) {
+            Node updated = insert(child, mail, hash, shift + BITS, edit);
+            if (updated == child) {
+                return node;
+            }
+            replacement = updated;
+        } else if (slot instanceof Collision collision && collision.hash == hash) {
+            if (collision.indexOf(mail) >= 0) {
+                return node;
+            }
+            replacement = collision.with(mail);
+        } else if (slot instanceof Collision collision) {
+            replacement = pair(collision, collision.hash, mail, hash, shift + BITS, edit);
+        } else {
+            Mail existing = (Mail) slot;
+            int existingHash = hash(existing);
+            if (existingHash == hash && Objects.equals(existing, mail)) {
+                return node;
+            }
+            replacement = pair(existing, existingHash, mail, hash, shift + BITS, edit);
+        }
+
+        edit.changed = true;
+        return node.withReplaced(edit, index, replacement);
+    }
+
+    /**
+     * Creates the smallest subtree holding an existing entry (a mail or a collision) and a new mail.
+     */
+    private static Object pair(Object existing, int existingHash, Mail mail, int hash, int shift, Edit edit) {
+        if (shift >= HASH_BITS) {
+            return new Collision(hash, new Mail[] {(Mail) existing, mail});
+        }
+
+        int existingBit = bit(existingHash, shift);
+        int bit = bit(hash, shift);
+        if (existingBit == bit) {
+            return new Node(edit.owner(), bit, new Object[] {pair(existing, existingHash, mail, hash, shift + BITS,
+                edit)});
+        }
+
+        Object[] slots = Integer.compareUnsigned(existingBit, bit) < 0 ?
+            new Object[] {existing, mail} : new Object[] {mail, existing};
+        return new Node(edit.owner(), existingBit | bit, slots);
+    }
+
+    private static Node delete(Node node, Mail mail, int hash, int shift, Edit edit) {
+        int bit = bit(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+
+        int index = node.index(bit);
+        Object slot = node.slots[index];
+        if (slot instanceof Node child) {
+            Node updated = delete(child, mail, hash, shift + BITS, edit);
+            if (updated == child) {
+                return node;
+            }
+            // A child left with a single mail is folded into this node
+            if (updated.slots.length == 1 && !(updated.slots[0] instanceof Node)) {
+                return node.withReplaced(edit, index, updated.slots[0]);
+            }
+            return node.withReplaced(edit, index, updated);
+        }
+
+        if (slot instanceof Collision collision) {
+            int position = collision.hash == hash ? collision.indexOf(mail) : -1;
+            if (position < 0) {
+                return node;
+            }
+            edit.changed = true;
+            return node.withReplaced(edit, index, collision.without(position));
+        }
+
+        if (!isSameMail(slot, mail, hash)) {
+            return node;
+        }
+        edit.changed = true;
+        return node.withRemoved(edit, bit, index);
+    }
+
+    /**
+     * Marks the nodes created by a single update. Only a bulk edit owns its nodes - a single update copies every
+     * node it changes.
+     */
+    private static final class Edit {
+        private final boolean bulk;
+        private boolean changed;
+
+        private Edit(boolean bulk) {
+            this.bulk = bulk;
+        }
+
+        private Edit owner() {
+            return bulk ? this : null;
+        }
+    }
+
+    private static final class Node {
+        private final Edit owner;
+        private int bitmap;
+        private Object[] slots;
+
+        private Node(Edit owner, int bitmap, Object[] slots) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private boolean isOwnedBy(Edit edit) {
+            return owner != null && owner == edit.owner();
+        }
+
+        private Node withInserted(Edit edit, int bit, int index, Object entry) {
+            Object[] updated = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, updated, 0, index);
+            updated[index] = entry;
+            System.arraycopy(slots, index, updated, index + 1, slots.length - index);
+
+            if (isOwnedBy(edit)) {
+                bitmap |= bit;
+                slots = updated;
+                return this;
+            }
+            return new Node(edit.owner(), bitmap | bit, updated);
+        }
+
+        private Node withReplaced(Edit edit, int index, Object entry) {
+            if (isOwnedBy(edit)) {
+                slots[index] = entry;
+                return this;
+            }
+
+            Object[] updated = slots.clone();
+            updated[index] = entry;
+            return new Node(edit.owner(), bitmap, updated);
+        }
+
+        private Node withRemoved(Edit edit, int bit, int index) {
+            Object[] updated = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, updated, 0, index);
+            System.arraycopy(slots, index + 1, updated, index, updated.length - index);
+            return new Node(edit.owner(), bitmap & ~bit, updated);
+        }
+    }
+
+    private static final class Collision {
+        private final int hash;
+        private final Mail[] mails;
+
+        private Collision(int hash, Mail[] mails) {
+            this.hash = hash;
+            this.mails = mails;
+        }
+
+        private int indexOf(Mail mail) {
+            for (int i = 0; i < mails.length; i++) {
+                if (Objects.equals(mails[i], mail)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Collision with(Mail mail) {
+            Mail[] updated = new Mail[mails.length + 1];
+            System.arraycopy(mails, 0, updated, 0, mails.length);
+            updated[mails.length] = mail;
+            return new Collision(hash, updated);
+        }
+
+        /**
+         * @return the collision without the mail at the position, or the only mail left
+         */
+        private Object without(int position) {
+            if (mails.length == 2) {
+                return mails[1 - position];
+            }
+
+            Mail[] updated = new Mail[mails.length - 1];
+            System.arraycopy(mails, 0, updated, 0, position);
+            System.arraycopy(mails, position + 1, updated, position, updated.length - position);
+            return new Collision(hash, updated);
+        }
+    }
+
+    private static final class TrieIterator implements Iterator<Mail> {
+        private final Object[][] slots;
+        private final int[] positions;
+        private int depth;
+
+        private Mail[] collision;
+        private int collisionPosition;
+
+        private Mail next;
+        private boolean hasNext;
+
+        private TrieIterator(Node root) {
+            this.slots = new Object[MAX_DEPTH][];
+            this.positions = new int[MAX_DEPTH];
+            slots[0] = root.slots;
+            advance();
+        }
+
+        private void advance() {
+            if (collision != null) {
+                if (collisionPosition < collision.length) {
+                    next = collision[collisionPosition++];
+                    hasNext = true;
+                    return;
+                }
+                collision = null;
+            }
+
+            while (depth >= 0) {
+                if (positions[depth] == slots[depth].length) {
+                    depth--;
+                    continue;
+                }
+
+                Object slot = slots[depth][positions[depth]++];
+                if (slot instanceof Node child) {
+                    depth++;
+                    slots[depth] = child.slots;
+                    positions[depth] = 0;
+                } else if (slot instanceof Collision entry) {
+                    collision = entry.mails;
+                    collisionPosition = 1;
+                    next = collision[0];
+                    hasNext = true;
+                    return;
+                } else {
+                    next = (Mail) slot;
+                    hasNext = true;
+                    return;
+                }
+            }
+            hasNext = false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public Mail next() {
+            if (!hasNext) {
+                throw new NoSuchElementException("No more mails in the set");
+            }
+            Mail result = next;
+            advance();
+            return result;
+        }
+    }
+}
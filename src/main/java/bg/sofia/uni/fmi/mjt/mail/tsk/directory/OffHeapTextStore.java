@@ -0,0 +1,162 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Text store which keeps the texts outside of the heap, UTF-8 encoded in direct byte buffers.
+ * <p>
+ * Texts are appended to slabs, each text prefixed with its length in bytes. The first slab is small and every next
+ * one is twice as large, up to a maximum size, so a store with a few texts - the store of a small account - takes
+ * a few kilobytes and not a whole large slab. A text which does not fit in a slab of the maximum size gets a slab
+ * of its own. The heap keeps only the position of every text - the slab and the offset
+ * packed in a long - so the heap taken by the store depends on the number of texts and not on their size, and the
+ * garbage collector never has to trace or copy them. Every read decodes a new string.
+ * <p>
+ * A single writer may store texts while other threads read the ones stored before. The bytes of a text are written
+ * before its position, and the slab and position arrays and the size are volatile, with the size increased last.
+ * Readers only use absolute reads, which do not change the state of a buffer. The memory of the slabs is released
+ * when the store becomes unreachable and its buffers are collected.
+ * <p>
+ * The slabs are never compacted. The bytes of the texts of removed mails stay in their slabs, and are counted by
+ * {@link #getUsedBytes()}, until the whole store is released. Compacting would mean moving live texts and changing
+ * their handles in every columnar folder of the directory, while readers may still hold the old ones.
+ */
+public class OffHeapTextStore implements TextStore {
+    public static final int DEFAULT_MAX_SLAB_SIZE = 1 << 24;
+
+    private static final int FIRST_SLAB_SIZE = 1 << 12;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SLAB_SHIFT = 32;
+    private static final long OFFSET_MASK = 0xFFFFFFFFL;
+
+    private final int maxSlabSize;
+
+    private volatile ByteBuffer[] slabs;
+    private volatile long[] positions;
+    private volatile int size;
+
+    private int slabCount;
+    private int currentSlab;
+    private int currentSlabSize;
+    private int currentOffset;
+    private int nextSlabSize;
+    private volatile long reservedBytes;
+    private volatile long usedBytes;
+
+    public OffHeapTextStore() {
+        this(DEFAULT_MAX_SLAB_SIZE);
+    }
+
+    /**
+     * @param maxSlabSize the largest size of the direct buffers the texts are appended to, in bytes
+     */
+    public OffHeapTextStore(int maxSlabSize) {
+        if (maxSlabSize <= Integer.BYTES) {
+            throw new IllegalArgumentException("Slab size should be more than " + Integer.BYTES + " bytes");
+        }
+
+        this.maxSlabSize = maxSlabSize;
+        this.nextSlabSize = Math.min(FIRST_SLAB_SIZE, maxSlabSize);
+        this.slabs = new ByteBuffer[INITIAL_CAPACITY];
+        this.positions = new long[INITIAL_CAPACITY];
+        this.currentSlab = -1;
+    }
+
+    @Override
+    public int store(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text can not be null");
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int needed = Integer.BYTES + bytes.length;
+
+        int slab;
+        int offset;
+        if (needed > maxSlabSize) {
+            slab = addSlab(needed);
+            offset = 0;
+        } else {
+            if (currentSlab < 0 || currentOffset + needed > currentSlabSize) {
+                int capacity = nextSlabSize;
+                while (capacity < needed) {
+                    capacity = grow(capacity);
+                }
+                currentSlab = addSlab(capacity);
+                currentSlabSize = capacity;
+                currentOffset = 0;
+                nextSlabSize = grow(capacity);
+            }
+            slab = currentSlab;
+            offset = currentOffset;
+            currentOffset += needed;
+        }
+
+        ByteBuffer buffer = slabs[slab];
+        buffer.putInt(offset, bytes.length);
+        buffer.put(offset + Integer.BYTES, bytes);
+        usedBytes += needed;
+
+        int handle = size;
+        long[] current = positions;
+        if (handle == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[handle] = ((long) slab << SLAB_SHIFT) | offset;
+        positions = current;
+        size = handle + 1;
+        return handle;
+    }
+
+    @Override
+    public String get(int handle) {
+        int count = size;
+        if (handle < 0 || handle >= count) {
+            throw new IllegalArgumentException("Unknown text handle " + handle);
+        }
+
+        long position = positions[handle];
+        ByteBuffer buffer = slabs[(int) (position >>> SLAB_SHIFT)];
+        int offset = (int) (position & OFFSET_MASK);
+
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the direct memory taken by the slabs, in bytes
+     */
+    public long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * @return the direct memory taken by the stored texts and their lengths, in bytes
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private int grow(int slabSize) {
+        return (int) Math.min(2L * slabSize, maxSlabSize);
+    }
+
+    private int addSlab(int capacity) {
+        ByteBuffer[] current = slabs;
+        if (slabCount == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[slabCount] = ByteBuffer.allocateDirect(capacity);
+        slabs = current;
+        reservedBytes += capacity;
+        return slabCount++;
+    }
+}
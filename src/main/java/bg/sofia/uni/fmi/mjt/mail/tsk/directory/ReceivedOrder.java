@@ -0,0 +1,82 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * Orders mails from the oldest to the newest received. Mails received at the same time are ordered by subject,
+ * sender, body and recipients, so that the order is total and only equal mails compare as equal. Missing values
+ * come first.
+ */
+public final class ReceivedOrder {
+    public static final Comparator<Mail> OLDEST_FIRST = ReceivedOrder::compare;
+
+    private static final Comparator<String> STRINGS = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private ReceivedOrder() {
+    }
+
+    static int compare(Mail a, Mail b) {
+        int result = compareReceived(a.received(), b.received());
+        if (result != 0) {
+            return result;
+        }
+        return compareContents(a.subject(), a.sender(), a.body(), a.recipients(),
+            b.subject(), b.sender(), b.body(), b.recipients());
+    }
+
+    static int compareReceived(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * Breaks the tie between mails received at the same time.
+     */
+    static int compareContents(String subjectA, Account senderA, String bodyA, Set<String> recipientsA,
+                               String subjectB, Account senderB, String bodyB, Set<String> recipientsB) {
+        int result = STRINGS.compare(subjectA, subjectB);
+        if (result != 0) {
+            return result;
+        }
+        result = compareAccounts(senderA, senderB);
+        if (result != 0) {
+            return result;
+        }
+        result = STRINGS.compare(bodyA, bodyB);
+        if (result != 0) {
+            return result;
+        }
+        return compareRecipients(recipientsA, recipientsB);
+    }
+
+    private static int compareAccounts(Account a, Account b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        int result = STRINGS.compare(a.emailAddress(), b.emailAddress());
+        return result != 0 ? result : STRINGS.compare(a.name(), b.name());
+    }
+
+    private static int compareRecipients(Set<String> a, Set<String> b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a.equals(b)) {
+            return 0;
+        }
+
+        String[] sortedA = a.toArray(new String[0]);
+        String[] sortedB = b.toArray(new String[0]);
+        Arrays.sort(sortedA, STRINGS);
+        Arrays.sort(sortedB, STRINGS);
+        return Arrays.compare(sortedA, sortedB, STRINGS);
+    }
+}
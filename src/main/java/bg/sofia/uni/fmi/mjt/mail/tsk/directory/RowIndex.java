@@ -0,0 +1,216 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Rows of a columnar folder kept sorted by a comparator of rows.
+ * <p>
+ * The rows are split into sorted chunks of bounded size. A row is found by a binary search over the last rows of
+ * the chunks and then inside a single chunk, and inserting or removing a row moves the rest of its chunk only.
+ * A full chunk is split in halves and an empty one is dropped. Since rows keep their order when a folder is
+ * compacted, the index is then only renumbered.
+ */
+final class RowIndex {
+    private static final int CHUNK_SIZE = 256;
+    private static final int INITIAL_CHUNKS = 4;
+
+    private final IntBinaryOperator order;
+
+    private int[][] chunks;
+    private int[] sizes;
+    private int chunkCount;
+    private int size;
+
+    /**
+     * @param order compares two rows, it should return 0 only for the same row
+     */
+    RowIndex(IntBinaryOperator order) {
+        this.order = order;
+        clear();
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        chunks = new int[INITIAL_CHUNKS][];
+        sizes = new int[INITIAL_CHUNKS];
+        chunkCount = 0;
+        size = 0;
+    }
+
+    void insert(int row) {
+        if (chunkCount == 0) {
+            int[] rows = new int[CHUNK_SIZE];
+            rows[0] = row;
+            insertChunk(0, rows, 1);
+            size++;
+            return;
+        }
+
+        IntUnaryOperator compareToRow = other -> order.applyAsInt(other, row);
+        int chunk = Math.min(findChunk(compareToRow, 1), chunkCount - 1);
+        int offset = findOffset(chunk, compareToRow, 1);
+
+        if (sizes[chunk] == CHUNK_SIZE) {
+            split(chunk);
+            if (offset > sizes[chunk]) {
+                offset -= sizes[chunk];
+                chunk++;
+            }
+        }
+
+        int[] rows = chunks[chunk];
+        System.arraycopy(rows, offset, rows, offset + 1, sizes[chunk] - offset);
+        rows[offset] = row;
+        sizes[chunk]++;
+        size++;
+    }
+
+    /**
+     * Removes the row, whose columns should still hold the values it was inserted with.
+     *
+     * @return whether the row was in the index
+     */
+    boolean remove(int row) {
+        IntUnaryOperator compareToRow = other -> order.applyAsInt(other, row);
+        int chunk = findChunk(compareToRow, 0);
+        if (chunk == chunkCount) {
+            return false;
+        }
+
+        int offset = findOffset(chunk, compareToRow, 0);
+        int[] rows = chunks[chunk];
+        if (offset == sizes[chunk] || rows[offset] != row) {
+            return false;
+        }
+
+        System.arraycopy(rows, offset + 1, rows, offset, sizes[chunk] - offset - 1);
+        sizes[chunk]--;
+        size--;
+        if (sizes[chunk] == 0) {
+            removeChunk(chunk);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces every row with its new number. The new numbers should keep the order of the rows.
+     */
+    void renumber(int[] newRows) {
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int[] rows = chunks[chunk];
+            for (int i = 0; i < sizes[chunk]; i++) {
+                rows[i] = newRows[rows[i]];
+            }
+        }
+    }
+
+    /**
+     * Passes up to {@code limit} rows to the consumer, starting right after the key in the given direction.
+     *
+     * @param compareToKey compares a row with the key, or null to start from the first (or the last) row
+     */
+    void forEachAfter(IntUnaryOperator compareToKey, boolean descending, int limit, IntConsumer consumer) {
+        int chunk;
+        int offset;
+        if (compareToKey == null) {
+            chunk = descending ? chunkCount - 1 : 0;
+            offset = descending && chunkCount > 0 ? sizes[chunk] - 1 : 0;
+        } else {
+            // The first row after the key going up, or the one before the first row not below the key going down
+            int threshold = descending ? 0 : 1;
+            chunk = findChunk(compareToKey, threshold);
+            offset = chunk == chunkCount ? 0 : findOffset(chunk, compareToKey, threshold);
+            if (descending) {
+                if (offset == 0) {
+                    chunk--;
+                    offset = chunk >= 0 ? sizes[chunk] - 1 : 0;
+                } else {
+                    offset--;
+                }
+            }
+        }
+
+        int remaining = limit;
+        if (descending) {
+            for (; chunk >= 0 && remaining > 0; chunk--, offset = chunk >= 0 ? sizes[chunk] - 1 : 0) {
+                for (; offset >= 0 && remaining > 0; offset--, remaining--) {
+                    consumer.accept(chunks[chunk][offset]);
+                }
+            }
+        } else {
+            for (; chunk < chunkCount && remaining > 0; chunk++, offset = 0) {
+                for (; offset < sizes[chunk] && remaining > 0; offset++, remaining--) {
+                    consumer.accept(chunks[chunk][offset]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the first chunk whose last row compares to the key at least as the threshold, or the chunk count
+     */
+    private int findChunk(IntUnaryOperator compareToKey, int threshold) {
+        int low = 0;
+        int high = chunkCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Integer.signum(compareToKey.applyAsInt(chunks[middle][sizes[middle] - 1])) >= threshold) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first offset in the chunk whose row compares to the key at least as the threshold, or its size
+     */
+    private int findOffset(int chunk, IntUnaryOperator compareToKey, int threshold) {
+        int[] rows = chunks[chunk];
+        int low = 0;
+        int high = sizes[chunk];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Integer.signum(compareToKey.applyAsInt(rows[middle])) >= threshold) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private void split(int chunk) {
+        int half = sizes[chunk] / 2;
+        int[] upper = new int[CHUNK_SIZE];
+        System.arraycopy(chunks[chunk], half, upper, 0, sizes[chunk] - half);
+        insertChunk(chunk + 1, upper, sizes[chunk] - half);
+        sizes[chunk] = half;
+    }
+
+    private void insertChunk(int index, int[] rows, int rowCount) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            sizes = Arrays.copyOf(sizes, chunkCount * 2);
+        }
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        System.arraycopy(sizes, index, sizes, index + 1, chunkCount - index);
+        chunks[index] = rows;
+        sizes[index] = rowCount;
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+        System.arraycopy(sizes, index + 1, sizes, index, chunkCount - index - 1);
+        chunkCount--;
+        chunks[chunkCount] = null;
+    }
+}
@@ -0,0 +1,462 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Inverted index over the words of the subjects and the bodies of the mails of a directory.
+ * <p>
+ * Every mail of a folder gets an id, in the order the mails are indexed, and every word maps to the ascending list
+ * of the ids of the mails containing it. Moving a mail to another folder keeps its id, so the word lists are only
+ * appended to. When an equal mail is already in the target folder, the id of the moved one is dropped and its
+ * entries are skipped until there are as many dropped ids as live ones - then all the lists are rewritten at once.
+ * <p>
+ * The index does not keep the mails themselves, which would hold their subjects and bodies on the heap no matter
+ * how the folders store them. A mail is known by its {@link MailFingerprint} and its hash code only, and the found
+ * mails are read back from their folders by a {@link MailLocator}.
+ * <p>
+ * Words are the maximal runs of letters and digits, compared ignoring case. A query lists the mails containing all
+ * of its words, by intersecting the word lists from the shortest one. The index is not thread-safe - it is changed
+ * together with the folders of its directory.
+ */
+final class SearchIndex {
+    private static final int MAX_WORD_LENGTH = 64;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_DROPPED_TO_COMPACT = 1024;
+
+    // Rough sizes of the parts of the index in bytes, assuming compressed references
+    private static final long REFERENCE_SIZE = 4;
+    private static final long ARRAY_SIZE = 16;
+    private static final long MAP_ENTRY_SIZE = 32 + REFERENCE_SIZE * 4 / 3;
+    private static final long STRING_SIZE = 24 + ARRAY_SIZE;
+    private static final long POSTINGS_SIZE = 16 + ARRAY_SIZE;
+    private static final long ID_SIZE = Long.BYTES + Integer.BYTES + REFERENCE_SIZE;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, FolderEntries> folders = new HashMap<>();
+
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private FolderEntries[] folderOf = new FolderEntries[INITIAL_CAPACITY];
+    private int nextId;
+    private int dropped;
+
+    /**
+     * Reads an indexed mail back from its folder.
+     */
+    @FunctionalInterface
+    interface MailLocator {
+
+        /**
+         * @return the mail of the folder with the given hash code and fingerprint, or null if there is none
+         */
+        Mail find(int folder, int hash, long fingerprint);
+    }
+
+    /**
+     * Indexes the mail as a mail of the folder, unless an equal mail of the folder is already indexed.
+     */
+    void add(int folder, Mail mail) {
+        FolderEntries entries = folders.computeIfAbsent(folder, FolderEntries::new);
+        long fingerprint = MailFingerprint.of(mail);
+        if (entries.ids.get(fingerprint) != FingerprintMap.MISSING) {
+            return;
+        }
+
+        int id = newId(fingerprint, mail.hashCode(), entries);
+        entries.ids.put(fingerprint, id);
+        indexWords(mail.subject(), id);
+        indexWords(mail.body(), id);
+    }
+
+    void addAll(int folder, Iterable<? extends Mail> mailsToAdd) {
+        for (Mail mail : mailsToAdd) {
+            add(folder, mail);
+        }
+    }
+
+    /**
+     * Moves the mail to another folder. A mail which is not indexed in the source folder is skipped.
+     */
+    void move(int fromFolder, int toFolder, Mail mail) {
+        FolderEntries from = folders.get(fromFolder);
+        long fingerprint = MailFingerprint.of(mail);
+        int id = from == null ? FingerprintMap.MISSING : from.ids.remove(fingerprint);
+        if (id == FingerprintMap.MISSING) {
+            return;
+        }
+
+        FolderEntries to = folders.computeIfAbsent(toFolder, FolderEntries::new);
+        if (to.ids.get(fingerprint) == FingerprintMap.MISSING) {
+            to.ids.put(fingerprint, id);
+            folderOf[id] = to;
+        } else {
+            drop(id);
+        }
+    }
+
+    void moveAll(int fromFolder, int toFolder, Iterable<? extends Mail> mailsToMove) {
+        for (Mail mail : mailsToMove) {
+            move(fromFolder, toFolder, mail);
+        }
+    }
+
+    /**
+     * Drops every mail of the folder, as when the folder is removed.
+     */
+    void removeFolder(int folder) {
+        FolderEntries entries = folders.remove(folder);
+        if (entries == null) {
+            return;
+        }
+
+        entries.ids.forEachValue(id -> folderOf[id] = null);
+        dropped += entries.ids.size;
+        compactIfNeeded();
+    }
+
+    /**
+     * Lists the mails containing every word of the query.
+     *
+     * @param inScope tells the folders to search in, or null to search in all folders
+     * @param locator reads the found mails from their folders
+     * @return the mails, in the order they were indexed
+     * @throws IllegalArgumentException if the query contains no words
+     */
+    List<Mail> search(String query, IntPredicate inScope, MailLocator locator) {
+        List<String> words = new ArrayList<>();
+        forEachWord(query, words::add);
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("Query should contain at least one word");
+        }
+
+        Postings[] lists = new Postings[words.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(words.get(i));
+            if (lists[i] == null) {
+                return new ArrayList<>();
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] ids = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int size = ids.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            size = intersect(ids, size, lists[i]);
+        }
+
+        List<Mail> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            FolderEntries entries = folderOf[ids[i]];
+            if (entries != null && (inScope == null || inScope.test(entries.folder))) {
+                Mail mail = locator.find(entries.folder, hashes[ids[i]], fingerprints[ids[i]]);
+                if (mail != null) {
+                    result.add(mail);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of indexed mails, the dropped ones not included
+     */
+    int size() {
+        return nextId - dropped;
+    }
+
+    /**
+     * @return a rough estimate of the heap memory taken by the index, in bytes
+     */
+    long estimateMemory() {
+        long memory = 3 * ARRAY_SIZE + ID_SIZE * fingerprints.length;
+
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            memory += MAP_ENTRY_SIZE + STRING_SIZE + entry.getKey().length();
+            memory += POSTINGS_SIZE + (long) Integer.BYTES * entry.getValue().ids.length;
+        }
+        for (FolderEntries entries : folders.values()) {
+            memory += MAP_ENTRY_SIZE + entries.ids.estimateMemory();
+        }
+        return memory;
+    }
+
+    private int newId(long fingerprint, int hash, FolderEntries entries) {
+        if (nextId == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, nextId * 2);
+            hashes = Arrays.copyOf(hashes, nextId * 2);
+            folderOf = Arrays.copyOf(folderOf, nextId * 2);
+        }
+        fingerprints[nextId] = fingerprint;
+        hashes[nextId] = hash;
+        folderOf[nextId] = entries;
+        return nextId++;
+    }
+
+    private void indexWords(String text, int id) {
+        forEachWord(text, word -> postings.computeIfAbsent(word, w -> new Postings()).add(id));
+    }
+
+    private void drop(int id) {
+        folderOf[id] = null;
+        dropped++;
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() {
+        if (dropped >= MIN_DROPPED_TO_COMPACT && dropped >= nextId - dropped) {
+            compact();
+        }
+    }
+
+    /**
+     * Numbers the live mails again from 0 and removes the dropped ids from the word lists. The new ids keep the
+     * order of the old ones, so the lists stay sorted.
+     */
+    private void compact() {
+        int[] newIds = new int[nextId];
+        int live = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (folderOf[id] == null) {
+                newIds[id] = -1;
+            } else {
+                newIds[id] = live;
+                fingerprints[live] = fingerprints[id];
+                hashes[live] = hashes[id];
+                folderOf[live] = folderOf[id];
+                live++;
+            }
+        }
+        Arrays.fill(folderOf, live, nextId, null);
+
+        Iterator<Postings> it = postings.values().iterator();
+        while (it.hasNext()) {
+            Postings list = it.next();
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                int id = newIds[list.ids[i]];
+                if (id >= 0) {
+                    list.ids[size++] = id;
+                }
+            }
+            list.size = size;
+            if (size == 0) {
+                it.remove();
+            }
+        }
+
+        for (FolderEntries entries : folders.values()) {
+            entries.ids.renumber(newIds);
+        }
+
+        nextId = live;
+        dropped = 0;
+    }
+
+    /**
+     * Keeps the ids which are also in the list, in place.
+     *
+     * @return the number of ids kept
+     */
+    private static int intersect(int[] ids, int size, Postings list) {
+        int kept = 0;
+        int low = 0;
+        for (int i = 0; i < size && low < list.size; i++) {
+            low = seek(list.ids, low, list.size, ids[i]);
+            if (low < list.size && list.ids[low] == ids[i]) {
+                ids[kept++] = ids[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return the first position from {@code low} whose id is not less than the key, found by galloping
+     */
+    private static int seek(int[] ids, int low, int size, int key) {
+        int step = 1;
+        int high = low;
+        while (high < size && ids[high] < key) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+
+        int index = Arrays.binarySearch(ids, low, Math.min(high, size), key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Passes the words of the text to the consumer, in lower case and cut to the maximal word length.
+     */
+    static void forEachWord(String text, Consumer<String> consumer) {
+        if (text == null) {
+            return;
+        }
+
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && !Character.isLetterOrDigit(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                consumer.accept(toWord(text, start, end));
+            }
+            start = end;
+        }
+    }
+
+    private static String toWord(String text, int start, int end) {
+        int wordEnd = Math.min(end, start + MAX_WORD_LENGTH);
+        char[] word = new char[wordEnd - start];
+        for (int i = start; i < wordEnd; i++) {
+            word[i - start] = Character.toLowerCase(text.charAt(i));
+        }
+        return new String(word);
+    }
+
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        /**
+         * The words of a mail are indexed together, so a word found twice in the same mail is the last id.
+         */
+        private void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private static final class FolderEntries {
+        private final int folder;
+        private final FingerprintMap ids = new FingerprintMap();
+
+        private FolderEntries(int folder) {
+            this.folder = folder;
+        }
+    }
+
+    /**
+     * Open addressing map from fingerprints to ids, with linear probing. A removed entry is filled by shifting back
+     * the entries after it, so lookups never have to skip removed slots.
+     */
+    private static final class FingerprintMap {
+        private static final int MISSING = -1;
+        private static final int INITIAL_SLOTS = 16;
+
+        private long[] keys = new long[INITIAL_SLOTS];
+        private int[] values = filledWithMissing(INITIAL_SLOTS);
+        private int size;
+
+        private static int[] filledWithMissing(int length) {
+            int[] result = new int[length];
+            Arrays.fill(result, MISSING);
+            return result;
+        }
+
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (values[slot] != MISSING && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int get(long key) {
+            return values[slotOf(key)];
+        }
+
+        private void put(long key, int value) {
+            int slot = slotOf(key);
+            if (values[slot] == MISSING) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+
+            if (size * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+        }
+
+        /**
+         * @return the removed id, or {@link #MISSING}
+         */
+        private int remove(long key) {
+            int slot = slotOf(key);
+            int value = values[slot];
+            if (value == MISSING) {
+                return MISSING;
+            }
+
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; values[next] != MISSING; next = (next + 1) & mask) {
+                int home = (int) (keys[next] ^ (keys[next] >>> 32)) & mask;
+                // The entry may move to the hole only if the hole lies on its probe path
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            values[hole] = MISSING;
+            size--;
+            return value;
+        }
+
+        private void forEachValue(IntConsumer consumer) {
+            for (int value : values) {
+                if (value != MISSING) {
+                    consumer.accept(value);
+                }
+            }
+        }
+
+        private void renumber(int[] newIds) {
+            for (int slot = 0; slot < values.length; slot++) {
+                if (values[slot] != MISSING) {
+                    values[slot] = newIds[values[slot]];
+                }
+            }
+        }
+
+        private void resize(int slots) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[slots];
+            values = filledWithMissing(slots);
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldValues[slot] != MISSING) {
+                    put(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+
+        private long estimateMemory() {
+            return 2 * ARRAY_SIZE + (long) (Long.BYTES + Integer.BYTES) * keys.length;
+        }
+    }
+}
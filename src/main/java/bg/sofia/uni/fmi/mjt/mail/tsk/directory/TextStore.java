@@ -0,0 +1,24 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+/**
+ * Append-only storage of the subjects and bodies of mails. A stored text is referred to by the handle returned
+ * from {@link #store(String)}, which stays valid for the lifetime of the store.
+ * <p>
+ * Texts are never freed. The texts of removed mails, and a separate copy for every folder an equal mail is added
+ * to, stay in the store until the whole store becomes unreachable, so a directory whose mails are often removed
+ * grows with the mails it ever held rather than with the mails it holds now.
+ */
+public interface TextStore {
+
+    /**
+     * @return the handle of the stored text, never negative
+     */
+    int store(String text);
+
+    String get(int handle);
+
+    /**
+     * @return the number of stored texts
+     */
+    int size();
+}
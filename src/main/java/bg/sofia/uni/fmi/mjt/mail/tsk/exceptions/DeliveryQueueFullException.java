@@ -0,0 +1,7 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.exceptions;
+
+public class DeliveryQueueFullException extends RuntimeException {
+    public DeliveryQueueFullException(String message) {
+        super(message);
+    }
+}
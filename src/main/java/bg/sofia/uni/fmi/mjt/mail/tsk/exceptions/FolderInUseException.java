@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.exceptions;
+
+public class FolderInUseException extends RuntimeException {
+    public FolderInUseException(String message) {
+        super(message);
+    }
+
+    public FolderInUseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.exceptions;
+
+public class PersistenceException extends RuntimeException {
+    public PersistenceException(String message) {
+        super(message);
+    }
+
+    public PersistenceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
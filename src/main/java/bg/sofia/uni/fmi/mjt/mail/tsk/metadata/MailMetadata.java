@@ -1,12 +1,27 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk.metadata;
 
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.AddressInterner;
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.RecipientSet;
 import bg.sofia.uni.fmi.mjt.mail.tsk.parsers.CommaSeparatedValuesToSetParser;
-import bg.sofia.uni.fmi.mjt.mail.tsk.parsers.KeyFromTextToValueLineParser;
+import bg.sofia.uni.fmi.mjt.mail.tsk.parsers.LocalDateTimeParser;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * The parsed header block of a mail.
+ * <p>
+ * The text is read in a single forward pass, line by line. A line holds a field if it starts with the key of the
+ * field (leading whitespace is ignored), and the first such line of every field wins. Lines may end with either
+ * {@code \n} or {@code \r\n}. Values are sliced straight out of the text, so only the values themselves are copied.
+ * A missing sender or subject is parsed as an empty string, and missing recipients as an empty set.
+ * <p>
+ * Given an {@link AddressInterner}, the recipients are parsed into a compact {@link RecipientSet} of interned
+ * addresses instead of a hash set of fresh strings.
+ */
 public class MailMetadata {
 
     private static final String SENDER_KEY = "sender:";
@@ -14,27 +29,89 @@ public class MailMetadata {
     private static final String RECEIVED_KEY = "received:";
     private static final String RECIPIENTS_KEY = "recipients:";
 
-    private static final String FORMAT_DATE_TIME = "yyyy-MM-dd HH:mm";
-    
+    private static final char LINE_FEED = '\n';
+    private static final char CARRIAGE_RETURN = '\r';
+
     private final String sender;
     private final String subject;
     private final LocalDateTime received;
     private final Set<String> recipients;
 
     public MailMetadata(String text) {
+        this(text, null);
+    }
+
+    /**
+     * @param interner interns the recipient addresses, or null to keep them in a hash set
+     */
+    public MailMetadata(String text, AddressInterner interner) {
         if (text == null) {
             throw new IllegalArgumentException("Text can not be null");
         }
 
-        this.sender = KeyFromTextToValueLineParser.getValueLine(SENDER_KEY, text);
-        this.subject = KeyFromTextToValueLineParser.getValueLine(SUBJECT_KEY, text);
+        String senderValue = null;
+        String subjectValue = null;
+        Set<String> recipientsValue = null;
+        int receivedFrom = -1;
+        int receivedTo = -1;
+
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf(LINE_FEED, lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            int contentEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == CARRIAGE_RETURN ? lineEnd - 1 : lineEnd;
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(FORMAT_DATE_TIME);
-        String receivedLine = KeyFromTextToValueLineParser.getValueLine(RECEIVED_KEY, text);
-        this.received = LocalDateTime.parse(receivedLine, formatter);
+            int keyStart = skipWhitespace(text, lineStart, contentEnd);
+            if (keyStart < contentEnd) {
+                char first = text.charAt(keyStart);
+                if (first == 's') {
+                    if (senderValue == null && text.startsWith(SENDER_KEY, keyStart)) {
+                        senderValue = value(text, keyStart + SENDER_KEY.length(), contentEnd);
+                    } else if (subjectValue == null && text.startsWith(SUBJECT_KEY, keyStart)) {
+                        subjectValue = value(text, keyStart + SUBJECT_KEY.length(), contentEnd);
+                    }
+                } else if (first == 'r') {
+                    if (receivedFrom < 0 && text.startsWith(RECEIVED_KEY, keyStart)) {
+                        receivedFrom = skipWhitespace(text, keyStart + RECEIVED_KEY.length(), contentEnd);
+                        receivedTo = contentEnd;
+                    } else if (recipientsValue == null && text.startsWith(RECIPIENTS_KEY, keyStart)) {
+                        recipientsValue = recipients(text, keyStart + RECIPIENTS_KEY.length(), contentEnd,
+                            interner);
+                    }
+                }
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        this.sender = senderValue == null ? "" : senderValue;
+        this.subject = subjectValue == null ? "" : subjectValue;
+        this.recipients = recipientsValue == null ? Collections.emptySet() : recipientsValue;
+        this.received = receivedFrom < 0 ? LocalDateTimeParser.parse("") :
+            LocalDateTimeParser.parse(text, receivedFrom, receivedTo);
+    }
+
+    private static Set<String> recipients(String text, int from, int to, AddressInterner interner) {
+        if (interner == null) {
+            return CommaSeparatedValuesToSetParser.getSet(text, from, to);
+        }
+
+        List<String> addresses = new ArrayList<>();
+        CommaSeparatedValuesToSetParser.forEachValue(text, from, to, addresses::add);
+        return RecipientSet.of(interner, addresses);
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
 
-        String recipientsLine = KeyFromTextToValueLineParser.getValueLine(RECIPIENTS_KEY, text);
-        this.recipients = CommaSeparatedValuesToSetParser.getSet(recipientsLine);
+    private static String value(String text, int from, int to) {
+        return text.substring(skipWhitespace(text, from, to), to);
     }
 
     public String getSender() {
@@ -0,0 +1,55 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.metrics;
+
+/**
+ * Count, mean and percentiles of the durations recorded by a {@link LatencyHistogram}, in microseconds. It is a
+ * class with getters, rather than a record, so that JMX clients see it as composite data.
+ */
+public final class LatencySummary {
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+
+    LatencySummary(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+        this.count = count;
+        this.meanMicros = meanNanos / NANOS_PER_MICRO;
+        this.p50Micros = p50Nanos / NANOS_PER_MICRO;
+        this.p90Micros = p90Nanos / NANOS_PER_MICRO;
+        this.p99Micros = p99Nanos / NANOS_PER_MICRO;
+        this.maxMicros = maxNanos / NANOS_PER_MICRO;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus", count, meanMicros,
+            p50Micros, p90Micros, p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,256 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SystemAccount;
+import bg.sofia.uni.fmi.mjt.mail.tsk.body.BodyStore;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a mail client.
+ * <p>
+ * The client records into lock-free histograms and striped counters, which cost a few atomic increments per call and
+ * do not make concurrent calls wait for one another. Rule statistics are counted by the rule sets themselves (see
+ * {@link bg.sofia.uni.fmi.mjt.mail.tsk.rule.RuleSet#getEvaluatedRuleCount()}), and the folder sizes are read from the
+ * accounts only when they are asked for, by a command on the actor of each account in turn.
+ * <p>
+ * The metrics are published over JMX only after {@link #register(String)}.
+ */
+public class OutlookMetrics implements OutlookMetricsMXBean {
+    private static final String DOMAIN = "bg.sofia.uni.fmi.mjt.mail.tsk";
+
+    private final Map<String, SystemAccount> accounts;
+    private final BodyStore bodies;
+
+    private final LatencyHistogram receiveMailLatency = new LatencyHistogram();
+    private final LatencyHistogram sendMailLatency = new LatencyHistogram();
+    private final LatencyHistogram addRuleLatency = new LatencyHistogram();
+    private final LatencyHistogram retroactiveMoveDuration = new LatencyHistogram();
+    private final LongAdder deliveredMails = new LongAdder();
+    private final LongAdder inboxFallThroughs = new LongAdder();
+    private final LatencyHistogram deliveryQueueWait = new LatencyHistogram();
+    private final LongAdder queuedDeliveries = new LongAdder();
+    private final LongAdder rejectedDeliveries = new LongAdder();
+
+    private ObjectName registeredName;
+
+    /**
+     * @param accounts live view of the accounts of the client, keyed by their names
+     */
+    public OutlookMetrics(Map<String, SystemAccount> accounts) {
+        this(accounts, null);
+    }
+
+    /**
+     * @param accounts live view of the accounts of the client, keyed by their names
+     * @param bodies   the store of the bodies of the client, or null if the bodies are not shared
+     */
+    public OutlookMetrics(Map<String, SystemAccount> accounts, BodyStore bodies) {
+        this.accounts = accounts;
+        this.bodies = bodies;
+    }
+
+    public void recordReceiveMail(long nanos) {
+        receiveMailLatency.record(nanos);
+    }
+
+    public void recordSendMail(long nanos) {
+        sendMailLatency.record(nanos);
+    }
+
+    public void recordAddRule(long nanos) {
+        addRuleLatency.record(nanos);
+    }
+
+    public void recordRetroactiveMove(long nanos) {
+        retroactiveMoveDuration.record(nanos);
+    }
+
+    /**
+     * @param mails   the number of delivered mails
+     * @param toInbox how many of them no rule fitted
+     */
+    public void recordDeliveries(int mails, int toInbox) {
+        deliveredMails.add(mails);
+        inboxFallThroughs.add(toInbox);
+    }
+
+    public void recordQueuedDelivery() {
+        queuedDeliveries.increment();
+    }
+
+    /**
+     * @param waitNanos how long the mail waited in the delivery queue
+     */
+    public void recordDequeuedDelivery(long waitNanos) {
+        queuedDeliveries.decrement();
+        deliveryQueueWait.record(waitNanos);
+    }
+
+    public void recordRejectedDelivery() {
+        rejectedDeliveries.increment();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, under the type OutlookMetrics and the given name.
+     *
+     * @return the name the metrics are registered under
+     * @throws IllegalStateException if the metrics are already registered, or if the registration fails
+     */
+    public synchronized ObjectName register(String name) {
+        if (registeredName != null) {
+            throw new IllegalStateException("Metrics are already registered as " + registeredName);
+        }
+
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=OutlookMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            registeredName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics could not be registered as " + name, e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if they are registered.
+     */
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(registeredName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics could not be unregistered", e);
+        } finally {
+            registeredName = null;
+        }
+    }
+
+    @Override
+    public LatencySummary getReceiveMailLatency() {
+        return receiveMailLatency.summarize();
+    }
+
+    @Override
+    public LatencySummary getSendMailLatency() {
+        return sendMailLatency.summarize();
+    }
+
+    @Override
+    public LatencySummary getAddRuleLatency() {
+        return addRuleLatency.summarize();
+    }
+
+    @Override
+    public LatencySummary getRetroactiveMoveDuration() {
+        return retroactiveMoveDuration.summarize();
+    }
+
+    @Override
+    public long getDeliveryQueueDepth() {
+        return queuedDeliveries.sum();
+    }
+
+    @Override
+    public LatencySummary getDeliveryQueueWait() {
+        return deliveryQueueWait.summarize();
+    }
+
+    @Override
+    public long getRejectedDeliveryCount() {
+        return rejectedDeliveries.sum();
+    }
+
+    @Override
+    public long getDistinctBodyCount() {
+        return bodies == null ? 0 : bodies.getDistinctBodyCount();
+    }
+
+    @Override
+    public double getBodyDedupRatio() {
+        long distinct = getDistinctBodyCount();
+        return distinct == 0 ? 0 : (double) bodies.getReferenceCount() / distinct;
+    }
+
+    @Override
+    public long getBodyBytesSaved() {
+        return bodies == null ? 0 : bodies.getReferencedBytes() - bodies.getStoredBytes();
+    }
+
+    @Override
+    public long getDeliveredMailCount() {
+        return deliveredMails.sum();
+    }
+
+    @Override
+    public long getInboxFallThroughCount() {
+        return inboxFallThroughs.sum();
+    }
+
+    @Override
+    public double getInboxFallThroughRate() {
+        long delivered = deliveredMails.sum();
+        return delivered == 0 ? 0 : (double) inboxFallThroughs.sum() / delivered;
+    }
+
+    @Override
+    public double getRulesEvaluatedPerMail() {
+        long routed = 0;
+        long evaluated = 0;
+        for (SystemAccount account : accounts.values()) {
+            routed += account.rules().getRoutedMailCount();
+            evaluated += account.rules().getEvaluatedRuleCount();
+        }
+        return routed == 0 ? 0 : (double) evaluated / routed;
+    }
+
+    @Override
+    public Map<String, Long> getRuleHitCounts() {
+        Map<String, Long> hits = new TreeMap<>();
+        for (SystemAccount account : accounts.values()) {
+            account.actor().run(() -> {
+                for (Rule rule : account.rules()) {
+                    String key = account.account().name() + ": " + rule.getFolderPath() + " (priority "
+                        + rule.getPriority() + ")";
+                    hits.merge(key, rule.getHitCount(), Long::sum);
+                }
+            });
+        }
+        return hits;
+    }
+
+    @Override
+    public Map<String, Long> getAccountMailCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (SystemAccount account : accounts.values()) {
+            counts.put(account.account().name(),
+                (long) account.actor().call(() -> account.directory().countMailsInSubtree("/")));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getFolderMailCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (SystemAccount account : accounts.values()) {
+            account.actor().run(() -> {
+                for (Map.Entry<String, Set<Mail>> folder : account.directory().getDirectoryPaths().entrySet()) {
+                    counts.put(account.account().name() + ":" + folder.getKey(), (long) folder.getValue().size());
+                }
+            });
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,82 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link OutlookMetrics}, as seen by JMX clients such as JConsole.
+ */
+public interface OutlookMetricsMXBean {
+
+    LatencySummary getReceiveMailLatency();
+
+    LatencySummary getSendMailLatency();
+
+    LatencySummary getAddRuleLatency();
+
+    /**
+     * @return how long it took to check the mails already in an inbox against a new rule and to move them
+     */
+    LatencySummary getRetroactiveMoveDuration();
+
+    /**
+     * @return the number of sent mails waiting in the delivery queue
+     */
+    long getDeliveryQueueDepth();
+
+    /**
+     * @return how long the sent mails waited in the delivery queue before a worker took them
+     */
+    LatencySummary getDeliveryQueueWait();
+
+    /**
+     * @return the number of sent mails turned away because the delivery queue was full
+     */
+    long getRejectedDeliveryCount();
+
+    /**
+     * @return the number of distinct bodies kept for the stored mails
+     */
+    long getDistinctBodyCount();
+
+    /**
+     * @return the mean number of stored mails sharing a body, or 0 if no bodies are kept
+     */
+    double getBodyDedupRatio();
+
+    /**
+     * @return the UTF-8 bytes not kept because the mails share their bodies
+     */
+    long getBodyBytesSaved();
+
+    long getDeliveredMailCount();
+
+    /**
+     * @return the number of delivered mails which no rule fitted, so they stayed in the inbox
+     */
+    long getInboxFallThroughCount();
+
+    /**
+     * @return the share of the delivered mails which stayed in the inbox, or 0 if no mails were delivered
+     */
+    double getInboxFallThroughRate();
+
+    /**
+     * @return the mean number of rules evaluated to route a mail
+     */
+    double getRulesEvaluatedPerMail();
+
+    /**
+     * @return the hit count of every rule, keyed by the account, the folder and the priority of the rule
+     */
+    Map<String, Long> getRuleHitCounts();
+
+    /**
+     * @return the number of mails in all the folders of every account, keyed by the account name
+     */
+    Map<String, Long> getAccountMailCounts();
+
+    /**
+     * @return the number of mails in every folder, keyed by the account name and the path of the folder
+     */
+    Map<String, Long> getFolderMailCounts();
+}
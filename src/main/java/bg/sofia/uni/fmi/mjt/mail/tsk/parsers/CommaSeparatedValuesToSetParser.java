@@ -3,19 +3,71 @@ package bg.sofia.uni.fmi.mjt.mail.tsk.parsers;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public class CommaSeparatedValuesToSetParser {
+    private static final char SEPARATOR = ',';
+
     public static Set<String> getSet(String valueLine) {
-        if (valueLine.isEmpty()) {
-            return Collections.emptySet();
+        return getSet(valueLine, 0, valueLine.length());
+    }
+
+    /**
+     * Parses the comma separated values in {@code text[from, to)} without copying the line. Every value is trimmed,
+     * empty values at the end of the line are skipped (so a trailing comma is allowed), and repeated values are
+     * kept once.
+     */
+    public static Set<String> getSet(String text, int from, int to) {
+        Set<String> values = new HashSet<>();
+        forEachValue(text, from, to, values::add);
+        return values.isEmpty() ? Collections.emptySet() : values;
+    }
+
+    /**
+     * Passes the values of {@code text[from, to)} to the consumer, trimmed and in order, the same way as
+     * {@link #getSet(String, int, int)} does, but repeated values are passed every time.
+     */
+    public static void forEachValue(String text, int from, int to, Consumer<String> consumer) {
+        from = skipWhitespaceForward(text, from, to);
+        to = skipWhitespaceBackward(text, from, to);
+        if (from == to) {
+            return;
         }
-        Set<String> setWithSpaces = Set.of(valueLine.trim().split(","));
 
-        Set<String> setToReturn = new HashSet<>();
+        int pendingEmpty = 0;
+        int start = from;
+        while (start <= to) {
+            int end = text.indexOf(SEPARATOR, start);
+            if (end < 0 || end > to) {
+                end = to;
+            }
+
+            if (end == start) {
+                // Empty values count only if a non-empty value follows them
+                pendingEmpty++;
+            } else {
+                if (pendingEmpty > 0) {
+                    consumer.accept("");
+                    pendingEmpty = 0;
+                }
+                int valueStart = skipWhitespaceForward(text, start, end);
+                consumer.accept(text.substring(valueStart, skipWhitespaceBackward(text, valueStart, end)));
+            }
+            start = end + 1;
+        }
+    }
+
+    private static int skipWhitespaceForward(String text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
 
-        for (String s : setWithSpaces) {
-            setToReturn.add(s.trim());
+    private static int skipWhitespaceBackward(String text, int from, int to) {
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
         }
-        return setToReturn;
+        return to;
     }
 }
@@ -0,0 +1,66 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.parsers;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parses date-times in the {@code yyyy-MM-dd HH:mm} format of the mail metadata.
+ * <p>
+ * The common case - exactly sixteen characters with every digit and separator in place - is read directly from the
+ * text. Anything else, including out of range fields, falls back to {@link DateTimeFormatter}, so the results and
+ * the errors are the same as parsing the whole value with the formatter.
+ */
+public class LocalDateTimeParser {
+    private static final String FORMAT_DATE_TIME = "yyyy-MM-dd HH:mm";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(FORMAT_DATE_TIME);
+
+    private static final int LENGTH = FORMAT_DATE_TIME.length();
+    private static final int MONTH = 5;
+    private static final int DAY = 8;
+    private static final int HOUR = 11;
+    private static final int MINUTE = 14;
+
+    public static LocalDateTime parse(String text) {
+        return parse(text, 0, text.length());
+    }
+
+    public static LocalDateTime parse(String text, int from, int to) {
+        if (to - from == LENGTH && hasSeparators(text, from)) {
+            int year = digits(text, from, 4);
+            int month = digits(text, from + MONTH, 2);
+            int day = digits(text, from + DAY, 2);
+            int hour = digits(text, from + HOUR, 2);
+            int minute = digits(text, from + MINUTE, 2);
+
+            if ((year | month | day | hour | minute) >= 0) {
+                try {
+                    return LocalDateTime.of(year, month, day, hour, minute);
+                } catch (DateTimeException e) {
+                    // The formatter resolves some of these (e.g. the 31st of a short month), so let it decide
+                }
+            }
+        }
+        return LocalDateTime.parse(text.substring(from, to), FORMATTER);
+    }
+
+    private static boolean hasSeparators(String text, int from) {
+        return text.charAt(from + MONTH - 1) == '-' && text.charAt(from + DAY - 1) == '-' &&
+            text.charAt(from + HOUR - 1) == ' ' && text.charAt(from + MINUTE - 1) == ':';
+    }
+
+    /**
+     * @return the number written with the given count of digits, or -1 if any of the characters is not a digit
+     */
+    private static int digits(String text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
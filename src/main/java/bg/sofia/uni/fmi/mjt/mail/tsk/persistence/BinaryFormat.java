@@ -0,0 +1,42 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of the values shared by the log and the snapshots. Strings are written as the length of their UTF-8
+ * bytes followed by the bytes, so unlike {@link DataOutput#writeUTF(String)} they are not limited to 64 KB.
+ */
+final class BinaryFormat {
+    private static final int NULL_LENGTH = -1;
+
+    private BinaryFormat() {
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
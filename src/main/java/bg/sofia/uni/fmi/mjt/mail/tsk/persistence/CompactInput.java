@@ -0,0 +1,71 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the values written by a {@link CompactOutput} from a byte array. Every read checks the bounds of the array,
+ * so a damaged snapshot fails with an {@link IOException} instead of being read past its end.
+ */
+final class CompactInput {
+    private static final int SEVEN_BITS = 0x7F;
+    private static final int CONTINUATION = 0x80;
+    private static final int MAX_VARLONG_SHIFT = 63;
+
+    private final byte[] buffer;
+    private int position;
+
+    CompactInput(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    int readVarInt() throws IOException {
+        long value = readVarLong();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift <= MAX_VARLONG_SHIFT; shift += 7) {
+            int current = readByte();
+            value |= (long) (current & SEVEN_BITS) << shift;
+            if ((current & CONTINUATION) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readByte() throws IOException {
+        if (position >= buffer.length) {
+            throw new IOException("Unexpected end of snapshot data");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Reads bytes written by {@link CompactOutput#writeBytes(byte[])} as a UTF-8 string.
+     */
+    String readString() throws IOException {
+        int length = readVarInt();
+        if (length > buffer.length - position) {
+            throw new IOException("Unexpected end of snapshot data");
+        }
+
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    boolean isAtEnd() {
+        return position == buffer.length;
+    }
+}
@@ -0,0 +1,75 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Growable buffer for the compact encoding of the snapshots.
+ * <p>
+ * Non-negative numbers are written as varints - seven bits per byte, the lowest bits first, with the high bit set on
+ * every byte but the last - so the small counts and string numbers which make up most of a snapshot take a single
+ * byte. Signed numbers are zigzag encoded first, so small negative numbers stay short as well.
+ */
+final class CompactOutput {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int SEVEN_BITS = 0x7F;
+    private static final int CONTINUATION = 0x80;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    void writeVarInt(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Varint can not be negative: " + value);
+        }
+        writeVarLong(value);
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(Long.BYTES + 2);
+        long remaining = value;
+        while ((remaining & ~SEVEN_BITS) != 0) {
+            buffer[size++] = (byte) ((remaining & SEVEN_BITS) | CONTINUATION);
+            remaining >>>= 7;
+        }
+        buffer[size++] = (byte) remaining;
+    }
+
+    void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> (Long.SIZE - 1)));
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes the length of the bytes as a varint, followed by the bytes.
+     */
+    void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
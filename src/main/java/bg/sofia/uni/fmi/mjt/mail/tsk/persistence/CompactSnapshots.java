@@ -0,0 +1,455 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SystemAccount;
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.AddressInterner;
+import bg.sofia.uni.fmi.mjt.mail.tsk.address.RecipientSet;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderSnapshot;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.AbstractRuleCondition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The compact encoding of a snapshot, which is restored without parsing any metadata or rule definitions.
+ * <p>
+ * The snapshot starts with a table of the strings which repeat across mails and accounts: names, addresses, folder
+ * paths, rule definitions and condition values, and the bodies. Everything after it refers to a string by its
+ * number in the table, plus one, with 0 standing for null. The table is written in blocks of a limited size, and
+ * every account in a section of its own, each prefixed by its length in bytes. The numbers in the blocks and the
+ * sections are varints, the received times are epoch seconds, and the subjects, which rarely repeat, are written in
+ * place. A rule is written with the values of its conditions, so it is restored without its definition being
+ * parsed again.
+ * <p>
+ * Since the blocks and the sections do not depend on one another, they are decoded on the common fork-join pool
+ * while the calling thread reads on. The accounts are thus restored in parallel, each by a single thread. The mails
+ * are not indexed for search while they are restored - the index of an account is built on its first search.
+ */
+final class CompactSnapshots {
+    private static final int STRINGS_PER_BLOCK = 4096;
+    private static final int BYTES_PER_BLOCK = 1 << 20;
+    private static final int NULL_STRING = 0;
+
+    private static final int HAS_SENDER = 1;
+    private static final int HAS_RECIPIENTS = 1 << 1;
+    private static final int HAS_SUBJECT = 1 << 2;
+    private static final int HAS_RECEIVED = 1 << 3;
+
+    private CompactSnapshots() {
+    }
+
+    static void write(DataOutputStream out, List<Snapshots.AccountState> accounts) throws IOException {
+        StringTable table = new StringTable();
+        for (Snapshots.AccountState account : accounts) {
+            table.addAll(account);
+        }
+        writeStrings(out, table.strings);
+
+        out.writeInt(accounts.size());
+        CompactOutput section = new CompactOutput();
+        for (Snapshots.AccountState account : accounts) {
+            section.reset();
+            writeAccount(section, account, table);
+            out.writeInt(section.size());
+            section.writeTo(out);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+
+        CompactOutput block = new CompactOutput();
+        int count = 0;
+        for (String value : strings) {
+            block.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            if (++count == STRINGS_PER_BLOCK || block.size() >= BYTES_PER_BLOCK) {
+                writeBlock(out, block, count);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            writeBlock(out, block, count);
+        }
+    }
+
+    private static void writeBlock(DataOutputStream out, CompactOutput block, int count) throws IOException {
+        out.writeInt(count);
+        out.writeInt(block.size());
+        block.writeTo(out);
+        block.reset();
+    }
+
+    private static void writeAccount(CompactOutput out, Snapshots.AccountState account, StringTable table) {
+        out.writeVarInt(table.ref(account.name()));
+        out.writeVarInt(table.ref(account.email()));
+
+        Map<String, FolderSnapshot> folders = account.folders();
+        out.writeVarInt(folders.size());
+        for (String path : folders.keySet()) {
+            out.writeVarInt(table.ref(path));
+        }
+
+        out.writeVarInt(account.rules().size());
+        for (Rule rule : account.rules()) {
+            writeRule(out, rule, table);
+        }
+
+        for (FolderSnapshot mails : folders.values()) {
+            out.writeVarInt(mails.size());
+            for (Mail mail : mails) {
+                writeMail(out, mail, table);
+            }
+        }
+    }
+
+    private static void writeRule(CompactOutput out, Rule rule, StringTable table) {
+        out.writeVarInt(table.ref(rule.getFolderPath()));
+        out.writeVarInt(table.ref(rule.getDefinition()));
+        out.writeVarInt(rule.getPriority());
+
+        List<AbstractRuleCondition> nonEmpty = new ArrayList<>();
+        for (AbstractRuleCondition condition : rule.getConditions()) {
+            if (!condition.isEmptyCondition()) {
+                nonEmpty.add(condition);
+            }
+        }
+
+        out.writeVarInt(nonEmpty.size());
+        for (AbstractRuleCondition condition : nonEmpty) {
+            out.writeVarInt(table.ref(condition.getKey()));
+            out.writeVarInt(condition.getValues().size());
+            for (String value : condition.getValues()) {
+                out.writeVarInt(table.ref(value));
+            }
+        }
+    }
+
+    private static void writeMail(CompactOutput out, Mail mail, StringTable table) {
+        int flags = (mail.sender() != null ? HAS_SENDER : 0) | (mail.recipients() != null ? HAS_RECIPIENTS : 0)
+            | (mail.subject() != null ? HAS_SUBJECT : 0) | (mail.received() != null ? HAS_RECEIVED : 0);
+        out.writeByte(flags);
+
+        if (mail.sender() != null) {
+            out.writeVarInt(table.ref(mail.sender().emailAddress()));
+            out.writeVarInt(table.ref(mail.sender().name()));
+        }
+        if (mail.recipients() != null) {
+            out.writeVarInt(mail.recipients().size());
+            for (String recipient : mail.recipients()) {
+                out.writeVarInt(table.ref(recipient));
+            }
+        }
+        if (mail.subject() != null) {
+            out.writeBytes(mail.subject().getBytes(StandardCharsets.UTF_8));
+        }
+        out.writeVarInt(table.ref(mail.body()));
+        if (mail.received() != null) {
+            out.writeSignedVarLong(mail.received().toEpochSecond(ZoneOffset.UTC));
+            out.writeVarInt(mail.received().getNano());
+        }
+    }
+
+    static Outlook read(DataInputStream in, FolderStorage storage) throws IOException {
+        Outlook outlook = new Outlook(storage);
+        SectionDecoder decoder = new SectionDecoder();
+
+        String[] strings = readStrings(in, decoder);
+        decoder.awaitAll();
+
+        int accountCount = in.readInt();
+        for (int i = 0; i < accountCount; i++) {
+            CompactInput section = new CompactInput(readSection(in));
+            decoder.submit(() -> readAccount(outlook, section, strings));
+        }
+        decoder.awaitAll();
+        return outlook;
+    }
+
+    /**
+     * @return the strings of the table by their numbers, with null as the string 0
+     */
+    private static String[] readStrings(DataInputStream in, SectionDecoder decoder) throws IOException {
+        int total = in.readInt();
+        if (total < 0) {
+            throw new IOException("Invalid string table size " + total);
+        }
+
+        String[] strings = new String[total + 1];
+        int read = 0;
+        while (read < total) {
+            int count = in.readInt();
+            if (count <= 0 || count > total - read) {
+                throw new IOException("Invalid string block size " + count);
+            }
+
+            CompactInput block = new CompactInput(readSection(in));
+            int first = read + 1;
+            decoder.submit(() -> {
+                for (int i = 0; i < count; i++) {
+                    strings[first + i] = block.readString();
+                }
+                if (!block.isAtEnd()) {
+                    throw new IOException("Damaged string block");
+                }
+            });
+            read += count;
+        }
+        return strings;
+    }
+
+    private static byte[] readSection(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid section length " + length);
+        }
+
+        byte[] section = new byte[length];
+        in.readFully(section);
+        return section;
+    }
+
+    private static void readAccount(Outlook outlook, CompactInput in, String[] strings) throws IOException {
+        String name = string(in, strings);
+        outlook.addNewAccount(name, string(in, strings));
+        SystemAccount account = outlook.getSystemAccounts().get(name);
+
+        int folderCount = in.readVarInt();
+        String[] paths = new String[folderCount];
+        for (int i = 0; i < folderCount; i++) {
+            paths[i] = string(in, strings);
+        }
+
+        int ruleCount = in.readVarInt();
+        List<Rule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(readRule(in, strings));
+        }
+
+        AddressInterner addresses = outlook.getAddresses();
+        Map<Long, Account> senders = new HashMap<>();
+        List<List<Mail>> folders = new ArrayList<>(folderCount);
+        for (int i = 0; i < folderCount; i++) {
+            int mailCount = in.readVarInt();
+            List<Mail> mails = new ArrayList<>(mailCount);
+            for (int j = 0; j < mailCount; j++) {
+                mails.add(readMail(in, strings, addresses, senders));
+            }
+            folders.add(mails);
+        }
+
+        if (!in.isAtEnd()) {
+            throw new IOException("Damaged section of account " + name);
+        }
+
+        // The section is decoded in full first, so the account is restored in a single command on its actor
+        account.actor().run(() -> {
+            for (String path : paths) {
+                // Paths come sorted, so a folder always comes after its parent
+                if (!account.directory().isPathExisting(path)) {
+                    account.directory().addPath(path);
+                }
+            }
+            for (Rule rule : rules) {
+                account.addRule(rule);
+            }
+            for (int i = 0; i < folderCount; i++) {
+                account.directory().restoreEmails(paths[i], folders.get(i));
+            }
+        });
+    }
+
+    private static Rule readRule(CompactInput in, String[] strings) throws IOException {
+        String folderPath = string(in, strings);
+        String definition = string(in, strings);
+        int priority = in.readVarInt();
+
+        int conditionCount = in.readVarInt();
+        Map<String, Set<String>> conditionValues = new HashMap<>();
+        for (int i = 0; i < conditionCount; i++) {
+            String key = string(in, strings);
+            int valueCount = in.readVarInt();
+            Set<String> values = new HashSet<>();
+            for (int j = 0; j < valueCount; j++) {
+                values.add(string(in, strings));
+            }
+            conditionValues.put(key, values);
+        }
+        return new Rule(folderPath, definition, priority, conditionValues);
+    }
+
+    /**
+     * @param senders the senders read so far from the section, so the mails of the same sender share the account
+     */
+    private static Mail readMail(CompactInput in, String[] strings, AddressInterner addresses,
+                                 Map<Long, Account> senders) throws IOException {
+        int flags = in.readByte();
+
+        Account sender = null;
+        if ((flags & HAS_SENDER) != 0) {
+            int email = in.readVarInt();
+            int name = in.readVarInt();
+            long key = (long) email << Integer.SIZE | name;
+            sender = senders.get(key);
+            if (sender == null) {
+                sender = new Account(string(email, strings), string(name, strings));
+                senders.put(key, sender);
+            }
+        }
+
+        Set<String> recipients = null;
+        if ((flags & HAS_RECIPIENTS) != 0) {
+            int recipientCount = in.readVarInt();
+            List<String> addressList = new ArrayList<>(recipientCount);
+            for (int i = 0; i < recipientCount; i++) {
+                addressList.add(string(in, strings));
+            }
+            recipients = RecipientSet.of(addresses, addressList);
+        }
+
+        String subject = (flags & HAS_SUBJECT) != 0 ? in.readString() : null;
+        String body = string(in, strings);
+
+        LocalDateTime received = null;
+        if ((flags & HAS_RECEIVED) != 0) {
+            long epochSecond = in.readSignedVarLong();
+            received = LocalDateTime.ofEpochSecond(epochSecond, in.readVarInt(), ZoneOffset.UTC);
+        }
+        return new Mail(sender, recipients, subject, body, received);
+    }
+
+    private static String string(CompactInput in, String[] strings) throws IOException {
+        return string(in.readVarInt(), strings);
+    }
+
+    private static String string(int ref, String[] strings) throws IOException {
+        if (ref >= strings.length) {
+            throw new IOException("Snapshot refers to an unknown string " + ref);
+        }
+        return strings[ref];
+    }
+
+    /**
+     * The strings of a snapshot, numbered in the order they are first added.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        void addAll(Snapshots.AccountState account) {
+            add(account.name());
+            add(account.email());
+            for (String path : account.folders().keySet()) {
+                add(path);
+            }
+
+            for (Rule rule : account.rules()) {
+                add(rule.getFolderPath());
+                add(rule.getDefinition());
+                for (AbstractRuleCondition condition : rule.getConditions()) {
+                    if (!condition.isEmptyCondition()) {
+                        add(condition.getKey());
+                        for (String value : condition.getValues()) {
+                            add(value);
+                        }
+                    }
+                }
+            }
+
+            for (FolderSnapshot mails : account.folders().values()) {
+                for (Mail mail : mails) {
+                    if (mail.sender() != null) {
+                        add(mail.sender().emailAddress());
+                        add(mail.sender().name());
+                    }
+                    if (mail.recipients() != null) {
+                        for (String recipient : mail.recipients()) {
+                            add(recipient);
+                        }
+                    }
+                    add(mail.body());
+                }
+            }
+        }
+
+        private void add(String value) {
+            if (value != null && refs.putIfAbsent(value, strings.size() + 1) == null) {
+                strings.add(value);
+            }
+        }
+
+        int ref(String value) {
+            return value == null ? NULL_STRING : refs.get(value);
+        }
+    }
+
+    private interface SectionTask {
+        void decode() throws IOException;
+    }
+
+    /**
+     * Decodes sections on the common fork-join pool, with at most two sections per worker in memory at once. With
+     * a single worker the sections are decoded right away by the calling thread.
+     */
+    private static final class SectionDecoder {
+        private final int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        private final Deque<CompletableFuture<Void>> pending = new ArrayDeque<>();
+
+        void submit(SectionTask task) throws IOException {
+            if (parallelism < 2) {
+                task.decode();
+                return;
+            }
+
+            while (pending.size() >= 2 * parallelism) {
+                await(pending.removeFirst());
+            }
+            pending.addLast(CompletableFuture.runAsync(() -> {
+                try {
+                    task.decode();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, ForkJoinPool.commonPool()));
+        }
+
+        void awaitAll() throws IOException {
+            while (!pending.isEmpty()) {
+                await(pending.removeFirst());
+            }
+        }
+
+        private static void await(CompletableFuture<Void> decoded) throws IOException {
+            try {
+                decoded.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+/**
+ * When the write-ahead log forces its writes to the storage device.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every call returns only after its record is forced to the device. Concurrent calls share one force
+     * (group commit), so the cost is paid once per group and not once per call.
+     */
+    ALWAYS,
+
+    /**
+     * Calls return once their record is written to the operating system, and the log is forced periodically.
+     * A crash of the machine may lose the calls of the last interval, a crash of the process loses nothing.
+     */
+    INTERVAL,
+
+    /**
+     * The log is forced only when a snapshot is taken and when the client is closed.
+     */
+    NEVER
+}
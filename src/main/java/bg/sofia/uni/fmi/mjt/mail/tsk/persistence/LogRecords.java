@@ -0,0 +1,147 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.IncomingMail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.MailClient;
+import bg.sofia.uni.fmi.mjt.mail.tsk.RuleSpec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding of the mutating mail client calls as log records. A record holds the arguments of the call, so replaying
+ * the records in log order on the state they were recorded on repeats the calls exactly.
+ */
+final class LogRecords {
+    private static final byte ADD_NEW_ACCOUNT = 1;
+    private static final byte CREATE_FOLDER = 2;
+    private static final byte ADD_RULE = 3;
+    private static final byte RECEIVE_MAIL = 4;
+    private static final byte SEND_MAIL = 5;
+    private static final byte RECEIVE_MAILS = 6;
+    private static final byte ADD_RULES = 7;
+
+    private LogRecords() {
+    }
+
+    static byte[] addNewAccount(String accountName, String email) {
+        return encode(ADD_NEW_ACCOUNT, accountName, email);
+    }
+
+    static byte[] createFolder(String accountName, String path) {
+        return encode(CREATE_FOLDER, accountName, path);
+    }
+
+    static byte[] addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ADD_RULE);
+            BinaryFormat.writeString(out, accountName);
+            BinaryFormat.writeString(out, folderPath);
+            BinaryFormat.writeString(out, ruleDefinition);
+            out.writeInt(priority);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode a log record", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] addRules(String accountName, List<RuleSpec> rules) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ADD_RULES);
+            BinaryFormat.writeString(out, accountName);
+            out.writeInt(rules.size());
+            for (RuleSpec rule : rules) {
+                BinaryFormat.writeString(out, rule.folderPath());
+                BinaryFormat.writeString(out, rule.ruleDefinition());
+                out.writeInt(rule.priority());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode a log record", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] receiveMail(String accountName, String mailMetadata, String mailContent) {
+        return encode(RECEIVE_MAIL, accountName, mailMetadata, mailContent);
+    }
+
+    static byte[] sendMail(String accountName, String mailMetadata, String mailContent) {
+        return encode(SEND_MAIL, accountName, mailMetadata, mailContent);
+    }
+
+    static byte[] receiveMails(String accountName, List<IncomingMail> mails) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(RECEIVE_MAILS);
+            BinaryFormat.writeString(out, accountName);
+            out.writeInt(mails.size());
+            for (IncomingMail mail : mails) {
+                BinaryFormat.writeString(out, mail.metadata());
+                BinaryFormat.writeString(out, mail.content());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode a log record", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(byte operation, String... arguments) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(operation);
+            for (String argument : arguments) {
+                BinaryFormat.writeString(out, argument);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode a log record", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Repeats the call recorded in the record on the client.
+     *
+     * @throws IOException if the record is not a valid log record
+     */
+    static void apply(byte[] record, MailClient client) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+
+        byte operation = in.readByte();
+        switch (operation) {
+            case ADD_NEW_ACCOUNT -> client.addNewAccount(BinaryFormat.readString(in), BinaryFormat.readString(in));
+            case CREATE_FOLDER -> client.createFolder(BinaryFormat.readString(in), BinaryFormat.readString(in));
+            case ADD_RULE -> client.addRule(BinaryFormat.readString(in), BinaryFormat.readString(in),
+                BinaryFormat.readString(in), in.readInt());
+            case RECEIVE_MAIL -> client.receiveMail(BinaryFormat.readString(in), BinaryFormat.readString(in),
+                BinaryFormat.readString(in));
+            case SEND_MAIL -> client.sendMail(BinaryFormat.readString(in), BinaryFormat.readString(in),
+                BinaryFormat.readString(in));
+            case RECEIVE_MAILS -> {
+                String accountName = BinaryFormat.readString(in);
+                int count = in.readInt();
+                List<IncomingMail> mails = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    mails.add(new IncomingMail(BinaryFormat.readString(in), BinaryFormat.readString(in)));
+                }
+                client.receiveMails(accountName, mails);
+            }
+            case ADD_RULES -> {
+                String accountName = BinaryFormat.readString(in);
+                int count = in.readInt();
+                List<RuleSpec> rules = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    rules.add(new RuleSpec(BinaryFormat.readString(in), BinaryFormat.readString(in), in.readInt()));
+                }
+                client.addRules(accountName, rules);
+            }
+            default -> throw new IOException("Unknown log record operation " + operation);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration of a {@link PersistentMailClient}.
+ *
+ * @param directory            where the log segments and the snapshots are kept
+ * @param fsyncPolicy          when the log is forced to the storage device
+ * @param fsyncIntervalMillis  how often the log is forced with {@link FsyncPolicy#INTERVAL}
+ * @param snapshotEveryRecords a snapshot is taken in the background after this many log records,
+ *                             0 disables the periodic snapshots
+ * @param storage              how the folders of the accounts keep their mails
+ */
+public record PersistenceOptions(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                                 long snapshotEveryRecords, FolderStorage storage) {
+    private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_SNAPSHOT_EVERY_RECORDS = 100_000;
+
+    public PersistenceOptions {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory can not be null");
+        }
+        if (fsyncPolicy == null) {
+            throw new IllegalArgumentException("Fsync policy can not be null");
+        }
+        if (fsyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Fsync interval should be positive");
+        }
+        if (snapshotEveryRecords < 0) {
+            throw new IllegalArgumentException("Snapshot interval can not be negative");
+        }
+        if (storage == null) {
+            throw new IllegalArgumentException("Folder storage can not be null");
+        }
+    }
+
+    /**
+     * @return options which force every call and snapshot every 100 000 records
+     */
+    public static PersistenceOptions of(Path directory) {
+        return new PersistenceOptions(directory, FsyncPolicy.ALWAYS, DEFAULT_FSYNC_INTERVAL_MILLIS,
+            DEFAULT_SNAPSHOT_EVERY_RECORDS, FolderStorage.HASH);
+    }
+
+    public PersistenceOptions withFsyncPolicy(FsyncPolicy policy) {
+        return new PersistenceOptions(directory, policy, fsyncIntervalMillis, snapshotEveryRecords, storage);
+    }
+
+    public PersistenceOptions withSnapshotEveryRecords(long records) {
+        return new PersistenceOptions(directory, fsyncPolicy, fsyncIntervalMillis, records, storage);
+    }
+
+    public PersistenceOptions withStorage(FolderStorage folderStorage) {
+        return new PersistenceOptions(directory, fsyncPolicy, fsyncIntervalMillis, snapshotEveryRecords,
+            folderStorage);
+    }
+}
@@ -0,0 +1,452 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.IncomingMail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.MailClient;
+import bg.sofia.uni.fmi.mjt.mail.tsk.MailCursor;
+import bg.sofia.uni.fmi.mjt.mail.tsk.MailPage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.tsk.RuleSpec;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SortOrder;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.PersistenceException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.metadata.MailMetadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A mail client which keeps its state on disk.
+ * <p>
+ * Every successful mutating call is applied to an in-memory {@link Outlook} and then appended to a
+ * {@link WriteAheadLog}. The call returns once the record is durable as configured by the {@link FsyncPolicy}.
+ * Once a write of the log fails, every later mutating call fails with a {@link PersistenceException} before it is
+ * applied.
+ * Snapshots of the whole state are taken in the background every few records, and on {@link #open} the newest
+ * snapshot is loaded and the log after it is replayed.
+ * <p>
+ * Replay gives the same state only if the log holds the calls in an order which is equivalent to the one they were
+ * applied in. Calls which touch the same account are therefore serialized by a lock stripe of the account name, and
+ * a call holds the stripes of all the accounts it touches (in ascending order, so there is no deadlock) from applying
+ * the call until its record is appended. Adding an account changes how the senders and recipients of other calls
+ * are resolved, so it is exclusive, and so is capturing the state for a snapshot. Waiting for the record to become
+ * durable happens after all the locks are released, so that concurrent calls share a single log write.
+ */
+public class PersistentMailClient implements MailClient, Closeable {
+    private static final int STRIPE_COUNT = 64;
+
+    private final PersistenceOptions options;
+    private final Outlook outlook;
+    private final WriteAheadLog log;
+
+    private final ReadWriteLock stateLock;
+    private final Lock snapshotLock;
+    private final Lock[] stripes;
+
+    private final ExecutorService snapshotter;
+    private final AtomicBoolean snapshotScheduled;
+    private volatile long lastSnapshotLsn;
+
+    private PersistentMailClient(PersistenceOptions options, Outlook outlook, WriteAheadLog log, long snapshotLsn) {
+        this.options = options;
+        this.outlook = outlook;
+        this.log = log;
+        this.stateLock = new ReentrantReadWriteLock();
+        this.snapshotLock = new ReentrantLock();
+        this.stripes = new Lock[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotScheduled = new AtomicBoolean();
+        this.lastSnapshotLsn = snapshotLsn;
+    }
+
+    /**
+     * Opens the client stored in the directory of the options, or creates an empty one if there is nothing stored.
+     *
+     * @throws PersistenceException if the stored state can not be read
+     */
+    public static PersistentMailClient open(PersistenceOptions options) {
+        Path directory = options.directory();
+        try {
+            Files.createDirectories(directory);
+
+            long snapshotLsn = Snapshots.latestSnapshotLsn(directory);
+            Outlook outlook = snapshotLsn < 0 ? new Outlook(options.storage()) :
+                Snapshots.read(directory, snapshotLsn, options.storage());
+
+            long fromLsn = Math.max(snapshotLsn, 0);
+            long nextLsn = WriteAheadLog.replay(directory, fromLsn, (lsn, record) -> LogRecords.apply(record, outlook));
+
+            WriteAheadLog log = new WriteAheadLog(directory, options.fsyncPolicy(), options.fsyncIntervalMillis(),
+                nextLsn);
+            return new PersistentMailClient(options, outlook, log, fromLsn);
+        } catch (IOException e) {
+            throw new PersistenceException("Could not open the mail client stored in " + directory, e);
+        }
+    }
+
+    /**
+     * @return the in-memory client, which can be read from, but should not be changed directly
+     */
+    public Outlook getOutlook() {
+        return outlook;
+    }
+
+    @Override
+    public Account addNewAccount(String accountName, String email) {
+        Account account;
+        long lsn;
+        Lock lock = stateLock.writeLock();
+        lock.lock();
+        try {
+            checkLogWritable();
+            account = outlook.addNewAccount(accountName, email);
+            lsn = log.append(LogRecords.addNewAccount(accountName, email));
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+        return account;
+    }
+
+    @Override
+    public void createFolder(String accountName, String path) {
+        long lsn;
+        Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            List<Lock> locked = lockAccounts(List.of(accountName));
+            try {
+                checkLogWritable();
+                outlook.createFolder(accountName, path);
+                lsn = log.append(LogRecords.createFolder(accountName, path));
+            } finally {
+                unlock(locked);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    @Override
+    public void addRule(String accountName, String folderPath, String ruleDefinition, int priority) {
+        long lsn;
+        Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            List<Lock> locked = lockAccounts(List.of(accountName));
+            try {
+                checkLogWritable();
+                outlook.addRule(accountName, folderPath, ruleDefinition, priority);
+                lsn = log.append(LogRecords.addRule(accountName, folderPath, ruleDefinition, priority));
+            } finally {
+                unlock(locked);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    @Override
+    public void addRules(String accountName, List<RuleSpec> rules) {
+        // The rules are read twice, once by the client and once by the log, so they are copied first
+        List<RuleSpec> batch = rules == null ? null : new ArrayList<>(rules);
+
+        long lsn;
+        Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            List<Lock> locked = lockAccounts(Collections.singletonList(accountName));
+            try {
+                checkLogWritable();
+                outlook.addRules(accountName, batch);
+                lsn = log.append(LogRecords.addRules(accountName, batch));
+            } finally {
+                unlock(locked);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    @Override
+    public void receiveMail(String accountName, String mailMetadata, String mailContent) {
+        long lsn;
+        Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            List<Lock> locked = lockAccounts(List.of(accountName));
+            try {
+                checkLogWritable();
+                outlook.receiveMail(accountName, mailMetadata, mailContent);
+                lsn = log.append(LogRecords.receiveMail(accountName, mailMetadata, mailContent));
+            } finally {
+                unlock(locked);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    @Override
+    public void receiveMails(String accountName, Iterable<IncomingMail> mails) {
+        // The mails are read twice, once by the client and once by the log, so they are copied first
+        List<IncomingMail> batch = copyOf(mails);
+
+        long lsn;
+        Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            List<Lock> locked = lockAccounts(Collections.singletonList(accountName));
+            try {
+                checkLogWritable();
+                outlook.receiveMails(accountName, batch);
+                lsn = log.append(LogRecords.receiveMails(accountName, batch));
+            } finally {
+                unlock(locked);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    @Override
+    public void receiveMails(Map<String, ? extends Iterable<IncomingMail>> mailsByAccount) {
+        Map<String, List<IncomingMail>> batches = null;
+        if (mailsByAccount != null) {
+            batches = new LinkedHashMap<>();
+            for (var entry : mailsByAccount.entrySet()) {
+                batches.put(entry.getKey(), copyOf(entry.getValue()));
+            }
+        }
+
+        long lsn = -1;
+        Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            List<Lock> locked = lockAccounts(batches == null ? List.of() : batches.keySet());
+            try {
+                checkLogWritable();
+                outlook.receiveMails(batches);
+                for (var batch : batches.entrySet()) {
+                    lsn = log.append(LogRecords.receiveMails(batch.getKey(), batch.getValue()));
+                }
+            } finally {
+                unlock(locked);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (lsn >= 0) {
+            awaitDurable(lsn);
+        }
+    }
+
+    private static List<IncomingMail> copyOf(Iterable<IncomingMail> mails) {
+        if (mails == null) {
+            return null;
+        }
+
+        List<IncomingMail> copy = new ArrayList<>();
+        for (IncomingMail mail : mails) {
+            copy.add(mail);
+        }
+        return copy;
+    }
+
+    @Override
+    public Collection<Mail> getMailsFromFolder(String account, String folderPath) {
+        return outlook.getMailsFromFolder(account, folderPath);
+    }
+
+    @Override
+    public MailPage getMailsFromFolder(String account, String folderPath, MailCursor cursor, int limit,
+                                       SortOrder order) {
+        return outlook.getMailsFromFolder(account, folderPath, cursor, limit, order);
+    }
+
+    @Override
+    public void sendMail(String accountName, String mailMetadata, String mailContent) {
+        long lsn;
+        Lock lock = stateLock.readLock();
+        lock.lock();
+        try {
+            List<Lock> locked = lockAccounts(touchedBySend(accountName, mailMetadata));
+            try {
+                checkLogWritable();
+                outlook.sendMail(accountName, mailMetadata, mailContent);
+                lsn = log.append(LogRecords.sendMail(accountName, mailMetadata, mailContent));
+            } finally {
+                unlock(locked);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Resolves the recipients with the state lock held for reading. An account is added only with the lock held for
+     * writing, from applying the call until its record is appended, so a recipient can not be created between this
+     * resolution and the append of the send, and the record of the new account is always ordered before it.
+     *
+     * @return the sender and the local recipients of the mail, which are all changed by sending it
+     */
+    private List<String> touchedBySend(String accountName, String mailMetadata) {
+        List<String> touched = new ArrayList<>();
+        touched.add(accountName);
+        if (mailMetadata == null || mailMetadata.isBlank()) {
+            return touched;
+        }
+
+        MailMetadata metadata;
+        try {
+            metadata = new MailMetadata(mailMetadata);
+        } catch (RuntimeException e) {
+            // The client rejects the call with the right exception
+            return touched;
+        }
+        for (String recipient : metadata.getRecipients()) {
+            Account account = outlook.findAccountByEmail(recipient);
+            if (account != null) {
+                touched.add(account.name());
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Locks the stripes of the accounts in ascending order.
+     */
+    private List<Lock> lockAccounts(Collection<String> accountNames) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String accountName : accountNames) {
+            indexes.add(accountName == null ? 0 : Math.floorMod(accountName.hashCode(), STRIPE_COUNT));
+        }
+
+        List<Lock> locked = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            stripes[index].lock();
+            locked.add(stripes[index]);
+        }
+        return locked;
+    }
+
+    private static void unlock(List<Lock> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).unlock();
+        }
+    }
+
+    /**
+     * Rejects a call before it is applied once the log can not be written, so the in-memory state never gets ahead of
+     * the records which could be replayed.
+     */
+    private void checkLogWritable() {
+        try {
+            log.checkWritable();
+        } catch (IOException e) {
+            throw new PersistenceException("Could not write to the log", e);
+        }
+    }
+
+    private void awaitDurable(long lsn) {
+        try {
+            log.awaitDurable(lsn);
+        } catch (IOException e) {
+            throw new PersistenceException("Could not write to the log", e);
+        }
+
+        if (options.snapshotEveryRecords() > 0 && lsn + 1 - lastSnapshotLsn >= options.snapshotEveryRecords() &&
+            snapshotScheduled.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (PersistenceException e) {
+                    // The log still holds everything, the next snapshot will be tried after more records
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the log segments and snapshots it makes unnecessary.
+     * <p>
+     * Calls are held up only while the log is switched to a new segment and the folders are captured, which does
+     * not copy any mails. The snapshot is written while the calls go on. Snapshots are written one at a time.
+     *
+     * @throws PersistenceException if the snapshot can not be written
+     */
+    public void snapshot() {
+        snapshotLock.lock();
+        try {
+            long lsn;
+            List<Snapshots.AccountState> state;
+
+            Lock lock = stateLock.writeLock();
+            lock.lock();
+            try {
+                lsn = log.rotate();
+                state = Snapshots.capture(outlook);
+            } finally {
+                lock.unlock();
+            }
+
+            Snapshots.write(options.directory(), state, lsn);
+            lastSnapshotLsn = lsn;
+
+            log.deleteSegmentsBefore(lsn);
+            Snapshots.deleteSnapshotsBefore(options.directory(), lsn);
+        } catch (IOException e) {
+            throw new PersistenceException("Could not write a snapshot", e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the delivery workers of the client, waits for a running snapshot, and writes out and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        outlook.shutdown();
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+}
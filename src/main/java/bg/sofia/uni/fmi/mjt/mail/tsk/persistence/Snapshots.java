@@ -0,0 +1,261 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SystemAccount;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderSnapshot;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Full snapshots of the state of an {@link Outlook}.
+ * <p>
+ * A snapshot holds every account with its folders, rules and mails, and the LSN of the first log record which is
+ * not included in it. It is written to a temporary file which is renamed only once complete, so a snapshot file is
+ * either missing or whole. On restore the folders and rules are created first and the mails are put straight into
+ * their folders, so they are not routed by the rules again.
+ * <p>
+ * Snapshots are written in the compact encoding of {@link CompactSnapshots}, which is restored in parallel and
+ * without parsing any text. The snapshots of the earlier versions are still read: those of the first version hold
+ * a copy of the body in every mail, while those of the second write every distinct body once, the first time a
+ * mail refers to it, and refer to it by its number afterwards.
+ */
+final class Snapshots {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x4D4A5453;
+    private static final int VERSION = 3;
+    private static final int INLINE_BODIES_VERSION = 1;
+    private static final int SHARED_BODIES_VERSION = 2;
+    private static final int NO_BODY = -1;
+
+    private static final String ROOT = "/";
+    private static final String INBOX = "/inbox";
+    private static final String SENT = "/sent";
+
+    private Snapshots() {
+    }
+
+    static Path snapshotPath(Path directory, long lsn) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * The state of a single account at the moment it was captured.
+     */
+    record AccountState(String name, String email, Map<String, FolderSnapshot> folders, List<Rule> rules) {
+    }
+
+    /**
+     * Captures the state of the client without copying any mails. The state should not change during the call,
+     * but may change freely once it returns.
+     */
+    static List<AccountState> capture(Outlook outlook) {
+        List<AccountState> accounts = new ArrayList<>();
+        for (SystemAccount systemAccount : outlook.getSystemAccounts().values()) {
+            accounts.add(systemAccount.actor().call(() -> new AccountState(systemAccount.account().name(),
+                systemAccount.account().emailAddress(), systemAccount.directory().snapshotFolders(),
+                new ArrayList<>(systemAccount.rules()))));
+        }
+        return accounts;
+    }
+
+    /**
+     * Writes the captured state as the snapshot which ends right before the given LSN.
+     */
+    static void write(Path directory, List<AccountState> accounts, long lsn) throws IOException {
+        Path target = snapshotPath(directory, lsn);
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            writeState(out, accounts, lsn);
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeState(DataOutputStream out, List<AccountState> accounts, long lsn)
+        throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(lsn);
+        CompactSnapshots.write(out, accounts);
+    }
+
+    /**
+     * @return the LSN of the newest snapshot, or -1 if there is none
+     */
+    static long latestSnapshotLsn(Path directory) throws IOException {
+        long latest = -1;
+        for (long lsn : snapshotLsns(directory)) {
+            latest = Math.max(latest, lsn);
+        }
+        return latest;
+    }
+
+    static List<Long> snapshotLsns(Path directory) throws IOException {
+        List<Long> lsns = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+            SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                lsns.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                    name.length() - SNAPSHOT_SUFFIX.length())));
+            }
+        }
+        return lsns;
+    }
+
+    static Outlook read(Path directory, long lsn, FolderStorage storage) throws IOException {
+        try (InputStream stream = Files.newInputStream(snapshotPath(directory, lsn))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unknown snapshot format");
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != SHARED_BODIES_VERSION && version != INLINE_BODIES_VERSION) {
+                throw new IOException("Unknown snapshot version " + version);
+            }
+            if (in.readLong() != lsn) {
+                throw new IOException("Snapshot does not match its file name");
+            }
+
+            return switch (version) {
+                case VERSION -> CompactSnapshots.read(in, storage);
+                case SHARED_BODIES_VERSION -> readState(in, storage, new ArrayList<>());
+                default -> readState(in, storage, null);
+            };
+        }
+    }
+
+    /**
+     * @param bodies the bodies read so far, by their numbers, or null if every mail holds a copy of its body
+     */
+    private static Outlook readState(DataInputStream in, FolderStorage storage, List<String> bodies)
+        throws IOException {
+        Outlook outlook = new Outlook(storage);
+
+        int accountCount = in.readInt();
+        for (int i = 0; i < accountCount; i++) {
+            String name = BinaryFormat.readString(in);
+            outlook.addNewAccount(name, BinaryFormat.readString(in));
+
+            int folderCount = in.readInt();
+            List<String> paths = new ArrayList<>(folderCount);
+            for (int j = 0; j < folderCount; j++) {
+                String path = BinaryFormat.readString(in);
+                paths.add(path);
+                // Paths come sorted, so a folder always comes after its parent
+                if (!path.equals(ROOT) && !path.equals(INBOX) && !path.equals(SENT)) {
+                    outlook.createFolder(name, path);
+                }
+            }
+
+            int ruleCount = in.readInt();
+            for (int j = 0; j < ruleCount; j++) {
+                outlook.addRule(name, BinaryFormat.readString(in), BinaryFormat.readString(in), in.readInt());
+            }
+
+            SystemAccount account = outlook.getSystemAccounts().get(name);
+            for (String path : paths) {
+                int mailCount = in.readInt();
+                List<Mail> mails = new ArrayList<>(mailCount);
+                for (int j = 0; j < mailCount; j++) {
+                    mails.add(readMail(in, bodies));
+                }
+                account.actor().run(() -> account.directory().addEmails(path, mails));
+            }
+        }
+        return outlook;
+    }
+
+    private static Mail readMail(DataInputStream in, List<String> bodies) throws IOException {
+        Account sender = null;
+        if (in.readBoolean()) {
+            String email = BinaryFormat.readString(in);
+            sender = new Account(email, BinaryFormat.readString(in));
+        }
+
+        Set<String> recipients = null;
+        int recipientCount = in.readInt();
+        if (recipientCount >= 0) {
+            recipients = new HashSet<>();
+            for (int i = 0; i < recipientCount; i++) {
+                recipients.add(BinaryFormat.readString(in));
+            }
+        }
+
+        String subject = BinaryFormat.readString(in);
+        String body = bodies == null ? BinaryFormat.readString(in) : readBody(in, bodies);
+
+        LocalDateTime received = null;
+        if (in.readBoolean()) {
+            long epochSecond = in.readLong();
+            received = LocalDateTime.ofEpochSecond(epochSecond, in.readInt(), ZoneOffset.UTC);
+        }
+        return new Mail(sender, recipients, subject, body, received);
+    }
+
+    private static String readBody(DataInputStream in, List<String> bodies) throws IOException {
+        int id = in.readInt();
+        if (id == NO_BODY) {
+            return null;
+        }
+        if (id < bodies.size()) {
+            return bodies.get(id);
+        }
+        if (id != bodies.size()) {
+            throw new IOException("Snapshot refers to an unknown body " + id);
+        }
+
+        String body = BinaryFormat.readString(in);
+        bodies.add(body);
+        return body;
+    }
+
+    /**
+     * Deletes the snapshots older than the given one, and the temporary files of unfinished snapshots.
+     */
+    static void deleteSnapshotsBefore(Path directory, long lsn) throws IOException {
+        for (long older : snapshotLsns(directory)) {
+            if (older < lsn) {
+                Files.deleteIfExists(snapshotPath(directory, older));
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMPORARY_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of records, split into segments.
+ * <p>
+ * Every record gets a log sequence number (LSN), and the name of a segment holds the LSN of its first record.
+ * A record is written as its length, the CRC32 of its bytes, and the bytes themselves, so a record torn by a crash
+ * is detected and cut off on recovery.
+ * <p>
+ * Appending only copies the record into a memory buffer. The buffer is written out by the first caller which waits
+ * for its record in {@link #awaitDurable(long)} - the leader - together with the records appended by everyone else
+ * in the meantime, and the other waiters are released when the leader is done (group commit). With
+ * {@link FsyncPolicy#ALWAYS} the leader also forces the segment before releasing them.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService forcer;
+
+    private final ReentrantLock lock;
+    private final Condition written;
+
+    private ByteArrayOutputStream pending;
+    private FileChannel segment;
+    private long nextLsn;
+    private long writtenLsn;
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Opens the log for appending after the records up to {@code nextLsn} (exclusive), which should be the value
+     * returned by {@link #replay(Path, long, RecordConsumer)}.
+     */
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, long nextLsn)
+        throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.lock = new ReentrantLock();
+        this.written = lock.newCondition();
+        this.pending = new ByteArrayOutputStream();
+        this.nextLsn = nextLsn;
+        this.writtenLsn = nextLsn;
+        this.segment = openSegment(nextLsn);
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            this.forcer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            forcer.scheduleWithFixedDelay(this::forceQuietly, fsyncIntervalMillis, fsyncIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        } else {
+            this.forcer = null;
+        }
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        // A segment with the same first LSN can only be left over without any valid record, so it is overwritten
+        return FileChannel.open(segmentPath(directory, firstLsn), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    static Path segmentPath(Path directory, long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Adds the record to the log buffer. The record is not written until someone waits for it.
+     *
+     * @return the log sequence number of the record
+     */
+    public long append(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The log is closed");
+            }
+
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(record.length);
+            out.writeInt((int) crc.getValue());
+            out.write(record);
+            return nextLsn++;
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to a memory buffer can not fail", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks that records can still be appended and made durable. A write which failed once fails every record after
+     * it, so the callers check this before they change anything which the log would have to hold.
+     *
+     * @throws IOException           if an earlier write of the log failed
+     * @throws IllegalStateException if the log is closed
+     */
+    public void checkWritable() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The log is closed");
+            }
+            if (failure != null) {
+                throw new IOException("The log could not be written", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with the given LSN is written, and forced if the fsync policy is
+     * {@link FsyncPolicy#ALWAYS}.
+     */
+    public void awaitDurable(long lsn) throws IOException {
+        lock.lock();
+        try {
+            if (lsn >= nextLsn) {
+                throw new IllegalArgumentException("No record with LSN " + lsn + " has been appended");
+            }
+            while (writtenLsn <= lsn) {
+                if (failure != null) {
+                    throw new IOException("The log could not be written", failure);
+                }
+                if (flushing) {
+                    written.awaitUninterruptibly();
+                } else {
+                    flushPending(fsyncPolicy == FsyncPolicy.ALWAYS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes out the buffer as the leader. Called with the lock held, which is released during the write.
+     */
+    private void flushPending(boolean force) throws IOException {
+        flushing = true;
+        ByteArrayOutputStream batch = pending;
+        long batchEnd = nextLsn;
+        pending = new ByteArrayOutputStream();
+        FileChannel channel = segment;
+
+        IOException error = null;
+        lock.unlock();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+            flushing = false;
+            if (error == null) {
+                writtenLsn = batchEnd;
+            } else {
+                // The records of a failed batch are lost, so nothing after them may be reported as durable
+                failure = error;
+            }
+            written.signalAll();
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Writes and forces everything appended so far, and starts a new segment with the next record.
+     *
+     * @return the LSN of the first record of the new segment
+     */
+    public long rotate() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                written.awaitUninterruptibly();
+            }
+            flushPending(true);
+
+            segment.close();
+            try {
+                segment = openSegment(nextLsn);
+            } catch (IOException e) {
+                // The closed segment stays in place, so the records appended from now on can not be written
+                failure = e;
+                throw e;
+            }
+            return nextLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            FileChannel channel;
+            lock.lock();
+            try {
+                channel = segment;
+            } finally {
+                lock.unlock();
+            }
+            if (channel.isOpen()) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            // The segment may be closed by a rotation in the meantime, it is forced by the rotation then
+        }
+    }
+
+    /**
+     * Deletes the segments whose records all come before the given LSN.
+     */
+    public void deleteSegmentsBefore(long lsn) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i < starts.size(); i++) {
+            long end = i + 1 < starts.size() ? starts.get(i + 1) : Long.MAX_VALUE;
+            if (end <= lsn) {
+                Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+            }
+        }
+    }
+
+    public long getNextLsn() {
+        lock.lock();
+        try {
+            return nextLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (forcer != null) {
+            // Not shutdownNow - interrupting a thread in FileChannel.force closes the segment under the pending records
+            forcer.shutdown();
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (failure != null) {
+                closed = true;
+                segment.close();
+                throw new IOException("The log could not be written", failure);
+            }
+            while (flushing) {
+                written.awaitUninterruptibly();
+            }
+            flushPending(true);
+            closed = true;
+            segment.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Consumer of the records read from the log.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long lsn, byte[] record) throws IOException;
+    }
+
+    /**
+     * Reads the records of all segments in order, and passes the ones from {@code fromLsn} on to the consumer.
+     * Reading stops at the first torn or corrupted record, and the segment is cut off right before it.
+     *
+     * @return the LSN after the last valid record
+     */
+    public static long replay(Path directory, long fromLsn, RecordConsumer consumer) throws IOException {
+        long nextLsn = fromLsn;
+
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i < starts.size(); i++) {
+            long start = starts.get(i);
+            if (start > nextLsn) {
+                throw new IOException("Missing log records from " + nextLsn + " to " + start);
+            }
+
+            Path path = segmentPath(directory, start);
+            SegmentReader reader = new SegmentReader(Files.readAllBytes(path));
+            long lsn = start;
+            byte[] record;
+            while ((record = reader.next()) != null) {
+                if (lsn >= fromLsn) {
+                    consumer.accept(lsn, record);
+                }
+                lsn++;
+            }
+
+            if (reader.isTorn() && i + 1 < starts.size()) {
+                // Segments are forced before the next one is started, so only the last one can be torn by a crash
+                throw new IOException("Corrupted log segment " + path);
+            }
+            if (reader.isTorn()) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(reader.validLength());
+                    channel.force(false);
+                }
+            }
+            nextLsn = Math.max(nextLsn, lsn);
+        }
+        return nextLsn;
+    }
+
+    static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+            SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        starts.sort(null);
+        return starts;
+    }
+
+    private static final class SegmentReader {
+        private final ByteBuffer bytes;
+        private boolean torn;
+
+        private SegmentReader(byte[] content) {
+            this.bytes = ByteBuffer.wrap(content);
+        }
+
+        private byte[] next() {
+            if (bytes.remaining() == 0) {
+                return null;
+            }
+            if (bytes.remaining() < HEADER_SIZE) {
+                torn = true;
+                return null;
+            }
+
+            int position = bytes.position();
+            int length = bytes.getInt();
+            int crc = bytes.getInt();
+            if (length < 0 || length > bytes.remaining()) {
+                bytes.position(position);
+                torn = true;
+                return null;
+            }
+
+            byte[] record = new byte[length];
+            bytes.get(record);
+
+            CRC32 actual = new CRC32();
+            actual.update(record);
+            if ((int) actual.getValue() != crc) {
+                bytes.position(position);
+                torn = true;
+                return null;
+            }
+            return record;
+        }
+
+        private boolean isTorn() {
+            return torn;
+        }
+
+        private int validLength() {
+            return bytes.position();
+        }
+    }
+}
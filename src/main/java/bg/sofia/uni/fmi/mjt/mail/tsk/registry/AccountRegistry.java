@@ -0,0 +1,121 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.registry;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SystemAccount;
+import bg.sofia.uni.fmi.mjt.mail.tsk.body.BodyStore;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountAlreadyExistsException;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps all system accounts of a mail client, indexed both by account name and by email address.
+ * <p>
+ * The name index is the primary one and is exposed as a read-only map view. The email index is keyed by the
+ * normalized email address (see {@link #normalizeEmail(String)}), so resolving the sender or the recipients of a mail
+ * costs a single hash lookup no matter how many accounts are registered. Both indexes are updated together on
+ * every mutation.
+ * <p>
+ * The registry is thread-safe. Lookups do not lock, while mutations are serialized, so that the uniqueness checks
+ * and the updates of both indexes happen atomically.
+ */
+public class AccountRegistry {
+    private final Map<String, SystemAccount> accountsByName;
+    private final Map<String, SystemAccount> accountsByEmail;
+    private final FolderStorage storage;
+    private final BodyStore bodies;
+
+    public AccountRegistry() {
+        this(FolderStorage.HASH);
+    }
+
+    /**
+     * @param storage how the folders of the registered accounts keep their mails
+     */
+    public AccountRegistry(FolderStorage storage) {
+        this(storage, new BodyStore());
+    }
+
+    /**
+     * @param storage how the folders of the registered accounts keep their mails
+     * @param bodies  the store of the bodies, shared by all the registered accounts
+     */
+    public AccountRegistry(FolderStorage storage, BodyStore bodies) {
+        this.storage = storage;
+        this.bodies = bodies;
+        this.accountsByName = new ConcurrentHashMap<>();
+        this.accountsByEmail = new ConcurrentHashMap<>();
+    }
+
+    public static String normalizeEmail(String email) {
+        return email.strip().toLowerCase(Locale.ROOT);
+    }
+
+    public boolean containsName(String accountName) {
+        return accountsByName.containsKey(accountName);
+    }
+
+    public boolean containsEmail(String email) {
+        return accountsByEmail.containsKey(normalizeEmail(email));
+    }
+
+    public SystemAccount getByName(String accountName) {
+        return accountsByName.get(accountName);
+    }
+
+    /**
+     * @return the system account owning the email address, or null if the address does not belong to the client
+     */
+    public SystemAccount getByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return accountsByEmail.get(normalizeEmail(email));
+    }
+
+    /**
+     * Registers a new account in both indexes.
+     *
+     * @throws AccountAlreadyExistsException if an account with the same name or the same normalized email exists
+     */
+    public synchronized SystemAccount add(Account account) {
+        if (accountsByName.containsKey(account.name())) {
+            throw new AccountAlreadyExistsException("Account with the same name already exists");
+        }
+
+        String email = normalizeEmail(account.emailAddress());
+        if (accountsByEmail.containsKey(email)) {
+            throw new AccountAlreadyExistsException("Account with the same email address already exists");
+        }
+
+        SystemAccount systemAccount = SystemAccount.of(account, storage, bodies);
+        accountsByName.put(account.name(), systemAccount);
+        accountsByEmail.put(email, systemAccount);
+
+        return systemAccount;
+    }
+
+    /**
+     * Removes the account from both indexes.
+     *
+     * @return the removed system account, or null if no account with this name exists
+     */
+    public synchronized SystemAccount remove(String accountName) {
+        SystemAccount removed = accountsByName.remove(accountName);
+        if (removed != null) {
+            accountsByEmail.remove(normalizeEmail(removed.account().emailAddress()));
+        }
+        return removed;
+    }
+
+    public int size() {
+        return accountsByName.size();
+    }
+
+    public Map<String, SystemAccount> asMap() {
+        return Collections.unmodifiableMap(accountsByName);
+    }
+}
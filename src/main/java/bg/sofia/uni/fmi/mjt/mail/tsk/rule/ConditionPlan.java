@@ -0,0 +1,116 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.AbstractKeywordCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.AbstractRuleCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.KeywordMatches;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The order in which a rule evaluates its conditions.
+ * <p>
+ * Empty conditions fit every mail, so they are left out. The others start ordered by their estimated cost, and
+ * every {@link #REORDER_INTERVAL} evaluations they are ordered again by their cost divided by the share of the mails
+ * they have rejected. For independent conditions that order rejects a mail which does not fit the rule at the lowest
+ * expected cost. The counts are halved on every reordering, so the plan keeps up as the mails change.
+ * <p>
+ * A rule may be evaluated by several threads at once. The counts are updated without synchronization, since a lost
+ * update only makes the statistics slightly less precise, and a new order is published as a new array, so every
+ * evaluation sees a complete order.
+ */
+final class ConditionPlan {
+    static final int REORDER_INTERVAL = 1024;
+
+    private final AbstractRuleCondition[] conditions;
+    private final int[] evaluations;
+    private final int[] rejections;
+
+    private volatile int[] order;
+    private int sinceReorder;
+
+    ConditionPlan(Collection<? extends AbstractRuleCondition> allConditions) {
+        List<AbstractRuleCondition> nonEmpty = new ArrayList<>();
+        for (AbstractRuleCondition condition : allConditions) {
+            if (!condition.isEmptyCondition()) {
+                nonEmpty.add(condition);
+            }
+        }
+
+        this.conditions = nonEmpty.toArray(new AbstractRuleCondition[0]);
+        this.evaluations = new int[conditions.length];
+        this.rejections = new int[conditions.length];
+        this.order = orderByScore();
+    }
+
+    /**
+     * @param matches the keyword matches of the mail, or null to search the mail itself
+     */
+    boolean fits(Mail mail, KeywordMatches matches) {
+        boolean fits = true;
+        for (int index : order) {
+            AbstractRuleCondition condition = conditions[index];
+            evaluations[index]++;
+
+            boolean conditionFits = matches != null && condition instanceof AbstractKeywordCondition keywordCondition ?
+                keywordCondition.doesConditionFitMatches(matches) : condition.doesConditionFitMail(mail);
+            if (!conditionFits) {
+                rejections[index]++;
+                fits = false;
+                break;
+            }
+        }
+
+        if (++sinceReorder >= REORDER_INTERVAL) {
+            reorder();
+        }
+        return fits;
+    }
+
+    /**
+     * @return the non-empty conditions, in the order they are evaluated now
+     */
+    List<AbstractRuleCondition> getOrder() {
+        List<AbstractRuleCondition> result = new ArrayList<>(conditions.length);
+        for (int index : order) {
+            result.add(conditions[index]);
+        }
+        return result;
+    }
+
+    private synchronized void reorder() {
+        if (sinceReorder < REORDER_INTERVAL) {
+            return;
+        }
+
+        order = orderByScore();
+        for (int i = 0; i < conditions.length; i++) {
+            evaluations[i] /= 2;
+            rejections[i] /= 2;
+        }
+        sinceReorder = 0;
+    }
+
+    /**
+     * Insertion sort by the expected cost of rejecting a mail - there are at most four conditions.
+     */
+    private int[] orderByScore() {
+        double[] scores = new double[conditions.length];
+        int[] result = new int[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            // Without any evaluations every condition is taken to reject half of the mails
+            double rejectedShare = (rejections[i] + 1.0) / (evaluations[i] + 2.0);
+            scores[i] = conditions[i].getCost() / rejectedShare;
+
+            int position = i;
+            while (position > 0 && scores[result[position - 1]] > scores[i]) {
+                result[position] = result[position - 1];
+                position--;
+            }
+            result[position] = i;
+        }
+        return result;
+    }
+}
@@ -7,25 +7,65 @@ import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.RecipientsIncludesCondition
 import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.AbstractRuleCondition;
 import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.SubjectIncludesCondition;
 import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.SubjectOrBodyIncludesCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.KeywordMatches;
 
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Rule {
+    /**
+     * Folder id of a rule which is not added to an account yet.
+     */
+    public static final int NO_FOLDER = -1;
+
     private final Set<AbstractRuleCondition> conditions;
+    private final ConditionPlan plan;
+    private final LongAdder hits;
 
     private final int priority;
     private final String folderPath;
+    private final String definition;
+    private int folderId = NO_FOLDER;
 
     public Rule(String folderPath, String definition, int priority) {
         this.folderPath = folderPath;
         this.priority = priority;
+        this.definition = definition;
         this.conditions = new HashSet<>();
 
         initConditions();
         isDefinitionCorrect(definition);
         setConditions(definition);
+        this.plan = new ConditionPlan(conditions);
+        this.hits = new LongAdder();
+    }
+
+    /**
+     * Creates a rule from conditions which were already parsed from its definition, so the definition is kept but
+     * not parsed again.
+     *
+     * @param conditionValues the values of the conditions, keyed by {@link AbstractRuleCondition#getKey()}. The
+     *                        conditions without values are empty.
+     */
+    public Rule(String folderPath, String definition, int priority, Map<String, Set<String>> conditionValues) {
+        this.folderPath = folderPath;
+        this.priority = priority;
+        this.definition = definition;
+        this.conditions = new HashSet<>();
+
+        initConditions();
+        for (var condition : conditions) {
+            Set<String> values = conditionValues.get(condition.getKey());
+            if (values != null) {
+                condition.setValues(values);
+            }
+        }
+        this.plan = new ConditionPlan(conditions);
+        this.hits = new LongAdder();
     }
 
     private void initConditions() {
@@ -49,13 +89,37 @@ public class Rule {
         }
     }
 
+    /**
+     * The conditions are evaluated in the order of a {@link ConditionPlan} - the cheap and selective ones first.
+     */
     public boolean doesRuleFitMail(Mail mail) {
-        for (var condition : conditions) {
-            if (!condition.doesConditionFitMail(mail)) {
-                return false;
-            }
-        }
-        return true;
+        return plan.fits(mail, null);
+    }
+
+    /**
+     * Same as {@link #doesRuleFitMail(Mail)}, but the keyword conditions are answered from the keyword matches of the
+     * mail, which are shared between all the rules of the account.
+     */
+    public boolean doesRuleFitMail(Mail mail, KeywordMatches matches) {
+        return plan.fits(mail, matches);
+    }
+
+    /**
+     * @return the non-empty conditions, in the order they are evaluated now
+     */
+    List<AbstractRuleCondition> getEvaluationOrder() {
+        return plan.getOrder();
+    }
+
+    /**
+     * @return the number of mails routed by the rule, when it was the rule with the highest priority to fit them
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    void recordHit() {
+        hits.increment();
     }
 
     public int getPriority() {
@@ -66,6 +130,28 @@ public class Rule {
         return folderPath;
     }
 
+    /**
+     * @return the id of the folder of the rule in the directory of its account, or {@link #NO_FOLDER} if the rule
+     * is not added to an account
+     */
+    public int getFolderId() {
+        return folderId;
+    }
+
+    /**
+     * Called when the rule is added to an account, so the mails it routes are stored without looking up the path.
+     */
+    public void setFolderId(int folderId) {
+        this.folderId = folderId;
+    }
+
+    /**
+     * @return the rule definition the rule was created from
+     */
+    public String getDefinition() {
+        return definition;
+    }
+
     public Set<AbstractRuleCondition> getConditions() {
         return conditions;
     }
@@ -0,0 +1,93 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.FromCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.RecipientsIncludesCondition;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from email addresses to the rules that mention them.
+ * <p>
+ * Rules are identified by their position in priority order. A rule with a from condition is indexed only by its
+ * sender addresses, since no other mail can fit it. A rule with a recipients-includes condition but without a from
+ * condition is indexed by its recipient addresses. All the other rules have no address condition, so they are kept
+ * in a residual set and are a candidate for every mail.
+ */
+public class RuleCandidateIndex {
+    private final Map<String, BitSet> rulesBySender;
+    private final Map<String, BitSet> rulesByRecipient;
+    private final BitSet residualRules;
+
+    public RuleCandidateIndex(Rule[] rulesByPriority) {
+        this.rulesBySender = new HashMap<>();
+        this.rulesByRecipient = new HashMap<>();
+        this.residualRules = new BitSet(rulesByPriority.length);
+
+        for (int i = 0; i < rulesByPriority.length; i++) {
+            Set<String> senders = Set.of();
+            Set<String> recipients = Set.of();
+
+            for (var condition : rulesByPriority[i].getConditions()) {
+                if (condition instanceof FromCondition from) {
+                    senders = from.getAddresses();
+                } else if (condition instanceof RecipientsIncludesCondition recipientsIncludes) {
+                    recipients = recipientsIncludes.getAddresses();
+                }
+            }
+
+            if (!senders.isEmpty()) {
+                index(rulesBySender, senders, i);
+            } else if (!recipients.isEmpty()) {
+                index(rulesByRecipient, recipients, i);
+            } else {
+                residualRules.set(i);
+            }
+        }
+    }
+
+    private static void index(Map<String, BitSet> index, Set<String> addresses, int rule) {
+        for (String address : addresses) {
+            index.computeIfAbsent(address, a -> new BitSet()).set(rule);
+        }
+    }
+
+    /**
+     * @return the positions of the rules which can possibly fit the mail. Every rule outside of the result is
+     * certain not to fit it.
+     */
+    public BitSet candidatesFor(Mail mail) {
+        BitSet candidates = (BitSet) residualRules.clone();
+
+        if (mail.sender() != null) {
+            BitSet bySender = rulesBySender.get(mail.sender().emailAddress());
+            if (bySender != null) {
+                candidates.or(bySender);
+            }
+        }
+
+        if (rulesByRecipient.isEmpty()) {
+            return candidates;
+        }
+
+        // Walk whichever side is smaller - the recipients of the mail or the indexed recipient addresses
+        if (mail.recipients().size() <= rulesByRecipient.size()) {
+            for (String recipient : mail.recipients()) {
+                BitSet byRecipient = rulesByRecipient.get(recipient);
+                if (byRecipient != null) {
+                    candidates.or(byRecipient);
+                }
+            }
+        } else {
+            for (var entry : rulesByRecipient.entrySet()) {
+                if (mail.recipients().contains(entry.getKey())) {
+                    candidates.or(entry.getValue());
+                }
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,158 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.comparators.RuleByPriorityComparator;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.KeywordMatcher;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.KeywordMatches;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The rules of an account, ordered by priority.
+ * <p>
+ * Besides being a regular set, it keeps the keywords of all its rules compiled into a {@link KeywordMatcher}, so that
+ * routing a mail scans its subject and body once instead of once per keyword of every rule. It also keeps a
+ * {@link RuleCandidateIndex}, so that only the rules which mention the sender or a recipient of the mail, or have no
+ * address condition at all, are evaluated. Both are rebuilt lazily on the first lookup after the rules have changed.
+ */
+public class RuleSet extends AbstractSet<Rule> {
+    private final TreeSet<Rule> rules;
+    private final LongAdder routedMails;
+    private final LongAdder evaluatedRules;
+
+    private Rule[] rulesByPriority;
+    private RuleCandidateIndex candidateIndex;
+    private KeywordMatcher keywordMatcher;
+
+    public RuleSet() {
+        this.rules = new TreeSet<>(new RuleByPriorityComparator());
+        this.routedMails = new LongAdder();
+        this.evaluatedRules = new LongAdder();
+    }
+
+    @Override
+    public boolean add(Rule rule) {
+        boolean added = rules.add(rule);
+        if (added) {
+            invalidate();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        boolean removed = rules.remove(o);
+        if (removed) {
+            invalidate();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return rules.contains(o);
+    }
+
+    @Override
+    public void clear() {
+        rules.clear();
+        invalidate();
+    }
+
+    @Override
+    public Iterator<Rule> iterator() {
+        Iterator<Rule> it = rules.iterator();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Rule next() {
+                return it.next();
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+                invalidate();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * The found rule gets its hit counted (see {@link Rule#getHitCount()}).
+     *
+     * @return the rule with the highest priority which fits the mail, or null if no rule fits it
+     */
+    public Rule findRule(Mail mail) {
+        routedMails.increment();
+        if (rules.isEmpty()) {
+            return null;
+        }
+        compile();
+
+        BitSet candidates = candidateIndex.candidatesFor(mail);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        // Candidates are positions in priority order, so the first fitting one has the highest priority
+        KeywordMatches matches = keywordMatcher.matchesFor(mail);
+        int evaluated = 0;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            evaluated++;
+            if (rulesByPriority[i].doesRuleFitMail(mail, matches)) {
+                evaluatedRules.add(evaluated);
+                rulesByPriority[i].recordHit();
+                return rulesByPriority[i];
+            }
+        }
+        evaluatedRules.add(evaluated);
+        return null;
+    }
+
+    /**
+     * @return the number of mails passed to {@link #findRule(Mail)}. Like the other counters, it may be read from any
+     * thread.
+     */
+    public long getRoutedMailCount() {
+        return routedMails.sum();
+    }
+
+    /**
+     * @return the number of rules evaluated by {@link #findRule(Mail)}, all mails together. Rules which could not fit
+     * a mail by its addresses are not evaluated, and are not counted.
+     */
+    public long getEvaluatedRuleCount() {
+        return evaluatedRules.sum();
+    }
+
+    private void compile() {
+        if (rulesByPriority != null) {
+            return;
+        }
+
+        Rule[] ordered = rules.toArray(new Rule[0]);
+        candidateIndex = new RuleCandidateIndex(ordered);
+        keywordMatcher = new KeywordMatcher(rules);
+        rulesByPriority = ordered;
+    }
+
+    private void invalidate() {
+        rulesByPriority = null;
+        candidateIndex = null;
+        keywordMatcher = null;
+    }
+}
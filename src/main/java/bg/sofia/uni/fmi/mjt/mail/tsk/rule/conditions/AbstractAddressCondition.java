@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions;
+
+import java.util.Set;
+
+public abstract class AbstractAddressCondition extends AbstractRuleCondition {
+
+    protected AbstractAddressCondition(String key) {
+        super(key);
+    }
+
+    public Set<String> getAddresses() {
+        return values;
+    }
+}
@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.KeywordMatches;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.TextSearch;
+
+import java.util.Set;
+
+public abstract class AbstractKeywordCondition extends AbstractRuleCondition {
+    private static final String[] NO_KEYWORDS = new String[0];
+
+    // The keywords once more, as an array - iterating it allocates nothing, unlike iterating the set
+    private String[] keywords = NO_KEYWORDS;
+
+    protected AbstractKeywordCondition(String key) {
+        super(key);
+    }
+
+    @Override
+    public void setValues(Set<String> values) {
+        super.setValues(values);
+        keywords = values.toArray(NO_KEYWORDS);
+    }
+
+    public Set<String> getKeywords() {
+        return values;
+    }
+
+    /**
+     * @return true if the keywords may also be found in the body of the mail, false if only the subject counts
+     */
+    public abstract boolean searchesBody();
+
+    @Override
+    public boolean doesConditionFitMail(Mail mail) {
+        return doesConditionFitText(mail.subject(), mail.body());
+    }
+
+    /**
+     * Same as {@link #doesConditionFitMail}, but for a mail given by its subject and body only. The two are searched
+     * one after the other, in place - a keyword never matches across them, and the check allocates nothing.
+     *
+     * @param body the body of the mail, not looked at if the condition does not search the body
+     */
+    public boolean doesConditionFitText(CharSequence subject, CharSequence body) {
+        for (String keyword : keywords) {
+            if (!TextSearch.contains(subject, keyword) && !(searchesBody() && TextSearch.contains(body, keyword))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #doesConditionFitMail}, but answered from the precomputed keyword matches of the mail
+     * instead of searching the mail again.
+     */
+    public abstract boolean doesConditionFitMatches(KeywordMatches matches);
+}
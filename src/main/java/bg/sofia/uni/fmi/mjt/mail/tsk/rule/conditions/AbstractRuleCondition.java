@@ -19,7 +19,25 @@ public abstract class AbstractRuleCondition {
 
     public void setValues(String text) {
         String line = KeyFromTextToValueLineParser.getValueLine(key, text);
-        this.values = CommaSeparatedValuesToSetParser.getSet(line);
+        setValues(CommaSeparatedValuesToSetParser.getSet(line));
+    }
+
+    /**
+     * Same as {@link #setValues(String)}, with the values already parsed from the rule definition.
+     */
+    public void setValues(Set<String> values) {
+        this.values = values;
+    }
+
+    /**
+     * @return the key which starts the line of the condition in a rule definition, such as {@code "from:"}
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public Set<String> getValues() {
+        return values;
     }
 
     public boolean isTextCorrect(String text) {
@@ -32,6 +50,12 @@ public abstract class AbstractRuleCondition {
 
     public abstract boolean doesConditionFitMail(Mail mail);
 
+    /**
+     * Rough cost of evaluating the condition on a typical mail, relative to comparing the sender with one address.
+     * Rules evaluate their cheaper conditions first.
+     */
+    public abstract int getCost();
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
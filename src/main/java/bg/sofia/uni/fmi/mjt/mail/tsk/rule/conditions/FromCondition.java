@@ -2,7 +2,8 @@ package bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions;
 
 import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
 
-public class FromCondition extends AbstractRuleCondition {
+public class FromCondition extends AbstractAddressCondition {
+    private static final int ADDRESS_COST = 1;
 
     public FromCondition() {
         super("from:");
@@ -14,6 +15,10 @@ public class FromCondition extends AbstractRuleCondition {
             return true;
         }
 
+        if (mail.sender() == null) {
+            return false;
+        }
+
         for (var value : values) {
             if (!mail.sender().emailAddress().equals(value)) {
                 return false;
@@ -21,4 +26,9 @@ public class FromCondition extends AbstractRuleCondition {
         }
         return true;
     }
+
+    @Override
+    public int getCost() {
+        return ADDRESS_COST * values.size();
+    }
 }
@@ -2,7 +2,8 @@ package bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions;
 
 import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
 
-public class RecipientsIncludesCondition extends AbstractRuleCondition {
+public class RecipientsIncludesCondition extends AbstractAddressCondition {
+    private static final int ADDRESS_COST = 2;
 
     public RecipientsIncludesCondition() {
         super("recipients-includes:");
@@ -21,4 +22,9 @@ public class RecipientsIncludesCondition extends AbstractRuleCondition {
         }
         return false;
     }
+
+    @Override
+    public int getCost() {
+        return ADDRESS_COST * values.size();
+    }
 }
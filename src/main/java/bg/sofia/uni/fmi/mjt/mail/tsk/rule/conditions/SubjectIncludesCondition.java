@@ -1,24 +1,31 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions;
 
-import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.KeywordMatches;
 
-public class SubjectIncludesCondition extends AbstractRuleCondition {
+public class SubjectIncludesCondition extends AbstractKeywordCondition {
+    private static final int KEYWORD_COST = 8;
 
     public SubjectIncludesCondition() {
         super("subject-includes:");
     }
 
     @Override
-    public boolean doesConditionFitMail(Mail mail) {
-        if (isEmptyCondition()) {
-            return true;
-        }
+    public boolean searchesBody() {
+        return false;
+    }
 
+    @Override
+    public boolean doesConditionFitMatches(KeywordMatches matches) {
         for (var value : values) {
-            if (!mail.subject().contains(value)) {
+            if (!matches.isInSubject(value)) {
                 return false;
             }
         }
         return true;
     }
+
+    @Override
+    public int getCost() {
+        return KEYWORD_COST * values.size();
+    }
 }
@@ -1,26 +1,32 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions;
 
-import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher.KeywordMatches;
 
-public class SubjectOrBodyIncludesCondition extends AbstractRuleCondition {
+public class SubjectOrBodyIncludesCondition extends AbstractKeywordCondition {
+    // Bodies are usually many times longer than subjects
+    private static final int KEYWORD_COST = 64;
 
     public SubjectOrBodyIncludesCondition() {
         super("subject-or-body-includes:");
     }
 
     @Override
-    public boolean doesConditionFitMail(Mail mail) {
-        if (isEmptyCondition()) {
-            return true;
-        }
-
-        String text = mail.subject() + mail.body();
+    public boolean searchesBody() {
+        return true;
+    }
 
+    @Override
+    public boolean doesConditionFitMatches(KeywordMatches matches) {
         for (var value : values) {
-            if (!text.contains(value)) {
+            if (!matches.isInSubjectOrBody(value)) {
                 return false;
             }
         }
         return true;
     }
+
+    @Override
+    public int getCost() {
+        return KEYWORD_COST * values.size();
+    }
 }
@@ -0,0 +1,255 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Aho-Corasick automaton over a fixed set of keywords.
+ * <p>
+ * Each keyword is identified by an id chosen by the caller. A single forward pass over a text reports every keyword
+ * that occurs in it, regardless of how many keywords the automaton holds. The automaton is immutable once built and
+ * can be shared between threads.
+ * <p>
+ * The failure links are folded into a complete transition table, so the scan makes exactly one table lookup per
+ * character. To keep the table small, its columns are the distinct characters of the keywords only - every other
+ * character leads straight back to the root.
+ */
+public class KeywordAutomaton {
+    private static final int ROOT = 0;
+    private static final int OTHER_CHARACTER = 0;
+    private static final int ASCII_SIZE = 128;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int[] asciiClasses;
+    private final char[] nonAsciiCharacters;
+    private final int asciiClassCount;
+    private final int classCount;
+
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] patternIds;
+
+    /**
+     * @param keywords   the keywords to search for
+     * @param keywordIds the id reported for each keyword, in the same order as the keywords
+     */
+    public KeywordAutomaton(List<String> keywords, int[] keywordIds) {
+        if (keywords.size() != keywordIds.length) {
+            throw new IllegalArgumentException("Every keyword should have exactly one id");
+        }
+
+        this.asciiClasses = new int[ASCII_SIZE];
+        this.nonAsciiCharacters = classifyCharacters(keywords, asciiClasses);
+        this.asciiClassCount = countAsciiClasses(asciiClasses);
+        this.classCount = asciiClassCount + nonAsciiCharacters.length + 1;
+
+        List<Map<Integer, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> terminals = new ArrayList<>();
+        newState(trie, terminals);
+
+        for (int i = 0; i < keywords.size(); i++) {
+            String keyword = keywords.get(i);
+            int state = ROOT;
+            for (int j = 0; j < keyword.length(); j++) {
+                int characterClass = classOf(keyword.charAt(j));
+                Integer next = trie.get(state).get(characterClass);
+                if (next == null) {
+                    next = newState(trie, terminals);
+                    trie.get(state).put(characterClass, next);
+                }
+                state = next;
+            }
+            terminals.get(state).add(keywordIds[i]);
+        }
+
+        this.transitions = new int[trie.size() * classCount];
+        this.outputs = new int[trie.size()][];
+        this.patternIds = distinct(keywordIds);
+
+        buildTransitions(trie, terminals);
+        encodeTransitions();
+    }
+
+    /**
+     * Numbers the distinct characters of the keywords starting from 1 and returns the sorted non-ASCII ones.
+     * The class of a non-ASCII character is the number of ASCII classes plus its position in the sorted array.
+     * Class 0 stands for all the characters no keyword contains.
+     */
+    private static char[] classifyCharacters(List<String> keywords, int[] asciiClasses) {
+        TreeSet<Character> ascii = new TreeSet<>();
+        TreeSet<Character> nonAscii = new TreeSet<>();
+        for (String keyword : keywords) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                (c < ASCII_SIZE ? ascii : nonAscii).add(c);
+            }
+        }
+
+        int characterClass = OTHER_CHARACTER;
+        for (char c : ascii) {
+            asciiClasses[c] = ++characterClass;
+        }
+
+        char[] result = new char[nonAscii.size()];
+        int i = 0;
+        for (char c : nonAscii) {
+            result[i++] = c;
+        }
+        return result;
+    }
+
+    private int classOf(char c) {
+        if (c < ASCII_SIZE) {
+            return asciiClasses[c];
+        }
+        if (nonAsciiCharacters.length == 0) {
+            return OTHER_CHARACTER;
+        }
+        int index = Arrays.binarySearch(nonAsciiCharacters, c);
+        return index < 0 ? OTHER_CHARACTER : asciiClassCount + 1 + index;
+    }
+
+    private static int countAsciiClasses(int[] asciiClasses) {
+        int count = 0;
+        for (int characterClass : asciiClasses) {
+            count = Math.max(count, characterClass);
+        }
+        return count;
+    }
+
+    private static int[] distinct(int[] ids) {
+        BitSet seen = new BitSet();
+        for (int id : ids) {
+            seen.set(id);
+        }
+
+        int[] result = new int[seen.cardinality()];
+        int i = 0;
+        for (int id = seen.nextSetBit(0); id >= 0; id = seen.nextSetBit(id + 1)) {
+            result[i++] = id;
+        }
+        return result;
+    }
+
+    private static int newState(List<Map<Integer, Integer>> trie, List<List<Integer>> terminals) {
+        trie.add(new HashMap<>());
+        terminals.add(new ArrayList<>());
+        return trie.size() - 1;
+    }
+
+    private void buildTransitions(List<Map<Integer, Integer>> trie, List<List<Integer>> terminals) {
+        int[] failure = new int[trie.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+
+        outputs[ROOT] = toArray(terminals.get(ROOT), NO_OUTPUT);
+        for (int characterClass = 0; characterClass < classCount; characterClass++) {
+            Integer child = trie.get(ROOT).get(characterClass);
+            transitions[characterClass] = child == null ? ROOT : child;
+            if (child != null) {
+                failure[child] = ROOT;
+                queue.add(child);
+            }
+        }
+
+        // States are visited by depth, so the row of the failure state is always complete before it is copied
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = toArray(terminals.get(state), outputs[failure[state]]);
+
+            int row = state * classCount;
+            int failureRow = failure[state] * classCount;
+            for (int characterClass = 0; characterClass < classCount; characterClass++) {
+                Integer child = trie.get(state).get(characterClass);
+                if (child == null) {
+                    transitions[row + characterClass] = transitions[failureRow + characterClass];
+                } else {
+                    transitions[row + characterClass] = child;
+                    failure[child] = transitions[failureRow + characterClass];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces every target state in the table with the offset of its row, so the scan does not have to multiply.
+     * Targets which complete a keyword are stored bitwise negated, so the scan checks for output with a sign test.
+     */
+    private void encodeTransitions() {
+        for (int i = 0; i < transitions.length; i++) {
+            int target = transitions[i];
+            int row = target * classCount;
+            transitions[i] = outputs[target].length == 0 ? row : ~row;
+        }
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        if (own.isEmpty()) {
+            return inherited;
+        }
+        int[] result = Arrays.copyOf(inherited, inherited.length + own.size());
+        for (int i = 0; i < own.size(); i++) {
+            result[inherited.length + i] = own.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Scans the text once and sets the id of every keyword occurring in it.
+     * The scan stops early as soon as all keywords of the automaton are marked in {@code found},
+     * including the ones that were already marked before the call.
+     *
+     * @param text  the text to search in
+     * @param found ids of the keywords found so far, updated in place
+     */
+    public void scan(CharSequence text, BitSet found) {
+        int remaining = 0;
+        for (int id : patternIds) {
+            if (!found.get(id)) {
+                remaining++;
+            }
+        }
+
+        remaining = collect(outputs[ROOT], found, remaining);
+
+        if (remaining == 0) {
+            return;
+        }
+
+        int[] classes = asciiClasses;
+        int[] table = transitions;
+        int row = ROOT;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int next = table[row + (c < ASCII_SIZE ? classes[c] : classOf(c))];
+
+            if (next >= 0) {
+                row = next;
+            } else {
+                row = ~next;
+                remaining = collect(outputs[row / classCount], found, remaining);
+                if (remaining == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int collect(int[] ids, BitSet found, int remaining) {
+        for (int id : ids) {
+            if (!found.get(id)) {
+                found.set(id);
+                remaining--;
+            }
+        }
+        return remaining;
+    }
+}
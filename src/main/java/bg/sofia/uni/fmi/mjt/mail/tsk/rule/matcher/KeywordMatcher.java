@@ -0,0 +1,85 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.AbstractKeywordCondition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All keywords of the keyword conditions of a rule set, compiled into automata.
+ * <p>
+ * Every distinct keyword gets an id. The subject automaton knows every keyword, because both subject-includes and
+ * subject-or-body-includes look into the subject. The body automaton knows only the subject-or-body-includes
+ * keywords. This way a mail is scanned at most once per field, no matter how many rules and keywords there are.
+ */
+public class KeywordMatcher {
+    private final Map<String, Integer> keywordIds;
+    private final KeywordAutomaton subjectAutomaton;
+    private final KeywordAutomaton bodyAutomaton;
+
+    public KeywordMatcher(Collection<Rule> rules) {
+        this.keywordIds = new HashMap<>();
+
+        List<String> subjectKeywords = new ArrayList<>();
+        Set<String> bodyKeywords = new LinkedHashSet<>();
+
+        for (Rule rule : rules) {
+            for (var condition : rule.getConditions()) {
+                if (condition instanceof AbstractKeywordCondition keywordCondition) {
+                    for (String keyword : keywordCondition.getKeywords()) {
+                        if (!keywordIds.containsKey(keyword)) {
+                            keywordIds.put(keyword, keywordIds.size());
+                            subjectKeywords.add(keyword);
+                        }
+                        if (keywordCondition.searchesBody()) {
+                            bodyKeywords.add(keyword);
+                        }
+                    }
+                }
+            }
+        }
+
+        this.subjectAutomaton = new KeywordAutomaton(subjectKeywords, idsOf(subjectKeywords));
+        this.bodyAutomaton = new KeywordAutomaton(new ArrayList<>(bodyKeywords), idsOf(bodyKeywords));
+    }
+
+    private int[] idsOf(Collection<String> keywords) {
+        int[] ids = new int[keywords.size()];
+        int i = 0;
+        for (String keyword : keywords) {
+            ids[i++] = keywordIds.get(keyword);
+        }
+        return ids;
+    }
+
+    int idOf(String keyword) {
+        Integer id = keywordIds.get(keyword);
+        return id == null ? -1 : id;
+    }
+
+    KeywordAutomaton getSubjectAutomaton() {
+        return subjectAutomaton;
+    }
+
+    KeywordAutomaton getBodyAutomaton() {
+        return bodyAutomaton;
+    }
+
+    public int getKeywordCount() {
+        return keywordIds.size();
+    }
+
+    /**
+     * Creates the match results of a single mail. The mail is not scanned until a keyword is first looked up.
+     */
+    public KeywordMatches matchesFor(Mail mail) {
+        return new KeywordMatches(this, mail);
+    }
+}
@@ -0,0 +1,60 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+
+import java.util.BitSet;
+
+/**
+ * Keyword match results of a single mail against a {@link KeywordMatcher}.
+ * <p>
+ * The subject is scanned on the first keyword lookup, and the body on the first subject-or-body lookup that is not
+ * already answered by the subject. Every field is scanned at most once, so all the rules of an account can share
+ * one instance while the mail is routed. Instances are not thread-safe.
+ */
+public class KeywordMatches {
+    private final KeywordMatcher matcher;
+    private final Mail mail;
+
+    private BitSet inSubject;
+    private BitSet inSubjectOrBody;
+
+    KeywordMatches(KeywordMatcher matcher, Mail mail) {
+        this.matcher = matcher;
+        this.mail = mail;
+    }
+
+    public boolean isInSubject(String keyword) {
+        int id = matcher.idOf(keyword);
+        if (id < 0) {
+            return mail.subject().contains(keyword);
+        }
+        return subjectMatches().get(id);
+    }
+
+    public boolean isInSubjectOrBody(String keyword) {
+        int id = matcher.idOf(keyword);
+        if (id < 0) {
+            return mail.subject().contains(keyword) || mail.body().contains(keyword);
+        }
+        if (subjectMatches().get(id)) {
+            return true;
+        }
+        return subjectOrBodyMatches().get(id);
+    }
+
+    private BitSet subjectMatches() {
+        if (inSubject == null) {
+            inSubject = new BitSet(matcher.getKeywordCount());
+            matcher.getSubjectAutomaton().scan(mail.subject(), inSubject);
+        }
+        return inSubject;
+    }
+
+    private BitSet subjectOrBodyMatches() {
+        if (inSubjectOrBody == null) {
+            inSubjectOrBody = (BitSet) subjectMatches().clone();
+            matcher.getBodyAutomaton().scan(mail.body(), inSubjectOrBody);
+        }
+        return inSubjectOrBody;
+    }
+}
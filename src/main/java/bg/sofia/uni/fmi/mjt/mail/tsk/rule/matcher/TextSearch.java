@@ -0,0 +1,47 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher;
+
+/**
+ * Substring search over any character sequence, without copying it into a string first.
+ */
+public final class TextSearch {
+
+    private TextSearch() {
+    }
+
+    /**
+     * @return true if the keyword occurs in the text
+     */
+    public static boolean contains(CharSequence text, String keyword) {
+        if (text instanceof String string) {
+            return string.contains(keyword);
+        }
+        return indexOf(text, keyword) >= 0;
+    }
+
+    /**
+     * @return the index of the first occurrence of the keyword in the text, or -1 if it does not occur
+     */
+    public static int indexOf(CharSequence text, String keyword) {
+        if (keyword.isEmpty()) {
+            return 0;
+        }
+
+        char first = keyword.charAt(0);
+        int last = text.length() - keyword.length();
+        for (int start = 0; start <= last; start++) {
+            if (text.charAt(start) == first && matchesAt(text, start, keyword)) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesAt(CharSequence text, int start, String keyword) {
+        for (int i = 1; i < keyword.length(); i++) {
+            if (text.charAt(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
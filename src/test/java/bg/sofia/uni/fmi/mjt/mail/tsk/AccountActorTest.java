@@ -0,0 +1,119 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccountActorTest {
+    @Test
+    void testCommandsRunInOrder() throws Exception {
+        AccountActor actor = new AccountActor(Runnable::run);
+        List<Integer> order = new ArrayList<>();
+
+        CompletableFuture<Boolean> first = actor.ask(() -> order.add(1));
+        CompletableFuture<Boolean> second = actor.ask(() -> order.add(2));
+
+        assertTrue(first.get() && second.get(), "Expected both commands to run");
+        assertEquals(List.of(1, 2), order, "Expected the commands to run in the order they were queued");
+    }
+
+    @Test
+    void testFuturesCompleteAfterTheBatch() throws Exception {
+        Queue<Runnable> drains = new ArrayDeque<>();
+        AccountActor actor = new AccountActor(drains::add);
+        List<Integer> order = new ArrayList<>();
+
+        CompletableFuture<Boolean> secondRanFirst = actor.ask(() -> order.add(1))
+            .thenApply(ignored -> order.contains(2));
+        actor.ask(() -> order.add(2));
+        assertEquals(1, drains.size(), "Expected a single drain for the commands queued before it runs");
+        drains.poll().run();
+
+        assertTrue(secondRanFirst.get(), "Expected the callbacks of a command to run after the whole batch");
+    }
+
+    @Test
+    void testCallRethrowsTheExceptionOfTheCommand() {
+        AccountActor actor = new AccountActor(Runnable::run);
+
+        assertThrows(IllegalStateException.class, () -> actor.call(() -> {
+            throw new IllegalStateException("command failed");
+        }), "Expected the exception of the command itself, not a wrapper");
+        assertEquals(2, actor.call(() -> 2), "Expected the result of the command");
+    }
+
+    @Test
+    void testFailedCommandFailsOnlyItsFuture() throws Exception {
+        AccountActor actor = new AccountActor(Runnable::run);
+
+        CompletableFuture<Integer> failed = actor.ask(() -> {
+            throw new IllegalStateException("command failed");
+        });
+        CompletableFuture<Integer> next = actor.ask(() -> 2);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, failed::get,
+            "Expected the future of the failed command to fail");
+        assertTrue(failure.getCause() instanceof IllegalStateException, "Expected the cause of the failure");
+        assertEquals(2, next.get(), "Expected the actor to go on after a failed command");
+    }
+
+    @Test
+    void testCommandThrowingErrorFailsOnlyItsFuture() throws Exception {
+        AccountActor actor = new AccountActor(Runnable::run);
+
+        CompletableFuture<Integer> failed = actor.ask(() -> {
+            throw new AssertionError("command failed");
+        });
+        CompletableFuture<Integer> next = actor.ask(() -> 2);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS),
+            "Expected the future of the command to fail instead of being left pending");
+        assertTrue(failure.getCause() instanceof AssertionError, "Expected the error as the cause of the failure");
+        assertEquals(2, next.get(1, TimeUnit.SECONDS), "Expected the actor to go on after an error");
+    }
+
+    @Test
+    void testCommandsNeverRunConcurrently() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AccountActor actor = new AccountActor(pool);
+        AtomicInteger running = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        int[] counter = new int[1];
+
+        try {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> actor.ask(() -> {
+                    if (running.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    int value = ++counter[0];
+                    running.decrementAndGet();
+                    return value;
+                }), pool).thenCompose(future -> future);
+                results.add(result);
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertFalse(overlapped.get(), "Expected no two commands of an account to run at the same time");
+        assertEquals(10_000, counter[0], "Expected every command to run exactly once");
+    }
+}
@@ -0,0 +1,144 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.DeliveryQueueFullException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.metrics.OutlookMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeliveryQueueTest {
+    private final OutlookMetrics metrics = new OutlookMetrics(Map.of());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final List<Mail> delivered = new CopyOnWriteArrayList<>();
+
+    private static Mail mail(String subject) {
+        return new Mail(new Account("sender@gmail.com", "sender"), Set.of("receiver@gmail.com"), subject, "body",
+            LocalDateTime.of(2022, 12, 8, 14, 14));
+    }
+
+    private void blockingDelivery(Mail mail) {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delivered.add(mail);
+    }
+
+    @Test
+    void testSubmittedMailsAreDelivered() throws Exception {
+        DeliveryQueue queue = new DeliveryQueue(4, 2, delivered::add, metrics);
+
+        CompletableFuture<Void> first = queue.submit(mail("first"), 0, TimeUnit.NANOSECONDS);
+        CompletableFuture<Void> second = queue.submit(mail("second"), 0, TimeUnit.NANOSECONDS);
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Set.of(mail("first"), mail("second")), Set.copyOf(delivered),
+            "Expected every submitted mail to be delivered");
+        assertEquals(0, metrics.getDeliveryQueueDepth(), "Expected the queue to be empty after the deliveries");
+        assertEquals(2, metrics.getDeliveryQueueWait().getCount(), "Expected the wait of every mail to be recorded");
+    }
+
+    @Test
+    void testFullQueueRejectsMails() throws Exception {
+        DeliveryQueue queue = new DeliveryQueue(1, 1, this::blockingDelivery, metrics);
+
+        CompletableFuture<Void> taken = queue.submit(mail("taken"), 0, TimeUnit.NANOSECONDS);
+        assertTrue(started.await(5, TimeUnit.SECONDS), "Expected the worker to take the first mail");
+        CompletableFuture<Void> waiting = queue.submit(mail("waiting"), 0, TimeUnit.NANOSECONDS);
+
+        assertEquals(1, metrics.getDeliveryQueueDepth(), "Expected the second mail to wait in the queue");
+        assertThrows(DeliveryQueueFullException.class, () -> queue.submit(mail("rejected"), 0, TimeUnit.NANOSECONDS),
+            "DeliveryQueueFullException expected to be thrown when the queue is full");
+        assertThrows(DeliveryQueueFullException.class,
+            () -> queue.submit(mail("rejected"), 10, TimeUnit.MILLISECONDS),
+            "DeliveryQueueFullException expected to be thrown when the queue is still full after the timeout");
+        assertEquals(2, metrics.getRejectedDeliveryCount(), "Expected the rejected mails to be counted");
+
+        release.countDown();
+        CompletableFuture.allOf(taken, waiting).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(mail("taken"), mail("waiting")), delivered,
+            "Expected the queued mails to be delivered in order, and the rejected ones not at all");
+    }
+
+    @Test
+    void testFailedDeliveryFailsOnlyItsFuture() throws Exception {
+        DeliveryQueue queue = new DeliveryQueue(4, 1, mail -> {
+            if (mail.subject().equals("bad")) {
+                throw new IllegalStateException("delivery failed");
+            }
+            delivered.add(mail);
+        }, metrics);
+
+        CompletableFuture<Void> bad = queue.submit(mail("bad"), 0, TimeUnit.NANOSECONDS);
+        CompletableFuture<Void> good = queue.submit(mail("good"), 0, TimeUnit.NANOSECONDS);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS),
+            "Expected the future of the failed delivery to fail");
+        assertTrue(failure.getCause() instanceof IllegalStateException, "Expected the cause of the failure");
+        good.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(mail("good")), delivered, "Expected the worker to go on after a failed delivery");
+    }
+
+    @Test
+    void testErrorInDeliveryFailsOnlyItsFuture() throws Exception {
+        DeliveryQueue queue = new DeliveryQueue(4, 1, mail -> {
+            if (mail.subject().equals("bad")) {
+                throw new AssertionError("delivery failed");
+            }
+            delivered.add(mail);
+        }, metrics);
+
+        CompletableFuture<Void> bad = queue.submit(mail("bad"), 0, TimeUnit.NANOSECONDS);
+        CompletableFuture<Void> good = queue.submit(mail("good"), 0, TimeUnit.NANOSECONDS);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS),
+            "Expected the future of the delivery to fail instead of being left pending");
+        assertTrue(failure.getCause() instanceof AssertionError, "Expected the error as the cause of the failure");
+        good.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(mail("good")), delivered, "Expected the worker to survive the error");
+    }
+
+    @Test
+    void testShutdownFailsWaitingMails() throws Exception {
+        DeliveryQueue queue = new DeliveryQueue(4, 1, this::blockingDelivery, metrics);
+
+        CompletableFuture<Void> taken = queue.submit(mail("taken"), 0, TimeUnit.NANOSECONDS);
+        assertTrue(started.await(5, TimeUnit.SECONDS), "Expected the worker to take the first mail");
+        CompletableFuture<Void> waiting = queue.submit(mail("waiting"), 0, TimeUnit.NANOSECONDS);
+
+        queue.shutdown();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS),
+            "Expected the future of the waiting mail to fail on shutdown");
+        assertTrue(failure.getCause() instanceof IllegalStateException, "Expected the cause of the failure");
+        taken.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(mail("taken")), delivered,
+            "Expected the mail being delivered to be finished, and the waiting one not to be delivered");
+        assertEquals(0, metrics.getDeliveryQueueDepth(), "Expected the queue to be empty after the shutdown");
+        assertThrows(IllegalStateException.class, () -> queue.submit(mail("late"), 0, TimeUnit.NANOSECONDS),
+            "IllegalStateException expected to be thrown when the queue is shut down");
+    }
+
+    @Test
+    void testInvalidCapacityAndWorkers() {
+        assertThrows(IllegalArgumentException.class, () -> new DeliveryQueue(0, 1, delivered::add, metrics),
+            "IllegalArgumentException expected to be thrown when the capacity is not positive");
+        assertThrows(IllegalArgumentException.class, () -> new DeliveryQueue(1, 0, delivered::add, metrics),
+            "IllegalArgumentException expected to be thrown when there are no workers");
+    }
+}
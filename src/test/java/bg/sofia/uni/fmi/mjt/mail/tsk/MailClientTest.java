@@ -0,0 +1,64 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MailClientTest {
+    private final List<String> received = new ArrayList<>();
+
+    /**
+     * A client whose only own method is {@code receiveMail()}, which records the content of the mail. Every other
+     * call runs the default implementation of the interface.
+     */
+    private final MailClient client = (MailClient) Proxy.newProxyInstance(MailClient.class.getClassLoader(),
+        new Class<?>[] {MailClient.class}, recordingHandler());
+
+    private InvocationHandler recordingHandler() {
+        return (proxy, method, args) -> {
+            if (method.getName().equals("receiveMail")) {
+                received.add(args[0] + ":" + args[2]);
+                return null;
+            }
+            return InvocationHandler.invokeDefault(proxy, method, args);
+        };
+    }
+
+    @Test
+    void testReceiveMailsStoresEveryMailInOrder() {
+        client.receiveMails("ivan", List.of(new IncomingMail("sender: a@fmi.bg", "first"),
+            new IncomingMail("sender: b@fmi.bg", "second")));
+
+        assertEquals(List.of("ivan:first", "ivan:second"), received, "Expected every mail to be received in order");
+    }
+
+    @Test
+    void testReceiveMailsValidatesTheWholeBatchFirst() {
+        List<IncomingMail> mails = List.of(new IncomingMail("sender: a@fmi.bg", "first"),
+            new IncomingMail("sender: b@fmi.bg", " "));
+
+        assertThrows(IllegalArgumentException.class, () -> client.receiveMails("ivan", mails),
+            "Expected a mail with blank content to be rejected");
+        assertTrue(received.isEmpty(), "Expected no mail of an invalid batch to be stored");
+    }
+
+    @Test
+    void testReceiveMailsByAccountValidatesEveryBatchFirst() {
+        Map<String, List<IncomingMail>> mails = new LinkedHashMap<>();
+        mails.put("ivan", List.of(new IncomingMail("sender: a@fmi.bg", "first")));
+        mails.put(" ", List.of(new IncomingMail("sender: b@fmi.bg", "second")));
+
+        assertThrows(IllegalArgumentException.class, () -> client.receiveMails(mails),
+            "Expected a blank account name to be rejected");
+        assertTrue(received.isEmpty(), "Expected no mail to be stored when any batch is invalid");
+    }
+}
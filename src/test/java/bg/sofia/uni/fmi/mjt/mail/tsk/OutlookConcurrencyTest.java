@@ -0,0 +1,174 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutlookConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int MAILS_PER_THREAD = 200;
+
+    private final Outlook outlook = new Outlook();
+
+    private static String metadata(String sender, String subject, String recipients, int minute) {
+        return String.join(System.lineSeparator(),
+            "sender: " + sender,
+            "subject: " + subject,
+            "recipients: " + recipients,
+            String.format("received: 2022-12-08 %02d:%02d", minute / 60 % 24, minute % 60));
+    }
+
+    private void runConcurrently(List<Runnable> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Test
+    void testReceiveMailFromManyThreadsToManyAccounts() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String name = "user" + t;
+            String email = name + "@fmi.bg";
+            outlook.addNewAccount(name, email);
+            outlook.createFolder(name, "/inbox/lectures");
+            outlook.addRule(name, "/inbox/lectures", "subject-includes: lecture", 1);
+
+            tasks.add(() -> {
+                for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                    String subject = (i % 2 == 0 ? "lecture " : "homework ") + i;
+                    outlook.receiveMail(name, metadata("external@gmail.com", subject, email, i), "body " + i);
+                }
+            });
+        }
+
+        runConcurrently(tasks);
+
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(MAILS_PER_THREAD / 2, outlook.getMailsFromFolder("user" + t, "/inbox/lectures").size(),
+                "Every mail matching the rule should be stored in the folder of the rule");
+            assertEquals(MAILS_PER_THREAD / 2, outlook.getMailsFromFolder("user" + t, "/inbox").size(),
+                "Every mail not matching the rule should be stored in the inbox");
+        }
+    }
+
+    @Test
+    void testReceiveMailFromManyThreadsToOneAccount() throws Exception {
+        outlook.addNewAccount("shared", "shared@fmi.bg");
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                    outlook.receiveMail("shared",
+                        metadata("external@gmail.com", "subject " + thread, "shared@fmi.bg", i), "body " + i);
+                }
+            });
+        }
+
+        runConcurrently(tasks);
+
+        assertEquals(THREADS * MAILS_PER_THREAD, outlook.getMailsFromFolder("shared", "/inbox").size(),
+            "No mail should be lost when many threads deliver to the same account");
+    }
+
+    @Test
+    void testSendMailInBothDirectionsDoesNotDeadlock() {
+        outlook.addNewAccount("first", "first@fmi.bg");
+        outlook.addNewAccount("second", "second@fmi.bg");
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean fromFirst = t % 2 == 0;
+            String sender = fromFirst ? "first" : "second";
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                    outlook.sendMail(sender, metadata(sender + "@fmi.bg", "subject " + thread,
+                        "first@fmi.bg, second@fmi.bg", i), "body " + i);
+                }
+            });
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> runConcurrently(tasks),
+            "Sending mails between accounts in both directions should not deadlock");
+
+        int expected = THREADS * MAILS_PER_THREAD;
+        assertEquals(expected / 2, outlook.getMailsFromFolder("first", "/sent").size(),
+            "Every mail sent by the first account should be stored in its sent folder");
+        assertEquals(expected, outlook.getMailsFromFolder("first", "/inbox").size(),
+            "The first account should receive the mails of both accounts");
+        assertEquals(expected, outlook.getMailsFromFolder("second", "/inbox").size(),
+            "The second account should receive the mails of both accounts");
+    }
+
+    @Test
+    void testPollFolderWhileReceiving() throws Exception {
+        for (FolderStorage storage : FolderStorage.values()) {
+            Outlook client = new Outlook(storage);
+            client.addNewAccount("receiver", "receiver@fmi.bg");
+            client.createFolder("receiver", "/inbox/lectures");
+            client.addRule("receiver", "/inbox/lectures", "subject-includes: lecture", 1);
+
+            List<Runnable> tasks = new ArrayList<>();
+            tasks.add(() -> {
+                for (int i = 0; i < MAILS_PER_THREAD * THREADS; i++) {
+                    String subject = (i % 2 == 0 ? "lecture " : "homework ") + i;
+                    client.receiveMail("receiver", metadata("external@gmail.com", subject, "receiver@fmi.bg", i),
+                        "body " + i);
+                }
+            });
+            for (int t = 0; t < THREADS - 1; t++) {
+                tasks.add(() -> {
+                    int previous = 0;
+                    for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                        Collection<Mail> mails = client.getMailsFromFolder("receiver", "/inbox/lectures");
+                        int iterated = 0;
+                        for (Mail mail : mails) {
+                            assertTrue(mail.subject().startsWith("lecture"), "Snapshot should hold whole mails");
+                            iterated++;
+                        }
+                        assertEquals(mails.size(), iterated, "Snapshot should not change while it is read");
+                        assertTrue(iterated >= previous, "Later snapshots should not lose mails");
+                        previous = iterated;
+                    }
+                });
+            }
+
+            runConcurrently(tasks);
+
+            assertEquals(MAILS_PER_THREAD * THREADS / 2,
+                client.getMailsFromFolder("receiver", "/inbox/lectures").size(), "Every mail matching the rule should be stored with storage " + storage);
+        }
+    }
+}
@@ -1,19 +1,30 @@
 package bg.sofia.uni.fmi.mjt.mail.tsk;
 
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.ReceivedOrder;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderInUseException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.InvalidPathException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.RuleAlreadyDefinedException;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -269,6 +280,20 @@ public class OutlookTest {
             "FolderNotFoundException expected to be thrown when folder does not exist in account directory");
     }
 
+    @Test
+    void testFolderOfRuleCanNotBeRemoved() {
+        outlook.addNewAccount("name", "email@abv.bg");
+        outlook.createFolder("name", "/inbox/mjt");
+        outlook.addRule("name", "/inbox/mjt", "subject-includes: subject", 1);
+        Directory directory = outlook.getSystemAccounts().get("name").directory();
+
+        assertThrows(FolderInUseException.class, () -> directory.removeFolder("/inbox/mjt"),
+            "FolderInUseException expected to be thrown when the folder of a rule is removed");
+        outlook.receiveMail("name", metaData, "content");
+        assertEquals(1, outlook.getMailsFromFolder("name", "/inbox/mjt").size(),
+            "Expected the rule to keep storing mails in its folder");
+    }
+
     @Test
     void testAddRuleRuleDefinitionAlreadyDefined() {
         String definition = "subject-includes: mjt, izpit" + System.lineSeparator() + "subject-includes: other";
@@ -768,6 +793,89 @@ public class OutlookTest {
             "Expected mail to land in sent of second receiver correctly");
     }
 
+    @Test
+    void testSendMailManyRecipientsRouteByTheirOwnRules() {
+        outlook.addNewAccount("sender", "sender@gmail.com");
+        StringBuilder recipients = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            outlook.addNewAccount("receiver" + i, "receiver" + i + "@gmail.com");
+            recipients.append("receiver").append(i).append("@gmail.com,");
+            if (i % 2 == 0) {
+                outlook.createFolder("receiver" + i, "/inbox/mjt");
+                outlook.addRule("receiver" + i, "/inbox/mjt", "subject-includes: MJT", 1);
+            }
+        }
+        String metadata = "sender: sender@gmail.com" + System.lineSeparator() + "subject: MJT" +
+            System.lineSeparator() + "recipients: " + recipients + System.lineSeparator() +
+            "received: 2022-12-08 14:14" + System.lineSeparator();
+
+        outlook.sendMail("sender", metadata, "body");
+
+        Collection<Mail> sent = outlook.getMailsFromFolder("sender", "/sent");
+        assertEquals(1, sent.size(), "Expected mail to land in sent of sender");
+        for (int i = 0; i < 50; i++) {
+            String folder = i % 2 == 0 ? "/inbox/mjt" : "/inbox";
+            assertEquals(sent, outlook.getMailsFromFolder("receiver" + i, folder),
+                "Expected mail to be routed by the rules of receiver" + i);
+        }
+    }
+
+    @Test
+    void testSendMailAsyncDeliversToRecipients() throws Exception {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+        outlook.addNewAccount("sender", "sender@gmail.com");
+        outlook.addNewAccount("other", "other@gmail.com");
+        outlook.createFolder("other", "/inbox/cats");
+        outlook.addRule("other", "/inbox/cats", "subject-or-body-includes: cat", 1);
+
+        outlook.sendMailAsync("sender", metaData, "This is a sentence in the mailContent and it is the body, cat")
+            .get(5, TimeUnit.SECONDS);
+        Set<Mail> mails = Set.of(mailReceiver);
+
+        assertEquals(mails, outlook.getMailsFromFolder("sender", "/sent"),
+            "Expected mail to land in sent of sender correctly");
+        assertEquals(mails, outlook.getMailsFromFolder("receiver", "/inbox"),
+            "Expected mail to land in inbox of receiver once the future completes");
+        assertEquals(mails, outlook.getMailsFromFolder("other", "/inbox/cats"),
+            "Expected mail to be routed by the rules of the recipient");
+    }
+
+    @Test
+    void testSendMailAsyncAccountNotFound() {
+        assertThrows(AccountNotFoundException.class, () -> outlook.sendMailAsync("missing", metaData, "content"),
+            "AccountNotFoundException expected to be thrown when the sender does not exist");
+    }
+
+    @Test
+    void testSendMailAsyncAfterShutdown() {
+        outlook.addNewAccount("sender", "sender@gmail.com");
+        outlook.shutdown();
+
+        assertThrows(IllegalStateException.class, () -> outlook.sendMailAsync("sender", metaData, "content"),
+            "IllegalStateException expected to be thrown when the client is shut down");
+        assertTrue(outlook.getMailsFromFolder("sender", "/sent").isEmpty(),
+            "Expected the rejected mail not to be stored in sent");
+
+        outlook.sendMail("sender", metaData, "content");
+        assertEquals(1, outlook.getMailsFromFolder("sender", "/sent").size(),
+            "Expected the synchronous calls to work after the shutdown");
+    }
+
+    @Test
+    void testSendMailRecipientsSeeTheSenderOfTheMetadata() {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+        outlook.addNewAccount("sender", "sender@gmail.com");
+        outlook.addNewAccount("other", "other@gmail.com");
+
+        outlook.sendMail("other", metaData, "This is a sentence in the mailContent and it is the body, cat");
+
+        assertEquals(Set.of(mailReceiver), outlook.getMailsFromFolder("receiver", "/inbox"),
+            "Expected the recipients to see the sender named in the metadata");
+        assertEquals(new Account("other@gmail.com", "other"),
+            outlook.getMailsFromFolder("other", "/sent").iterator().next().sender(),
+            "Expected the sent folder to keep the sending account as sender");
+    }
+
     @Test
     void testSendMailRule() {
         outlook.addNewAccount("receiver", "receiver@gmail.com");
@@ -791,4 +899,420 @@ public class OutlookTest {
         assertEquals(mails, outlook.getMailsFromFolder("sender", "/sent"),
             "Expected mail to land in sent of sender correctly");
     }
+
+    private String getMetaData(String subject, int minute) {
+        return "sender: sender@gmail.com" + System.lineSeparator() + "subject: " + subject +
+            System.lineSeparator() + "recipients: receiver@gmail.com" + System.lineSeparator() +
+            String.format("received: 2022-12-08 14:%02d", minute) + System.lineSeparator();
+    }
+
+    @Test
+    void testReceiveMailsAccountNameIsNull() {
+        assertThrows(IllegalArgumentException.class, () -> outlook.receiveMails(null, List.of()),
+            "IllegalArgumentException expected to be thrown when account name is null");
+    }
+
+    @Test
+    void testReceiveMailsMailsAreNull() {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+
+        assertThrows(IllegalArgumentException.class, () -> outlook.receiveMails("receiver", null),
+            "IllegalArgumentException expected to be thrown when mails are null");
+    }
+
+    @Test
+    void testReceiveMailsAccountNotFound() {
+        assertThrows(AccountNotFoundException.class, () -> outlook.receiveMails("receiver", List.of()),
+            "AccountNotFoundException expected to be thrown when account does not exist");
+    }
+
+    @Test
+    void testReceiveMailsInvalidMailStoresNothing() {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+        List<IncomingMail> mails = List.of(new IncomingMail(metaData, "body"), new IncomingMail(metaData, " "));
+
+        assertThrows(IllegalArgumentException.class, () -> outlook.receiveMails("receiver", mails),
+            "IllegalArgumentException expected to be thrown when the content of a mail is blank");
+        assertEquals(Collections.EMPTY_SET, outlook.getMailsFromFolder("receiver", "/inbox"),
+            "Expected no mail of an invalid batch to be stored");
+    }
+
+    @Test
+    void testReceiveMailsRoutesByRules() {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+        outlook.addNewAccount("sender", "sender@gmail.com");
+        outlook.createFolder("receiver", "/inbox/mjt");
+        outlook.addRule("receiver", "/inbox/mjt", "subject-includes: MJT", 1);
+
+        List<IncomingMail> mails = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            mails.add(new IncomingMail(getMetaData(i % 2 == 0 ? "MJT " + i : "other " + i, i % 60), "body " + i));
+        }
+
+        outlook.receiveMails("receiver", mails);
+
+        assertEquals(500, outlook.getMailsFromFolder("receiver", "/inbox/mjt").size(),
+            "Expected mails fitting the rule to land in the folder of the rule");
+        assertEquals(500, outlook.getMailsFromFolder("receiver", "/inbox").size(),
+            "Expected mails not fitting the rule to land in inbox");
+    }
+
+    @Test
+    void testReceiveMailsSameAsReceiveMail() {
+        Outlook single = new Outlook();
+        for (MailClient client : List.of(outlook, single)) {
+            client.addNewAccount("receiver", "receiver@gmail.com");
+            client.addNewAccount("sender", "sender@gmail.com");
+            client.createFolder("receiver", "/inbox/second");
+            client.addRule("receiver", "/inbox/second", "subject-or-body-includes: cat", 3);
+        }
+
+        List<IncomingMail> mails = List.of(new IncomingMail(metaData, "a cat"),
+            new IncomingMail(getMetaData("no rule", 1), "a dog"));
+
+        outlook.receiveMails("receiver", mails);
+        for (IncomingMail mail : mails) {
+            single.receiveMail("receiver", mail.metadata(), mail.content());
+        }
+
+        assertEquals(single.getMailsFromFolder("receiver", "/inbox"), outlook.getMailsFromFolder("receiver", "/inbox"),
+            "Expected the batch to fill inbox the same way as single mails");
+        assertEquals(single.getMailsFromFolder("receiver", "/inbox/second"),
+            outlook.getMailsFromFolder("receiver", "/inbox/second"),
+            "Expected the batch to fill the folder of the rule the same way as single mails");
+    }
+
+    @Test
+    void testReceiveMailsManyAccounts() {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+        outlook.addNewAccount("other", "other@gmail.com");
+
+        outlook.receiveMails(Map.of(
+            "receiver", List.of(new IncomingMail(metaData, "first"), new IncomingMail(metaData, "second")),
+            "other", List.of(new IncomingMail(metaData, "third"))));
+
+        assertEquals(2, outlook.getMailsFromFolder("receiver", "/inbox").size(),
+            "Expected both mails of the first account to land in its inbox");
+        assertEquals(1, outlook.getMailsFromFolder("other", "/inbox").size(),
+            "Expected the mail of the second account to land in its inbox");
+    }
+
+    @Test
+    void testReceiveMailsManyAccountsOneNotFoundStoresNothing() {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+        Map<String, List<IncomingMail>> mails = new LinkedHashMap<>();
+        mails.put("receiver", List.of(new IncomingMail(metaData, "first")));
+        mails.put("missing", List.of(new IncomingMail(metaData, "second")));
+
+        assertThrows(AccountNotFoundException.class, () -> outlook.receiveMails(mails),
+            "AccountNotFoundException expected to be thrown when one of the accounts does not exist");
+        assertEquals(Collections.EMPTY_SET, outlook.getMailsFromFolder("receiver", "/inbox"),
+            "Expected no mail to be stored when one of the accounts does not exist");
+    }
+
+    private static void receiveNumberedMails(Outlook client) {
+        client.addNewAccount("name", "email@abv.bg");
+        for (String folder : List.of("/inbox/even", "/inbox/tens", "/inbox/sevens", "/inbox/none")) {
+            client.createFolder("name", folder);
+        }
+        for (int i = 0; i < 2_000; i++) {
+            String subject =
+                (i % 2 == 0 ? "even" : "odd") + (i % 10 == 0 ? " tens" : "") + (i % 7 == 0 ? " seven" : "");
+            client.getSystemAccounts().get("name").directory().addEmailToInbox(new Mail(null, Set.of("email@abv.bg"),
+                subject, "body " + i, LocalDateTime.of(2022, 12, 8, 14, 0).plusSeconds(i)));
+        }
+    }
+
+    @Test
+    void testAddRulesSameAsAddingThemOneByOne() {
+        List<RuleSpec> rules = List.of(new RuleSpec("/inbox/even", "subject-includes: even", 5),
+            new RuleSpec("/inbox/tens", "subject-includes: tens", 1),
+            new RuleSpec("/inbox/sevens", "subject-or-body-includes: seven", 3),
+            new RuleSpec("/inbox/none", "from: nobody@abv.bg", 2));
+        Outlook oneByOne = new Outlook();
+        receiveNumberedMails(oneByOne);
+        receiveNumberedMails(outlook);
+
+        for (RuleSpec rule : rules) {
+            oneByOne.addRule("name", rule.folderPath(), rule.ruleDefinition(), rule.priority());
+        }
+        outlook.addRules("name", rules);
+
+        for (String folder : List.of("/inbox", "/inbox/even", "/inbox/tens", "/inbox/sevens", "/inbox/none")) {
+            assertEquals(Set.copyOf(oneByOne.getMailsFromFolder("name", folder)),
+                Set.copyOf(outlook.getMailsFromFolder("name", folder)),
+                "Expected " + folder + " to hold the same mails as after adding the rules one by one");
+        }
+        assertEquals(4, outlook.getSystemAccounts().get("name").rules().size(), "Expected all rules to be added");
+    }
+
+    @Test
+    void testAddRulesConflictAddsNone() {
+        receiveNumberedMails(outlook);
+        List<RuleSpec> rules = List.of(new RuleSpec("/inbox/even", "subject-includes: even", 5),
+            new RuleSpec("/inbox/tens", "subject-includes: even", 5));
+
+        assertThrows(RuleAlreadyDefinedException.class, () -> outlook.addRules("name", rules),
+            "RuleAlreadyDefinedException expected to be thrown when two rules of the list conflict");
+        assertEquals(0, outlook.getSystemAccounts().get("name").rules().size(), "Expected no rule to be added");
+        assertEquals(2_000, outlook.getMailsFromFolder("name", "/inbox").size(), "Expected no mail to be moved");
+    }
+
+    @Test
+    void testAddRulesFolderNotFoundAddsNone() {
+        receiveNumberedMails(outlook);
+        List<RuleSpec> rules = List.of(new RuleSpec("/inbox/even", "subject-includes: even", 5),
+            new RuleSpec("/inbox/missing", "subject-includes: tens", 1));
+
+        assertThrows(FolderNotFoundException.class, () -> outlook.addRules("name", rules),
+            "FolderNotFoundException expected to be thrown when the folder of a rule does not exist");
+        assertEquals(0, outlook.getSystemAccounts().get("name").rules().size(), "Expected no rule to be added");
+    }
+
+    @Test
+    void testAddRulesInvalidArguments() {
+        outlook.addNewAccount("name", "email@abv.bg");
+        List<RuleSpec> withNull = new ArrayList<>();
+        withNull.add(null);
+
+        assertThrows(IllegalArgumentException.class, () -> outlook.addRules("name", null),
+            "IllegalArgumentException expected to be thrown when the rules are null");
+        assertThrows(IllegalArgumentException.class, () -> outlook.addRules("name", withNull),
+            "IllegalArgumentException expected to be thrown when a rule is null");
+        assertThrows(IllegalArgumentException.class,
+            () -> outlook.addRules("name", List.of(new RuleSpec("/inbox", "subject-includes: a", 11))),
+            "IllegalArgumentException expected to be thrown when the priority of a rule is out of bounds");
+        assertThrows(AccountNotFoundException.class, () -> outlook.addRules("missing", List.of()),
+            "AccountNotFoundException expected to be thrown when the account does not exist");
+    }
+
+    @Test
+    void testAddRuleInBackgroundMovesExistingMails() throws Exception {
+        outlook.addNewAccount("name", "email@abv.bg");
+        outlook.createFolder("name", "/inbox/even");
+        for (int i = 0; i < 40_000; i++) {
+            outlook.getSystemAccounts().get("name").directory().addEmailToInbox(new Mail(null, Set.of("email@abv.bg"),
+                (i % 2 == 0 ? "even " : "odd ") + i, "body", LocalDateTime.of(2022, 12, 8, 14, 0).plusSeconds(i)));
+        }
+
+        RuleApplication application = outlook.addRuleInBackground("name", "/inbox/even", "subject-includes: even", 1);
+        outlook.receiveMail("name", String.join(System.lineSeparator(),
+            "sender: someone@abv.bg", "subject: even later", "recipients: email@abv.bg",
+            "received: 2022-12-09 14:14"), "body");
+
+        assertEquals(20_000, application.getResult().get(10, TimeUnit.SECONDS),
+            "Expected the mails matching the rule to be moved");
+        assertEquals(40_000, application.getTotalMails(), "Expected every mail of the inbox to be counted");
+        assertEquals(40_000, application.getCheckedMails(), "Expected every mail of the inbox to be checked");
+        assertEquals(20_001, outlook.getMailsFromFolder("name", "/inbox/even").size(),
+            "Expected new mails to be routed by the rule while it is applied");
+        assertEquals(20_000, outlook.getMailsFromFolder("name", "/inbox").size(),
+            "Expected the other mails to remain in inbox");
+    }
+
+    @Test
+    void testAddRuleInBackgroundValidatesRule() {
+        outlook.addNewAccount("name", "email@abv.bg");
+
+        assertThrows(FolderNotFoundException.class,
+            () -> outlook.addRuleInBackground("name", "/inbox/missing", "subject-includes: a", 1),
+            "FolderNotFoundException expected to be thrown before the rule is applied");
+    }
+
+    private void receiveAtMinutes(Outlook client, int count) {
+        for (int i = 0; i < count; i++) {
+            client.receiveMail("name", String.join(System.lineSeparator(),
+                "sender: someone@abv.bg", "subject: mail " + i, "recipients: email@abv.bg",
+                "received: 2022-12-08 14:" + String.format("%02d", i % 60)), "body " + i);
+        }
+    }
+
+    @Test
+    void testGetMailsPageInvalidArguments() {
+        outlook.addNewAccount("name", "email@abv.bg");
+
+        assertThrows(IllegalArgumentException.class,
+            () -> outlook.getMailsFromFolder("name", "/inbox", null, 0, SortOrder.OLDEST_FIRST),
+            "IllegalArgumentException expected to be thrown when the limit is not positive");
+        assertThrows(IllegalArgumentException.class,
+            () -> outlook.getMailsFromFolder("name", "/inbox", null, 10, null),
+            "IllegalArgumentException expected to be thrown when the order is null");
+        assertThrows(AccountNotFoundException.class,
+            () -> outlook.getMailsFromFolder("other", "/inbox", null, 10, SortOrder.OLDEST_FIRST),
+            "AccountNotFoundException expected to be thrown when the account does not exist");
+        assertThrows(FolderNotFoundException.class,
+            () -> outlook.getMailsFromFolder("name", "/inbox/missing", null, 10, SortOrder.OLDEST_FIRST),
+            "FolderNotFoundException expected to be thrown when the folder does not exist");
+    }
+
+    @Test
+    void testManyOffHeapAccounts() {
+        // With a whole 16 MB slab per account, a few thousand small accounts exhausted the direct memory
+        Outlook client = new Outlook(FolderStorage.OFF_HEAP);
+        int accounts = 3000;
+        for (int i = 0; i < accounts; i++) {
+            client.addNewAccount("user" + i, "user" + i + "@fmi.bg");
+            client.receiveMail("user" + i, metaData, "body");
+        }
+
+        for (int i = 0; i < accounts; i += 499) {
+            assertEquals("body", client.getMailsFromFolder("user" + i, "/inbox").iterator().next().body(),
+                "Expected the off-heap body of every account to be read back");
+        }
+    }
+
+    @Test
+    void testGetMailsPageNewestFirst() {
+        for (Outlook client : List.of(outlook, new Outlook(FolderStorage.COLUMNAR))) {
+            client.addNewAccount("name", "email@abv.bg");
+            receiveAtMinutes(client, 120);
+
+            List<Mail> listed = new ArrayList<>();
+            MailPage page = client.getMailsFromFolder("name", "/inbox", null, 25, SortOrder.NEWEST_FIRST);
+            listed.addAll(page.mails());
+            while (page.hasNext()) {
+                page = client.getMailsFromFolder("name", "/inbox", page.next(), 25, SortOrder.NEWEST_FIRST);
+                listed.addAll(page.mails());
+            }
+
+            assertEquals(120, listed.size(), "Expected every mail to be listed exactly once");
+            assertEquals(Set.copyOf(client.getMailsFromFolder("name", "/inbox")), Set.copyOf(listed),
+                "Expected the pages to list the mails of the folder");
+            for (int i = 1; i < listed.size(); i++) {
+                assertTrue(!listed.get(i).received().isAfter(listed.get(i - 1).received()),
+                    "Expected the newest mails to be listed first");
+            }
+            assertEquals(null, page.next(), "Expected no cursor after the last page");
+        }
+    }
+
+    @Test
+    void testGetMailsPageSameAsSortedFolder() {
+        outlook.addNewAccount("name", "email@abv.bg");
+        outlook.createFolder("name", "/inbox/even");
+        outlook.addRule("name", "/inbox/even", "subject-includes: 0", 1);
+        receiveAtMinutes(outlook, 90);
+
+        for (String path : List.of("/inbox", "/inbox/even")) {
+            List<Mail> expected = new ArrayList<>(outlook.getMailsFromFolder("name", path));
+            expected.sort(ReceivedOrder.OLDEST_FIRST);
+
+            List<Mail> listed = new ArrayList<>();
+            MailCursor cursor = null;
+            MailPage page;
+            do {
+                page = outlook.getMailsFromFolder("name", path, cursor, 7, SortOrder.OLDEST_FIRST);
+                listed.addAll(page.mails());
+                cursor = page.next();
+            } while (page.hasNext());
+
+            assertEquals(expected, listed, "Expected the pages to list the folder sorted by received time");
+        }
+    }
+
+    @Test
+    void testSearchInvalidArguments() {
+        outlook.addNewAccount("name", "email@abv.bg");
+
+        assertThrows(IllegalArgumentException.class, () -> outlook.search(null, "exam"),
+            "IllegalArgumentException expected to be thrown when the account is null");
+        assertThrows(IllegalArgumentException.class, () -> outlook.search("name", " "),
+            "IllegalArgumentException expected to be thrown when the query is blank");
+        assertThrows(AccountNotFoundException.class, () -> outlook.search("other", "exam"),
+            "AccountNotFoundException expected to be thrown when the account does not exist");
+        assertThrows(FolderNotFoundException.class, () -> outlook.search("name", "exam", "/inbox/missing"),
+            "FolderNotFoundException expected to be thrown when the folder does not exist");
+    }
+
+    @Test
+    void testSearchFollowsRulesAndSentMails() {
+        outlook.addNewAccount("name", "email@abv.bg");
+        outlook.addNewAccount("other", "other@abv.bg");
+        outlook.createFolder("name", "/inbox/exams");
+        outlook.addRule("name", "/inbox/exams", "subject-includes: exam", 1);
+
+        outlook.receiveMail("name", String.join(System.lineSeparator(), "sender: someone@abv.bg",
+            "subject: Java exam", "recipients: email@abv.bg", "received: 2022-12-08 14:14"), "Good luck");
+        outlook.receiveMail("name", String.join(System.lineSeparator(), "sender: someone@abv.bg",
+            "subject: Java lecture", "recipients: email@abv.bg", "received: 2022-12-08 14:15"), "Streams");
+        outlook.sendMail("name", String.join(System.lineSeparator(), "sender: email@abv.bg",
+            "subject: Java question", "recipients: other@abv.bg", "received: 2022-12-08 14:16"), "Good question");
+
+        assertEquals(3, outlook.search("name", "java").size(), "Expected received and sent mails to be found");
+        assertEquals(List.of("Java exam"), subjects(outlook.search("name", "java luck", "/inbox/exams")),
+            "Expected the mail moved by the rule to be found in its folder");
+        assertEquals(List.of("Java exam", "Java lecture"), subjects(outlook.search("name", "JAVA", "/inbox")),
+            "Expected the inbox to be searched together with its subfolders");
+        assertEquals(List.of("Java question"), subjects(outlook.search("name", "good", "/sent")),
+            "Expected the sent mail to be found in sent");
+        assertEquals(List.of("Java question"), subjects(outlook.search("other", "question")),
+            "Expected the recipient to find the received mail");
+        assertTrue(outlook.getSearchIndexMemory("name") > 0, "Expected the memory of the index to be reported");
+    }
+
+    @Test
+    void testSearchAfterRuleAddedLater() {
+        outlook.addNewAccount("name", "email@abv.bg");
+        outlook.createFolder("name", "/inbox/exams");
+        receiveAtMinutes(outlook, 20);
+        outlook.addRule("name", "/inbox/exams", "subject-includes: mail 1", 1);
+
+        assertEquals(11, outlook.search("name", "mail", "/inbox/exams").size(),
+            "Expected the mails moved by a new rule to be found in their new folder");
+        assertEquals(20, outlook.search("name", "mail").size(), "Expected every mail to be found once");
+    }
+
+    private static List<String> subjects(List<Mail> mails) {
+        List<String> subjects = new ArrayList<>();
+        for (Mail mail : mails) {
+            subjects.add(mail.subject());
+        }
+        return subjects;
+    }
+
+    @Test
+    void testReceiveMailInternsExternalSenderAndRecipients() {
+        outlook.addNewAccount("name", "email@abv.bg");
+        outlook.createFolder("name", "/inbox/external");
+        outlook.addRule("name", "/inbox/external", "from: someone@abv.bg", 1);
+        receiveAtMinutes(outlook, 2);
+
+        List<Mail> mails = new ArrayList<>(outlook.getMailsFromFolder("name", "/inbox/external"));
+
+        assertEquals(2, mails.size(), "Expected from rules to match senders without an account");
+        assertSame(mails.get(0).sender(), mails.get(1).sender(), "Expected the external sender to be interned");
+        assertEquals("someone@abv.bg", mails.get(0).sender().emailAddress(), "Expected the address of the sender");
+        assertEquals(Set.of("email@abv.bg"), mails.get(0).recipients(), "Expected the recipients of the mail");
+        assertSame(mails.get(0).recipients().iterator().next(), mails.get(1).recipients().iterator().next(),
+            "Expected the recipient addresses to be interned");
+    }
+
+    @Test
+    void testFromRuleMatchesUnregisteredSender() {
+        outlook.addNewAccount("name", "email@abv.bg");
+        outlook.createFolder("name", "/inbox/external");
+        outlook.createFolder("name", "/inbox/other");
+        outlook.addRule("name", "/inbox/external", "from: external@gmail.com", 1);
+        outlook.addRule("name", "/inbox/other", "from: other@gmail.com", 2);
+
+        String fromExternal = String.join(System.lineSeparator(), "sender: external@gmail.com",
+            "subject: hello", "recipients: email@abv.bg", "received: 2022-12-08 14:14");
+        String fromUnknown = String.join(System.lineSeparator(), "sender: unknown@gmail.com",
+            "subject: hello", "recipients: email@abv.bg", "received: 2022-12-08 14:15");
+        outlook.receiveMail("name", fromExternal, "first");
+        outlook.receiveMails("name", List.of(new IncomingMail(fromExternal.replace("14:14", "14:16"), "second")));
+        outlook.receiveMail("name", fromUnknown, "third");
+
+        Collection<Mail> external = outlook.getMailsFromFolder("name", "/inbox/external");
+        assertEquals(2, external.size(),
+            "Expected a from rule to match the mails of a sender without an account, one by one and in batches");
+        for (Mail mail : external) {
+            assertEquals(new Account("external@gmail.com", "external@gmail.com"), mail.sender(),
+                "Expected a sender without an account to be named by its address");
+        }
+        assertTrue(outlook.getMailsFromFolder("name", "/inbox/other").isEmpty(),
+            "Expected a from rule not to match the mails of another unregistered sender");
+        assertEquals(1, outlook.getMailsFromFolder("name", "/inbox").size(),
+            "Expected the mail no rule matches to stay in the inbox");
+    }
 }
@@ -0,0 +1,112 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.address;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AddressInternerTest {
+    private final AddressInterner interner = new AddressInterner();
+
+    @Test
+    void testInternReturnsSameInstance() {
+        String first = interner.intern(new String("ivan@fmi.bg"));
+        String second = interner.intern(new String("ivan@fmi.bg"));
+
+        assertSame(first, second, "Expected equal addresses to be interned as the same instance");
+        assertEquals(1, interner.size(), "Expected an address to be interned once");
+    }
+
+    @Test
+    void testIdsAreDense() {
+        assertEquals(0, interner.idOf("a@fmi.bg"), "Expected the first address to get id 0");
+        assertEquals(1, interner.idOf("b@fmi.bg"), "Expected the next address to get the next id");
+        assertEquals(0, interner.idOf("a@fmi.bg"), "Expected a known address to keep its id");
+        assertEquals("b@fmi.bg", interner.address(1), "Expected the id to resolve to its address");
+        assertEquals(AddressInterner.NOT_INTERNED, interner.find("c@fmi.bg"),
+            "Expected find not to intern unknown addresses");
+    }
+
+    @Test
+    void testAddressesAreCaseSensitive() {
+        assertNotEquals(interner.idOf("Ivan@fmi.bg"), interner.idOf("ivan@fmi.bg"),
+            "Expected addresses to be interned exactly as they are");
+    }
+
+    @Test
+    void testFullInternerDoesNotIntern() {
+        AddressInterner small = new AddressInterner(2);
+        small.idOf("a@fmi.bg");
+        small.idOf("b@fmi.bg");
+
+        assertEquals(AddressInterner.NOT_INTERNED, small.idOf("c@fmi.bg"), "Expected no id when the interner is full");
+        String address = new String("c@fmi.bg");
+        assertSame(address, small.intern(address), "Expected the address itself when the interner is full");
+        assertEquals(1, small.idOf("b@fmi.bg"), "Expected known addresses to be found when the interner is full");
+    }
+
+    @Test
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new AddressInterner(0),
+            "IllegalArgumentException expected to be thrown when the capacity is not positive");
+    }
+
+    @Test
+    void testExternalSenderIsInterned() {
+        Account sender = interner.externalSender(new String("someone@abv.bg"));
+
+        assertSame(sender, interner.externalSender(new String("someone@abv.bg")),
+            "Expected the same identity for every mail from the sender");
+        assertEquals(new Account("someone@abv.bg", "someone@abv.bg"), sender,
+            "Expected the address to stand for the name of an external sender");
+    }
+
+    @Test
+    void testExternalSenderOfFullInterner() {
+        AddressInterner small = new AddressInterner(1);
+        small.idOf("a@fmi.bg");
+
+        Account sender = small.externalSender("someone@abv.bg");
+        assertEquals("someone@abv.bg", sender.emailAddress(), "Expected a sender even when the interner is full");
+        assertNotSame(sender, small.externalSender("someone@abv.bg"), "Expected the sender not to be interned");
+    }
+
+    @Test
+    void testConcurrentInterning() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> {
+                    int[] ids = new int[10_000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = interner.idOf("user" + i + "@fmi.bg");
+                    }
+                    return ids;
+                }));
+            }
+
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) {
+                int[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(expected[i], ids[i], "Expected every thread to get the same id for an address");
+                    assertEquals("user" + i + "@fmi.bg", interner.address(ids[i]), "Expected the id to resolve");
+                }
+            }
+            assertEquals(10_000, interner.size(), "Expected every address to be interned once");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
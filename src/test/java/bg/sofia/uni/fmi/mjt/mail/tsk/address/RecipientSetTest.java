@@ -0,0 +1,82 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.address;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecipientSetTest {
+    private final AddressInterner interner = new AddressInterner();
+
+    @Test
+    void testEqualToOtherSets() {
+        Set<String> recipients = RecipientSet.of(interner, List.of("pesho@gmail.com", "gosho@gmail.com"));
+        Set<String> expected = Set.of("gosho@gmail.com", "pesho@gmail.com");
+
+        assertEquals(expected, recipients, "Expected the set to be equal to a set of the same addresses");
+        assertEquals(recipients, expected, "Expected the equality to be symmetric");
+        assertEquals(expected.hashCode(), recipients.hashCode(), "Expected the hash code of a set");
+    }
+
+    @Test
+    void testRepeatedAddressesKeptOnce() {
+        Set<String> recipients = RecipientSet.of(interner, Arrays.asList("a@fmi.bg", "b@fmi.bg", "a@fmi.bg"));
+
+        assertEquals(2, recipients.size(), "Expected repeated addresses to be kept once");
+        assertEquals(new HashSet<>(List.of("a@fmi.bg", "b@fmi.bg")), new HashSet<>(recipients),
+            "Expected the iteration to list every address");
+    }
+
+    @Test
+    void testContains() {
+        Set<String> recipients = RecipientSet.of(interner, List.of("a@fmi.bg", "b@fmi.bg"));
+        interner.idOf("c@fmi.bg");
+
+        assertTrue(recipients.contains("b@fmi.bg"), "Expected a recipient to be contained");
+        assertFalse(recipients.contains("c@fmi.bg"), "Expected another interned address not to be contained");
+        assertFalse(recipients.contains("d@fmi.bg"), "Expected an unknown address not to be contained");
+        assertFalse(recipients.contains(1), "Expected a non-string not to be contained");
+    }
+
+    @Test
+    void testSetsOfSameInternerCompareByIds() {
+        Set<String> first = RecipientSet.of(interner, List.of("a@fmi.bg", "b@fmi.bg"));
+        Set<String> second = RecipientSet.of(interner, List.of("b@fmi.bg", "a@fmi.bg"));
+        Set<String> other = RecipientSet.of(interner, List.of("a@fmi.bg"));
+
+        assertEquals(first, second, "Expected sets of the same addresses to be equal in any order");
+        assertFalse(first.equals(other), "Expected sets of different addresses not to be equal");
+    }
+
+    @Test
+    void testImmutable() {
+        Set<String> recipients = RecipientSet.of(interner, List.of("a@fmi.bg"));
+
+        assertThrows(UnsupportedOperationException.class, () -> recipients.add("b@fmi.bg"),
+            "UnsupportedOperationException expected to be thrown when the set is changed");
+        assertThrows(UnsupportedOperationException.class, () -> recipients.iterator().remove(),
+            "UnsupportedOperationException expected to be thrown when the set is changed through its iterator");
+    }
+
+    @Test
+    void testFullInternerFallsBackToCopy() {
+        AddressInterner small = new AddressInterner(1);
+        Set<String> recipients = RecipientSet.of(small, List.of("a@fmi.bg", "b@fmi.bg"));
+
+        assertEquals(Set.of("a@fmi.bg", "b@fmi.bg"), recipients, "Expected the addresses to be kept");
+        assertThrows(UnsupportedOperationException.class, () -> recipients.add("c@fmi.bg"),
+            "UnsupportedOperationException expected to be thrown when the copy is changed");
+    }
+
+    @Test
+    void testEmpty() {
+        assertTrue(RecipientSet.of(interner, List.of()).isEmpty(), "Expected an empty set");
+    }
+}
@@ -0,0 +1,73 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several senders, each mailing a random group of colleagues among many accounts, so the deliveries to different
+ * accounts run in parallel and now and then meet at the same account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Threads(4)
+public class AccountActorBenchmark {
+    private static final int GROUPS = 1024;
+    private static final int GROUP_SIZE = 32;
+
+    @Param({"100000"})
+    private int accountCount;
+
+    private Outlook outlook;
+    private String[] metadata;
+    private String body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        outlook = new Outlook();
+        for (int i = 0; i < accountCount; i++) {
+            outlook.addNewAccount("user" + i, "user" + i + "@fmi.bg");
+        }
+
+        Random random = new Random(42);
+        metadata = new String[GROUPS];
+        for (int i = 0; i < GROUPS; i++) {
+            StringBuilder recipients = new StringBuilder();
+            for (int j = 0; j < GROUP_SIZE; j++) {
+                recipients.append("user").append(random.nextInt(accountCount)).append("@fmi.bg,");
+            }
+            metadata[i] = "subject: group " + i + System.lineSeparator() + "recipients: " + recipients +
+                System.lineSeparator() + "received: 2022-12-08 14:14" + System.lineSeparator();
+        }
+        body = new BenchmarkData().text(1024);
+    }
+
+    @State(Scope.Thread)
+    public static class Sender {
+        private final Random random = new Random();
+    }
+
+    @Benchmark
+    public void sendToGroup(Sender sender) {
+        int group = sender.random.nextInt(GROUPS);
+        outlook.sendMail("user" + group, metadata[group], body);
+    }
+}
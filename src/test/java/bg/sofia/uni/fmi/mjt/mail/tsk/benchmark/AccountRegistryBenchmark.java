@@ -0,0 +1,84 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SystemAccount;
+import bg.sofia.uni.fmi.mjt.mail.tsk.registry.AccountRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of the account registry for a growing number of accounts.
+ * The hashed lookups are expected to stay flat, while the linear scan (the way accounts used to be resolved by
+ * email) grows with the account count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountRegistryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int accountCount;
+
+    private AccountRegistry registry;
+    private String[] emails;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        registry = new AccountRegistry();
+        emails = new String[accountCount];
+        names = new String[accountCount];
+
+        for (int i = 0; i < accountCount; i++) {
+            names[i] = "user" + i;
+            emails[i] = "user" + i + "@fmi.bg";
+            registry.add(new Account(emails[i], names[i]));
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 7919) % accountCount;
+        return next;
+    }
+
+    @Benchmark
+    public SystemAccount getByEmail() {
+        return registry.getByEmail(emails[nextIndex()]);
+    }
+
+    @Benchmark
+    public SystemAccount getByName() {
+        return registry.getByName(names[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean containsEmailMiss() {
+        return registry.containsEmail("missing" + nextIndex() + "@fmi.bg");
+    }
+
+    @Benchmark
+    public SystemAccount linearScanByEmail() {
+        String email = emails[nextIndex()];
+        for (var systemAccount : registry.asMap().values()) {
+            if (systemAccount.account().emailAddress().equals(email)) {
+                return systemAccount;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.IncomingMail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of importing a batch of mails into a fresh account, one {@code receiveMail()} call per mail compared with a
+ * single {@code receiveMails()} call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchIngestionBenchmark {
+
+    @Param({"1000", "10000"})
+    private int batchSize;
+
+    @Param({"1024"})
+    private int bodySize;
+
+    private List<IncomingMail> mails;
+    private Outlook outlook;
+
+    @Setup
+    public void generateMails() {
+        BenchmarkData data = new BenchmarkData();
+
+        mails = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            mails.add(new IncomingMail(data.metadata(3), data.text(bodySize)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createAccount() {
+        outlook = new Outlook();
+        outlook.addNewAccount("receiver", "receiver@fmi.bg");
+        outlook.createFolder("receiver", "/inbox/lectures");
+        outlook.addRule("receiver", "/inbox/lectures", "subject-includes: lecture", 1);
+        outlook.addRule("receiver", "/inbox/lectures", "subject-or-body-includes: deadline, homework", 2);
+    }
+
+    @Benchmark
+    public Outlook receiveMailOneByOne() {
+        for (IncomingMail mail : mails) {
+            outlook.receiveMail("receiver", mail.metadata(), mail.content());
+        }
+        return outlook;
+    }
+
+    @Benchmark
+    public Outlook receiveMails() {
+        outlook.receiveMails("receiver", mails);
+        return outlook;
+    }
+}
@@ -0,0 +1,87 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic generator of the texts and mails used by the benchmarks, so that runs can be compared.
+ */
+public class BenchmarkData {
+    private static final long SEED = 20221208L;
+    private static final String[] WORDS = {"mjt", "izpit", "lecture", "homework", "deadline", "project", "java",
+        "stream", "lambda", "record", "thread", "lock", "socket", "server", "client", "test", "maven", "build",
+        "review", "merge", "release", "meeting", "agenda", "report", "progress", "update", "question", "answer"};
+
+    private final Random random;
+
+    public BenchmarkData() {
+        this.random = new Random(SEED);
+    }
+
+    public String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    /**
+     * @return a text of about the given length, made of words separated by spaces
+     */
+    public String text(int length) {
+        StringBuilder builder = new StringBuilder(length + 16);
+        while (builder.length() < length) {
+            builder.append(word()).append(random.nextInt(1000)).append(' ');
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    /**
+     * @return keywords that do not occur in any generated text, which is the worst case for keyword conditions
+     */
+    public String[] missingKeywords(int count) {
+        String[] keywords = new String[count];
+        for (int i = 0; i < count; i++) {
+            keywords[i] = "absent-" + WORDS[i % WORDS.length] + i;
+        }
+        return keywords;
+    }
+
+    public String email(int i) {
+        return "user" + i + "@fmi.bg";
+    }
+
+    public Set<String> recipients(int count) {
+        Set<String> recipients = new HashSet<>();
+        while (recipients.size() < count) {
+            recipients.add(email(random.nextInt(count * 10)));
+        }
+        return recipients;
+    }
+
+    public String metadata(int recipientCount) {
+        return String.join(System.lineSeparator(),
+            "sender: " + email(random.nextInt(1000)),
+            "subject: " + text(60),
+            "recipients: " + String.join(", ", recipients(recipientCount)),
+            "received: 2022-12-08 14:14") + System.lineSeparator();
+    }
+
+    public Mail mail(int bodyLength) {
+        Account sender = new Account(email(random.nextInt(1000)), "sender");
+        LocalDateTime received = LocalDateTime.of(2022, 12, 8, 14, 14).plusMinutes(random.nextInt(1_000_000));
+
+        return new Mail(sender, recipients(3), text(60), text(bodyLength), received);
+    }
+
+    public Mail[] mails(int count, int bodyLength) {
+        Mail[] mails = new Mail[count];
+        for (int i = 0; i < count; i++) {
+            mails[i] = mail(bodyLength);
+        }
+        return mails;
+    }
+}
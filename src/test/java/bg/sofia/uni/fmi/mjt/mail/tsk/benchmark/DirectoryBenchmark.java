@@ -0,0 +1,88 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folder operations of {@link Directory} for growing folder sizes. Every invocation works on a freshly filled
+ * directory, so the operations which change the folders are measured on the same state each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryBenchmark {
+    private static final String FOLDER = "/inbox/folder";
+    private static final int BODY_SIZE = 256;
+
+    @Param({"1000", "100000"})
+    private int folderSize;
+
+    @Param({"HASH", "COLUMNAR"})
+    private FolderStorage storage;
+
+    private Mail[] mails;
+    private Directory filled;
+    private Directory fresh;
+    private Rule rule;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        BenchmarkData data = new BenchmarkData();
+        mails = data.mails(folderSize, BODY_SIZE);
+
+        // Every generated subject holds about 6 words from a dictionary of 28, so the rule moves a part of the inbox
+        rule = new Rule(FOLDER, "subject-includes: " + data.word(), 1);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        fresh = new Directory(storage);
+        fresh.addPath(FOLDER);
+
+        filled = new Directory(storage);
+        filled.addPath(FOLDER);
+        for (Mail mail : mails) {
+            filled.addEmailToInbox(mail);
+            filled.addEmail(FOLDER, mail);
+        }
+    }
+
+    @Benchmark
+    public Directory addEmail() {
+        for (Mail mail : mails) {
+            fresh.addEmail(FOLDER, mail);
+        }
+        return fresh;
+    }
+
+    @Benchmark
+    public Set<Mail> getMails() {
+        return filled.getMails(FOLDER);
+    }
+
+    @Benchmark
+    public Directory moveEmailsFromInboxByRule() {
+        filled.moveEmailsFromInboxByRule(rule);
+        return filled;
+    }
+}
@@ -0,0 +1,74 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SortOrder;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.ReceivedOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The newest page of a large folder, read from the received-time index and by sorting the whole folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderPageBenchmark {
+    private static final String FOLDER = "/inbox/folder";
+    private static final int BODY_SIZE = 64;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000", "200000"})
+    private int folderSize;
+
+    @Param({"HASH", "COLUMNAR"})
+    private FolderStorage storage;
+
+    private Directory directory;
+    private Mail middle;
+
+    @Setup
+    public void setUp() {
+        Mail[] mails = new BenchmarkData().mails(folderSize, BODY_SIZE);
+
+        directory = new Directory(storage);
+        directory.addPath(FOLDER);
+        directory.addEmails(FOLDER, Arrays.asList(mails));
+        middle = directory.getMailsPage(FOLDER, null, folderSize / 2, SortOrder.OLDEST_FIRST).get(folderSize / 2 - 1);
+    }
+
+    @Benchmark
+    public List<Mail> newestPage() {
+        return directory.getMailsPage(FOLDER, null, PAGE_SIZE, SortOrder.NEWEST_FIRST);
+    }
+
+    @Benchmark
+    public List<Mail> pageFromMiddle() {
+        return directory.getMailsPage(FOLDER, middle, PAGE_SIZE, SortOrder.NEWEST_FIRST);
+    }
+
+    @Benchmark
+    public List<Mail> newestPageBySorting() {
+        List<Mail> mails = new ArrayList<>(directory.getMails(FOLDER));
+        mails.sort(ReceivedOrder.OLDEST_FIRST.reversed());
+        return mails.subList(0, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,72 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client polling a large folder, with and without changes of the folder between the polls. The directory is
+ * filled once per trial, so the allocation rate (run with {@code -prof gc}) shows the garbage of the polls only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderPollingBenchmark {
+    private static final String FOLDER = "/inbox/folder";
+    private static final int BODY_SIZE = 64;
+
+    @Param({"200000"})
+    private int folderSize;
+
+    @Param({"HASH", "COLUMNAR"})
+    private FolderStorage storage;
+
+    private Mail[] mails;
+    private Directory directory;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        mails = new BenchmarkData().mails(folderSize, BODY_SIZE);
+
+        directory = new Directory(storage);
+        directory.addPath(FOLDER);
+        directory.addEmails(FOLDER, Arrays.asList(mails));
+    }
+
+    @Benchmark
+    public Set<Mail> poll() {
+        return directory.getMails(FOLDER);
+    }
+
+    /**
+     * Every poll follows a change - a mail is taken out of the folder and put back.
+     */
+    @Benchmark
+    public Set<Mail> pollAfterChange() {
+        Mail mail = mails[next];
+        next = (next + 1) % mails.length;
+
+        directory.getDirectoryPaths().get(FOLDER).remove(mail);
+        directory.addEmail(FOLDER, mail);
+        return directory.getMails(FOLDER);
+    }
+}
@@ -0,0 +1,77 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.IncomingMail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap taken by the received mails. Once per trial, a batch of mails from senders without an account is received
+ * and the heap retained by it is printed per mail. The benchmark itself measures receiving a single mail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class MailHeapBenchmark {
+    private static final String ACCOUNT = "receiver";
+    private static final int BODY_SIZE = 64;
+    private static final int RECIPIENTS = 3;
+
+    @Param({"200000"})
+    private int mailCount;
+
+    private IncomingMail[] incoming;
+    private Outlook outlook;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        incoming = new IncomingMail[mailCount];
+        for (int i = 0; i < mailCount; i++) {
+            incoming[i] = new IncomingMail(data.metadata(RECIPIENTS), data.text(BODY_SIZE));
+        }
+
+        Outlook measured = new Outlook();
+        measured.addNewAccount(ACCOUNT, "receiver@fmi.bg");
+        long before = usedHeap();
+        measured.receiveMails(ACCOUNT, Arrays.asList(incoming));
+        long after = usedHeap();
+        System.out.printf("%nRetained heap per received mail: %d bytes (%d mails)%n",
+            (after - before) / mailCount, measured.getMailsFromFolder(ACCOUNT, "/inbox").size());
+
+        outlook = new Outlook();
+        outlook.addNewAccount(ACCOUNT, "receiver@fmi.bg");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public void receiveMail() {
+        IncomingMail mail = incoming[next];
+        next = (next + 1) % incoming.length;
+
+        outlook.receiveMail(ACCOUNT, mail.metadata(), mail.content());
+    }
+}
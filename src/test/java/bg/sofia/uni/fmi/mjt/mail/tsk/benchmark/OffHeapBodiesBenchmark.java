@@ -0,0 +1,81 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A directory holding large bodies, with the bodies on the heap and off it. The heap retained by the directory is
+ * printed once per trial, and the benchmark measures a full collection of that heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx3g", "-XX:MaxDirectMemorySize=3g"})
+public class OffHeapBodiesBenchmark {
+    private static final String FOLDER = "/inbox/folder";
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"200000"})
+    private int mailCount;
+
+    @Param({"4096"})
+    private int bodySize;
+
+    @Param({"HASH", "COLUMNAR", "OFF_HEAP"})
+    private FolderStorage storage;
+
+    private Directory directory;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        long before = usedHeap();
+
+        directory = new Directory(storage);
+        directory.addPath(FOLDER);
+        // The mails are generated in batches, so the benchmark itself never holds all the bodies
+        for (int added = 0; added < mailCount; added += BATCH_SIZE) {
+            List<Mail> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(data.mail(bodySize));
+            }
+            directory.addEmails(FOLDER, batch);
+        }
+
+        System.out.printf("%nHeap retained by %d mails with %d byte bodies (%s): %d MB, %d MB of it by the search "
+            + "index%n", mailCount, bodySize, storage, (usedHeap() - before) / (1024 * 1024),
+            directory.getSearchIndexMemory() / (1024 * 1024));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public int fullCollection() {
+        System.gc();
+        return directory.getMails(FOLDER).size();
+    }
+}
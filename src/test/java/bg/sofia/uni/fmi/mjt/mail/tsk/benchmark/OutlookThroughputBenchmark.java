@@ -0,0 +1,123 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of the mail client under concurrent load. Every benchmark thread works with its own account, so the
+ * per-account locks should let the throughput grow with the thread count, while the global lock variant (the way
+ * the client had to be shared before) stays flat. Run with {@code -t 1}, {@code -t 2}, ... {@code -t N} to compare:
+ * <pre>
+ * mvn -Pbenchmark verify -Dbenchmark.args="OutlookThroughputBenchmark -t 4"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutlookThroughputBenchmark {
+    private static final int MAILS_PER_THREAD = 64;
+    private static final int MAX_THREADS = 256;
+
+    @Param({"1024", "16384"})
+    private int bodySize;
+
+    private Outlook outlook;
+    private String[] bodies;
+    private final Object globalLock = new Object();
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        outlook = new Outlook();
+
+        for (int i = 0; i < MAX_THREADS; i++) {
+            outlook.addNewAccount("user" + i, data.email(i));
+            outlook.createFolder("user" + i, "/inbox/lectures");
+            outlook.addRule("user" + i, "/inbox/lectures", "subject-includes: lecture", 1);
+        }
+
+        bodies = new String[MAILS_PER_THREAD];
+        for (int i = 0; i < MAILS_PER_THREAD; i++) {
+            bodies[i] = data.text(bodySize);
+        }
+    }
+
+    /**
+     * The account of a benchmark thread together with a fixed pool of mails. The same mails are received over and
+     * over again, so the folders do not grow during the measurement.
+     */
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+        private String accountName;
+        private String[] metadata;
+        private String[] sendMetadata;
+        private int next;
+
+        @Setup
+        public void setUp(OutlookThroughputBenchmark benchmark) {
+            int index = benchmark.nextThread.getAndIncrement() % MAX_THREADS;
+            BenchmarkData data = new BenchmarkData();
+
+            accountName = "user" + index;
+            metadata = new String[MAILS_PER_THREAD];
+            sendMetadata = new String[MAILS_PER_THREAD];
+            for (int i = 0; i < MAILS_PER_THREAD; i++) {
+                String subject = (i % 2 == 0 ? "lecture " : "homework ") + data.text(40);
+                String received = "received: 2022-12-08 14:" + (10 + i % 50);
+
+                metadata[i] = String.join(System.lineSeparator(),
+                    "sender: external" + i + "@gmail.com",
+                    "subject: " + subject,
+                    "recipients: " + data.email(index),
+                    received);
+                sendMetadata[i] = String.join(System.lineSeparator(),
+                    "sender: " + data.email(index),
+                    "subject: " + subject,
+                    "recipients: " + data.email(index) + ", " + data.email((index + 1) % MAX_THREADS),
+                    received);
+            }
+        }
+
+        private int nextIndex() {
+            next = (next + 1) % MAILS_PER_THREAD;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public void receiveMail(ThreadAccount thread) {
+        int i = thread.nextIndex();
+        outlook.receiveMail(thread.accountName, thread.metadata[i], bodies[i]);
+    }
+
+    @Benchmark
+    public void receiveMailGlobalLock(ThreadAccount thread) {
+        int i = thread.nextIndex();
+        synchronized (globalLock) {
+            outlook.receiveMail(thread.accountName, thread.metadata[i], bodies[i]);
+        }
+    }
+
+    @Benchmark
+    public void sendMail(ThreadAccount thread) {
+        int i = thread.nextIndex();
+        outlook.sendMail(thread.accountName, thread.sendMetadata[i], bodies[i]);
+    }
+}
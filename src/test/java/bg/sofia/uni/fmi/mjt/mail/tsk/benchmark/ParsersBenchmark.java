@@ -0,0 +1,90 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.metadata.MailMetadata;
+import bg.sofia.uni.fmi.mjt.mail.tsk.parsers.CommaSeparatedValuesToSetParser;
+import bg.sofia.uni.fmi.mjt.mail.tsk.parsers.KeyFromTextToValueLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing the mail metadata. The {@code legacy} benchmarks repeat the way the metadata used to be parsed -
+ * a separate search over the whole text for every key and a new formatter for every mail - so the single-pass
+ * parser can be compared with it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsersBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int recipientCount;
+
+    private String metadata;
+    private String metadataCrLf;
+    private String recipientsLine;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        metadata = data.metadata(recipientCount);
+        metadataCrLf = metadata.replace(System.lineSeparator(), "\r\n");
+        recipientsLine = KeyFromTextToValueLineParser.getValueLine("recipients:", metadata);
+    }
+
+    @Benchmark
+    public MailMetadata mailMetadata() {
+        return new MailMetadata(metadata);
+    }
+
+    @Benchmark
+    public MailMetadata mailMetadataCrLf() {
+        return new MailMetadata(metadataCrLf);
+    }
+
+    @Benchmark
+    public Object[] legacyMailMetadata() {
+        String sender = KeyFromTextToValueLineParser.getValueLine("sender:", metadata);
+        String subject = KeyFromTextToValueLineParser.getValueLine("subject:", metadata);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        String receivedLine = KeyFromTextToValueLineParser.getValueLine("received:", metadata);
+        LocalDateTime received = LocalDateTime.parse(receivedLine, formatter);
+
+        String recipientsLine = KeyFromTextToValueLineParser.getValueLine("recipients:", metadata);
+        Set<String> recipients = CommaSeparatedValuesToSetParser.getSet(recipientsLine);
+
+        return new Object[] {sender, subject, received, recipients};
+    }
+
+    @Benchmark
+    public String getValueLineFirstKey() {
+        return KeyFromTextToValueLineParser.getValueLine("sender:", metadata);
+    }
+
+    @Benchmark
+    public String getValueLineLastKey() {
+        return KeyFromTextToValueLineParser.getValueLine("received:", metadata);
+    }
+
+    @Benchmark
+    public Set<String> getSet() {
+        return CommaSeparatedValuesToSetParser.getSet(recipientsLine);
+    }
+}
@@ -0,0 +1,125 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.MailClient;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.tsk.persistence.FsyncPolicy;
+import bg.sofia.uni.fmi.mjt.mail.tsk.persistence.PersistenceOptions;
+import bg.sofia.uni.fmi.mjt.mail.tsk.persistence.PersistentMailClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest throughput of {@code receiveMail()} in memory compared with the persistent client under every fsync policy.
+ * Several threads receive mails at once, so that the cost of a log write is shared by a group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class PersistenceBenchmark {
+    private static final int MAIL_COUNT = 1024;
+    private static final int ACCOUNT_COUNT = 4;
+
+    @Param({"IN_MEMORY", "NEVER", "INTERVAL", "ALWAYS"})
+    private String mode;
+
+    @Param({"512"})
+    private int bodySize;
+
+    private String[] metadata;
+    private String[] bodies;
+
+    private Path directory;
+    private MailClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData();
+        metadata = new String[MAIL_COUNT];
+        bodies = new String[MAIL_COUNT];
+        for (int i = 0; i < MAIL_COUNT; i++) {
+            metadata[i] = data.metadata(3);
+            bodies[i] = data.text(bodySize);
+        }
+
+        if (mode.equals("IN_MEMORY")) {
+            client = new Outlook();
+        } else {
+            directory = Files.createTempDirectory("mail-benchmark");
+            client = PersistentMailClient.open(PersistenceOptions.of(directory)
+                .withFsyncPolicy(FsyncPolicy.valueOf(mode)));
+        }
+
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            client.addNewAccount("receiver" + i, "receiver" + i + "@fmi.bg");
+            client.createFolder("receiver" + i, "/inbox/lectures");
+            client.addRule("receiver" + i, "/inbox/lectures", "subject-includes: lecture", 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (client instanceof Closeable closeable) {
+            closeable.close();
+        }
+        if (directory != null) {
+            List<Path> paths = new ArrayList<>();
+            try (var walk = Files.newDirectoryStream(directory)) {
+                for (Path path : walk) {
+                    paths.add(path);
+                }
+            }
+            paths.sort(Comparator.reverseOrder());
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static int nextAccount;
+
+        private String account;
+        private int next;
+
+        @Setup
+        public void pickAccount() {
+            synchronized (Cursor.class) {
+                account = "receiver" + (nextAccount++ % ACCOUNT_COUNT);
+            }
+        }
+    }
+
+    @Benchmark
+    public int receiveMail(Cursor cursor) {
+        int i = cursor.next++ & (MAIL_COUNT - 1);
+        client.receiveMail(cursor.account, metadata[i], bodies[i]);
+        return i;
+    }
+}
@@ -0,0 +1,90 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.RuleSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule construction, and routing a mail through the rules of an account when none of them fits it.
+ * Priorities are unique per account and range from 1 to 10, so an account has at most 10 rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBenchmark {
+
+    @Param({"1", "5", "10"})
+    private int ruleCount;
+
+    @Param({"1", "8"})
+    private int keywordCount;
+
+    @Param({"1024", "524288"})
+    private int bodySize;
+
+    private String[] definitions;
+    private Rule[] rules;
+    private RuleSet ruleSet;
+    private Mail mail;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        mail = data.mail(bodySize);
+
+        definitions = new String[ruleCount];
+        rules = new Rule[ruleCount];
+        ruleSet = new RuleSet();
+
+        String[] keywords = data.missingKeywords(keywordCount * ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            StringBuilder subjectOrBody = new StringBuilder("subject-or-body-includes: ");
+            for (int j = 0; j < keywordCount; j++) {
+                subjectOrBody.append(keywords[i * keywordCount + j]).append(", ");
+            }
+
+            definitions[i] = String.join(System.lineSeparator(), "subject-includes: " + data.word(),
+                subjectOrBody.toString(), "recipients-includes: " + String.join(", ", mail.recipients()));
+            rules[i] = new Rule("/inbox/folder" + i, definitions[i], i + 1);
+            ruleSet.add(rules[i]);
+        }
+    }
+
+    @Benchmark
+    public Rule ruleConstruction() {
+        next = (next + 1) % ruleCount;
+        return new Rule("/inbox/folder", definitions[next], next + 1);
+    }
+
+    @Benchmark
+    public Rule findRuleSequential() {
+        for (Rule rule : rules) {
+            if (rule.doesRuleFitMail(mail)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Rule findRuleInRuleSet() {
+        return ruleSet.findRule(mail);
+    }
+}
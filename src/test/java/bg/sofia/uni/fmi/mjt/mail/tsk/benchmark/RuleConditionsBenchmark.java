@@ -0,0 +1,83 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.FromCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.RecipientsIncludesCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.SubjectIncludesCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.SubjectOrBodyIncludesCondition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single condition evaluation. The keywords never occur in the mail, so the keyword conditions have to
+ * look through the whole text - except that a conjunction stops at the first missing keyword.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleConditionsBenchmark {
+
+    @Param({"1024", "65536", "524288"})
+    private int bodySize;
+
+    @Param({"1", "8", "32"})
+    private int keywordCount;
+
+    private Mail mail;
+
+    private final FromCondition from = new FromCondition();
+    private final RecipientsIncludesCondition recipientsIncludes = new RecipientsIncludesCondition();
+    private final SubjectIncludesCondition subjectIncludes = new SubjectIncludesCondition();
+    private final SubjectOrBodyIncludesCondition subjectOrBodyIncludes = new SubjectOrBodyIncludesCondition();
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        mail = data.mail(bodySize);
+
+        String keywords = String.join(", ", data.missingKeywords(keywordCount));
+        String[] addresses = new String[keywordCount];
+        for (int i = 0; i < keywordCount; i++) {
+            addresses[i] = "nobody" + i + "@fmi.bg";
+        }
+
+        from.setValues("from: " + mail.sender().emailAddress());
+        recipientsIncludes.setValues("recipients-includes: " + String.join(", ", addresses));
+        subjectIncludes.setValues("subject-includes: " + keywords);
+        subjectOrBodyIncludes.setValues("subject-or-body-includes: " + keywords);
+    }
+
+    @Benchmark
+    public boolean fromCondition() {
+        return from.doesConditionFitMail(mail);
+    }
+
+    @Benchmark
+    public boolean recipientsIncludesCondition() {
+        return recipientsIncludes.doesConditionFitMail(mail);
+    }
+
+    @Benchmark
+    public boolean subjectIncludesCondition() {
+        return subjectIncludes.doesConditionFitMail(mail);
+    }
+
+    @Benchmark
+    public boolean subjectOrBodyIncludesCondition() {
+        return subjectOrBodyIncludes.doesConditionFitMail(mail);
+    }
+}
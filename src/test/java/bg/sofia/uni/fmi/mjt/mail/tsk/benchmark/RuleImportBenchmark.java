@@ -0,0 +1,85 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import bg.sofia.uni.fmi.mjt.mail.tsk.RuleSpec;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provisioning of a rule of every priority for an account with a large inbox. Every rule names a keyword which the
+ * mails lack, so no mail is moved and every rule is checked against the whole inbox.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleImportBenchmark {
+    private static final int RULE_COUNT = 10;
+
+    @Param({"100000"})
+    private int inboxSize;
+
+    private Mail[] mails;
+    private List<RuleSpec> rules;
+    private Outlook outlook;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        BenchmarkData data = new BenchmarkData();
+        mails = data.mails(inboxSize, 256);
+
+        // Rules of the same priority conflict, so an account holds at most one rule per priority
+        String[] kinds = {"subject-includes: ", "subject-or-body-includes: "};
+        String[] keywords = data.missingKeywords(RULE_COUNT);
+        rules = new ArrayList<>();
+        for (int i = 0; i < RULE_COUNT; i++) {
+            rules.add(new RuleSpec("/inbox/folder" + i, kinds[i % kinds.length] + keywords[i], i + 1));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpAccount() {
+        outlook = new Outlook();
+        outlook.addNewAccount("name", "name@fmi.bg");
+        for (RuleSpec rule : rules) {
+            outlook.createFolder("name", rule.folderPath());
+        }
+
+        Directory directory = outlook.getSystemAccounts().get("name").directory();
+        for (Mail mail : mails) {
+            directory.addEmailToInbox(mail);
+        }
+    }
+
+    @Benchmark
+    public Outlook addRulesOneByOne() {
+        for (RuleSpec rule : rules) {
+            outlook.addRule("name", rule.folderPath(), rule.ruleDefinition(), rule.priority());
+        }
+        return outlook;
+    }
+
+    @Benchmark
+    public Outlook addRules() {
+        outlook.addRules("name", rules);
+        return outlook;
+    }
+}
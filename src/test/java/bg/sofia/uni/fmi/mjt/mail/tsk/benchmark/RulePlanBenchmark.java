@@ -0,0 +1,58 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A rule applied to an inbox, as when the rule is added. The rule names a sender and a keyword missing from the
+ * mails, so a rule which searches the body before checking the sender scans every body in vain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulePlanBenchmark {
+    private static final int MAIL_COUNT = 1000;
+
+    @Param({"1024", "65536"})
+    private int bodySize;
+
+    private Mail[] mails;
+    private Rule rule;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        mails = data.mails(MAIL_COUNT, bodySize);
+
+        String keyword = data.missingKeywords(1)[0];
+        rule = new Rule("/inbox/folder", "subject-or-body-includes: " + keyword + System.lineSeparator()
+            + "from: nobody@fmi.bg", 1);
+    }
+
+    @Benchmark
+    public int applyRuleToInbox() {
+        int fitting = 0;
+        for (Mail mail : mails) {
+            if (rule.doesRuleFitMail(mail)) {
+                fitting++;
+            }
+        }
+        return fitting;
+    }
+}
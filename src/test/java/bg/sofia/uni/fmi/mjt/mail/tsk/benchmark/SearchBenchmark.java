@@ -0,0 +1,89 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.Directory;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text search in a large mailbox, through the search index and by scanning the folders. The estimated memory
+ * of the index is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class SearchBenchmark {
+    private static final String FOLDER = "/inbox/folder";
+    private static final int BODY_SIZE = 64;
+
+    @Param({"1000000"})
+    private int mailCount;
+
+    private Directory directory;
+    private String word;
+    private String otherWord;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        Mail[] mails = data.mails(mailCount, BODY_SIZE);
+
+        directory = new Directory(FolderStorage.HASH);
+        directory.addPath(FOLDER);
+        directory.addEmails(FOLDER, Arrays.asList(mails).subList(0, mailCount / 2));
+        directory.addEmailsToInbox(Arrays.asList(mails).subList(mailCount / 2, mailCount));
+
+        word = mails[0].subject().split(" ")[0];
+        otherWord = mails[0].body().split(" ")[0];
+        System.out.printf("%nSearch index of %d mails: %d MB%n", mailCount,
+            directory.getSearchIndexMemory() / (1024 * 1024));
+    }
+
+    @Benchmark
+    public List<Mail> searchOneWord() {
+        return directory.search(word, null);
+    }
+
+    @Benchmark
+    public List<Mail> searchTwoWords() {
+        return directory.search(word + " " + otherWord, null);
+    }
+
+    @Benchmark
+    public List<Mail> searchTwoWordsInFolder() {
+        return directory.search(word + " " + otherWord, FOLDER);
+    }
+
+    @Benchmark
+    public List<Mail> scanFolders() {
+        List<Mail> found = new ArrayList<>();
+        for (String path : List.of("/inbox", FOLDER)) {
+            for (Mail mail : directory.getMails(path)) {
+                String text = (mail.subject() + " " + mail.body()).toLowerCase(Locale.ROOT);
+                if (text.contains(word) && text.contains(otherWord)) {
+                    found.add(mail);
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,67 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mail sent to every account of the client. Every recipient has a few rules of its own, none of which fits the
+ * mail, so the mail is routed by all of them before it lands in the inbox.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendMailFanOutBenchmark {
+    private static final int RULES_PER_ACCOUNT = 4;
+
+    @Param({"5000"})
+    private int recipientCount;
+
+    private Outlook outlook;
+    private String metadata;
+    private String body;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        String[] keywords = data.missingKeywords(RULES_PER_ACCOUNT);
+        outlook = new Outlook();
+        outlook.addNewAccount("sender", "sender@fmi.bg");
+
+        StringBuilder recipients = new StringBuilder();
+        for (int i = 0; i < recipientCount; i++) {
+            String name = "colleague" + i;
+            outlook.addNewAccount(name, name + "@fmi.bg");
+            recipients.append(name).append("@fmi.bg,");
+            for (int j = 0; j < RULES_PER_ACCOUNT; j++) {
+                outlook.createFolder(name, "/inbox/folder" + j);
+                outlook.addRule(name, "/inbox/folder" + j, "subject-or-body-includes: " + keywords[j], j + 1);
+            }
+        }
+
+        metadata = "sender: sender@fmi.bg" + System.lineSeparator() + "subject: announcement" +
+            System.lineSeparator() + "recipients: " + recipients + System.lineSeparator() +
+            "received: 2022-12-08 14:14" + System.lineSeparator();
+        body = data.text(1024);
+    }
+
+    @Benchmark
+    public void sendMailToEveryone() {
+        outlook.sendMail("sender", metadata, body);
+    }
+}
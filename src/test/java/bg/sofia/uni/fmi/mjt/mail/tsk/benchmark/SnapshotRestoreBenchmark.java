@@ -0,0 +1,94 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.benchmark;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.persistence.FsyncPolicy;
+import bg.sofia.uni.fmi.mjt.mail.tsk.persistence.PersistenceOptions;
+import bg.sofia.uni.fmi.mjt.mail.tsk.persistence.PersistentMailClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup of the persistent client from a snapshot of many accounts with full inboxes and a few rules each. The log
+ * after the snapshot is empty, so the time is spent reading the snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotRestoreBenchmark {
+    private static final int RULE_COUNT = 3;
+
+    @Param({"50"})
+    private int accountCount;
+
+    @Param({"5000"})
+    private int mailsPerAccount;
+
+    private Path directory;
+    private PersistenceOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mail-benchmark");
+        options = PersistenceOptions.of(directory).withFsyncPolicy(FsyncPolicy.NEVER).withSnapshotEveryRecords(0);
+
+        BenchmarkData data = new BenchmarkData();
+        try (PersistentMailClient client = PersistentMailClient.open(options)) {
+            for (int i = 0; i < accountCount; i++) {
+                String name = "user" + i;
+                client.addNewAccount(name, data.email(i));
+                for (int j = 0; j < RULE_COUNT; j++) {
+                    client.createFolder(name, "/inbox/rule" + j);
+                    client.addRule(name, "/inbox/rule" + j, "subject-includes: " + data.word()
+                        + System.lineSeparator() + "from: " + data.email(j), j + 1);
+                }
+
+                // The mails are put straight into the inbox, the snapshot does not care how they got there
+                List<Mail> mails = new ArrayList<>(List.of(data.mails(mailsPerAccount, 256)));
+                client.getOutlook().getSystemAccounts().get(name).directory().addEmailsToInbox(mails);
+            }
+            client.snapshot();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (var files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                paths.add(path);
+            }
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int restore() throws IOException {
+        try (PersistentMailClient client = PersistentMailClient.open(options)) {
+            return client.getOutlook().getSystemAccounts().size();
+        }
+    }
+}
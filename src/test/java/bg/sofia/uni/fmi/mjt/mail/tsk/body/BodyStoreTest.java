@@ -0,0 +1,71 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.body;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class BodyStoreTest {
+    private final BodyStore bodies = new BodyStore();
+
+    @Test
+    void testRetainReturnsTheFirstInstanceOfEqualBodies() {
+        String first = new String("newsletter");
+        String second = new String("newsletter");
+
+        assertSame(first, bodies.retain(first), "Expected a new body to be kept as it is");
+        assertSame(first, bodies.retain(second), "Expected an equal body to be replaced by the stored instance");
+        assertEquals(1, bodies.getDistinctBodyCount(), "Expected equal bodies to be stored once");
+        assertEquals(2, bodies.getReferenceCount(), "Expected both bodies to be counted as references");
+    }
+
+    @Test
+    void testRetainKeepsDifferentBodiesApart() {
+        bodies.retain("first");
+        bodies.retain("second");
+
+        assertEquals(2, bodies.getDistinctBodyCount(), "Expected different bodies to be stored separately");
+    }
+
+    @Test
+    void testReleaseDropsTheBodyWithTheLastReference() {
+        String body = "newsletter";
+        bodies.retain(body);
+        bodies.retain(new String(body));
+
+        bodies.release(body);
+        assertEquals(1, bodies.getDistinctBodyCount(), "Expected the body to stay while it is referred to");
+
+        bodies.release(new String(body));
+        assertEquals(0, bodies.getDistinctBodyCount(), "Expected the body to be dropped without references");
+        assertEquals(0, bodies.getReferenceCount(), "Expected no references to be left");
+        assertEquals(0, bodies.getStoredBytes(), "Expected no bytes to be left");
+    }
+
+    @Test
+    void testReleaseIgnoresUnknownBodies() {
+        bodies.retain("known");
+
+        bodies.release("unknown");
+
+        assertEquals(1, bodies.getReferenceCount(), "Expected an unknown body not to change the references");
+    }
+
+    @Test
+    void testNullBodies() {
+        assertNull(bodies.retain(null), "Expected a null body to stay null");
+        bodies.release(null);
+        assertEquals(0, bodies.getDistinctBodyCount(), "Expected a null body not to be stored");
+    }
+
+    @Test
+    void testBytesCountedInUtf8() {
+        String body = "\u0437\u0434\u0440\u0430\u0432\u0435\u0439";
+        bodies.retain(body);
+        bodies.retain(new String(body));
+
+        assertEquals(14, bodies.getStoredBytes(), "Expected the stored body to take its UTF-8 size once");
+        assertEquals(28, bodies.getReferencedBytes(), "Expected every reference to count the whole body");
+    }
+}
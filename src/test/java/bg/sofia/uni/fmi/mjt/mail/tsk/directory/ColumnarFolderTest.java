@@ -0,0 +1,154 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarFolderTest {
+    private final MailStore store = new MailStore();
+    private final ColumnarFolder folder = new ColumnarFolder(store);
+
+    private final Account sender = new Account("ivan@fmi.bg", "ivan");
+    private final LocalDateTime received = LocalDateTime.of(2022, 12, 8, 14, 14);
+
+    private Mail mail(int i) {
+        return new Mail(sender, Set.of("pesho@gmail.com"), "subject " + i, "body " + i, received.plusMinutes(i));
+    }
+
+    @Test
+    void testAddAndContains() {
+        assertTrue(folder.add(mail(1)), "Expected new mail to be added");
+
+        assertTrue(folder.contains(mail(1)), "Expected added mail to be contained");
+        assertFalse(folder.contains(mail(2)), "Expected other mail not to be contained");
+        assertEquals(1, folder.size(), "Expected one mail in folder");
+    }
+
+    @Test
+    void testAddSameMailTwice() {
+        folder.add(mail(1));
+
+        assertFalse(folder.add(mail(1)), "Expected equal mail not to be added again");
+        assertEquals(1, folder.size(), "Expected equal mails to be kept once");
+    }
+
+    @Test
+    void testMailIsReadBackEqual() {
+        Mail mail = new Mail(null, Set.of("a@gmail.com", "b@gmail.com"), "subject", "body",
+            LocalDateTime.of(1969, 7, 20, 20, 17, 40, 123));
+        folder.add(mail);
+
+        assertEquals(Set.of(mail), folder, "Expected mail with external sender and seconds to be read back equal");
+    }
+
+    @Test
+    void testMailWithNullFieldsIsReadBackEqual() {
+        Mail mail = new Mail(sender, null, null, null, null);
+        folder.add(mail);
+
+        assertEquals(Set.of(mail), folder, "Expected mail with missing fields to be read back equal");
+    }
+
+    @Test
+    void testRemove() {
+        folder.add(mail(1));
+        folder.add(mail(2));
+
+        assertTrue(folder.remove(mail(1)), "Expected contained mail to be removed");
+        assertFalse(folder.remove(mail(1)), "Expected removed mail not to be removed again");
+        assertEquals(Set.of(mail(2)), folder, "Expected only the other mail to be left");
+    }
+
+    @Test
+    void testIteratorRemove() {
+        for (int i = 0; i < 100; i++) {
+            folder.add(mail(i));
+        }
+
+        Iterator<Mail> it = folder.iterator();
+        while (it.hasNext()) {
+            if (it.next().subject().endsWith("0")) {
+                it.remove();
+            }
+        }
+
+        assertEquals(90, folder.size(), "Expected every tenth mail to be removed");
+        assertFalse(folder.contains(mail(50)), "Expected removed mail not to be contained");
+        assertTrue(folder.contains(mail(51)), "Expected other mails to be contained");
+    }
+
+    @Test
+    void testIteratorRemoveWithoutNext() {
+        folder.add(mail(1));
+
+        assertThrows(IllegalStateException.class, () -> folder.iterator().remove(),
+            "Expected exception when removing before next");
+    }
+
+    @Test
+    void testAddAfterManyRemoves() {
+        Set<Mail> expected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            folder.add(mail(i));
+            if (i % 3 == 0) {
+                expected.add(mail(i));
+            } else {
+                folder.remove(mail(i));
+            }
+        }
+        for (int i = 1000; i < 1100; i++) {
+            folder.add(mail(i));
+            expected.add(mail(i));
+        }
+
+        assertEquals(expected, folder, "Expected folder to stay correct after dead rows are compacted");
+    }
+
+    @Test
+    void testMoveMatchingSharesTexts() {
+        ColumnarFolder target = new ColumnarFolder(store);
+        for (int i = 0; i < 10; i++) {
+            folder.add(mail(i));
+        }
+        int texts = store.getTextCount();
+
+        int moved = folder.moveMatching(mail -> mail.received().getMinute() % 2 == 0, target);
+
+        assertEquals(5, moved, "Expected half of the mails to be moved");
+        assertEquals(5, folder.size(), "Expected moved mails to be removed from the source");
+        assertEquals(Set.of(mail(0), mail(2), mail(4), mail(6), mail(8)), target,
+            "Expected moved mails to be in the target");
+        assertEquals(texts, store.getTextCount(), "Expected texts not to be stored again when moving");
+    }
+
+    @Test
+    void testMoveMatchingToHashFolder() {
+        HashFolder target = new HashFolder();
+        folder.add(mail(1));
+
+        folder.moveMatching(mail -> true, target);
+
+        assertEquals(Set.of(mail(1)), target, "Expected mail to be moved to a folder of another kind");
+        assertTrue(folder.isEmpty(), "Expected moved mail to be removed from the source");
+    }
+
+    @Test
+    void testSendersAndRecipientsAreInterned() {
+        for (int i = 0; i < 10; i++) {
+            folder.add(mail(i));
+        }
+
+        assertEquals(1, store.getSenderCount(), "Expected the same sender to be stored once");
+        assertEquals(1, store.getRecipientSetCount(), "Expected the same recipients to be stored once");
+    }
+}
@@ -2,7 +2,9 @@ package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
 
 import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
 import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.body.BodyStore;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderInUseException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.FolderNotFoundException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.InvalidPathException;
 import bg.sofia.uni.fmi.mjt.mail.tsk.rule.Rule;
@@ -10,11 +12,14 @@ import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -312,6 +317,30 @@ public class DirectoryTest {
         assertEquals(0, directory.getDirectoryPaths().get("/inbox").size(), "Expected no mails to be found in inbox");
     }
 
+    @Test
+    void testAddEmailsTwoMails() {
+        String path = "/inbox/child";
+        directory.addPath(path);
+
+        directory.addEmails(path, List.of(mail1, mail2));
+
+        assertEquals(Set.of(mail1, mail2), directory.getDirectoryPaths().get(path),
+            "Expected mails to be added successfully in path");
+    }
+
+    @Test
+    void testAddEmailsFolderNotFound() {
+        assertThrows(FolderNotFoundException.class, () -> directory.addEmails("/inbox/child", List.of(mail1)),
+            "FolderNotFoundException expected to be thrown when folder does not exist");
+    }
+
+    @Test
+    void testAddEmailsToInboxTwoMails() {
+        directory.addEmailsToInbox(List.of(mail1, mail2));
+
+        assertEquals(Set.of(mail1, mail2), directory.getMailsFromInbox(), "Expected mails to be added in inbox");
+    }
+
     @Test
     void testAddEmailToInboxTwoMails() {
         String path = "/inbox";
@@ -387,6 +416,36 @@ public class DirectoryTest {
         assertEquals(mails, directory.getDirectoryPaths().get(path), "Expected mails to be added successfully in path");
     }
 
+    @Test
+    void testMoveEmailsFromInboxByRulesFirstFittingRuleWins() {
+        directory.addPath(rule1.getFolderPath());
+        directory.addPath(rule2.getFolderPath());
+
+        directory.addEmailToInbox(mail1);
+        directory.addEmailToInbox(mail2);
+
+        assertEquals(2, directory.moveEmailsFromInboxByRules(List.of(rule1, rule2)),
+            "Expected both mails to be moved");
+
+        assertEquals(Set.of(mail1), directory.getDirectoryPaths().get(rule1.getFolderPath()),
+            "Expected the mail fitting both rules to be moved by the first of them");
+        assertEquals(Set.of(mail2), directory.getDirectoryPaths().get(rule2.getFolderPath()),
+            "Expected the other mail to be moved by the rule it fits");
+        assertEquals(0, directory.getDirectoryPaths().get("/inbox").size(),
+            "Expected mails to be removed successfully from inbox");
+    }
+
+    @Test
+    void testMoveEmailsFromInboxByRulesPathNotFound() {
+        directory.addPath(rule2.getFolderPath());
+        directory.addEmailToInbox(mail1);
+
+        assertThrows(FolderNotFoundException.class, () -> directory.moveEmailsFromInboxByRules(List.of(rule2, rule1)),
+            "Expected exception when the path of any rule is not found");
+        assertEquals(Set.of(mail1), directory.getDirectoryPaths().get("/inbox"),
+            "Expected no mail to be moved when the path of any rule is not found");
+    }
+
     @Test
     void testMoveEmailsFromInboxByRuleNoneOfTwo() {
         String path = rule3.getFolderPath();
@@ -405,4 +464,288 @@ public class DirectoryTest {
 
         assertEquals(mails, directory.getDirectoryPaths().get(path), "Expected mails to be added successfully in path");
     }
+
+    @Test
+    void testColumnarStorageMoveEmailsFromInboxByRule() {
+        Directory columnar = new Directory(FolderStorage.COLUMNAR);
+        String path = rule1.getFolderPath();
+        columnar.addPath(path);
+
+        columnar.addEmailToInbox(mail1);
+        columnar.addEmailToInbox(mail2);
+
+        columnar.moveEmailsFromInboxByRule(rule1);
+
+        assertEquals(Set.of(mail2), columnar.getMailsFromInbox(), "Expected mails to be removed from inbox");
+        assertEquals(Set.of(mail1), columnar.getMails(path), "Expected mails to be added successfully in path");
+    }
+
+    @Test
+    void testColumnarStorageAddEmails() {
+        Directory columnar = new Directory(FolderStorage.COLUMNAR);
+
+        columnar.addEmailsToInbox(List.of(mail1, mail2, mail1));
+        columnar.addEmailToSent(mail1);
+
+        assertEquals(Set.of(mail1, mail2), columnar.getDirectoryPaths().get("/inbox"),
+            "Expected mails to be added once in inbox");
+        assertEquals(Set.of(mail1), columnar.getMails("/sent"), "Expected mail to be added in sent");
+    }
+
+    @Test
+    void testOffHeapStorageMoveEmailsFromInboxByRule() {
+        Directory offHeap = new Directory(FolderStorage.OFF_HEAP);
+        String path = rule1.getFolderPath();
+        offHeap.addPath(path);
+
+        offHeap.addEmailsToInbox(List.of(mail1, mail2));
+        offHeap.moveEmailsFromInboxByRule(rule1);
+
+        assertEquals(Set.of(mail2), offHeap.getMailsFromInbox(), "Expected mails to be removed from inbox");
+        assertEquals(Set.of(mail1), offHeap.getMails(path), "Expected mails with off-heap bodies to be moved");
+        assertTrue(offHeap.getMailStore().getBodyStore() instanceof OffHeapTextStore,
+            "Expected the bodies to be kept off the heap");
+    }
+
+    @Test
+    void testSearchReadsFoundMailsFromEveryStorage() {
+        for (FolderStorage storage : FolderStorage.values()) {
+            Directory searched = new Directory(storage);
+            String path = rule1.getFolderPath();
+            searched.addPath(path);
+
+            searched.addEmailsToInbox(List.of(mail1, mail2));
+            searched.moveEmailsFromInboxByRule(rule1);
+
+            assertEquals(List.of(mail1), searched.search("izpit", null),
+                "Expected the moved mail to be read back from its folder with " + storage + " storage");
+            assertEquals(List.of(mail2), searched.search("subject body", "/inbox"),
+                "Expected the mail left in the inbox to be read back with " + storage + " storage");
+        }
+    }
+
+    @Test
+    void testGetChildFoldersAndCountMailsInSubtree() {
+        directory.addPath("/inbox/b");
+        directory.addPath("/inbox/a");
+        directory.addPath("/inbox/a/nested");
+        directory.addEmail("/inbox/a", mail1);
+        directory.addEmail("/inbox/a/nested", mail2);
+        directory.addEmailToInbox(mail1);
+
+        assertEquals(List.of("/inbox/a", "/inbox/b"), directory.getChildFolders("/inbox"),
+            "Expected the child folders sorted by name");
+        assertEquals(2, directory.countMailsInSubtree("/inbox/a"), "Expected the mails of the subfolders to count");
+        assertEquals(3, directory.countMailsInSubtree("/inbox"), "Expected the mails of the inbox to count");
+    }
+
+    @Test
+    void testMoveFolderKeepsIdMailsAndSubfolders() {
+        directory.addPath("/inbox/a");
+        directory.addPath("/inbox/a/nested");
+        directory.addPath("/inbox/b");
+        directory.addEmail("/inbox/a/nested", mail1);
+        int id = directory.getFolderId("/inbox/a/nested");
+
+        directory.moveFolder("/inbox/a", "/inbox/b/renamed");
+
+        assertEquals("/inbox/b/renamed/nested", directory.getFolderPath(id), "Expected the subfolder to move along");
+        assertEquals(Set.of(mail1), directory.getMails("/inbox/b/renamed/nested"),
+            "Expected the mails to move along with their folder");
+        assertEquals(List.of(mail1), directory.search("izpit", "/inbox/b"),
+            "Expected the moved mails to be found in their new parent folder");
+        assertFalse(directory.isPathExisting("/inbox/a"), "Expected the old path to be gone");
+    }
+
+    @Test
+    void testMoveFolderInvalid() {
+        directory.addPath("/inbox/a");
+        directory.addPath("/inbox/a/nested");
+        directory.addPath("/inbox/b");
+
+        assertThrows(InvalidPathException.class, () -> directory.moveFolder("/inbox/a", "/inbox/a/nested/a"),
+            "InvalidPathException expected to be thrown when a folder is moved below itself");
+        assertThrows(InvalidPathException.class, () -> directory.moveFolder("/inbox", "/inbox/b/inbox"),
+            "InvalidPathException expected to be thrown when the inbox is moved");
+        assertThrows(InvalidPathException.class, () -> directory.moveFolder("/inbox/a", "/sent/a"),
+            "InvalidPathException expected to be thrown when a folder is moved out of the inbox");
+        assertThrows(FolderAlreadyExistsException.class, () -> directory.moveFolder("/inbox/a", "/inbox/b"),
+            "FolderAlreadyExistsException expected to be thrown when a folder is moved over another one");
+        assertThrows(FolderNotFoundException.class, () -> directory.moveFolder("/inbox/c", "/inbox/d"),
+            "FolderNotFoundException expected to be thrown when the folder does not exist");
+    }
+
+    @Test
+    void testRemoveFolderRemovesSubtree() {
+        directory.addPath("/inbox/a");
+        directory.addPath("/inbox/a/nested");
+        directory.addEmail("/inbox/a/nested", mail1);
+        directory.addEmailToInbox(mail2);
+        int id = directory.getFolderId("/inbox/a/nested");
+
+        directory.removeFolder("/inbox/a");
+
+        assertFalse(directory.isPathExisting("/inbox/a/nested"), "Expected the subfolders to be removed");
+        assertTrue(directory.search("izpit", null).isEmpty(), "Expected the removed mails not to be found");
+        assertEquals(List.of(mail2), directory.search("subject", null), "Expected the other mails to be found");
+        assertThrows(FolderNotFoundException.class, () -> directory.getMails(id),
+            "FolderNotFoundException expected to be thrown for the id of a removed folder");
+        assertThrows(InvalidPathException.class, () -> directory.removeFolder("/sent"),
+            "InvalidPathException expected to be thrown when a folder out of the inbox is removed");
+    }
+
+    @Test
+    void testRuleTargetsCanNotBeMovedOrRemoved() {
+        directory.addPath("/inbox/a");
+        directory.addPath("/inbox/a/nested");
+        directory.addPath("/inbox/b");
+        int id = directory.addRuleTarget("/inbox/a/nested");
+
+        assertEquals(directory.getFolderId("/inbox/a/nested"), id, "Expected the id of the folder of the rule");
+        assertThrows(FolderInUseException.class, () -> directory.moveFolder("/inbox/a/nested", "/inbox/b/nested"),
+            "FolderInUseException expected to be thrown when the folder of a rule is moved");
+        assertThrows(FolderInUseException.class, () -> directory.moveFolder("/inbox/a", "/inbox/b/a"),
+            "FolderInUseException expected to be thrown when a folder above the folder of a rule is moved");
+        assertThrows(FolderInUseException.class, () -> directory.removeFolder("/inbox/a/nested"),
+            "FolderInUseException expected to be thrown when the folder of a rule is removed");
+        assertThrows(FolderInUseException.class, () -> directory.removeFolder("/inbox/a"),
+            "FolderInUseException expected to be thrown when a folder above the folder of a rule is removed");
+        assertEquals("/inbox/a/nested", directory.getFolderPath(id), "Expected the folder of the rule to stay");
+
+        directory.moveFolder("/inbox/b", "/inbox/a/b");
+        directory.removeFolder("/inbox/a/b");
+        assertFalse(directory.isPathExisting("/inbox/a/b"), "Expected the other folders to be moved and removed");
+        assertThrows(FolderNotFoundException.class, () -> directory.addRuleTarget("/inbox/missing"),
+            "FolderNotFoundException expected to be thrown when the folder of a rule does not exist");
+    }
+
+    private static Directory largeInbox(FolderStorage storage, int size) {
+        Directory directory = new Directory(storage);
+        directory.addPath("/inbox/even");
+        for (int i = 0; i < size; i++) {
+            directory.addEmailToInbox(new Mail(null, Set.of("a@fmi.bg"), (i % 2 == 0 ? "even " : "odd ") + i, "body",
+                LocalDateTime.of(2022, 12, 8, 14, 0).plusMinutes(i)));
+        }
+        return directory;
+    }
+
+    @Test
+    void testMoveEmailsFromInboxByRuleLargeInbox() {
+        for (FolderStorage storage : FolderStorage.values()) {
+            Directory directory = largeInbox(storage, 20_000);
+
+            int moved = directory.moveEmailsFromInboxByRule(new Rule("/inbox/even", "subject-includes: even", 1));
+
+            assertEquals(10_000, moved, "Expected half of the mails to be moved with storage " + storage);
+            assertEquals(10_000, directory.getMailsFromInbox().size(),
+                "Expected the other half to remain in inbox with storage " + storage);
+            for (Mail mail : directory.getMails("/inbox/even")) {
+                assertTrue(mail.subject().startsWith("even"), "Expected only matching mails to be moved");
+            }
+        }
+    }
+
+    @Test
+    void testMoveEmailsFromInboxSkipsMissingMails() {
+        Directory directory = new Directory();
+        String path = rule1.getFolderPath();
+        directory.addPath(path);
+        directory.addEmailToInbox(mail1);
+
+        int moved = directory.moveEmailsFromInbox(List.of(mail1, mail2), path);
+
+        assertEquals(1, moved, "Expected only the mail in inbox to be moved");
+        assertEquals(Set.of(mail1), directory.getMails(path), "Expected the mail to be added in path");
+        assertEquals(Set.of(), directory.getMailsFromInbox(), "Expected the mail to be removed from inbox");
+    }
+
+    @Test
+    void testDirectoriesShareEqualBodies() {
+        BodyStore bodies = new BodyStore();
+        Directory first = new Directory(FolderStorage.HASH, bodies);
+        Directory second = new Directory(FolderStorage.COLUMNAR, bodies);
+
+        first.addEmailToInbox(new Mail(mail1.sender(), mail1.recipients(), "first", new String("newsletter"),
+            mail1.received()));
+        second.addEmailToInbox(new Mail(mail2.sender(), mail2.recipients(), "second", new String("newsletter"),
+            mail2.received()));
+
+        assertSame(first.getMailsFromInbox().iterator().next().body(),
+            second.getMailsFromInbox().iterator().next().body(), "Expected equal bodies to be the same instance");
+        assertEquals(1, bodies.getDistinctBodyCount(), "Expected equal bodies to be stored once");
+        assertEquals(2, bodies.getReferenceCount(), "Expected every stored mail to refer to the body");
+    }
+
+    @Test
+    void testRepeatedMailsDoNotRetainTheirBodies() {
+        BodyStore bodies = new BodyStore();
+        Directory directory = new Directory(FolderStorage.HASH, bodies);
+
+        directory.addEmailToInbox(mail1);
+        directory.addEmailToInbox(mail1);
+        directory.addEmailsToInbox(List.of(mail1, mail2, mail2));
+
+        assertEquals(2, bodies.getReferenceCount(), "Expected only the stored mails to refer to their bodies");
+    }
+
+    @Test
+    void testRemoveFolderReleasesBodies() {
+        BodyStore bodies = new BodyStore();
+        Directory directory = new Directory(FolderStorage.HASH, bodies);
+        String path = rule1.getFolderPath();
+        directory.addPath(path);
+        directory.addEmailToInbox(mail1);
+        directory.addEmail(path, mail2);
+
+        directory.removeFolder(path);
+
+        assertEquals(1, bodies.getDistinctBodyCount(), "Expected the bodies of the removed mails to be released");
+        assertEquals(1, bodies.getReferenceCount(), "Expected only the mail in inbox to refer to its body");
+    }
+
+    @Test
+    void testMoveOntoEqualMailReleasesBody() {
+        for (FolderStorage storage : List.of(FolderStorage.HASH, FolderStorage.COLUMNAR)) {
+            BodyStore bodies = new BodyStore();
+            Directory directory = new Directory(storage, bodies);
+            String path = rule1.getFolderPath();
+            directory.addPath(path);
+            directory.addEmail(path, mail1);
+            directory.addEmailToInbox(mail1);
+
+            directory.moveEmailsFromInboxByRule(rule1);
+
+            assertEquals(Set.of(mail1), directory.getMails(path), "Expected the folder to keep a single copy");
+            assertEquals(1, bodies.getReferenceCount(),
+                "Expected the body of the mail dropped by the move to be released for " + storage);
+
+            directory.addEmailToInbox(mail1);
+            directory.moveEmailsFromInbox(List.of(mail1), path);
+
+            assertEquals(1, bodies.getReferenceCount(),
+                "Expected the body of the mail dropped by the move of a list to be released for " + storage);
+        }
+    }
+
+    @Test
+    void testRestoredMailsAreIndexedOnFirstSearch() {
+        for (FolderStorage storage : FolderStorage.values()) {
+            Directory directory = new Directory(storage);
+            String path = rule1.getFolderPath();
+            directory.addPath(path);
+            directory.restoreEmails("/inbox", List.of(mail1));
+            directory.restoreEmails(path, List.of(mail2));
+
+            // Changes before the first search are picked up when the index is built
+            directory.addPath("/inbox/old");
+            directory.addEmail("/inbox/old", getMail1());
+            directory.removeFolder("/inbox/old");
+            directory.moveEmailsFromInbox(List.of(mail1), path);
+
+            assertEquals(List.of(mail1), directory.search("mjt izpit", null),
+                "Expected the restored mail to be found once, in its new folder, with storage " + storage);
+            assertEquals(List.of(mail2), directory.search("another subject", path),
+                "Expected the restored mail to be found in its folder with storage " + storage);
+        }
+    }
 }
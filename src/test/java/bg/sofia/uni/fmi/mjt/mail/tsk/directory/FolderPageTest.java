@@ -0,0 +1,147 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.SortOrder;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FolderPageTest {
+    private final Account sender = new Account("ivan@fmi.bg", "ivan");
+    private final LocalDateTime received = LocalDateTime.of(2022, 12, 8, 14, 14);
+
+    private Mail mail(int i, int minute) {
+        return new Mail(sender, Set.of("pesho@gmail.com"), "subject " + i, "body " + i, received.plusMinutes(minute));
+    }
+
+    private List<Folder> folders() {
+        return List.of(new HashFolder(), new ColumnarFolder(new MailStore()));
+    }
+
+    private List<Mail> readAll(Folder folder, int pageSize, SortOrder order) {
+        List<Mail> result = new ArrayList<>();
+        Mail after = null;
+        List<Mail> page;
+        do {
+            page = folder.getPage(after, pageSize, order);
+            result.addAll(page);
+            after = page.isEmpty() ? after : page.get(page.size() - 1);
+        } while (page.size() == pageSize);
+        return result;
+    }
+
+    private List<Mail> sorted(Folder folder, SortOrder order) {
+        List<Mail> mails = new ArrayList<>(folder);
+        mails.sort(order == SortOrder.OLDEST_FIRST ?
+            ReceivedOrder.OLDEST_FIRST : ReceivedOrder.OLDEST_FIRST.reversed());
+        return mails;
+    }
+
+    @Test
+    void testEmptyFolderPage() {
+        for (Folder folder : folders()) {
+            assertTrue(folder.getPage(null, 10, SortOrder.NEWEST_FIRST).isEmpty(),
+                "Expected no mails on the page of an empty folder");
+        }
+    }
+
+    @Test
+    void testPagesFollowReceivedOrder() {
+        for (Folder folder : folders()) {
+            for (int i = 0; i < 1000; i++) {
+                folder.add(mail(i, (i * 7919) % 1000));
+            }
+
+            for (SortOrder order : SortOrder.values()) {
+                assertEquals(sorted(folder, order), readAll(folder, 33, order),
+                    "Expected the pages to list every mail in received order");
+            }
+            assertEquals(received.plusMinutes(999), folder.getPage(null, 1, SortOrder.NEWEST_FIRST).get(0).received(),
+                "Expected the newest mail first");
+        }
+    }
+
+    @Test
+    void testPagesWithMailsReceivedAtTheSameTime() {
+        for (Folder folder : folders()) {
+            for (int i = 0; i < 600; i++) {
+                folder.add(mail(i, i % 3));
+            }
+
+            for (SortOrder order : SortOrder.values()) {
+                List<Mail> pages = readAll(folder, 50, order);
+
+                assertEquals(600, pages.size(), "Expected every mail received at the same time to be listed once");
+                assertEquals(sorted(folder, order), pages, "Expected mails received at the same time in stable order");
+            }
+        }
+    }
+
+    @Test
+    void testPageAfterRemovedMail() {
+        for (Folder folder : folders()) {
+            for (int i = 0; i < 10; i++) {
+                folder.add(mail(i, i));
+            }
+
+            List<Mail> first = folder.getPage(null, 5, SortOrder.OLDEST_FIRST);
+            folder.remove(first.get(4));
+
+            assertEquals(List.of(mail(5, 5), mail(6, 6)), folder.getPage(first.get(4), 2, SortOrder.OLDEST_FIRST),
+                "Expected the page to continue after a mail which has been removed");
+            assertEquals(List.of(mail(3, 3), mail(2, 2)), folder.getPage(first.get(4), 2, SortOrder.NEWEST_FIRST),
+                "Expected the page to go back from a mail which has been removed");
+        }
+    }
+
+    @Test
+    void testPagesAfterRemovesAndCompaction() {
+        ColumnarFolder folder = new ColumnarFolder(new MailStore());
+        for (int i = 0; i < 5000; i++) {
+            folder.add(mail(i, 5000 - i));
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            folder.remove(mail(i, 5000 - i));
+        }
+        for (int i = 5000; i < 5500; i++) {
+            folder.add(mail(i, i % 100));
+        }
+
+        for (SortOrder order : SortOrder.values()) {
+            assertEquals(sorted(folder, order), readAll(folder, 100, order),
+                "Expected the received order to be kept through removes and compaction");
+        }
+    }
+
+    @Test
+    void testPagesAfterMoveAndClear() {
+        for (Folder folder : folders()) {
+            Folder target = folder instanceof HashFolder ? new HashFolder() : new ColumnarFolder(new MailStore());
+            List<Mail> moved = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                folder.add(mail(i, i));
+                if (i % 3 == 0) {
+                    moved.add(mail(i, i));
+                }
+            }
+
+            folder.moveAll(moved, target);
+
+            assertEquals(moved, readAll(target, 7, SortOrder.OLDEST_FIRST),
+                "Expected moved mails to be listed from the target folder");
+            assertEquals(200, readAll(folder, 7, SortOrder.NEWEST_FIRST).size(),
+                "Expected moved mails not to be listed from the source folder");
+
+            folder.clear();
+            assertTrue(folder.getPage(null, 7, SortOrder.OLDEST_FIRST).isEmpty(),
+                "Expected no mails on the page of a cleared folder");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FolderSnapshotTest {
+    private final Account sender = new Account("ivan@fmi.bg", "ivan");
+    private final LocalDateTime received = LocalDateTime.of(2022, 12, 8, 14, 14);
+
+    private Mail mail(int i) {
+        return new Mail(sender, Set.of("pesho@gmail.com"), "subject " + i, "body " + i, received.plusMinutes(i));
+    }
+
+    private List<Folder> folders() {
+        return List.of(new HashFolder(), new ColumnarFolder(new MailStore()));
+    }
+
+    @Test
+    void testSnapshotDoesNotSeeLaterChanges() {
+        for (Folder folder : folders()) {
+            for (int i = 0; i < 100; i++) {
+                folder.add(mail(i));
+            }
+            FolderSnapshot snapshot = folder.snapshot();
+            Set<Mail> expected = new HashSet<>(snapshot);
+
+            for (int i = 0; i < 60; i++) {
+                folder.remove(mail(i));
+            }
+            for (int i = 100; i < 300; i++) {
+                folder.add(mail(i));
+            }
+
+            assertEquals(expected, snapshot, "Expected the snapshot to keep its mails in " + folder.getClass());
+            assertTrue(snapshot.contains(mail(0)), "Expected a removed mail to stay in the snapshot");
+            assertFalse(snapshot.contains(mail(200)), "Expected a later mail not to be in the snapshot");
+            assertEquals(240, folder.size(), "Expected the folder to see all changes");
+        }
+    }
+
+    @Test
+    void testSnapshotAfterCompaction() {
+        for (Folder folder : folders()) {
+            for (int i = 0; i < 1000; i++) {
+                folder.add(mail(i));
+            }
+            FolderSnapshot snapshot = folder.snapshot();
+
+            // Removing most rows and adding again makes the columnar folder compact its rows
+            for (int i = 0; i < 900; i++) {
+                folder.remove(mail(i));
+            }
+            folder.add(mail(1000));
+
+            assertEquals(1000, snapshot.size(), "Expected the snapshot size to stay the same");
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(snapshot.contains(mail(i)), "Expected every mail to stay in the snapshot");
+            }
+            assertEquals(1000, new HashSet<>(snapshot).size(), "Expected to iterate over every mail of the snapshot");
+            assertEquals(101, folder.snapshot().size(), "Expected a new snapshot to see the changes");
+        }
+    }
+
+    @Test
+    void testVersionChangesOnlyWithContent() {
+        for (Folder folder : folders()) {
+            folder.add(mail(1));
+            FolderSnapshot first = folder.snapshot();
+
+            folder.add(mail(1));
+            folder.remove(mail(2));
+
+            assertSame(first, folder.snapshot(), "Expected no change to keep the same snapshot");
+
+            folder.add(mail(2));
+
+            assertNotEquals(first.getVersion(), folder.snapshot().getVersion(),
+                "Expected the version to change with the mails");
+        }
+    }
+
+    @Test
+    void testSnapshotIsImmutable() {
+        for (Folder folder : folders()) {
+            folder.add(mail(1));
+            FolderSnapshot snapshot = folder.snapshot();
+
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.add(mail(2)),
+                "Expected snapshot not to accept mails");
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(mail(1)),
+                "Expected snapshot not to remove mails");
+            assertThrows(UnsupportedOperationException.class, snapshot::clear,
+                "Expected snapshot not to be cleared");
+
+            Iterator<Mail> iterator = snapshot.iterator();
+            iterator.next();
+            assertThrows(UnsupportedOperationException.class, iterator::remove,
+                "Expected snapshot iterator not to remove mails");
+        }
+    }
+
+    @Test
+    void testHashFolderWithCollidingMails() {
+        // "Aa" and "BB" have the same hash code, so do all strings built from them with the same length
+        String[] parts = {"Aa", "BB"};
+        List<Mail> colliding = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String subject = parts[i & 1] + parts[(i >> 1) & 1] + parts[(i >> 2) & 1];
+            colliding.add(new Mail(sender, Set.of("pesho@gmail.com"), subject, "body", received));
+        }
+
+        HashFolder folder = new HashFolder();
+        folder.addAll(colliding);
+        folder.add(mail(1));
+        FolderSnapshot full = folder.snapshot();
+
+        assertEquals(9, folder.size(), "Expected colliding mails to be kept apart");
+        for (Mail mail : colliding) {
+            assertTrue(folder.contains(mail), "Expected every colliding mail to be found");
+        }
+
+        for (int i = 0; i < 7; i++) {
+            assertTrue(folder.remove(colliding.get(i)), "Expected colliding mail to be removed");
+        }
+
+        assertEquals(Set.of(colliding.get(7), mail(1)), folder, "Expected only the last colliding mail to remain");
+        assertEquals(9, new HashSet<>(full).size(), "Expected the earlier snapshot to keep the colliding mails");
+    }
+
+    @Test
+    void testHashFolderMatchesHashSet() {
+        HashFolder folder = new HashFolder();
+        Set<Mail> expected = new HashSet<>();
+
+        for (int i = 0; i < 5000; i++) {
+            Mail mail = mail(i * 7 % 3001);
+            assertEquals(expected.add(mail), folder.add(mail), "Expected add to behave like a hash set");
+            if (i % 3 == 0) {
+                Mail removed = mail(i % 1000);
+                assertEquals(expected.remove(removed), folder.remove(removed),
+                    "Expected remove to behave like a hash set");
+            }
+        }
+
+        assertEquals(expected, folder, "Expected the folder to hold the same mails as a hash set");
+        assertEquals(expected, new HashSet<>(folder.snapshot()), "Expected the snapshot to iterate over every mail");
+    }
+
+    @Test
+    void testHashFolderIteratorRemove() {
+        HashFolder folder = new HashFolder();
+        for (int i = 0; i < 50; i++) {
+            folder.add(mail(i));
+        }
+
+        Iterator<Mail> iterator = folder.iterator();
+        int seen = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            seen++;
+        }
+
+        assertEquals(50, seen, "Expected iteration to go over every mail while removing");
+        assertEquals(0, folder.size(), "Expected every mail to be removed");
+    }
+}
@@ -0,0 +1,107 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FolderTreeTest {
+    private final FolderTree<String> tree = new FolderTree<>("root");
+    private final int inbox = tree.add(FolderTree.ROOT, "inbox", "inbox");
+
+    @Test
+    void testFindPaths() {
+        int important = tree.add(inbox, "important", "important");
+        int nested = tree.add(important, "nested", "nested");
+
+        assertEquals(FolderTree.ROOT, tree.find("/"), "Expected the root to be found");
+        assertEquals(nested, tree.find("/inbox/important/nested"), "Expected a nested folder to be found");
+        assertEquals("nested", tree.get(nested), "Expected the value of the folder");
+        assertEquals(important, tree.findParent("/inbox/important/new"), "Expected the parent of a new folder");
+        assertEquals(FolderTree.ROOT, tree.findParent("/inbox"), "Expected the root as the parent of a top folder");
+    }
+
+    @Test
+    void testFindMissingAndMalformedPaths() {
+        tree.add(inbox, "important", "important");
+
+        assertEquals(FolderTree.NO_FOLDER, tree.find(""), "Expected no folder for an empty path");
+        assertEquals(FolderTree.NO_FOLDER, tree.find("inbox"), "Expected no folder for a relative path");
+        assertEquals(FolderTree.NO_FOLDER, tree.find("/inbox/"), "Expected no folder for a trailing separator");
+        assertEquals(FolderTree.NO_FOLDER, tree.find("//inbox"), "Expected no folder for an empty segment");
+        assertEquals(FolderTree.NO_FOLDER, tree.find("/inbox/importan"), "Expected no folder for a prefix of a name");
+        assertEquals(FolderTree.NO_FOLDER, tree.find("/inbox/importantly"), "Expected no folder for a longer name");
+        assertEquals(FolderTree.NO_FOLDER, tree.findParent("/inbox/missing/new"), "Expected no missing parent");
+    }
+
+    @Test
+    void testAddExistingName() {
+        tree.add(inbox, "important", "important");
+
+        assertEquals(FolderTree.NO_FOLDER, tree.add(inbox, "important", "again"),
+            "Expected no folder to be added next to one with the same name");
+        assertEquals(3, tree.size(), "Expected the size to count the root and both folders");
+    }
+
+    @Test
+    void testChildrenSortedByName() {
+        int c = tree.add(inbox, "c", "c");
+        int a = tree.add(inbox, "a", "a");
+        int b = tree.add(inbox, "b", "b");
+
+        assertArrayEquals(new int[] {a, b, c}, tree.childrenOf(inbox), "Expected the children sorted by name");
+        assertArrayEquals(new int[0], tree.childrenOf(a), "Expected no children of a new folder");
+    }
+
+    @Test
+    void testMoveSubtree() {
+        int important = tree.add(inbox, "important", "important");
+        int nested = tree.add(important, "nested", "nested");
+        int archive = tree.add(inbox, "archive", "archive");
+
+        assertTrue(tree.move(important, archive, "old"), "Expected the folder to be moved");
+
+        assertEquals(important, tree.find("/inbox/archive/old"), "Expected the folder to keep its id");
+        assertEquals(nested, tree.find("/inbox/archive/old/nested"), "Expected the subtree to move along");
+        assertEquals("/inbox/archive/old/nested", tree.pathOf(nested), "Expected the path to follow the move");
+        assertEquals(FolderTree.NO_FOLDER, tree.find("/inbox/important"), "Expected the old path to be gone");
+        assertTrue(tree.isInSubtree(nested, archive), "Expected the moved folder below its new parent");
+    }
+
+    @Test
+    void testMoveBelowItselfOrOverExisting() {
+        int important = tree.add(inbox, "important", "important");
+        int nested = tree.add(important, "nested", "nested");
+        tree.add(inbox, "archive", "archive");
+
+        assertFalse(tree.move(important, nested, "loop"), "Expected a folder not to move below itself");
+        assertFalse(tree.move(important, inbox, "archive"), "Expected a folder not to replace another one");
+        assertEquals("/inbox/important/nested", tree.pathOf(nested), "Expected a failed move to change nothing");
+    }
+
+    @Test
+    void testRemoveSubtree() {
+        int important = tree.add(inbox, "important", "important");
+        int nested = tree.add(important, "nested", "nested");
+        int kept = tree.add(inbox, "kept", "kept");
+        List<Integer> removed = new ArrayList<>();
+
+        tree.removeSubtree(important, removed::add);
+
+        assertEquals(List.of(important, nested), removed, "Expected every folder of the subtree to be reported");
+        assertNull(tree.get(nested), "Expected no value for a removed folder");
+        assertFalse(tree.exists(important), "Expected a removed folder not to exist");
+        assertEquals(FolderTree.NO_FOLDER, tree.find("/inbox/important/nested"), "Expected the path to be gone");
+        assertEquals(3, tree.size(), "Expected the size to count the folders left");
+
+        int again = tree.add(inbox, "important", "again");
+        assertTrue(again != important && again != nested && again != kept,
+            "Expected the ids of removed folders not to be given out again");
+    }
+}
@@ -0,0 +1,138 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapTextStoreTest {
+    private final OffHeapTextStore store = new OffHeapTextStore(64);
+
+    @Test
+    void testStoreAndGet() {
+        int first = store.store("first");
+        String cyrillic = "\u0432\u0442\u043e\u0440\u0438 \u0442\u0435\u043a\u0441\u0442 \u2713";
+        int second = store.store(cyrillic);
+
+        assertEquals("first", store.get(first), "Expected the text to be read back");
+        assertEquals(cyrillic, store.get(second), "Expected a non-ASCII text to be read back");
+        assertEquals(2, store.size(), "Expected two stored texts");
+    }
+
+    @Test
+    void testEmptyText() {
+        assertEquals("", store.get(store.store("")), "Expected an empty text to be read back");
+    }
+
+    @Test
+    void testTextsAcrossSlabs() {
+        List<String> texts = new ArrayList<>();
+        List<Integer> handles = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String text = "text number " + i;
+            texts.add(text);
+            handles.add(store.store(text));
+        }
+
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(texts.get(i), store.get(handles.get(i)), "Expected every text to be read back");
+        }
+        assertTrue(store.getReservedBytes() >= store.getUsedBytes(), "Expected the slabs to hold the texts");
+    }
+
+    @Test
+    void testSlabsStartSmallAndGrow() {
+        OffHeapTextStore growing = new OffHeapTextStore();
+        growing.store("body");
+
+        assertTrue(growing.getReservedBytes() <= 4096,
+            "Expected a store with a single short text to reserve a small slab, but it reserved "
+                + growing.getReservedBytes() + " bytes");
+
+        List<Integer> handles = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            handles.add(growing.store("text number " + i));
+        }
+        for (int i = 0; i < handles.size(); i += 997) {
+            assertEquals("text number " + i, growing.get(handles.get(i)), "Expected every text to be read back");
+        }
+        assertTrue(growing.getReservedBytes() < 2 * growing.getUsedBytes() + 4096,
+            "Expected the slabs to grow with the texts instead of staying small or jumping to the maximum size");
+    }
+
+    @Test
+    void testTextLargerThanSlab() {
+        String large = "x".repeat(1000);
+        int before = store.store("before");
+        int handle = store.store(large);
+        int after = store.store("after");
+
+        assertEquals(large, store.get(handle), "Expected a text larger than a slab to be read back");
+        assertEquals("before", store.get(before), "Expected the text before the large one to be kept");
+        assertEquals("after", store.get(after), "Expected the text after the large one to be kept");
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> store.store(null),
+            "IllegalArgumentException expected to be thrown when the text is null");
+        assertThrows(IllegalArgumentException.class, () -> store.get(0),
+            "IllegalArgumentException expected to be thrown when the handle is unknown");
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapTextStore(4),
+            "IllegalArgumentException expected to be thrown when the slab can not hold a text");
+    }
+
+    @Test
+    void testColumnarFolderWithOffHeapBodies() {
+        ColumnarFolder folder = new ColumnarFolder(new MailStore(new HeapTextStore(), store));
+        Account sender = new Account("ivan@fmi.bg", "ivan");
+        Mail mail = new Mail(sender, Set.of("pesho@gmail.com"), "subject", "body ".repeat(100),
+            LocalDateTime.of(2022, 12, 8, 14, 14));
+        Mail withoutBody = new Mail(sender, Set.of("pesho@gmail.com"), "subject", null, null);
+        folder.add(mail);
+        folder.add(withoutBody);
+
+        assertEquals(Set.of(mail, withoutBody), folder, "Expected the mails to be read back equal");
+        assertTrue(folder.remove(mail), "Expected the mail to be found by its off-heap body");
+        assertEquals(1, store.size(), "Expected only the bodies to be kept off the heap");
+    }
+
+    @Test
+    void testReadWhileStoring() throws InterruptedException {
+        OffHeapTextStore shared = new OffHeapTextStore(1024);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                for (int checked = 0; checked < 20_000; ) {
+                    int size = shared.size();
+                    if (size > checked) {
+                        String text = shared.get(checked);
+                        if (!text.equals("text " + checked)) {
+                            throw new AssertionError("Unexpected text " + text);
+                        }
+                        checked++;
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000; i++) {
+            shared.store("text " + i);
+        }
+        reader.join(10_000);
+
+        assertNull(failure.get(), "Expected every published text to be readable from another thread");
+    }
+}
@@ -0,0 +1,175 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.directory;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchIndexTest {
+    private final SearchIndex index = new SearchIndex();
+
+    private final Account sender = new Account("ivan@fmi.bg", "ivan");
+    private final LocalDateTime received = LocalDateTime.of(2022, 12, 8, 14, 14);
+
+    // The index keeps no mails, so the found ones are read back from every mail created by the test
+    private final Map<Long, Mail> created = new HashMap<>();
+
+    private Mail mail(String subject, String body) {
+        Mail mail = new Mail(sender, Set.of("pesho@gmail.com"), subject, body, received);
+        created.put(MailFingerprint.of(mail), mail);
+        return mail;
+    }
+
+    // The index knows folders by id only, here the id of a folder is its position in the list
+    private final List<String> folders = new ArrayList<>();
+
+    private int folder(String path) {
+        if (!folders.contains(path)) {
+            folders.add(path);
+        }
+        return folders.indexOf(path);
+    }
+
+    private List<Mail> search(String query, String folderPath) {
+        IntPredicate inScope = folderPath == null ? null :
+            folder -> folders.get(folder).equals(folderPath) || folders.get(folder).startsWith(folderPath + "/");
+        return index.search(query, inScope, (folder, hash, fingerprint) -> {
+            Mail mail = created.get(fingerprint);
+            return mail != null && mail.hashCode() == hash ? mail : null;
+        });
+    }
+
+    @Test
+    void testSearchSingleWordIgnoringCase() {
+        Mail exam = mail("MJT Exam", "see you at the exam");
+        Mail lecture = mail("Lecture", "streams and lambdas");
+        index.add(folder("/inbox"), exam);
+        index.add(folder("/inbox"), lecture);
+
+        assertEquals(List.of(exam), search("exam", null), "Expected the word to be found ignoring case");
+        assertEquals(List.of(lecture), search("LAMBDAS", null), "Expected the word of the body to be found");
+        assertTrue(search("missing", null).isEmpty(), "Expected no mails for a word which is not indexed");
+    }
+
+    @Test
+    void testSearchAllWords() {
+        Mail both = mail("java exam", "on monday");
+        Mail java = mail("java lecture", "on tuesday");
+        Mail exam = mail("exam results", "on friday");
+        index.addAll(folder("/inbox"), List.of(both, java, exam));
+
+        assertEquals(List.of(both), search("exam, Java!", null),
+            "Expected only the mails containing every word of the query");
+        assertEquals(List.of(both, java, exam), search("on", null), "Expected the mails in indexing order");
+        assertTrue(search("java friday", null).isEmpty(), "Expected no mails containing every word");
+    }
+
+    @Test
+    void testSearchWholeWordsOnly() {
+        index.add(folder("/inbox"), mail("homework", "deadline-extended"));
+
+        assertTrue(search("home", null).isEmpty(), "Expected a part of a word not to be found");
+        assertEquals(1, search("extended", null).size(), "Expected words to be split at punctuation");
+    }
+
+    @Test
+    void testSearchInFolder() {
+        Mail inbox = mail("exam", "inbox");
+        Mail important = mail("exam", "important");
+        Mail nested = mail("exam", "nested");
+        index.add(folder("/inbox"), inbox);
+        index.add(folder("/inbox/important"), important);
+        index.add(folder("/inbox/important/nested"), nested);
+        index.add(folder("/inbox/importantly"), mail("exam", "other"));
+
+        assertEquals(List.of(important, nested), search("exam", "/inbox/important"),
+            "Expected only the mails of the folder and its subfolders");
+        assertEquals(4, search("exam", null).size(), "Expected every folder to be searched without a scope");
+    }
+
+    @Test
+    void testMoveKeepsMailSearchable() {
+        Mail exam = mail("exam", "body");
+        index.add(folder("/inbox"), exam);
+        index.move(folder("/inbox"), folder("/inbox/exams"), exam);
+
+        assertEquals(List.of(exam), search("exam", "/inbox/exams"), "Expected the mail in its new folder");
+        assertEquals(1, search("exam", "/inbox").size(), "Expected the moved mail to be found once");
+    }
+
+    @Test
+    void testMoveToFolderWithEqualMail() {
+        Mail exam = mail("exam", "body");
+        index.add(folder("/inbox"), exam);
+        index.add(folder("/inbox/exams"), exam);
+        index.move(folder("/inbox"), folder("/inbox/exams"), exam);
+
+        assertEquals(List.of(exam), search("exam", null), "Expected equal mails of a folder to be found once");
+        assertEquals(1, index.size(), "Expected the moved duplicate to be dropped");
+    }
+
+    @Test
+    void testSearchAfterCompaction() {
+        List<Mail> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Mail mail = mail("subject " + i, "word" + (i % 10));
+            index.add(folder("/inbox"), mail);
+            index.add(folder("/inbox/target"), mail);
+            if (i % 10 == 3) {
+                expected.add(mail);
+            }
+        }
+        for (int i = 0; i < 5000; i++) {
+            index.move(folder("/inbox"), folder("/inbox/target"), mail("subject " + i, "word" + (i % 10)));
+        }
+        index.add(folder("/inbox"), mail("new", "word3"));
+        expected.add(mail("new", "word3"));
+
+        assertEquals(5001, index.size(), "Expected the dropped duplicates not to be counted");
+        assertEquals(expected, search("word3", "/inbox"), "Expected the search to work after compaction");
+        assertEquals(500, search("word3", "/inbox/target").size(),
+            "Expected the mails of the target folder to be found once");
+    }
+
+    @Test
+    void testSearchAfterFolderRemoved() {
+        Mail kept = mail("exam", "kept");
+        index.add(folder("/inbox"), kept);
+        for (int i = 0; i < 2000; i++) {
+            index.add(folder("/inbox/removed"), mail("exam " + i, "removed"));
+        }
+
+        index.removeFolder(folder("/inbox/removed"));
+
+        assertEquals(List.of(kept), search("exam", null), "Expected the mails of a removed folder not to be found");
+        assertEquals(1, index.size(), "Expected the mails of a removed folder not to be counted");
+    }
+
+    @Test
+    void testSearchQueryWithoutWords() {
+        assertThrows(IllegalArgumentException.class, () -> search(" ,.!", null),
+            "IllegalArgumentException expected to be thrown when the query contains no words");
+    }
+
+    @Test
+    void testMemoryGrowsWithMails() {
+        long empty = index.estimateMemory();
+        for (int i = 0; i < 1000; i++) {
+            index.add(folder("/inbox"), mail("subject " + i, "body " + i));
+        }
+
+        assertTrue(index.estimateMemory() > empty + 1000 * Integer.BYTES,
+            "Expected the memory estimate to grow with the indexed mails");
+    }
+}
@@ -3,6 +3,7 @@ package bg.sofia.uni.fmi.mjt.mail.tsk.metadata;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -61,4 +62,58 @@ public class MailMetadataTest {
         assertThrows(IllegalArgumentException.class, () -> new MailMetadata(null),
             "Expected an exception to be thrown when text is null");
     }
+
+    @Test
+    void testLinesEndWithCarriageReturnAndLineFeed() {
+        metadata = new MailMetadata("sender: testy@gmail.com\r\nsubject: Hello, MJT!\r\n" +
+            "recipients: pesho@gmail.com, gosho@gmail.com\r\nreceived: 2022-12-08 14:14\r\n");
+
+        assertEquals("testy@gmail.com", metadata.getSender(), "Sender expected not to include the carriage return");
+        assertEquals("Hello, MJT!", metadata.getSubject(), "Subject expected not to include the carriage return");
+        assertEquals(Set.of("pesho@gmail.com", "gosho@gmail.com"), metadata.getRecipients(),
+            "Recipients expected not to include the carriage return");
+        assertEquals(LocalDateTime.of(2022, 12, 8, 14, 14), metadata.getReceived(),
+            "Received data expected to be parsed without the carriage return");
+    }
+
+    @Test
+    void testKeyInsideAnotherValueIsIgnored() {
+        metadata = new MailMetadata("subject: re: sender: someone" + System.lineSeparator() +
+            "sender: testy@gmail.com" + System.lineSeparator() + "received: 2022-12-08 14:14");
+
+        assertEquals("testy@gmail.com", metadata.getSender(), "Sender expected to be read from its own line only");
+        assertEquals("re: sender: someone", metadata.getSubject(), "Subject expected to be parsed correctly");
+    }
+
+    @Test
+    void testFirstOccurrenceOfKeyWins() {
+        metadata = new MailMetadata("sender: first@gmail.com" + System.lineSeparator() +
+            "sender: second@gmail.com" + System.lineSeparator() + "received: 2022-12-08 14:14");
+
+        assertEquals("first@gmail.com", metadata.getSender(), "The first sender line expected to be used");
+    }
+
+    @Test
+    void testMissingFields() {
+        metadata = new MailMetadata("received: 2022-12-08 14:14");
+
+        assertEquals("", metadata.getSender(), "Missing sender expected to be parsed as empty");
+        assertEquals("", metadata.getSubject(), "Missing subject expected to be parsed as empty");
+        assertEquals(Set.of(), metadata.getRecipients(), "Missing recipients expected to be parsed as empty");
+    }
+
+    @Test
+    void testMissingReceived() {
+        assertThrows(DateTimeParseException.class, () -> new MailMetadata("sender: testy@gmail.com"),
+            "Expected an exception to be thrown when received is missing");
+    }
+
+    @Test
+    void testDuplicateRecipients() {
+        metadata = new MailMetadata("recipients: pesho@gmail.com,pesho@gmail.com" + System.lineSeparator() +
+            "received: 2022-12-08 14:14");
+
+        assertEquals(Set.of("pesho@gmail.com"), metadata.getRecipients(),
+            "Repeated recipients expected to be kept once");
+    }
 }
@@ -0,0 +1,87 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    void testBucketsCoverValuesWithinAnEighth() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 100, 1_000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            long highest = LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(value));
+
+            assertTrue(highest >= value && highest - value <= value / 8,
+                "Expected the bucket of " + value + " to end within an eighth of it, but it ends at " + highest);
+        }
+    }
+
+    @Test
+    void testBucketsAreOrderedByValue() {
+        int previous = 0;
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+
+            assertTrue(bucket == previous || bucket == previous + 1,
+                "Expected consecutive values to fall into the same or the next bucket at " + value);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    void testEmptyHistogram() {
+        assertEquals(0, histogram.getCount(), "Expected no recorded values");
+        assertEquals(0, histogram.getMean(), "Expected the mean of no values to be 0");
+        assertEquals(0, histogram.getValueAtPercentile(99), "Expected the percentiles of no values to be 0");
+    }
+
+    @Test
+    void testPercentiles() {
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000L);
+        }
+
+        assertEquals(100, histogram.getCount(), "Expected every recorded value to be counted");
+        assertEquals(50_500, histogram.getMean(), "Expected the exact mean of the recorded values");
+        assertEquals(100_000, histogram.getMax(), "Expected the exact maximum of the recorded values");
+        assertEquals(100_000, histogram.getValueAtPercentile(100),
+            "Expected the 100th percentile to be the maximum");
+
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 50_000 && median <= 50_000 * 9 / 8,
+            "Expected the median within an eighth of 50000, but it is " + median);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p99 >= 99_000 && p99 <= 100_000, "Expected the 99th percentile near 99000, but it is " + p99);
+    }
+
+    @Test
+    void testNegativeValuesCountAsZero() {
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getMax(), "Expected a negative duration to be recorded as 0");
+        assertEquals(0, histogram.getValueAtPercentile(50), "Expected a negative duration to be recorded as 0");
+    }
+
+    @Test
+    void testInvalidPercentile() {
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(-1),
+            "IllegalArgumentException expected to be thrown when the percentile is negative");
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(100.5),
+            "IllegalArgumentException expected to be thrown when the percentile is above 100");
+    }
+
+    @Test
+    void testSummaryIsInMicroseconds() {
+        histogram.record(2_000);
+
+        LatencySummary summary = histogram.summarize();
+
+        assertEquals(1, summary.getCount(), "Expected the summary to count the recorded value");
+        assertEquals(2.0, summary.getMeanMicros(), "Expected the mean in microseconds");
+        assertEquals(2.0, summary.getMaxMicros(), "Expected the maximum in microseconds");
+    }
+}
@@ -0,0 +1,103 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.metrics;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Outlook;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutlookMetricsTest {
+    private final Outlook outlook = new Outlook();
+    private final OutlookMetrics metrics = outlook.getMetrics();
+
+    private static String metaData(String subject) {
+        return "sender: sender@gmail.com" + System.lineSeparator() + "subject: " + subject + System.lineSeparator() +
+            "recipients: receiver@gmail.com," + System.lineSeparator() + "received: 2022-12-08 14:14" +
+            System.lineSeparator();
+    }
+
+    private void receiveMails() {
+        outlook.addNewAccount("receiver", "receiver@gmail.com");
+        outlook.addNewAccount("sender", "sender@gmail.com");
+        outlook.createFolder("receiver", "/inbox/mjt");
+        outlook.addRule("receiver", "/inbox/mjt", "subject-includes: MJT", 1);
+
+        outlook.receiveMail("receiver", metaData("MJT homework"), "body");
+        outlook.receiveMail("receiver", metaData("MJT exam"), "body");
+        outlook.receiveMail("receiver", metaData("party"), "body");
+        outlook.receiveMail("receiver", metaData("lunch"), "body");
+    }
+
+    @Test
+    void testDeliveriesAndFallThroughs() {
+        receiveMails();
+
+        assertEquals(4, metrics.getDeliveredMailCount(), "Expected every received mail to be counted");
+        assertEquals(2, metrics.getInboxFallThroughCount(), "Expected the mails no rule fitted to be counted");
+        assertEquals(0.5, metrics.getInboxFallThroughRate(), "Expected half of the mails to stay in the inbox");
+        assertEquals(1.0, metrics.getRulesEvaluatedPerMail(), "Expected the single rule to be evaluated per mail");
+        assertEquals(4, metrics.getReceiveMailLatency().getCount(), "Expected the latency of every receive");
+        assertEquals(1, metrics.getAddRuleLatency().getCount(), "Expected the latency of the added rule");
+        assertEquals(1, metrics.getRetroactiveMoveDuration().getCount(),
+            "Expected the retroactive move of the added rule to be timed");
+    }
+
+    @Test
+    void testRuleHitsAndFolderSizes() {
+        receiveMails();
+
+        assertEquals(Map.of("receiver: /inbox/mjt (priority 1)", 2L), metrics.getRuleHitCounts(),
+            "Expected the rule to be hit by the two fitting mails");
+        assertEquals(Map.of("receiver", 4L, "sender", 0L), metrics.getAccountMailCounts(),
+            "Expected the mails of every account to be counted");
+
+        Map<String, Long> folders = metrics.getFolderMailCounts();
+        assertEquals(2L, folders.get("receiver:/inbox"), "Expected the inbox to hold the mails no rule fitted");
+        assertEquals(2L, folders.get("receiver:/inbox/mjt"), "Expected the folder of the rule to hold its mails");
+    }
+
+    @Test
+    void testBodyDeduplication() {
+        receiveMails();
+
+        assertEquals(1, metrics.getDistinctBodyCount(), "Expected the equal bodies to be stored once");
+        assertEquals(4.0, metrics.getBodyDedupRatio(), "Expected the four mails to share the body");
+        assertEquals(3 * "body".length(), metrics.getBodyBytesSaved(), "Expected three copies of the body saved");
+    }
+
+    @Test
+    void testEmptyMetrics() {
+        assertEquals(0, metrics.getInboxFallThroughRate(), "Expected no fall-through rate without deliveries");
+        assertEquals(0, metrics.getBodyDedupRatio(), "Expected no dedup ratio without bodies");
+        assertEquals(0, metrics.getRulesEvaluatedPerMail(), "Expected no evaluated rules without deliveries");
+        assertTrue(metrics.getRuleHitCounts().isEmpty(), "Expected no rule hits without accounts");
+    }
+
+    @Test
+    void testAttributesAreReadOverJmx() throws Exception {
+        receiveMails();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        ObjectName name = metrics.register("metrics-test");
+        try {
+            assertEquals(4L, server.getAttribute(name, "DeliveredMailCount"),
+                "Expected the delivered mails to be published");
+            CompositeData latency = (CompositeData) server.getAttribute(name, "ReceiveMailLatency");
+            assertEquals(4L, latency.get("count"), "Expected the receive latency to be published as composite data");
+            assertThrows(IllegalStateException.class, () -> metrics.register("metrics-test"),
+                "IllegalStateException expected to be thrown when the metrics are already registered");
+        } finally {
+            metrics.unregister();
+        }
+
+        assertFalse(server.isRegistered(name), "Expected the metrics to be unregistered");
+    }
+}
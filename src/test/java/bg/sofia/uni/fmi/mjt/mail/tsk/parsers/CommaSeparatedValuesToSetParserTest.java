@@ -0,0 +1,49 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.parsers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CommaSeparatedValuesToSetParserTest {
+
+    @Test
+    void testGetSetEmptyLine() {
+        assertEquals(Set.of(), CommaSeparatedValuesToSetParser.getSet(""), "Expected no values in an empty line");
+    }
+
+    @Test
+    void testGetSetValuesAreTrimmed() {
+        assertEquals(Set.of("mjt", "izpit", "2022"), CommaSeparatedValuesToSetParser.getSet("  mjt,  izpit ,2022 "),
+            "Expected values to be trimmed");
+    }
+
+    @Test
+    void testGetSetTrailingCommaIsIgnored() {
+        assertEquals(Set.of("pesho@gmail.com", "gosho@gmail.com"),
+            CommaSeparatedValuesToSetParser.getSet("pesho@gmail.com, gosho@gmail.com,"),
+            "Expected trailing comma to be ignored");
+    }
+
+    @Test
+    void testGetSetInnerEmptyValueIsKept() {
+        assertEquals(Set.of("mjt", "", "izpit"), CommaSeparatedValuesToSetParser.getSet("mjt,,izpit"),
+            "Expected empty value between two commas to be kept");
+    }
+
+    @Test
+    void testGetSetRepeatedValues() {
+        assertEquals(Set.of("mjt"), CommaSeparatedValuesToSetParser.getSet("mjt,mjt, mjt"),
+            "Expected repeated values to be kept once");
+    }
+
+    @Test
+    void testGetSetRange() {
+        String text = "recipients: pesho@gmail.com, gosho@gmail.com\nreceived: 2022-12-08 14:14";
+
+        assertEquals(Set.of("pesho@gmail.com", "gosho@gmail.com"),
+            CommaSeparatedValuesToSetParser.getSet(text, "recipients:".length(), text.indexOf('\n')),
+            "Expected only the values inside the range to be parsed");
+    }
+}
@@ -0,0 +1,52 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.parsers;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LocalDateTimeParserTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @Test
+    void testParse() {
+        assertEquals(LocalDateTime.of(2022, 12, 8, 14, 14), LocalDateTimeParser.parse("2022-12-08 14:14"),
+            "Expected date-time to be parsed correctly");
+    }
+
+    @Test
+    void testParseRange() {
+        String text = "received: 2022-12-08 14:14\n";
+
+        assertEquals(LocalDateTime.of(2022, 12, 8, 14, 14), LocalDateTimeParser.parse(text, 10, 26),
+            "Expected only the range to be parsed");
+    }
+
+    @Test
+    void testParseSameAsFormatterForDayOutOfMonth() {
+        assertEquals(LocalDateTime.parse("2022-02-30 10:00", FORMATTER), LocalDateTimeParser.parse("2022-02-30 10:00"),
+            "Expected out of month days to be resolved the same way as by the formatter");
+    }
+
+    @Test
+    void testParseInvalidHour() {
+        assertThrows(DateTimeParseException.class, () -> LocalDateTimeParser.parse("2022-12-08 25:14"),
+            "Expected an exception to be thrown when hour is out of range");
+    }
+
+    @Test
+    void testParseWrongFormat() {
+        assertThrows(DateTimeParseException.class, () -> LocalDateTimeParser.parse("2022/12/08 14:14"),
+            "Expected an exception to be thrown when format is wrong");
+    }
+
+    @Test
+    void testParseEmpty() {
+        assertThrows(DateTimeParseException.class, () -> LocalDateTimeParser.parse(""),
+            "Expected an exception to be thrown when text is empty");
+    }
+}
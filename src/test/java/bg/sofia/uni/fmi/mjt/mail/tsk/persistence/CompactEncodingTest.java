@@ -0,0 +1,89 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactEncodingTest {
+    private static byte[] bytesOf(CompactOutput output) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void testVarIntsRoundTrip() throws IOException {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE};
+        CompactOutput output = new CompactOutput();
+        for (long value : values) {
+            output.writeVarLong(value);
+        }
+
+        CompactInput input = new CompactInput(bytesOf(output));
+        for (long value : values) {
+            assertEquals(value, input.readVarLong(), "Expected the varint to be read back");
+        }
+        assertTrue(input.isAtEnd(), "Expected every byte to be read");
+    }
+
+    @Test
+    void testSmallNumbersTakeOneByte() {
+        CompactOutput output = new CompactOutput();
+        output.writeVarInt(127);
+        output.writeSignedVarLong(-64);
+
+        assertEquals(2, output.size(), "Expected small numbers to take a single byte each");
+    }
+
+    @Test
+    void testSignedVarLongsRoundTrip() throws IOException {
+        long[] values = {0, -1, 1, -1_000_000_000_000L, 1_670_508_840L, Long.MIN_VALUE, Long.MAX_VALUE};
+        CompactOutput output = new CompactOutput();
+        for (long value : values) {
+            output.writeSignedVarLong(value);
+        }
+
+        CompactInput input = new CompactInput(bytesOf(output));
+        for (long value : values) {
+            assertEquals(value, input.readSignedVarLong(), "Expected the signed varint to be read back");
+        }
+    }
+
+    @Test
+    void testStringsRoundTrip() throws IOException {
+        CompactOutput output = new CompactOutput();
+        output.writeBytes("\u0437\u0434\u0440\u0430\u0432\u0435\u0439".getBytes(StandardCharsets.UTF_8));
+        output.writeBytes(new byte[0]);
+
+        CompactInput input = new CompactInput(bytesOf(output));
+        assertEquals("\u0437\u0434\u0440\u0430\u0432\u0435\u0439", input.readString(),
+            "Expected the UTF-8 string to be read back");
+        assertEquals("", input.readString(), "Expected the empty string to be read back");
+    }
+
+    @Test
+    void testNegativeVarIntIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CompactOutput().writeVarInt(-1),
+            "Expected a negative varint to be rejected");
+    }
+
+    @Test
+    void testTruncatedInputFails() throws IOException {
+        CompactOutput output = new CompactOutput();
+        output.writeBytes("truncated".getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = bytesOf(output);
+
+        CompactInput input = new CompactInput(Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, input::readString, "Expected a truncated string to fail");
+        assertThrows(IOException.class, () -> new CompactInput(new byte[] {(byte) 0x80}).readVarInt(),
+            "Expected a truncated varint to fail");
+    }
+}
@@ -0,0 +1,382 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.IncomingMail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import bg.sofia.uni.fmi.mjt.mail.tsk.RuleSpec;
+import bg.sofia.uni.fmi.mjt.mail.tsk.directory.FolderStorage;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountNotFoundException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.PersistenceException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.RuleAlreadyDefinedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistentMailClientTest {
+    @TempDir
+    Path directory;
+
+    private static String metadata(String sender, String subject, String recipients, int minute) {
+        return String.join(System.lineSeparator(),
+            "sender: " + sender,
+            "subject: " + subject,
+            "recipients: " + recipients,
+            String.format("received: 2022-12-08 14:%02d", minute));
+    }
+
+    private PersistenceOptions options() {
+        return PersistenceOptions.of(directory).withSnapshotEveryRecords(0);
+    }
+
+    private void fill(PersistentMailClient client) {
+        client.addNewAccount("ivan", "ivan@fmi.bg");
+        client.addNewAccount("pesho", "pesho@fmi.bg");
+        client.createFolder("pesho", "/inbox/mjt");
+        client.createFolder("pesho", "/inbox/mjt/exams");
+        client.addRule("pesho", "/inbox/mjt/exams", "subject-includes: izpit", 1);
+        client.receiveMail("pesho", metadata("stoyo@fmi.bg", "izpit", "pesho@fmi.bg", 1), "exam");
+        client.sendMail("ivan", metadata("ivan@fmi.bg", "hello", "pesho@fmi.bg, gosho@gmail.com", 2), "hi");
+        client.receiveMails("pesho", List.of(new IncomingMail(metadata("x@gmail.com", "izpit 2", "pesho@fmi.bg", 3),
+            "second exam"), new IncomingMail(metadata("x@gmail.com", "other", "pesho@fmi.bg", 4), "other")));
+        client.addRule("pesho", "/inbox/mjt", "subject-includes: other", 2);
+    }
+
+    private void assertSameState(PersistentMailClient expected, PersistentMailClient actual) {
+        assertEquals(expected.getOutlook().getSystemAccounts().keySet(), actual.getOutlook().getSystemAccounts().keySet(),
+            "Expected the same accounts after recovery");
+
+        for (var entry : expected.getOutlook().getSystemAccounts().entrySet()) {
+            var recovered = actual.getOutlook().getSystemAccounts().get(entry.getKey());
+            assertEquals(entry.getValue().directory().getDirectoryPaths(), recovered.directory().getDirectoryPaths(),
+                "Expected the same folders and mails after recovery");
+            assertEquals(entry.getValue().rules().size(), recovered.rules().size(),
+                "Expected the same rules after recovery");
+        }
+    }
+
+    @Test
+    void testRecoverFromLog() throws IOException {
+        PersistentMailClient client = PersistentMailClient.open(options());
+        fill(client);
+        client.close();
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            assertSameState(client, recovered);
+            assertEquals(2, recovered.getMailsFromFolder("pesho", "/inbox/mjt/exams").size(),
+                "Expected recovered mails to be in the folder of the rule");
+        }
+    }
+
+    @Test
+    void testRecoverFromSnapshotAndLog() throws IOException {
+        PersistentMailClient client = PersistentMailClient.open(options().withFsyncPolicy(FsyncPolicy.NEVER));
+        fill(client);
+        client.snapshot();
+        client.receiveMail("ivan", metadata("pesho@fmi.bg", "after snapshot", "ivan@fmi.bg", 5), "late");
+        client.close();
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            assertSameState(client, recovered);
+            assertEquals(1, recovered.getMailsFromFolder("ivan", "/inbox").size(),
+                "Expected the mail logged after the snapshot to be recovered");
+        }
+    }
+
+    @Test
+    void testRecoverRulesFromSnapshot() throws IOException {
+        try (PersistentMailClient client = PersistentMailClient.open(options())) {
+            fill(client);
+            client.snapshot();
+        }
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            recovered.receiveMail("pesho", metadata("x@gmail.com", "izpit 3", "pesho@fmi.bg", 6), "third exam");
+
+            assertEquals(3, recovered.getMailsFromFolder("pesho", "/inbox/mjt/exams").size(),
+                "Expected recovered rules to route new mails");
+        }
+    }
+
+    @Test
+    void testRecoverBulkRulesFromLog() throws IOException {
+        try (PersistentMailClient client = PersistentMailClient.open(options())) {
+            client.addNewAccount("pesho", "pesho@fmi.bg");
+            client.createFolder("pesho", "/inbox/mjt");
+            client.createFolder("pesho", "/inbox/spam");
+            client.receiveMail("pesho", metadata("stoyo@fmi.bg", "izpit", "pesho@fmi.bg", 1), "exam");
+            client.receiveMail("pesho", metadata("spam@gmail.com", "offer", "pesho@fmi.bg", 2), "buy");
+            client.addRules("pesho", List.of(new RuleSpec("/inbox/mjt", "subject-includes: izpit", 1),
+                new RuleSpec("/inbox/spam", "from: spam@gmail.com", 2)));
+            assertThrows(RuleAlreadyDefinedException.class, () -> client.addRules("pesho",
+                    List.of(new RuleSpec("/inbox/mjt", "subject-includes: other", 3),
+                        new RuleSpec("/inbox/mjt", "subject-includes: izpit", 1))),
+                "Expected a conflicting import to be rejected");
+        }
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            assertEquals(2, recovered.getOutlook().getSystemAccounts().get("pesho").rules().size(),
+                "Expected only the rules of the successful import to be replayed");
+            assertEquals(1, recovered.getMailsFromFolder("pesho", "/inbox/mjt").size(),
+                "Expected the replayed import to move the matching mail from the inbox");
+            assertEquals(1, recovered.getMailsFromFolder("pesho", "/inbox/spam").size(),
+                "Expected the replayed import to move the matching mail from the inbox");
+            assertTrue(recovered.getMailsFromFolder("pesho", "/inbox").isEmpty(),
+                "Expected no mail to be left in the inbox");
+
+            recovered.receiveMail("pesho", metadata("spam@gmail.com", "again", "pesho@fmi.bg", 3), "buy");
+            assertEquals(2, recovered.getMailsFromFolder("pesho", "/inbox/spam").size(),
+                "Expected the replayed rules to route new mails");
+        }
+    }
+
+    @Test
+    void testRecoverColumnarStorage() throws IOException {
+        PersistenceOptions options = options().withStorage(FolderStorage.COLUMNAR);
+        PersistentMailClient client = PersistentMailClient.open(options);
+        fill(client);
+        client.snapshot();
+        client.close();
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options)) {
+            assertSameState(client, recovered);
+        }
+    }
+
+    @Test
+    void testRecoverSharedBodiesFromSnapshot() throws IOException {
+        String newsletter = "weekly news ".repeat(100);
+        try (PersistentMailClient client = PersistentMailClient.open(options())) {
+            client.addNewAccount("ivan", "ivan@fmi.bg");
+            client.addNewAccount("pesho", "pesho@fmi.bg");
+            client.receiveMail("ivan", metadata("news@fmi.bg", "week 1", "ivan@fmi.bg", 1), newsletter);
+            client.receiveMail("pesho", metadata("news@fmi.bg", "week 1", "pesho@fmi.bg", 1), newsletter);
+            client.receiveMail("pesho", metadata("news@fmi.bg", "week 2", "pesho@fmi.bg", 2), newsletter);
+            client.snapshot();
+        }
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            Mail ivans = recovered.getMailsFromFolder("ivan", "/inbox").iterator().next();
+            for (Mail peshos : recovered.getMailsFromFolder("pesho", "/inbox")) {
+                assertSame(ivans.body(), peshos.body(), "Expected the recovered mails to share the body");
+            }
+            assertEquals(1, recovered.getOutlook().getBodies().getDistinctBodyCount(),
+                "Expected the recovered body to be stored once");
+            assertEquals(3, recovered.getOutlook().getBodies().getReferenceCount(),
+                "Expected every recovered mail to refer to the body");
+        }
+    }
+
+    @Test
+    void testRecoverManyAccountsFromSnapshot() throws IOException {
+        PersistentMailClient client = PersistentMailClient.open(options().withFsyncPolicy(FsyncPolicy.NEVER));
+        for (int i = 0; i < 40; i++) {
+            String name = "user" + i;
+            client.addNewAccount(name, name + "@fmi.bg");
+            client.createFolder(name, "/inbox/mjt");
+            client.addRule(name, "/inbox/mjt", "subject-includes: mjt, izpit" + System.lineSeparator()
+                + "from: stoyo@fmi.bg", 1 + i % 10);
+            for (int j = 0; j < 150; j++) {
+                String subject = (j % 3 == 0 ? "mjt izpit " : "news ") + j;
+                client.receiveMail(name, metadata("stoyo@fmi.bg", subject, name + "@fmi.bg", j % 60),
+                    "body " + i + " " + j);
+            }
+        }
+        client.snapshot();
+        client.close();
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            assertSameState(client, recovered);
+            for (int i = 0; i < 40; i++) {
+                var expectedRule = client.getOutlook().getSystemAccounts().get("user" + i).rules().iterator().next();
+                var rule = recovered.getOutlook().getSystemAccounts().get("user" + i).rules().iterator().next();
+                assertEquals(expectedRule, rule, "Expected the recovered rule to equal the original");
+                assertEquals(expectedRule.getDefinition(), rule.getDefinition(),
+                    "Expected the recovered rule to keep its definition");
+            }
+
+            recovered.receiveMail("user7", metadata("stoyo@fmi.bg", "mjt izpit late", "user7@fmi.bg", 1), "late");
+            assertEquals(51, recovered.getMailsFromFolder("user7", "/inbox/mjt").size(),
+                "Expected the recovered rule to route new mails");
+        }
+    }
+
+    @Test
+    void testFailedCallIsNotLogged() throws IOException {
+        try (PersistentMailClient client = PersistentMailClient.open(options())) {
+            assertThrows(AccountNotFoundException.class, () -> client.createFolder("missing", "/inbox/mjt"),
+                "Expected the client to reject the call");
+            client.addNewAccount("ivan", "ivan@fmi.bg");
+        }
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            assertEquals(Set.of("ivan"), recovered.getOutlook().getSystemAccounts().keySet(),
+                "Expected only the successful call to be replayed");
+        }
+    }
+
+    @Test
+    void testCallsFailFastAfterLogWriteFailure() throws IOException {
+        Path store = directory.resolve("store");
+        PersistentMailClient client = PersistentMailClient.open(PersistenceOptions.of(store)
+            .withSnapshotEveryRecords(0));
+        client.addNewAccount("ivan", "ivan@fmi.bg");
+        client.receiveMail("ivan", metadata("x@gmail.com", "hello", "ivan@fmi.bg", 1), "hi");
+        Set<String> foldersBefore = Set.copyOf(
+            client.getOutlook().getSystemAccounts().get("ivan").directory().getDirectoryPaths().keySet());
+
+        // The next segment can not be created, so nothing appended after the rotation can be written
+        try (var files = Files.list(store)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(store);
+        assertThrows(PersistenceException.class, client::snapshot, "Expected the snapshot to fail");
+
+        assertThrows(PersistenceException.class, () -> client.addNewAccount("pesho", "pesho@fmi.bg"),
+            "Expected adding an account to fail fast");
+        assertThrows(PersistenceException.class, () -> client.createFolder("ivan", "/inbox/mjt"),
+            "Expected creating a folder to fail fast");
+        assertThrows(PersistenceException.class,
+            () -> client.addRule("ivan", "/inbox", "subject-includes: hello", 1),
+            "Expected adding a rule to fail fast");
+        assertThrows(PersistenceException.class,
+            () -> client.receiveMail("ivan", metadata("x@gmail.com", "again", "ivan@fmi.bg", 2), "hi"),
+            "Expected receiving a mail to fail fast");
+        assertThrows(PersistenceException.class, () -> client.receiveMails("ivan",
+            List.of(new IncomingMail(metadata("x@gmail.com", "batch", "ivan@fmi.bg", 3), "hi"))),
+            "Expected receiving a batch to fail fast");
+        assertThrows(PersistenceException.class, () -> client.receiveMails(Map.of("ivan",
+            List.of(new IncomingMail(metadata("x@gmail.com", "batch", "ivan@fmi.bg", 4), "hi")))),
+            "Expected receiving batches to fail fast");
+        assertThrows(PersistenceException.class,
+            () -> client.sendMail("ivan", metadata("ivan@fmi.bg", "out", "ivan@fmi.bg", 5), "hi"),
+            "Expected sending a mail to fail fast");
+
+        assertEquals(Set.of("ivan"), client.getOutlook().getSystemAccounts().keySet(),
+            "Expected no account to be added after the failure");
+        assertEquals(foldersBefore,
+            client.getOutlook().getSystemAccounts().get("ivan").directory().getDirectoryPaths().keySet(),
+            "Expected no folder to be created after the failure");
+        assertEquals(1, client.getMailsFromFolder("ivan", "/inbox").size(),
+            "Expected no mail to be stored after the failure");
+        assertEquals(0, client.getOutlook().getSystemAccounts().get("ivan").rules().size(),
+            "Expected no rule to be added after the failure");
+        assertThrows(IOException.class, client::close, "Expected closing to report the failed log");
+    }
+
+    @Test
+    void testPeriodicSnapshot() throws IOException {
+        PersistenceOptions options = options().withSnapshotEveryRecords(10).withFsyncPolicy(FsyncPolicy.INTERVAL);
+        try (PersistentMailClient client = PersistentMailClient.open(options)) {
+            client.addNewAccount("ivan", "ivan@fmi.bg");
+            for (int i = 0; i < 30; i++) {
+                client.receiveMail("ivan", metadata("x@gmail.com", "subject " + i, "ivan@fmi.bg", i), "body");
+            }
+        }
+
+        assertTrue(Snapshots.latestSnapshotLsn(directory) > 0, "Expected a snapshot to be taken in the background");
+        try (PersistentMailClient recovered = PersistentMailClient.open(options)) {
+            assertEquals(30, recovered.getMailsFromFolder("ivan", "/inbox").size(),
+                "Expected every mail to be recovered from the snapshot and the log");
+        }
+    }
+
+    @Test
+    void testConcurrentCallsRecoverToSameState() throws Exception {
+        PersistentMailClient client = PersistentMailClient.open(options().withSnapshotEveryRecords(50));
+        for (int i = 0; i < 4; i++) {
+            client.addNewAccount("user" + i, "user" + i + "@fmi.bg");
+            client.createFolder("user" + i, "/inbox/important");
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    String sender = "user" + thread;
+                    String recipient = "user" + ((thread + 1) % 4) + "@fmi.bg";
+                    client.sendMail(sender, metadata(sender + "@fmi.bg", "important " + i, recipient, i % 60),
+                        "body " + thread);
+                    if (i == 25) {
+                        client.addRule("user" + thread, "/inbox/important", "subject-includes: important", 1);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        client.close();
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            assertSameState(client, recovered);
+        }
+    }
+
+    @Test
+    void testAccountsAddedWhileSendingRecoverToSameState() throws Exception {
+        int accounts = 40;
+        PersistentMailClient client = PersistentMailClient.open(options());
+        client.addNewAccount("sender", "sender@fmi.bg");
+
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < accounts; i++) {
+                client.addNewAccount("user" + i, "user" + i + "@fmi.bg");
+            }
+        });
+        Thread sender = new Thread(() -> {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < accounts; i++) {
+                    client.sendMail("sender", metadata("sender@fmi.bg", "hello " + i, "user" + i + "@fmi.bg",
+                        round), "hi");
+                    client.receiveMail("sender", metadata("user" + i + "@fmi.bg", "reply " + i, "sender@fmi.bg",
+                        round), "hey");
+                }
+            }
+        });
+        adder.start();
+        sender.start();
+        adder.join();
+        sender.join();
+        client.close();
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            assertSameState(client, recovered);
+        }
+    }
+
+    @Test
+    void testReceiveMailsManyAccounts() throws IOException {
+        try (PersistentMailClient client = PersistentMailClient.open(options())) {
+            client.addNewAccount("ivan", "ivan@fmi.bg");
+            client.addNewAccount("pesho", "pesho@fmi.bg");
+            client.receiveMails(Map.of(
+                "ivan", List.of(new IncomingMail(metadata("x@gmail.com", "a", "ivan@fmi.bg", 1), "a")),
+                "pesho", List.of(new IncomingMail(metadata("x@gmail.com", "b", "pesho@fmi.bg", 1), "b"))));
+        }
+
+        try (PersistentMailClient recovered = PersistentMailClient.open(options())) {
+            Collection<Mail> ivan = recovered.getMailsFromFolder("ivan", "/inbox");
+            Collection<Mail> pesho = recovered.getMailsFromFolder("pesho", "/inbox");
+            assertEquals(1, ivan.size(), "Expected the mail of the first account to be recovered");
+            assertEquals(1, pesho.size(), "Expected the mail of the second account to be recovered");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<String> replayAll(long fromLsn) throws IOException {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.replay(directory, fromLsn, (lsn, record) -> records.add(lsn + ":" +
+            new String(record, StandardCharsets.UTF_8)));
+        return records;
+    }
+
+    @Test
+    void testAppendAndReplay() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 100, 0)) {
+            log.append(bytes("first"));
+            long lsn = log.append(bytes("second"));
+            log.awaitDurable(lsn);
+        }
+
+        assertEquals(List.of("0:first", "1:second"), replayAll(0), "Expected records to be replayed in order");
+    }
+
+    @Test
+    void testReplayFromLsnSkipsOlderRecords() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.NEVER, 100, 0)) {
+            log.append(bytes("first"));
+            log.append(bytes("second"));
+            log.append(bytes("third"));
+        }
+
+        assertEquals(List.of("2:third"), replayAll(2), "Expected only records from the LSN on to be replayed");
+    }
+
+    @Test
+    void testRotateStartsNewSegment() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.INTERVAL, 10, 0)) {
+            log.append(bytes("first"));
+            assertEquals(1, log.rotate(), "Expected the new segment to start with the next record");
+            log.append(bytes("second"));
+            log.deleteSegmentsBefore(1);
+        }
+
+        assertEquals(List.of(1L), WriteAheadLog.segmentStarts(directory), "Expected the old segment to be deleted");
+        assertEquals(List.of("1:second"), replayAll(1), "Expected the records of the new segment to be kept");
+    }
+
+    @Test
+    void testTornRecordIsCutOff() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 100, 0)) {
+            log.awaitDurable(log.append(bytes("first")));
+            log.awaitDurable(log.append(bytes("second")));
+        }
+
+        Path segment = WriteAheadLog.segmentPath(directory, 0);
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 2);
+        }
+
+        long nextLsn = WriteAheadLog.replay(directory, 0, (lsn, record) -> { });
+
+        assertEquals(1, nextLsn, "Expected the torn record not to be counted");
+        assertEquals(List.of("0:first"), replayAll(0), "Expected the torn record to be cut off");
+    }
+
+    @Test
+    void testAppendAfterClose() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 100, 0);
+        log.close();
+
+        assertThrows(IllegalStateException.class, () -> log.append(bytes("late")),
+            "Expected records not to be appended to a closed log");
+    }
+}
@@ -0,0 +1,112 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.registry;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.AccountAlreadyExistsException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccountRegistryTest {
+    private final AccountRegistry registry = new AccountRegistry();
+
+    private final Account ivan = new Account("ivan@fmi.bg", "Ivan");
+    private final Account pesho = new Account("pesho@gmail.com", "Pesho");
+
+    @Test
+    void testAddIndexesByName() {
+        registry.add(ivan);
+
+        assertTrue(registry.containsName("Ivan"), "Expected account to be found by name");
+        assertEquals(ivan, registry.getByName("Ivan").account(), "Expected the same account to be returned by name");
+    }
+
+    @Test
+    void testAddIndexesByEmail() {
+        registry.add(ivan);
+
+        assertTrue(registry.containsEmail("ivan@fmi.bg"), "Expected account to be found by email");
+        assertEquals(ivan, registry.getByEmail("ivan@fmi.bg").account(),
+            "Expected the same account to be returned by email");
+    }
+
+    @Test
+    void testGetByEmailIsNormalized() {
+        registry.add(ivan);
+
+        assertEquals(ivan, registry.getByEmail(" Ivan@FMI.bg ").account(),
+            "Expected email lookup to ignore case and surrounding whitespace");
+    }
+
+    @Test
+    void testGetByEmailNotFound() {
+        registry.add(ivan);
+
+        assertNull(registry.getByEmail("someone@else.com"), "Expected null when email is not registered");
+    }
+
+    @Test
+    void testGetByEmailNull() {
+        assertNull(registry.getByEmail(null), "Expected null when email is null");
+    }
+
+    @Test
+    void testAddNameExists() {
+        registry.add(ivan);
+
+        assertThrows(AccountAlreadyExistsException.class, () -> registry.add(new Account("other@fmi.bg", "Ivan")),
+            "AccountAlreadyExistsException expected to be thrown when name already exists");
+    }
+
+    @Test
+    void testAddNormalizedEmailExists() {
+        registry.add(ivan);
+
+        assertThrows(AccountAlreadyExistsException.class, () -> registry.add(new Account("IVAN@fmi.bg", "Other")),
+            "AccountAlreadyExistsException expected to be thrown when normalized email already exists");
+    }
+
+    @Test
+    void testAddFailureKeepsIndexesConsistent() {
+        registry.add(ivan);
+
+        assertThrows(AccountAlreadyExistsException.class, () -> registry.add(new Account("ivan@fmi.bg", "Other")));
+
+        assertFalse(registry.containsName("Other"), "Rejected account is not expected to be indexed by name");
+        assertEquals(1, registry.size(), "Expected only the first account to be registered");
+    }
+
+    @Test
+    void testRemoveUpdatesBothIndexes() {
+        registry.add(ivan);
+        registry.add(pesho);
+
+        registry.remove("Ivan");
+
+        assertFalse(registry.containsName("Ivan"), "Expected removed account not to be found by name");
+        assertFalse(registry.containsEmail("ivan@fmi.bg"), "Expected removed account not to be found by email");
+        assertEquals(1, registry.size(), "Expected one account to remain");
+    }
+
+    @Test
+    void testRemoveThenAddSameEmail() {
+        registry.add(ivan);
+        registry.remove("Ivan");
+
+        registry.add(new Account("ivan@fmi.bg", "Ivan Again"));
+
+        assertEquals("Ivan Again", registry.getByEmail("ivan@fmi.bg").account().name(),
+            "Expected email to be reusable after the owning account is removed");
+    }
+
+    @Test
+    void testAsMapIsReadOnly() {
+        registry.add(ivan);
+
+        assertThrows(UnsupportedOperationException.class, () -> registry.asMap().remove("Ivan"),
+            "Expected map view not to allow modifications");
+    }
+}
@@ -0,0 +1,89 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RuleCandidateIndexTest {
+    private final LocalDateTime received = LocalDateTime.of(2022, 12, 8, 14, 14);
+
+    private final Rule fromStoyo = new Rule("/inbox/a", "from: stoyo@fmi.bg", 1);
+    private final Rule toPesho = new Rule("/inbox/b", "recipients-includes: pesho@gmail.com, ivan@gmail.com", 2);
+    private final Rule keywordsOnly = new Rule("/inbox/c", "subject-includes: mjt", 3);
+    private final Rule fromAndTo = new Rule("/inbox/d",
+        "from: other@fmi.bg" + System.lineSeparator() + "recipients-includes: pesho@gmail.com", 4);
+
+    private final RuleCandidateIndex index =
+        new RuleCandidateIndex(new Rule[] {fromStoyo, toPesho, keywordsOnly, fromAndTo});
+
+    private Mail mailFrom(Account sender, Set<String> recipients) {
+        return new Mail(sender, recipients, "subject", "body", received);
+    }
+
+    private BitSet bits(int... positions) {
+        BitSet bits = new BitSet();
+        for (int position : positions) {
+            bits.set(position);
+        }
+        return bits;
+    }
+
+    @Test
+    void testCandidatesOnlyResidual() {
+        Mail mail = mailFrom(new Account("nobody@fmi.bg", "Nobody"), Set.of("gosho@gmail.com"));
+
+        assertEquals(bits(2), index.candidatesFor(mail),
+            "Expected only rules without address conditions when no address matches");
+    }
+
+    @Test
+    void testCandidatesBySender() {
+        Mail mail = mailFrom(new Account("stoyo@fmi.bg", "Stoyo"), Set.of("gosho@gmail.com"));
+
+        assertEquals(bits(0, 2), index.candidatesFor(mail), "Expected the rule with the matching sender");
+    }
+
+    @Test
+    void testCandidatesByRecipient() {
+        Mail mail = mailFrom(new Account("nobody@fmi.bg", "Nobody"), Set.of("gosho@gmail.com", "ivan@gmail.com"));
+
+        assertEquals(bits(1, 2), index.candidatesFor(mail), "Expected the rule with the matching recipient");
+    }
+
+    @Test
+    void testCandidatesRuleWithSenderNotIndexedByRecipient() {
+        Mail mail = mailFrom(new Account("nobody@fmi.bg", "Nobody"), Set.of("pesho@gmail.com"));
+
+        assertEquals(bits(1, 2), index.candidatesFor(mail),
+            "Expected a rule with a from condition not to be a candidate for another sender");
+    }
+
+    @Test
+    void testCandidatesSenderAndRecipient() {
+        Mail mail = mailFrom(new Account("other@fmi.bg", "Other"), Set.of("pesho@gmail.com"));
+
+        assertEquals(bits(1, 2, 3), index.candidatesFor(mail), "Expected all rules mentioning the addresses");
+    }
+
+    @Test
+    void testCandidatesManyRecipients() {
+        Mail mail = mailFrom(new Account("nobody@fmi.bg", "Nobody"),
+            Set.of("a@gmail.com", "b@gmail.com", "c@gmail.com", "ivan@gmail.com"));
+
+        assertEquals(bits(1, 2), index.candidatesFor(mail),
+            "Expected the rule to be found when the mail has more recipients than the index");
+    }
+
+    @Test
+    void testCandidatesUnknownSender() {
+        Mail mail = mailFrom(null, Set.of("gosho@gmail.com"));
+
+        assertEquals(bits(2), index.candidatesFor(mail), "Expected a mail without a known sender to be supported");
+    }
+}
@@ -0,0 +1,153 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule;
+
+import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
+import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class RuleSetTest {
+    private final RuleSet rules = new RuleSet();
+
+    private final Mail mail = getMail();
+
+    private Mail getMail() {
+        Account sender = new Account("stoyo@fmi.bg", "Stoyo");
+        Set<String> recipients = Set.of("pesho@gmail.com", "gosho@gmail.com");
+        LocalDateTime received = LocalDateTime.of(2017, 1, 14, 10, 34);
+
+        return new Mail(sender, recipients, "This email is for our mjt izpit", "It's gonna take place in 2022!",
+            received);
+    }
+
+    @Test
+    void testFindRuleEmpty() {
+        assertNull(rules.findRule(mail), "Expected no rule to be found in an empty rule set");
+    }
+
+    @Test
+    void testFindRuleHighestPriority() {
+        Rule low = new Rule("/inbox/low", "subject-includes: mjt", 7);
+        Rule high = new Rule("/inbox/high", "subject-or-body-includes: 2022", 2);
+        rules.add(low);
+        rules.add(high);
+
+        assertSame(high, rules.findRule(mail), "Expected the fitting rule with the highest priority");
+    }
+
+    @Test
+    void testFindRuleSkipsNotFitting() {
+        Rule notFitting = new Rule("/inbox/a", "subject-includes: mjt, exam", 1);
+        Rule fitting = new Rule("/inbox/b", "subject-includes: mjt, izpit", 2);
+        rules.add(notFitting);
+        rules.add(fitting);
+
+        assertSame(fitting, rules.findRule(mail), "Expected a rule to fit only if all its keywords are found");
+    }
+
+    @Test
+    void testFindRuleSubjectOrBodyInBody() {
+        Rule rule = new Rule("/inbox/a", "subject-or-body-includes: izpit, place", 1);
+        rules.add(rule);
+
+        assertSame(rule, rules.findRule(mail), "Expected keywords to be found in either subject or body");
+    }
+
+    @Test
+    void testFindRuleSubjectIncludesIgnoresBody() {
+        rules.add(new Rule("/inbox/a", "subject-includes: place", 1));
+
+        assertNull(rules.findRule(mail), "Expected subject-includes not to look into the body");
+    }
+
+    @Test
+    void testFindRuleKeywordNotAcrossSubjectAndBody() {
+        rules.add(new Rule("/inbox/a", "subject-or-body-includes: izpitIt's", 1));
+
+        assertNull(rules.findRule(mail), "Expected keywords not to match across the subject and the body");
+    }
+
+    @Test
+    void testFindRuleCombinedWithAddressConditions() {
+        String definition = "subject-includes: mjt" + System.lineSeparator() + "from: other@fmi.bg";
+        rules.add(new Rule("/inbox/a", definition, 1));
+        Rule fitting = new Rule("/inbox/b", "subject-includes: mjt" + System.lineSeparator() +
+            "recipients-includes: gosho@gmail.com", 2);
+        rules.add(fitting);
+
+        assertSame(fitting, rules.findRule(mail), "Expected address conditions to be checked as well");
+    }
+
+    @Test
+    void testFindRuleAfterAdd() {
+        rules.add(new Rule("/inbox/a", "subject-includes: exam", 1));
+        assertNull(rules.findRule(mail), "Expected no rule to fit");
+
+        Rule added = new Rule("/inbox/b", "subject-includes: izpit", 2);
+        rules.add(added);
+
+        assertSame(added, rules.findRule(mail), "Expected the rule added after a lookup to be taken into account");
+    }
+
+    @Test
+    void testFindRuleAfterRemove() {
+        Rule first = new Rule("/inbox/a", "subject-includes: mjt", 1);
+        Rule second = new Rule("/inbox/b", "subject-includes: izpit", 2);
+        rules.add(first);
+        rules.add(second);
+        rules.findRule(mail);
+
+        rules.remove(first);
+
+        assertSame(second, rules.findRule(mail), "Expected the removed rule not to be taken into account");
+    }
+
+    @Test
+    void testOrderedByPriority() {
+        Rule third = new Rule("/inbox/c", "subject-includes: c", 9);
+        Rule first = new Rule("/inbox/a", "subject-includes: a", 1);
+        Rule second = new Rule("/inbox/b", "subject-includes: b", 4);
+        rules.add(third);
+        rules.add(first);
+        rules.add(second);
+
+        var it = rules.iterator();
+        assertSame(first, it.next(), "Expected rules to be iterated by priority");
+        assertSame(second, it.next(), "Expected rules to be iterated by priority");
+        assertSame(third, it.next(), "Expected rules to be iterated by priority");
+        assertEquals(3, rules.size(), "Expected three rules in the set");
+    }
+
+    @Test
+    void testFindRuleNoCandidates() {
+        rules.add(new Rule("/inbox/a", "from: other@fmi.bg", 1));
+        rules.add(new Rule("/inbox/b", "recipients-includes: other@gmail.com", 2));
+
+        assertNull(rules.findRule(mail), "Expected no rule when no rule mentions the addresses of the mail");
+    }
+
+    @Test
+    void testFindRuleCandidatesKeepPriority() {
+        Rule bySender = new Rule("/inbox/a", "from: stoyo@fmi.bg", 6);
+        Rule byRecipient = new Rule("/inbox/b", "recipients-includes: gosho@gmail.com", 3);
+        rules.add(bySender);
+        rules.add(byRecipient);
+
+        assertSame(byRecipient, rules.findRule(mail), "Expected candidates to be evaluated by priority");
+    }
+
+    @Test
+    void testFindRuleUnknownSender() {
+        Mail external = new Mail(null, Set.of("gosho@gmail.com"), "mjt", "body", mail.received());
+        rules.add(new Rule("/inbox/a", "from: stoyo@fmi.bg", 1));
+        Rule fitting = new Rule("/inbox/b", "subject-includes: mjt", 2);
+        rules.add(fitting);
+
+        assertSame(fitting, rules.findRule(external), "Expected from rules to be skipped for unknown senders");
+    }
+}
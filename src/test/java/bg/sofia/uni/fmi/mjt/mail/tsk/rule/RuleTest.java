@@ -3,12 +3,19 @@ package bg.sofia.uni.fmi.mjt.mail.tsk.rule;
 import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
 import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
 import bg.sofia.uni.fmi.mjt.mail.tsk.exceptions.RuleAlreadyDefinedException;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.AbstractRuleCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.FromCondition;
+import bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions.SubjectIncludesCondition;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -88,4 +95,49 @@ public class RuleTest {
             "Expected the rule with 3 out of 3 matching definitions to match the email");
     }
 
+    @Test
+    void testEvaluationOrderSkipsEmptyAndStartsWithCheapest() {
+        rule = new Rule("path", "subject-or-body-includes: izpit" + System.lineSeparator() + "from: stoyo@fmi.bg",
+            1);
+
+        List<AbstractRuleCondition> order = rule.getEvaluationOrder();
+
+        assertEquals(2, order.size(), "Expected the empty conditions to be left out of the evaluation order");
+        assertInstanceOf(FromCondition.class, order.get(0), "Expected the sender to be checked before the body");
+    }
+
+    @Test
+    void testEvaluationOrderFollowsRejections() {
+        rule = new Rule("path", "from: stoyo@fmi.bg" + System.lineSeparator() + "subject-includes: izpit", 1);
+        Account sender = new Account("stoyo@fmi.bg", "Stoyo");
+        LocalDateTime received = LocalDateTime.of(2022, 12, 8, 14, 14);
+        Mail mail = new Mail(sender, Set.of("pesho@gmail.com"), "lecture", "body", received);
+
+        for (int i = 0; i < ConditionPlan.REORDER_INTERVAL; i++) {
+            assertFalse(rule.doesRuleFitMail(mail), "Expected the rule not to fit a mail without the keyword");
+        }
+
+        assertInstanceOf(SubjectIncludesCondition.class, rule.getEvaluationOrder().get(0),
+            "Expected the condition which rejects every mail to be evaluated first");
+    }
+
+    @Test
+    void testRuleFromParsedConditions() {
+        String definition = "subject-includes: mjt, izpit" + System.lineSeparator() + "from: stoyo@fmi.bg";
+        Rule parsed = new Rule("path", definition, 1);
+
+        Rule restored = new Rule("path", definition, 1,
+            Map.of("subject-includes:", Set.of("mjt", "izpit"), "from:", Set.of("stoyo@fmi.bg")));
+
+        assertEquals(parsed, restored, "Expected the rule from parsed conditions to equal the parsed rule");
+        assertEquals(definition, restored.getDefinition(), "Expected the definition to be kept");
+        assertTrue(restored.doesRuleFitMail(mail), "Expected the rule from parsed conditions to fit the mail");
+        for (AbstractRuleCondition condition : restored.getConditions()) {
+            if (condition instanceof FromCondition || condition instanceof SubjectIncludesCondition) {
+                assertFalse(condition.isEmptyCondition(), "Expected the given conditions to have values");
+            } else {
+                assertTrue(condition.isEmptyCondition(), "Expected the other conditions to be empty");
+            }
+        }
+    }
 }
@@ -2,8 +2,10 @@ package bg.sofia.uni.fmi.mjt.mail.tsk.rule.conditions;
 
 import bg.sofia.uni.fmi.mjt.mail.tsk.Account;
 import bg.sofia.uni.fmi.mjt.mail.tsk.Mail;
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.Set;
@@ -301,5 +303,46 @@ public class SubjectOrBodyIncludesConditionTest {
         assertFalse(subjectOrBodyIncludes.doesConditionFitMail(createMailFrom("subject", "")),
             "Condition should not fit mail when the body is empty");
     }
-}
 
+    @Test
+    void testDoesConditionFitMailKeywordAcrossSubjectAndBody() {
+        String text = "subject-or-body-includes: mjt";
+        subjectOrBodyIncludes.setValues(text);
+
+        assertFalse(subjectOrBodyIncludes.doesConditionFitMail(createMailFrom("subject m", "jt body")),
+            "Condition should not fit mail when a keyword is split between the subject and the body");
+    }
+
+    @Test
+    void testDoesConditionFitTextRegions() {
+        subjectOrBodyIncludes.setValues("subject-or-body-includes: mjt, izpit");
+
+        assertTrue(subjectOrBodyIncludes.doesConditionFitText(new StringBuilder("mjt"), new StringBuilder("an izpit")),
+            "Condition should fit text when the keywords are found in the subject and the body regions");
+        assertFalse(subjectOrBodyIncludes.doesConditionFitText(new StringBuilder("mjt iz"), new StringBuilder("pit")),
+            "Condition should not fit text when a keyword is split between the subject and the body regions");
+    }
+
+    @Test
+    void testDoesConditionFitMailAllocatesNothing() {
+        subjectOrBodyIncludes.setValues("subject-or-body-includes: mjt, izpit, 2022");
+        Mail mail = createMailFrom("mjt izpit", "x".repeat(1024 * 1024) + " 2022");
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int evaluations = 1000;
+
+        // The first evaluations may load classes and compile code, which is not part of the steady state
+        for (int i = 0; i < evaluations; i++) {
+            subjectOrBodyIncludes.doesConditionFitMail(mail);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        boolean fits = true;
+        for (int i = 0; i < evaluations; i++) {
+            fits &= subjectOrBodyIncludes.doesConditionFitMail(mail);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(fits, "Condition should fit mail when every keyword is found");
+        assertTrue(allocated < evaluations, "Expected no allocation per evaluation of a 1 MB body, but "
+            + allocated + " bytes were allocated by " + evaluations + " evaluations");
+    }
+}
@@ -0,0 +1,98 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeywordAutomatonTest {
+
+    private BitSet scan(List<String> keywords, String text) {
+        int[] ids = new int[keywords.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+
+        BitSet found = new BitSet();
+        new KeywordAutomaton(keywords, ids).scan(text, found);
+        return found;
+    }
+
+    private BitSet bits(int... ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids) {
+            bits.set(id);
+        }
+        return bits;
+    }
+
+    @Test
+    void testScanFindsAllKeywords() {
+        assertEquals(bits(0, 1, 2), scan(List.of("mjt", "izpit", "2022"), "mjt izpit in 2022"),
+            "Expected all keywords to be found");
+    }
+
+    @Test
+    void testScanFindsNone() {
+        assertEquals(bits(), scan(List.of("mjt", "izpit"), "nothing to see here"),
+            "Expected no keywords to be found");
+    }
+
+    @Test
+    void testScanOverlappingKeywords() {
+        assertEquals(bits(0, 1, 2, 3), scan(List.of("he", "she", "his", "hers"), "ushers his"),
+            "Expected overlapping keywords to be found through the failure links");
+    }
+
+    @Test
+    void testScanKeywordIsSuffixOfAnother() {
+        assertEquals(bits(1), scan(List.of("abcd", "bc"), "abce"),
+            "Expected the shorter keyword to be found after the longer one failed");
+    }
+
+    @Test
+    void testScanIsCaseSensitive() {
+        assertEquals(bits(0), scan(List.of("MJT", "mjt"), "This is MJT"),
+            "Expected the scan to be case sensitive like String.contains");
+    }
+
+    @Test
+    void testScanEmptyKeywordAlwaysFound() {
+        assertEquals(bits(0), scan(List.of(""), "any text"), "Expected empty keyword to be found in any text");
+    }
+
+    @Test
+    void testScanEmptyText() {
+        assertEquals(bits(), scan(List.of("mjt"), ""), "Expected nothing to be found in an empty text");
+    }
+
+    @Test
+    void testScanKeepsPreviouslyFound() {
+        KeywordAutomaton automaton = new KeywordAutomaton(List.of("mjt", "izpit"), new int[] {3, 7});
+        BitSet found = bits(3);
+
+        automaton.scan("izpit", found);
+
+        assertTrue(found.get(3) && found.get(7), "Expected previously found ids to stay set");
+    }
+
+    @Test
+    void testScanSameIdForTwoKeywords() {
+        KeywordAutomaton automaton = new KeywordAutomaton(List.of("mjt", "MJT"), new int[] {0, 0});
+        BitSet found = new BitSet();
+
+        automaton.scan("MJT", found);
+
+        assertEquals(bits(0), found, "Expected the shared id to be reported");
+    }
+
+    @Test
+    void testConstructorIdsMismatch() {
+        assertThrows(IllegalArgumentException.class, () -> new KeywordAutomaton(List.of("mjt"), new int[] {0, 1}),
+            "IllegalArgumentException expected when keywords and ids do not match");
+    }
+}
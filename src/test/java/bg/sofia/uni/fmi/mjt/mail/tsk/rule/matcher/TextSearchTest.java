@@ -0,0 +1,33 @@
+package bg.sofia.uni.fmi.mjt.mail.tsk.rule.matcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TextSearchTest {
+
+    @Test
+    void testIndexOfInCharSequence() {
+        StringBuilder text = new StringBuilder("ababcab");
+
+        assertEquals(2, TextSearch.indexOf(text, "abc"), "Expected the first full occurrence of the keyword");
+        assertEquals(0, TextSearch.indexOf(text, "ab"), "Expected the keyword at the start of the text");
+        assertEquals(4, TextSearch.indexOf(text, "c"), "Expected the first occurrence of a single character");
+        assertEquals(-1, TextSearch.indexOf(text, "abd"), "Expected no index for a keyword which is not in the text");
+        assertEquals(-1, TextSearch.indexOf(text, "babcabx"), "Expected no index for a keyword running past the end");
+        assertEquals(0, TextSearch.indexOf(text, ""), "Expected the empty keyword at the start of the text");
+    }
+
+    @Test
+    void testContainsInRegionOfText() {
+        CharBuffer region = CharBuffer.wrap("subject: mjt izpit", 9, 18);
+
+        assertTrue(TextSearch.contains(region, "izpit"), "Expected a keyword inside the region to be found");
+        assertFalse(TextSearch.contains(region, "subject"), "Expected a keyword outside the region not to be found");
+        assertTrue(TextSearch.contains("mjt izpit", "mjt"), "Expected a keyword of a string to be found");
+    }
+}